@@ -95,7 +95,7 @@ public interface DataSourceService {
     
     /**
      * 初始化插件数据库
-     * 自动查找并执行插件的db/init.sql文件
+     * 按版本顺序执行插件的db/init.sql和db/migration/V*.sql中尚未执行的脚本
      * 
      * @param pluginId 插件ID
      * @return 是否成功
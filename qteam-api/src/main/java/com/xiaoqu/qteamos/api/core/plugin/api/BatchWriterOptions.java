@@ -0,0 +1,73 @@
+package com.xiaoqu.qteamos.api.core.plugin.api;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 批量写入器选项
+ * 满足行数、字节数或时间任一条件即提交一批
+ *
+ * @author yangqijun
+ * @date 2025-05-03
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchWriterOptions {
+
+    /**
+     * 每批最大行数
+     */
+    @Builder.Default
+    private int maxBatchRows = 500;
+
+    /**
+     * 每批参数的最大估算字节数
+     */
+    @Builder.Default
+    private long maxBatchBytes = 1024 * 1024;
+
+    /**
+     * 未满批次的最长等待时间(毫秒)，0表示只按行数和字节数提交；
+     * 后写模式下由后台定时提交，同步模式下在超时后的下一次写入时提交
+     */
+    @Builder.Default
+    private long flushIntervalMillis = 1000;
+
+    /**
+     * 是否把单行INSERT ... VALUES (...)改写为多行VALUES语句执行，
+     * 效果类似MySQL驱动的rewriteBatchedStatements，无法改写的语句仍按JDBC批处理执行
+     */
+    @Builder.Default
+    private boolean rewriteInserts = false;
+
+    /**
+     * 是否启用后写模式：写入只进入内存缓冲区并立即返回，由后台线程提交
+     */
+    @Builder.Default
+    private boolean writeBehind = false;
+
+    /**
+     * 后写模式下缓冲区最多容纳的未提交行数
+     */
+    @Builder.Default
+    private int maxPendingRows = 10000;
+
+    /**
+     * 后写模式下缓冲区已满时写入的最长阻塞时间(毫秒)，超时抛出异常
+     */
+    @Builder.Default
+    private long offerTimeoutMillis = 30000;
+
+    /**
+     * 默认选项
+     *
+     * @return 选项
+     */
+    public static BatchWriterOptions defaults() {
+        return BatchWriterOptions.builder().build();
+    }
+}
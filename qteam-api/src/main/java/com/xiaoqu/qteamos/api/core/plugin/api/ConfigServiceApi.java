@@ -3,6 +3,10 @@ package com.xiaoqu.qteamos.api.core.plugin.api;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * 配置服务API接口
@@ -84,6 +88,7 @@ public interface ConfigServiceApi {
 
     /**
      * 设置配置值
+     * 修改立即对读取可见，并在短暂合并后自动持久化
      *
      * @param key 配置键
      * @param value 配置值
@@ -91,6 +96,14 @@ public interface ConfigServiceApi {
      */
     boolean set(String key, Object value);
 
+    /**
+     * 批量设置配置值，作为一次修改生效并只持久化一次
+     *
+     * @param values 配置键值，值为null表示删除
+     * @return 是否成功
+     */
+    boolean setAll(Map<String, Object> values);
+
     /**
      * 删除配置
      *
@@ -107,7 +120,7 @@ public interface ConfigServiceApi {
     Map<String, Object> getAll();
 
     /**
-     * 保存配置到存储
+     * 立即保存配置到存储，不等待自动持久化
      *
      * @return 是否成功
      */
@@ -119,4 +132,40 @@ public interface ConfigServiceApi {
      * @return 是否成功
      */
     boolean reload();
-} 
\ No newline at end of file
+
+    /**
+     * 监听配置变更，回调参数为本次变更的配置键
+     *
+     * @param listener 变更监听器
+     */
+    void addChangeListener(Consumer<Set<String>> listener);
+
+    /**
+     * 监听单个配置项的变更，新旧值转换为指定类型后回调
+     *
+     * @param key 配置键
+     * @param type 值类型
+     * @param listener 变更监听器，参数依次为旧值和新值
+     */
+    <T> void addChangeListener(String key, Class<T> type, BiConsumer<T, T> listener);
+
+    /**
+     * 把全部配置绑定为指定类型，等同于bind(null, type)
+     *
+     * @param type 绑定类型
+     * @return 配置绑定
+     */
+    <T> Supplier<T> bind(Class<T> type);
+
+    /**
+     * 把配置绑定为指定类型
+     * 配置在每个版本只转换一次，get()在配置未变化时直接返回已转换的实例，适合在请求处理等热点路径中读取；
+     * 类型可以是record、普通类或只包含无参属性方法的接口，接口中的默认方法在配置缺失时提供默认值
+     *
+     * @param prefix 配置前缀，按"."逐级进入嵌套配置，为空时绑定全部配置
+     * @param type 绑定类型
+     * @return 配置绑定
+     * @throws IllegalArgumentException 当前配置无法转换为绑定类型
+     */
+    <T> Supplier<T> bind(String prefix, Class<T> type);
+}
@@ -10,9 +10,14 @@
  */
 package com.xiaoqu.qteamos.api.core.plugin.api;
 
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 /**
  * 数据服务API接口
@@ -25,6 +30,7 @@ public interface DataServiceApi {
 
     /**
      * 查询数据
+     * 配置了只读副本且不在读写事务中时从副本读取
      *
      * @param sql SQL语句
      * @param params 参数
@@ -32,6 +38,51 @@ public interface DataServiceApi {
      */
     List<Map<String, Object>> query(String sql, Object... params);
 
+    /**
+     * 流式查询，逐行回调处理，结果不在内存中累积
+     * 回调中的行对象在回调返回后即失效，需要保留的数据应自行复制
+     *
+     * @param sql SQL语句
+     * @param handler 行处理器
+     * @param params 参数
+     * @return 处理的行数
+     */
+    long queryForEach(String sql, RowHandler handler, Object... params);
+
+    /**
+     * 流式查询，逐行回调处理，使用指定的JDBC抓取大小
+     *
+     * @param sql SQL语句
+     * @param fetchSize 每次从数据库抓取的行数
+     * @param handler 行处理器
+     * @param params 参数
+     * @return 处理的行数
+     */
+    long queryForEach(String sql, int fetchSize, RowHandler handler, Object... params);
+
+    /**
+     * 打开查询游标，以迭代器或Stream方式逐行读取
+     * 游标持有数据库连接，必须在使用完毕后关闭（推荐try-with-resources）
+     *
+     * @param sql SQL语句
+     * @param fetchSize 每次从数据库抓取的行数
+     * @param params 参数
+     * @return 查询游标
+     */
+    QueryCursor openCursor(String sql, int fetchSize, Object... params);
+
+    /**
+     * 按列批量查询，每批数据按列存放，列缓冲区在批次之间复用
+     * 适用于导出、ETL等需要恒定内存处理大量数据的场景
+     *
+     * @param sql SQL语句
+     * @param batchSize 每批行数，同时作为JDBC抓取大小
+     * @param handler 批处理器
+     * @param params 参数
+     * @return 处理的行数
+     */
+    long queryInBatches(String sql, int batchSize, BatchHandler handler, Object... params);
+
     /**
      * 更新数据
      *
@@ -59,6 +110,24 @@ public interface DataServiceApi {
      */
     int[] batchUpdate(String sql, List<Object[]> batchArgs);
 
+    /**
+     * 使用默认选项打开批量写入器
+     *
+     * @param sql 带参数占位符的INSERT/UPDATE/DELETE语句
+     * @return 批量写入器
+     */
+    BatchWriter openBatchWriter(String sql);
+
+    /**
+     * 打开批量写入器，逐行写入，按行数、字节数或时间自动分批提交
+     * 使用完毕后必须关闭，关闭时提交剩余数据
+     *
+     * @param sql 带参数占位符的INSERT/UPDATE/DELETE语句
+     * @param options 写入器选项
+     * @return 批量写入器
+     */
+    BatchWriter openBatchWriter(String sql, BatchWriterOptions options);
+
     /**
      * 执行事务
      *
@@ -68,6 +137,238 @@ public interface DataServiceApi {
      */
     <T> T executeInTransaction(TransactionAction<T> action);
 
+    /**
+     * 执行只读事务
+     * 配置了只读副本时事务在副本上执行，写入后的粘滞窗口内仍在主库执行
+     *
+     * @param action 事务操作，只能执行查询
+     * @param <T> 返回类型
+     * @return 操作结果
+     */
+    <T> T executeInReadOnlyTransaction(TransactionAction<T> action);
+
+    /**
+     * 行处理器
+     */
+    @FunctionalInterface
+    interface RowHandler {
+        /**
+         * 处理一行数据
+         *
+         * @param row 当前行，仅在本次调用期间有效
+         * @throws Exception 处理异常，将终止查询
+         */
+        void handle(Row row) throws Exception;
+    }
+
+    /**
+     * 列批处理器
+     */
+    @FunctionalInterface
+    interface BatchHandler {
+        /**
+         * 处理一批数据
+         *
+         * @param batch 当前批次，列缓冲区在下一批次被覆盖
+         * @throws Exception 处理异常，将终止查询
+         */
+        void handle(RowBatch batch) throws Exception;
+    }
+
+    /**
+     * 结果集中的当前行
+     * 列序号从1开始，与JDBC一致
+     */
+    interface Row {
+
+        /**
+         * 当前行号，从1开始
+         */
+        long getRowNumber();
+
+        int getColumnCount();
+
+        String getColumnLabel(int column);
+
+        /**
+         * 根据列标签获取列序号
+         *
+         * @param label 列标签，不区分大小写
+         * @return 列序号，不存在时返回-1
+         */
+        int findColumn(String label);
+
+        Object getObject(int column);
+
+        Object getObject(String label);
+
+        String getString(int column);
+
+        String getString(String label);
+
+        long getLong(int column);
+
+        long getLong(String label);
+
+        int getInt(int column);
+
+        int getInt(String label);
+
+        double getDouble(int column);
+
+        double getDouble(String label);
+
+        boolean getBoolean(int column);
+
+        boolean getBoolean(String label);
+
+        BigDecimal getBigDecimal(int column);
+
+        BigDecimal getBigDecimal(String label);
+
+        Timestamp getTimestamp(int column);
+
+        Timestamp getTimestamp(String label);
+
+        /**
+         * 最近一次读取的基本类型列是否为SQL NULL
+         */
+        boolean wasNull();
+
+        /**
+         * 将当前行复制为Map，用于需要保留行数据的场景
+         *
+         * @return 列标签到值的有序Map
+         */
+        Map<String, Object> toMap();
+    }
+
+    /**
+     * 按列存放的一批数据
+     * 列序号从1开始，行序号从0开始
+     */
+    interface RowBatch {
+
+        /**
+         * 批次序号，从0开始
+         */
+        long getBatchIndex();
+
+        /**
+         * 当前批次的行数
+         */
+        int size();
+
+        int getColumnCount();
+
+        String getColumnLabel(int column);
+
+        /**
+         * 获取整列数据，数组长度为批次容量，仅前size()个元素有效
+         *
+         * @param column 列序号
+         * @return 列数据
+         */
+        Object[] getColumn(int column);
+
+        /**
+         * 获取指定单元格的值
+         *
+         * @param row 批次内行序号
+         * @param column 列序号
+         * @return 单元格值
+         */
+        Object get(int row, int column);
+    }
+
+    /**
+     * 查询游标
+     * 持有数据库连接，关闭后释放；迭代返回的行对象在下一次迭代时失效
+     */
+    interface QueryCursor extends Iterator<Row>, AutoCloseable {
+
+        /**
+         * 转换为顺序Stream，关闭Stream时同时关闭游标
+         *
+         * @return 行数据流
+         */
+        Stream<Row> stream();
+
+        /**
+         * 关闭游标并释放连接
+         */
+        @Override
+        void close();
+    }
+
+    /**
+     * 批量写入器
+     * 线程安全；同一写入器的批次按写入顺序依次提交，每批在独立事务中执行
+     * （调用线程已处于事务中且同步提交时加入该事务）
+     */
+    interface BatchWriter extends AutoCloseable {
+
+        /**
+         * 写入一行参数
+         * 同步模式下写满一批时在当前线程提交并等待完成；
+         * 后写模式下只进入缓冲区，缓冲区已满时阻塞等待，超时抛出异常
+         *
+         * @param params 参数
+         * @return 该行所在批次的完成结果
+         */
+        CompletableFuture<BatchResult> add(Object... params);
+
+        /**
+         * 立即提交当前未满的批次
+         *
+         * @return 该批次的完成结果，没有待提交数据时返回已完成的空结果
+         */
+        CompletableFuture<BatchResult> flush();
+
+        /**
+         * 已写入但尚未提交成功的行数
+         */
+        long getPendingRows();
+
+        /**
+         * 已提交成功的行数
+         */
+        long getWrittenRows();
+
+        /**
+         * 提交剩余数据并等待所有批次完成，之后不能再写入
+         * 有批次失败时抛出最后一个失败原因
+         */
+        @Override
+        void close();
+    }
+
+    /**
+     * 批次执行结果
+     */
+    interface BatchResult {
+
+        /**
+         * 批次序号，从0开始
+         */
+        long getBatchIndex();
+
+        /**
+         * 批次行数
+         */
+        int getRowCount();
+
+        /**
+         * 每行影响的行数；多行改写执行且无法区分到行时（如ON DUPLICATE KEY UPDATE）为Statement.SUCCESS_NO_INFO
+         */
+        int[] getUpdateCounts();
+
+        /**
+         * 执行耗时(毫秒)
+         */
+        long getElapsedMillis();
+    }
+
     /**
      * 事务操作接口
      *
@@ -3,6 +3,7 @@ package com.xiaoqu.qteamos.api.core.plugin.api;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.BooleanSupplier;
 
 /**
  * 扩展点服务API接口
@@ -13,6 +14,17 @@ import java.util.Optional;
  */
 public interface ExtensionServiceApi {
 
+    /**
+     * 声明扩展点
+     * 插件描述文件中的extensionPoints在插件加载时自动声明
+     *
+     * @param extensionPoint 扩展点ID，按类型获取扩展时使用类型的全限定名
+     * @param extensionType 扩展实现需要实现的类型，可为null
+     * @param multiple 是否允许多个实现，为false时只保留最高优先级实现
+     * @return 是否声明成功
+     */
+    boolean declareExtensionPoint(String extensionPoint, Class<?> extensionType, boolean multiple);
+
     /**
      * 注册扩展点实现
      *
@@ -32,6 +44,18 @@ public interface ExtensionServiceApi {
      */
     boolean registerExtension(String extensionPoint, Object implementation, int priority);
 
+    /**
+     * 注册带条件的扩展点实现
+     * 条件在扩展列表重建时求值（注册、注销或插件卸载），查询扩展时不再求值
+     *
+     * @param extensionPoint 扩展点ID
+     * @param implementation 扩展点实现
+     * @param priority 优先级（值越大优先级越高）
+     * @param condition 启用条件
+     * @return 是否注册成功
+     */
+    boolean registerExtension(String extensionPoint, Object implementation, int priority, BooleanSupplier condition);
+
     /**
      * 注销扩展点实现
      *
@@ -42,13 +66,22 @@ public interface ExtensionServiceApi {
     boolean unregisterExtension(String extensionPoint, Object implementation);
 
     /**
-     * 获取扩展点的所有实现
+     * 获取扩展点的所有实现，按优先级从高到低排列
      *
      * @param extensionPoint 扩展点ID
      * @return 扩展点实现列表
      */
     <T> List<T> getExtensions(String extensionPoint);
 
+    /**
+     * 获取以类型全限定名为ID的扩展点的所有实现，按优先级从高到低排列
+     * 返回预先构建的不可变列表，重复调用不产生新对象
+     *
+     * @param extensionType 扩展类型
+     * @return 扩展点实现列表
+     */
+    <T> List<T> getExtensions(Class<T> extensionType);
+
     /**
      * 获取扩展点的最高优先级实现
      *
@@ -92,6 +92,8 @@ public interface PluginServiceApi {
 
     /**
      * 调用其他插件提供的服务
+     * params中的method指定方法名（服务接口只有一个方法时可省略），args指定参数列表，
+     * 未指定args时params整体作为唯一参数传入
      *
      * @param pluginId 插件ID
      * @param serviceName 服务名称
@@ -99,4 +101,25 @@ public interface PluginServiceApi {
      * @return 调用结果
      */
     <T> Optional<T> invokePluginService(String pluginId, String serviceName, Map<String, Object> params);
+
+    /**
+     * 导出当前插件的服务，供其他插件调用
+     * 同名服务再次导出时替换原实现，其他插件已获取的服务自动切换到新实现
+     *
+     * @param serviceName 服务名称
+     * @param serviceInterface 服务接口，需由插件间共享的类加载器加载
+     * @param service 服务实现
+     */
+    <T> void exportService(String serviceName, Class<T> serviceInterface, T service);
+
+    /**
+     * 获取其他插件导出的服务
+     * 提供方插件卸载后调用会抛出IllegalStateException，重新加载后自动恢复
+     *
+     * @param pluginId 提供方插件ID
+     * @param serviceName 服务名称
+     * @param serviceInterface 服务接口
+     * @return 服务，未导出时为空
+     */
+    <T> Optional<T> getPluginService(String pluginId, String serviceName, Class<T> serviceInterface);
 } 
\ No newline at end of file
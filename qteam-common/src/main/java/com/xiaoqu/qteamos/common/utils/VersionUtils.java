@@ -12,6 +12,13 @@ package com.xiaoqu.qteamos.common.utils;
 
 import org.apache.commons.lang3.StringUtils;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -54,6 +61,31 @@ public class VersionUtils {
     private static final Pattern WILDCARD_PATTERN = Pattern.compile(
             "^(\\d+)(?:\\.(\\d+|[xX*]))?(?:\\.(\\d+|[xX*]))?$");
 
+    /**
+     * 解析缓存的最大条目数，超出后整体清空，避免被任意字符串撑大
+     */
+    private static final int MAX_CACHE_SIZE = 2048;
+
+    /**
+     * 版本解析缓存，key为原始版本字符串
+     */
+    private static final Map<String, Version> VERSION_CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * 版本要求编译缓存，key为原始版本要求字符串
+     */
+    private static final Map<String, VersionRequirement> REQUIREMENT_CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * 版本范围解析缓存，key为原始版本范围字符串
+     */
+    private static final Map<String, VersionRange> RANGE_CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * 预发布标识驻留表，相同的预发布版本共享同一实例
+     */
+    private static final Map<String, String> PRE_RELEASE_POOL = new ConcurrentHashMap<>();
+
     /**
      * 比较两个版本的大小
      * 
@@ -63,70 +95,22 @@ public class VersionUtils {
      * @throws IllegalArgumentException 如果版本格式不正确
      */
     public static int compare(String version1, String version2) {
-        Version v1 = parseVersion(version1);
-        Version v2 = parseVersion(version2);
-        
-        // 比较主版本号
-        int result = Integer.compare(v1.getMajor(), v2.getMajor());
-        if (result != 0) {
-            return result;
-        }
-        
-        // 比较次版本号
-        result = Integer.compare(v1.getMinor(), v2.getMinor());
-        if (result != 0) {
-            return result;
-        }
-        
-        // 比较修订号
-        result = Integer.compare(v1.getPatch(), v2.getPatch());
-        if (result != 0) {
-            return result;
-        }
-        
-        // 如果都没有预发布版本，则版本相等
-        if (v1.getPreRelease() == null && v2.getPreRelease() == null) {
-            return 0;
-        }
-        
-        // 有预发布版本的比没有预发布版本的低
-        if (v1.getPreRelease() != null && v2.getPreRelease() == null) {
-            return -1;
-        }
-        
-        if (v1.getPreRelease() == null && v2.getPreRelease() != null) {
-            return 1;
-        }
-        
-        // 预发布版本的比较
-        return comparePreRelease(v1.getPreRelease(), v2.getPreRelease());
+        return parseVersion(version1).compareTo(parseVersion(version2));
     }
 
     /**
-     * 比较预发布版本
-     * 
-     * @param preRelease1 预发布版本1
-     * @param preRelease2 预发布版本2
-     * @return 如果preRelease1 > preRelease2返回正数，反之返回负数，相等返回0
+     * 比较预发布版本标识
+     * 数字标识符按数值比较且低于非数字标识符，标识符数量更多的版本优先级更高
      */
-    private static int comparePreRelease(String preRelease1, String preRelease2) {
-        String[] parts1 = preRelease1.split("\\.");
-        String[] parts2 = preRelease2.split("\\.");
-        
+    private static int comparePreRelease(String[] parts1, boolean[] numeric1, String[] parts2, boolean[] numeric2) {
         int minLength = Math.min(parts1.length, parts2.length);
         
         for (int i = 0; i < minLength; i++) {
-            String part1 = parts1[i];
-            String part2 = parts2[i];
-            
-            // 如果两个标识符都是数字，则进行数值比较
-            boolean isDigit1 = isNumeric(part1);
-            boolean isDigit2 = isNumeric(part2);
+            boolean isDigit1 = numeric1[i];
+            boolean isDigit2 = numeric2[i];
             
             if (isDigit1 && isDigit2) {
-                int num1 = Integer.parseInt(part1);
-                int num2 = Integer.parseInt(part2);
-                int result = Integer.compare(num1, num2);
+                int result = compareNumeric(parts1[i], parts2[i]);
                 if (result != 0) {
                     return result;
                 }
@@ -138,7 +122,7 @@ public class VersionUtils {
                 return 1;
             } else {
                 // 两个都是非数字标识符，进行字典顺序比较
-                int result = part1.compareTo(part2);
+                int result = parts1[i].compareTo(parts2[i]);
                 if (result != 0) {
                     return result;
                 }
@@ -149,11 +133,30 @@ public class VersionUtils {
         return Integer.compare(parts1.length, parts2.length);
     }
 
+    /**
+     * 比较两个无前导零的数字串，不受整数溢出影响
+     */
+    private static int compareNumeric(String num1, String num2) {
+        if (num1.length() != num2.length()) {
+            return Integer.compare(num1.length(), num2.length());
+        }
+        return num1.compareTo(num2);
+    }
+
     /**
      * 判断字符串是否为纯数字
      */
     private static boolean isNumeric(String str) {
-        return str.matches("^[0-9]+$");
+        if (str.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -168,18 +171,83 @@ public class VersionUtils {
             throw new IllegalArgumentException("版本字符串不能为空");
         }
         
-        Matcher matcher = SEMVER_PATTERN.matcher(versionStr);
-        if (!matcher.matches()) {
+        Version version = tryParseVersion(versionStr);
+        if (version == null) {
             throw new IllegalArgumentException("无效的语义化版本格式: " + versionStr);
         }
+        return version;
+    }
+
+    /**
+     * 解析版本字符串，格式不正确时返回null
+     * 解析结果按原始字符串缓存，重复解析只需一次哈希查找
+     * 
+     * @param versionStr 版本字符串
+     * @return Version对象，无效时为null
+     */
+    public static Version tryParseVersion(String versionStr) {
+        if (StringUtils.isBlank(versionStr)) {
+            return null;
+        }
         
-        int major = Integer.parseInt(matcher.group(1));
-        int minor = Integer.parseInt(matcher.group(2));
-        int patch = Integer.parseInt(matcher.group(3));
-        String preRelease = matcher.group(4);
-        String buildMetadata = matcher.group(5);
+        Version cached = VERSION_CACHE.get(versionStr);
+        if (cached != null) {
+            return cached;
+        }
+        
+        Matcher matcher = SEMVER_PATTERN.matcher(versionStr);
+        if (!matcher.matches()) {
+            return null;
+        }
         
-        return new Version(major, minor, patch, preRelease, buildMetadata);
+        try {
+            int major = Integer.parseInt(matcher.group(1));
+            int minor = Integer.parseInt(matcher.group(2));
+            int patch = Integer.parseInt(matcher.group(3));
+            String preRelease = matcher.group(4);
+            String buildMetadata = matcher.group(5);
+            
+            return putBounded(VERSION_CACHE, versionStr, new Version(major, minor, patch, preRelease, buildMetadata));
+        } catch (NumberFormatException e) {
+            // 数值超出int范围
+            return null;
+        }
+    }
+
+    /**
+     * 写入有界缓存，超出上限时先清空
+     */
+    private static <V> V putBounded(Map<String, V> cache, String key, V value) {
+        if (cache.size() >= MAX_CACHE_SIZE) {
+            cache.clear();
+        }
+        V previous = cache.putIfAbsent(key, value);
+        return previous != null ? previous : value;
+    }
+
+    /**
+     * 从有界缓存获取，不存在时计算并写入；计算抛出的异常不缓存
+     */
+    private static <V> V getOrCompute(Map<String, V> cache, String key, Function<String, V> loader) {
+        V cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        return putBounded(cache, key, loader.apply(key));
+    }
+
+    /**
+     * 驻留预发布标识
+     */
+    private static String internPreRelease(String preRelease) {
+        if (preRelease == null) {
+            return null;
+        }
+        String pooled = PRE_RELEASE_POOL.get(preRelease);
+        if (pooled != null) {
+            return pooled;
+        }
+        return putBounded(PRE_RELEASE_POOL, preRelease, preRelease);
     }
 
     /**
@@ -189,10 +257,7 @@ public class VersionUtils {
      * @return 是否有效
      */
     public static boolean isValidVersion(String versionStr) {
-        if (StringUtils.isBlank(versionStr)) {
-            return false;
-        }
-        return SEMVER_PATTERN.matcher(versionStr).matches();
+        return tryParseVersion(versionStr) != null;
     }
 
     /**
@@ -206,73 +271,77 @@ public class VersionUtils {
         if (StringUtils.isBlank(version) || StringUtils.isBlank(requirement)) {
             return false;
         }
-        
-        // 通配符版本检查，如 "1.*" 或 "1.2.x"
+        return compileRequirement(requirement).test(version);
+    }
+
+    /**
+     * 将版本要求编译为可复用的判定对象
+     * 编译结果按原始字符串缓存，版本要求格式不受支持时返回永不满足的判定
+     * 
+     * @param requirement 版本要求
+     * @return 版本要求判定
+     */
+    public static VersionRequirement compileRequirement(String requirement) {
+        if (StringUtils.isBlank(requirement)) {
+            return VersionRequirement.NEVER;
+        }
+        return getOrCompute(REQUIREMENT_CACHE, requirement, VersionUtils::doCompileRequirement);
+    }
+
+    private static VersionRequirement doCompileRequirement(String requirement) {
+        // 通配符版本，如 "1.*" 或 "1.2.x"
         Matcher wildcardMatcher = WILDCARD_PATTERN.matcher(requirement);
         if (wildcardMatcher.matches()) {
-            return checkWildcardRequirement(version, requirement);
+            return compileWildcardRequirement(requirement, wildcardMatcher);
         }
         
         // 精确版本匹配
-        if (isValidVersion(requirement)) {
-            return version.equals(requirement);
+        Version exact = tryParseVersion(requirement);
+        if (exact != null) {
+            return new VersionRequirement(requirement, exact::equals);
         }
         
         // 范围组合匹配，如 ">=1.0.0 <2.0.0"
         if (requirement.contains(" ") || requirement.contains(",")) {
-            return checkRangeSetRequirement(version, requirement);
+            return compileRangeSetRequirement(requirement);
         }
         
         // 单个范围匹配，如 ">=1.0.0"
         Matcher rangeMatcher = RANGE_PATTERN.matcher(requirement);
         if (rangeMatcher.matches()) {
-            String operator = rangeMatcher.group(1);
-            String requiredVersion = rangeMatcher.group(2);
-            return checkSingleRangeRequirement(version, operator, requiredVersion);
+            Predicate<Version> predicate = compileSingleRange(rangeMatcher.group(1), rangeMatcher.group(2));
+            return predicate != null ? new VersionRequirement(requirement, predicate) : VersionRequirement.NEVER;
         }
         
-        return false;
+        return VersionRequirement.NEVER;
     }
 
     /**
-     * 检查版本是否满足通配符要求
+     * 编译通配符要求
      */
-    private static boolean checkWildcardRequirement(String version, String requirement) {
-        Matcher wildcardMatcher = WILDCARD_PATTERN.matcher(requirement);
-        if (!wildcardMatcher.matches()) {
-            return false;
-        }
-        
+    private static VersionRequirement compileWildcardRequirement(String requirement, Matcher wildcardMatcher) {
         try {
-            Version v = parseVersion(version);
-            
             // 解析通配符中的版本部分
             int reqMajor = Integer.parseInt(wildcardMatcher.group(1));
             String minorStr = wildcardMatcher.group(2);
             String patchStr = wildcardMatcher.group(3);
             
-            // 检查主版本号是否匹配
-            if (v.getMajor() != reqMajor) {
-                return false;
+            // 仅指定主版本号
+            if (minorStr == null || isWildcard(minorStr)) {
+                return new VersionRequirement(requirement, v -> v.getMajor() == reqMajor);
             }
             
-            // 检查次版本号是否匹配（如果指定了）
-            if (minorStr != null && !isWildcard(minorStr)) {
-                int reqMinor = Integer.parseInt(minorStr);
-                if (v.getMinor() != reqMinor) {
-                    return false;
-                }
-                
-                // 检查修订号是否匹配（如果指定了）
-                if (patchStr != null && !isWildcard(patchStr)) {
-                    int reqPatch = Integer.parseInt(patchStr);
-                    return v.getPatch() == reqPatch;
-                }
+            int reqMinor = Integer.parseInt(minorStr);
+            if (patchStr == null || isWildcard(patchStr)) {
+                return new VersionRequirement(requirement,
+                        v -> v.getMajor() == reqMajor && v.getMinor() == reqMinor);
             }
             
-            return true;
-        } catch (Exception e) {
-            return false;
+            int reqPatch = Integer.parseInt(patchStr);
+            return new VersionRequirement(requirement,
+                    v -> v.getMajor() == reqMajor && v.getMinor() == reqMinor && v.getPatch() == reqPatch);
+        } catch (NumberFormatException e) {
+            return VersionRequirement.NEVER;
         }
     }
     
@@ -284,17 +353,13 @@ public class VersionUtils {
     }
 
     /**
-     * 检查版本是否满足范围组合要求
+     * 编译范围组合要求，所有条件必须同时满足
      */
-    private static boolean checkRangeSetRequirement(String version, String requirement) {
+    private static VersionRequirement compileRangeSetRequirement(String requirement) {
         // 分割范围表达式
         String[] ranges = requirement.split("\\s+|\\s*,\\s*");
         
-        if (ranges.length == 0) {
-            return false;
-        }
-        
-        // 对于由空格或逗号分隔的范围，必须满足所有条件
+        List<Predicate<Version>> predicates = new ArrayList<>(ranges.length);
         for (String range : ranges) {
             if (StringUtils.isBlank(range)) {
                 continue;
@@ -302,53 +367,63 @@ public class VersionUtils {
             
             Matcher rangeMatcher = RANGE_PATTERN.matcher(range);
             if (!rangeMatcher.matches()) {
-                return false;
+                return VersionRequirement.NEVER;
             }
             
-            String operator = rangeMatcher.group(1);
-            String requiredVersion = rangeMatcher.group(2);
-            
-            if (!checkSingleRangeRequirement(version, operator, requiredVersion)) {
-                return false;
+            Predicate<Version> predicate = compileSingleRange(rangeMatcher.group(1), rangeMatcher.group(2));
+            if (predicate == null) {
+                return VersionRequirement.NEVER;
             }
+            predicates.add(predicate);
         }
         
-        return true;
+        if (predicates.isEmpty()) {
+            return VersionRequirement.NEVER;
+        }
+        
+        @SuppressWarnings("unchecked")
+        Predicate<Version>[] all = predicates.toArray(new Predicate[0]);
+        return new VersionRequirement(requirement, v -> {
+            for (Predicate<Version> predicate : all) {
+                if (!predicate.test(v)) {
+                    return false;
+                }
+            }
+            return true;
+        });
     }
 
     /**
-     * 检查版本是否满足单个范围要求
+     * 编译单个范围要求
+     * 
+     * @return 判定对象，操作符或版本无效时返回null
      */
-    private static boolean checkSingleRangeRequirement(String version, String operator, String requiredVersion) {
-        if (!isValidVersion(version) || !isValidVersion(requiredVersion)) {
-            return false;
+    private static Predicate<Version> compileSingleRange(String operator, String requiredVersion) {
+        Version required = tryParseVersion(requiredVersion);
+        if (required == null) {
+            return null;
         }
         
-        int compareResult = compare(version, requiredVersion);
-        
         switch (operator) {
             case "=":
-                return compareResult == 0;
+                return v -> v.compareTo(required) == 0;
             case ">":
-                return compareResult > 0;
+                return v -> v.compareTo(required) > 0;
             case ">=":
-                return compareResult >= 0;
+                return v -> v.compareTo(required) >= 0;
             case "<":
-                return compareResult < 0;
+                return v -> v.compareTo(required) < 0;
             case "<=":
-                return compareResult <= 0;
+                return v -> v.compareTo(required) <= 0;
             case "~": // 允许补丁版本的更新，但不允许次版本或主版本的更新
-                Version v1 = parseVersion(version);
-                Version v2 = parseVersion(requiredVersion);
-                return v1.getMajor() == v2.getMajor() && v1.getMinor() == v2.getMinor() && v1.getPatch() >= v2.getPatch();
+                return v -> v.getMajor() == required.getMajor() && v.getMinor() == required.getMinor()
+                        && v.getPatch() >= required.getPatch();
             case "^": // 允许次版本和补丁版本的更新，但不允许主版本的更新
-                Version v3 = parseVersion(version);
-                Version v4 = parseVersion(requiredVersion);
-                return v3.getMajor() == v4.getMajor() && 
-                       (v3.getMinor() > v4.getMinor() || 
-                        (v3.getMinor() == v4.getMinor() && v3.getPatch() >= v4.getPatch()));
+                return v -> v.getMajor() == required.getMajor() &&
+                        (v.getMinor() > required.getMinor() ||
+                         (v.getMinor() == required.getMinor() && v.getPatch() >= required.getPatch()));
             default:
-                return false;
+                return null;
         }
     }
 
@@ -390,7 +465,10 @@ public class VersionUtils {
         if (StringUtils.isBlank(range)) {
             throw new IllegalArgumentException("版本范围不能为空");
         }
-        
+        return getOrCompute(RANGE_CACHE, range, VersionUtils::doParseRange);
+    }
+
+    private static VersionRange doParseRange(String range) {
         // 处理单个版本（精确匹配）
         if (isValidVersion(range)) {
             return new VersionRange(range, range, true, true);
@@ -585,20 +663,51 @@ public class VersionUtils {
 
     /**
      * 版本对象，表示语义化版本
+     * 不可变值对象，主/次/修订号打包为long以便快速比较，预发布标识预先拆分并驻留
      */
-    public static class Version {
+    public static class Version implements Comparable<Version> {
+        /**
+         * 打包时每段可用的位数，超出时回退为逐段比较
+         */
+        private static final int PACK_BITS = 21;
+        private static final int PACK_LIMIT = 1 << PACK_BITS;
+        
+        private static final String[] NO_PARTS = new String[0];
+        private static final boolean[] NO_FLAGS = new boolean[0];
+        
         private final int major;
         private final int minor;
         private final int patch;
         private final String preRelease;
         private final String buildMetadata;
+        private final long packed;
+        private final String[] preReleaseParts;
+        private final boolean[] preReleaseNumeric;
         
         public Version(int major, int minor, int patch, String preRelease, String buildMetadata) {
             this.major = major;
             this.minor = minor;
             this.patch = patch;
-            this.preRelease = preRelease;
+            this.preRelease = internPreRelease(preRelease);
             this.buildMetadata = buildMetadata;
+            
+            if (major >= 0 && major < PACK_LIMIT && minor >= 0 && minor < PACK_LIMIT
+                    && patch >= 0 && patch < PACK_LIMIT) {
+                this.packed = ((long) major << (PACK_BITS * 2)) | ((long) minor << PACK_BITS) | patch;
+            } else {
+                this.packed = -1L;
+            }
+            
+            if (preRelease != null) {
+                this.preReleaseParts = preRelease.split("\\.");
+                this.preReleaseNumeric = new boolean[preReleaseParts.length];
+                for (int i = 0; i < preReleaseParts.length; i++) {
+                    preReleaseNumeric[i] = isNumeric(preReleaseParts[i]);
+                }
+            } else {
+                this.preReleaseParts = NO_PARTS;
+                this.preReleaseNumeric = NO_FLAGS;
+            }
         }
         
         public int getMajor() {
@@ -621,6 +730,59 @@ public class VersionUtils {
             return buildMetadata;
         }
         
+        /**
+         * 按语义化版本规则比较，忽略构建元数据
+         */
+        @Override
+        public int compareTo(Version other) {
+            int result;
+            if (packed >= 0 && other.packed >= 0) {
+                result = Long.compare(packed, other.packed);
+            } else {
+                result = Integer.compare(major, other.major);
+                if (result == 0) {
+                    result = Integer.compare(minor, other.minor);
+                }
+                if (result == 0) {
+                    result = Integer.compare(patch, other.patch);
+                }
+            }
+            if (result != 0) {
+                return result;
+            }
+            
+            // 如果都没有预发布版本，则版本相等
+            if (preRelease == null && other.preRelease == null) {
+                return 0;
+            }
+            
+            // 有预发布版本的比没有预发布版本的低
+            if (other.preRelease == null) {
+                return -1;
+            }
+            if (preRelease == null) {
+                return 1;
+            }
+            
+            // 预发布版本的比较
+            return comparePreRelease(preReleaseParts, preReleaseNumeric, other.preReleaseParts, other.preReleaseNumeric);
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Version that = (Version) o;
+            return major == that.major && minor == that.minor && patch == that.patch
+                    && Objects.equals(preRelease, that.preRelease)
+                    && Objects.equals(buildMetadata, that.buildMetadata);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(major, minor, patch, preRelease, buildMetadata);
+        }
+        
         @Override
         public String toString() {
             StringBuilder sb = new StringBuilder();
@@ -638,6 +800,49 @@ public class VersionUtils {
         }
     }
 
+    /**
+     * 已编译的版本要求
+     * 由{@link #compileRequirement(String)}生成，可在循环中重复判定而无需再次解析
+     */
+    public static final class VersionRequirement implements Predicate<Version> {
+        /**
+         * 永不满足的版本要求，用于格式无效的要求
+         */
+        public static final VersionRequirement NEVER = new VersionRequirement("", v -> false);
+        
+        private final String expression;
+        private final Predicate<Version> predicate;
+        
+        private VersionRequirement(String expression, Predicate<Version> predicate) {
+            this.expression = expression;
+            this.predicate = predicate;
+        }
+        
+        public String getExpression() {
+            return expression;
+        }
+        
+        @Override
+        public boolean test(Version version) {
+            return version != null && predicate.test(version);
+        }
+        
+        /**
+         * 检查版本字符串是否满足要求，无效版本视为不满足
+         * 
+         * @param version 版本字符串
+         * @return 是否满足
+         */
+        public boolean test(String version) {
+            return test(tryParseVersion(version));
+        }
+        
+        @Override
+        public String toString() {
+            return expression;
+        }
+    }
+
     /**
      * 版本范围对象
      */
@@ -646,12 +851,16 @@ public class VersionUtils {
         private final String maxVersion;
         private final boolean includeMin;
         private final boolean includeMax;
+        private final Version min;
+        private final Version max;
         
         public VersionRange(String minVersion, String maxVersion, boolean includeMin, boolean includeMax) {
             this.minVersion = minVersion;
             this.maxVersion = maxVersion;
             this.includeMin = includeMin;
             this.includeMax = includeMax;
+            this.min = tryParseVersion(minVersion);
+            this.max = tryParseVersion(maxVersion);
         }
         
         public String getMinVersion() {
@@ -677,20 +886,28 @@ public class VersionUtils {
          * @return 是否在范围内
          */
         public boolean contains(String version) {
-            if (!isValidVersion(version)) {
-                return false;
-            }
-            
+            Version v = tryParseVersion(version);
+            return v != null && contains(v);
+        }
+        
+        /**
+         * 检查给定版本是否在范围内
+         * 
+         * @param version 要检查的版本
+         * @return 是否在范围内
+         * @throws IllegalArgumentException 如果范围边界不是有效的版本
+         */
+        public boolean contains(Version version) {
             boolean satisfiesMin = true;
             boolean satisfiesMax = true;
             
             if (minVersion != null) {
-                int compareMin = compare(version, minVersion);
+                int compareMin = version.compareTo(min != null ? min : parseVersion(minVersion));
                 satisfiesMin = compareMin > 0 || (includeMin && compareMin == 0);
             }
             
             if (maxVersion != null) {
-                int compareMax = compare(version, maxVersion);
+                int compareMax = version.compareTo(max != null ? max : parseVersion(maxVersion));
                 satisfiesMax = compareMax < 0 || (includeMax && compareMax == 0);
             }
             
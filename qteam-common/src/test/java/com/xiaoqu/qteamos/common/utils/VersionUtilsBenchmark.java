@@ -0,0 +1,306 @@
+package com.xiaoqu.qteamos.common.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 版本工具基准测试
+ * 对比三种方式的版本比较和版本要求判定吞吐量：
+ * 原有的每次调用都执行正则和split的实现(RegexVersionUtils)、
+ * 走解析缓存的字符串API、直接使用预解析的Version和VersionRequirement。
+ * 每次操作遍历全部版本与版本要求的组合
+ *
+ * 运行：mvn -pl qteam-common test-compile exec:java -Dexec.classpathScope=test
+ *       -Dexec.mainClass=com.xiaoqu.qteamos.common.utils.VersionUtilsBenchmark
+ *
+ * @author yangqijun
+ * @version 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VersionUtilsBenchmark {
+
+    private static final String[] VERSIONS = {
+            "1.0.0", "1.2.3", "1.10.0", "2.0.0", "2.1.7", "0.9.12",
+            "1.0.0-alpha", "1.0.0-alpha.1", "1.0.0-beta.11", "2.0.0-rc.1+build.5"
+    };
+
+    private static final String[] REQUIREMENTS = {
+            ">=1.0.0", "^1.2.0", "~1.2.0", "1.x", "1.2.*", ">=1.0.0 <2.0.0", ">1.0.0, <=2.1.7", "2.0.0"
+    };
+
+    private VersionUtils.Version[] versions;
+
+    private VersionUtils.VersionRequirement[] requirements;
+
+    @Setup
+    public void setUp() {
+        versions = new VersionUtils.Version[VERSIONS.length];
+        for (int i = 0; i < VERSIONS.length; i++) {
+            versions[i] = VersionUtils.parseVersion(VERSIONS[i]);
+        }
+        requirements = new VersionUtils.VersionRequirement[REQUIREMENTS.length];
+        for (int i = 0; i < REQUIREMENTS.length; i++) {
+            requirements[i] = VersionUtils.compileRequirement(REQUIREMENTS[i]);
+        }
+    }
+
+    @Benchmark
+    public int compareRegex() {
+        int sum = 0;
+        for (String v1 : VERSIONS) {
+            for (String v2 : VERSIONS) {
+                sum += Integer.signum(RegexVersionUtils.compare(v1, v2));
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int compareString() {
+        int sum = 0;
+        for (String v1 : VERSIONS) {
+            for (String v2 : VERSIONS) {
+                sum += Integer.signum(VersionUtils.compare(v1, v2));
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int comparePreParsed() {
+        int sum = 0;
+        for (VersionUtils.Version v1 : versions) {
+            for (VersionUtils.Version v2 : versions) {
+                sum += Integer.signum(v1.compareTo(v2));
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int satisfiesRegex() {
+        int matched = 0;
+        for (String version : VERSIONS) {
+            for (String requirement : REQUIREMENTS) {
+                if (RegexVersionUtils.satisfiesRequirement(version, requirement)) {
+                    matched++;
+                }
+            }
+        }
+        return matched;
+    }
+
+    @Benchmark
+    public int satisfiesString() {
+        int matched = 0;
+        for (String version : VERSIONS) {
+            for (String requirement : REQUIREMENTS) {
+                if (VersionUtils.satisfiesRequirement(version, requirement)) {
+                    matched++;
+                }
+            }
+        }
+        return matched;
+    }
+
+    @Benchmark
+    public int satisfiesPreParsed() {
+        int matched = 0;
+        for (VersionUtils.Version version : versions) {
+            for (VersionUtils.VersionRequirement requirement : requirements) {
+                if (requirement.test(version)) {
+                    matched++;
+                }
+            }
+        }
+        return matched;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(VersionUtilsBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    /**
+     * 引入预解析之前的版本比较和版本要求判定实现，作为基准对照
+     * 每次调用都重新执行正则匹配和split，逻辑与原实现保持一致
+     */
+    static final class RegexVersionUtils {
+
+        private static final Pattern SEMVER_PATTERN = Pattern.compile(
+                "^(0|[1-9]\\d*)\\.(0|[1-9]\\d*)\\.(0|[1-9]\\d*)(?:-((?:0|[1-9]\\d*|\\d*[a-zA-Z-][0-9a-zA-Z-]*)(?:\\.(?:0|[1-9]\\d*|\\d*[a-zA-Z-][0-9a-zA-Z-]*))*))?(?:\\+([0-9a-zA-Z-]+(?:\\.[0-9a-zA-Z-]+)*))?$");
+
+        private static final Pattern RANGE_PATTERN = Pattern.compile(
+                "^([\\^~><=]{1,2})\\s*(\\d+\\.\\d+\\.\\d+(?:-[\\w.-]+)?(?:\\+[\\w.-]+)?)$");
+
+        private static final Pattern WILDCARD_PATTERN = Pattern.compile(
+                "^(\\d+)(?:\\.(\\d+|[xX*]))?(?:\\.(\\d+|[xX*]))?$");
+
+        private RegexVersionUtils() {
+        }
+
+        static int compare(String version1, String version2) {
+            Matcher v1 = parse(version1);
+            Matcher v2 = parse(version2);
+            for (int group = 1; group <= 3; group++) {
+                int result = Integer.compare(Integer.parseInt(v1.group(group)), Integer.parseInt(v2.group(group)));
+                if (result != 0) {
+                    return result;
+                }
+            }
+            String pre1 = v1.group(4);
+            String pre2 = v2.group(4);
+            if (pre1 == null && pre2 == null) {
+                return 0;
+            }
+            if (pre1 != null && pre2 == null) {
+                return -1;
+            }
+            if (pre1 == null) {
+                return 1;
+            }
+            return comparePreRelease(pre1, pre2);
+        }
+
+        private static int comparePreRelease(String preRelease1, String preRelease2) {
+            String[] parts1 = preRelease1.split("\\.");
+            String[] parts2 = preRelease2.split("\\.");
+            int minLength = Math.min(parts1.length, parts2.length);
+            for (int i = 0; i < minLength; i++) {
+                boolean isDigit1 = parts1[i].matches("^[0-9]+$");
+                boolean isDigit2 = parts2[i].matches("^[0-9]+$");
+                int result;
+                if (isDigit1 && isDigit2) {
+                    result = Integer.compare(Integer.parseInt(parts1[i]), Integer.parseInt(parts2[i]));
+                } else if (isDigit1) {
+                    return -1;
+                } else if (isDigit2) {
+                    return 1;
+                } else {
+                    result = parts1[i].compareTo(parts2[i]);
+                }
+                if (result != 0) {
+                    return result;
+                }
+            }
+            return Integer.compare(parts1.length, parts2.length);
+        }
+
+        private static Matcher parse(String versionStr) {
+            Matcher matcher = SEMVER_PATTERN.matcher(versionStr);
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException("无效的语义化版本格式: " + versionStr);
+            }
+            return matcher;
+        }
+
+        private static boolean isValidVersion(String versionStr) {
+            return SEMVER_PATTERN.matcher(versionStr).matches();
+        }
+
+        static boolean satisfiesRequirement(String version, String requirement) {
+            Matcher wildcardMatcher = WILDCARD_PATTERN.matcher(requirement);
+            if (wildcardMatcher.matches()) {
+                return checkWildcardRequirement(version, requirement);
+            }
+            if (isValidVersion(requirement)) {
+                return version.equals(requirement);
+            }
+            if (requirement.contains(" ") || requirement.contains(",")) {
+                for (String range : requirement.split("\\s+|\\s*,\\s*")) {
+                    if (range.isBlank()) {
+                        continue;
+                    }
+                    Matcher rangeMatcher = RANGE_PATTERN.matcher(range);
+                    if (!rangeMatcher.matches()
+                            || !checkSingleRange(version, rangeMatcher.group(1), rangeMatcher.group(2))) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            Matcher rangeMatcher = RANGE_PATTERN.matcher(requirement);
+            return rangeMatcher.matches() && checkSingleRange(version, rangeMatcher.group(1), rangeMatcher.group(2));
+        }
+
+        private static boolean checkWildcardRequirement(String version, String requirement) {
+            Matcher wildcardMatcher = WILDCARD_PATTERN.matcher(requirement);
+            if (!wildcardMatcher.matches() || !isValidVersion(version)) {
+                return false;
+            }
+            Matcher v = parse(version);
+            if (Integer.parseInt(v.group(1)) != Integer.parseInt(wildcardMatcher.group(1))) {
+                return false;
+            }
+            String minorStr = wildcardMatcher.group(2);
+            String patchStr = wildcardMatcher.group(3);
+            if (minorStr != null && !isWildcard(minorStr)) {
+                if (Integer.parseInt(v.group(2)) != Integer.parseInt(minorStr)) {
+                    return false;
+                }
+                if (patchStr != null && !isWildcard(patchStr)) {
+                    return Integer.parseInt(v.group(3)) == Integer.parseInt(patchStr);
+                }
+            }
+            return true;
+        }
+
+        private static boolean isWildcard(String str) {
+            return "x".equalsIgnoreCase(str) || "*".equals(str);
+        }
+
+        private static boolean checkSingleRange(String version, String operator, String requiredVersion) {
+            if (!isValidVersion(version) || !isValidVersion(requiredVersion)) {
+                return false;
+            }
+            int compareResult = compare(version, requiredVersion);
+            switch (operator) {
+                case "=":
+                    return compareResult == 0;
+                case ">":
+                    return compareResult > 0;
+                case ">=":
+                    return compareResult >= 0;
+                case "<":
+                    return compareResult < 0;
+                case "<=":
+                    return compareResult <= 0;
+                case "~": {
+                    Matcher v1 = parse(version);
+                    Matcher v2 = parse(requiredVersion);
+                    return v1.group(1).equals(v2.group(1)) && v1.group(2).equals(v2.group(2))
+                            && Integer.parseInt(v1.group(3)) >= Integer.parseInt(v2.group(3));
+                }
+                case "^": {
+                    Matcher v1 = parse(version);
+                    Matcher v2 = parse(requiredVersion);
+                    int minor1 = Integer.parseInt(v1.group(2));
+                    int minor2 = Integer.parseInt(v2.group(2));
+                    return v1.group(1).equals(v2.group(1)) && (minor1 > minor2
+                            || (minor1 == minor2 && Integer.parseInt(v1.group(3)) >= Integer.parseInt(v2.group(3))));
+                }
+                default:
+                    return false;
+            }
+        }
+    }
+}
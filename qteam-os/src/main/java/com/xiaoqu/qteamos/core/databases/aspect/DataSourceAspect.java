@@ -8,10 +8,16 @@ import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Pointcut;
 import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.context.expression.MethodClassKey;
+import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 数据源切面
@@ -26,6 +32,21 @@ import java.lang.reflect.Method;
 @Slf4j
 public class DataSourceAspect {
 
+    /**
+     * 未声明数据源的占位值
+     */
+    private static final String NO_DATASOURCE = "";
+
+    /**
+     * 缓存上限，插件卸载后其方法不再被调用，超过上限时整体清空
+     */
+    private static final int MAX_CACHE_SIZE = 4096;
+
+    /**
+     * 方法到数据源名称的缓存，避免每次调用都反射查找注解
+     */
+    private final Map<MethodClassKey, String> dataSourceCache = new ConcurrentHashMap<>(256);
+
     /**
      * 定义切点：所有使用@DataSource注解的方法
      */
@@ -45,33 +66,59 @@ public class DataSourceAspect {
         // 获取目标方法的签名
         MethodSignature signature = (MethodSignature) point.getSignature();
         
-        // 获取目标方法
-        Method method = signature.getMethod();
+        // 解析目标方法对应的数据源，结果按方法和目标类缓存
+        Class<?> targetClass = point.getTarget() != null ? point.getTarget().getClass() : null;
+        String dataSourceName = resolveDataSource(signature.getMethod(), targetClass);
         
-        // 获取目标方法上的@DataSource注解
-        DataSource dataSource = method.getAnnotation(DataSource.class);
-        
-        // 如果方法上没有注解，检查类上是否有注解
-        if (dataSource == null) {
-            dataSource = point.getTarget().getClass().getAnnotation(DataSource.class);
+        // 没有注解则不切换
+        if (dataSourceName == null) {
+            return point.proceed();
         }
         
-        // 如果有注解，则切换数据源
-        if (dataSource != null) {
-            String dataSourceName = dataSource.value();
-            log.debug("切换数据源到: {}", dataSourceName);
-            DataSourceContextHolder.setDataSource(dataSourceName);
+        // 事务连接的路由在事务开启时已固定，内层切换只对其中新开启的事务生效
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !dataSourceName.equals(DataSourceContextHolder.getDataSource())) {
+            log.warn("在数据源[{}]的事务中调用{}切换到数据源[{}]，当前事务的连接不会切换，需在内层开启新事务",
+                    DataSourceContextHolder.getDataSource(), signature.toShortString(), dataSourceName);
         }
         
+        // 压栈切换，方法结束后恢复外层数据源，嵌套调用不会把外层重置为默认数据源
+        DataSourceContextHolder.push(dataSourceName);
         try {
-            // 执行目标方法
             return point.proceed();
         } finally {
-            // 清除数据源上下文
-            if (dataSource != null) {
-                log.debug("清除数据源设置");
-                DataSourceContextHolder.clearDataSource();
-            }
+            DataSourceContextHolder.poll();
+        }
+    }
+
+    /**
+     * 解析方法使用的数据源名称
+     * 方法上的注解优先，其次是目标类上的注解
+     *
+     * @param method 方法
+     * @param targetClass 目标类
+     * @return 数据源名称，没有注解时返回null
+     */
+    private String resolveDataSource(Method method, Class<?> targetClass) {
+        String cached = dataSourceCache.get(new MethodClassKey(method, targetClass));
+        if (cached != null) {
+            return cached.isEmpty() ? null : cached;
+        }
+        
+        // 获取目标方法上的@DataSource注解，接口方法时取实现类上的方法
+        Method specificMethod = targetClass != null ? AopUtils.getMostSpecificMethod(method, targetClass) : method;
+        DataSource dataSource = AnnotationUtils.findAnnotation(specificMethod, DataSource.class);
+        
+        // 如果方法上没有注解，检查类上是否有注解
+        if (dataSource == null && targetClass != null) {
+            dataSource = AnnotationUtils.findAnnotation(targetClass, DataSource.class);
+        }
+        
+        String dataSourceName = dataSource != null ? dataSource.value() : NO_DATASOURCE;
+        if (dataSourceCache.size() >= MAX_CACHE_SIZE) {
+            dataSourceCache.clear();
         }
+        dataSourceCache.put(new MethodClassKey(method, targetClass), dataSourceName);
+        return dataSource != null ? dataSourceName : null;
     }
 } 
\ No newline at end of file
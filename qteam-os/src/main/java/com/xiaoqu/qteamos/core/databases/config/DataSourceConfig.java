@@ -2,6 +2,7 @@ package com.xiaoqu.qteamos.core.databases.config;
 
 import com.alibaba.druid.pool.DruidDataSource;
 import com.xiaoqu.qteamos.core.databases.core.DynamicDataSource;
+import com.xiaoqu.qteamos.core.databases.core.RoutingLazyConnectionDataSourceProxy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -54,9 +55,8 @@ public class DataSourceConfig {
     /**
      * 创建动态数据源
      */
-    @Primary
     @Bean
-    public DataSource dynamicDataSource() {
+    public DynamicDataSource dynamicDataSource() {
         DynamicDataSource dynamicDataSource = new DynamicDataSource();
         
         // 设置默认数据源
@@ -74,6 +74,17 @@ public class DataSourceConfig {
         return dynamicDataSource;
     }
 
+    /**
+     * 系统默认数据源
+     * 延迟到第一条语句执行时才从动态数据源获取物理连接，此时事务管理器已设置只读标记和事务状态，
+     * 只读事务才能路由到只读副本；路由的数据源和只读意图在事务开启时固定，事务内的数据源切换不影响事务连接
+     */
+    @Primary
+    @Bean
+    public DataSource dataSource(DynamicDataSource dynamicDataSource) {
+        return new RoutingLazyConnectionDataSourceProxy(dynamicDataSource);
+    }
+
     /**
      * 加载多数据源配置
      */
@@ -2,6 +2,8 @@ package com.xiaoqu.qteamos.core.databases.config;
 
 import lombok.Data;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 /**
@@ -68,6 +70,11 @@ public class DataSourceProperties {
      * 额外属性
      */
     private Properties properties = new Properties();
+
+    /**
+     * 只读副本组，副本未设置的驱动、用户名和密码沿用本数据源
+     */
+    private List<DataSourceProperties> replicas = new ArrayList<>();
     
     /**
      * 数据库类型枚举
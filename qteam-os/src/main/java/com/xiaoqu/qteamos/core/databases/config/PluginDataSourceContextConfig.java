@@ -0,0 +1,39 @@
+package com.xiaoqu.qteamos.core.databases.config;
+
+import com.xiaoqu.qteamos.core.databases.core.DataSourceManager;
+import com.xiaoqu.qteamos.core.databases.stat.SqlStatCollector;
+import com.xiaoqu.qteamos.core.plugin.service.PluginServiceApiImpl;
+import jakarta.annotation.PostConstruct;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 数据源插件上下文配置
+ * 把数据源各组件需要的当前插件ID来源统一接到插件服务的线程上下文上
+ *
+ * @author yangqijun
+ * @date 2025-05-03
+ */
+@Configuration
+public class PluginDataSourceContextConfig {
+
+    private final SqlStatCollector sqlStatCollector;
+
+    private final DataSourceManager dataSourceManager;
+
+    private final PluginServiceApiImpl pluginServiceApi;
+
+    public PluginDataSourceContextConfig(SqlStatCollector sqlStatCollector, DataSourceManager dataSourceManager,
+                                         PluginServiceApiImpl pluginServiceApi) {
+        this.sqlStatCollector = sqlStatCollector;
+        this.dataSourceManager = dataSourceManager;
+        this.pluginServiceApi = pluginServiceApi;
+    }
+
+    @PostConstruct
+    public void init() {
+        // SQL统计按执行时的插件上下文归属语句
+        sqlStatCollector.setPluginIdResolver(pluginServiceApi::peekCurrentPluginId);
+        // 写后读粘滞按插件区分会话，不在插件上下文中时按线程
+        dataSourceManager.setReadSessionResolver(pluginServiceApi::peekCurrentPluginId);
+    }
+}
@@ -0,0 +1,96 @@
+package com.xiaoqu.qteamos.core.databases.core;
+
+import com.xiaoqu.qteamos.api.core.plugin.api.DataServiceApi;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 按列存放的批数据
+ * 列数组在创建时按批次容量分配，之后每批复用，避免为每行分配对象
+ *
+ * @author yangqijun
+ * @date 2025-05-02
+ */
+public class ColumnBatch implements DataServiceApi.RowBatch {
+
+    private final String[] labels;
+
+    private final Object[][] columns;
+
+    private final int capacity;
+
+    private int size;
+
+    private long batchIndex = -1;
+
+    ColumnBatch(String[] labels, int capacity) {
+        this.labels = labels;
+        this.capacity = capacity;
+        this.columns = new Object[labels.length][capacity];
+    }
+
+    /**
+     * 从结果集当前位置读取下一批数据，覆盖上一批
+     *
+     * @param resultSet 结果集
+     * @return 本批读取的行数，为0表示结果集已读完
+     * @throws SQLException SQL异常
+     */
+    int fill(ResultSet resultSet) throws SQLException {
+        int previousSize = size;
+        int rows = 0;
+        while (rows < capacity && resultSet.next()) {
+            for (int c = 0; c < columns.length; c++) {
+                columns[c][rows] = resultSet.getObject(c + 1);
+            }
+            rows++;
+        }
+
+        // 清除上一批残留的引用，避免持有已处理的数据
+        for (int c = 0; c < columns.length; c++) {
+            for (int r = rows; r < previousSize; r++) {
+                columns[c][r] = null;
+            }
+        }
+
+        size = rows;
+        if (rows > 0) {
+            batchIndex++;
+        }
+        return rows;
+    }
+
+    @Override
+    public long getBatchIndex() {
+        return batchIndex;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return labels.length;
+    }
+
+    @Override
+    public String getColumnLabel(int column) {
+        return labels[column - 1];
+    }
+
+    @Override
+    public Object[] getColumn(int column) {
+        return columns[column - 1];
+    }
+
+    @Override
+    public Object get(int row, int column) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("行序号越界: " + row + ", 当前批次行数: " + size);
+        }
+        return columns[column - 1][row];
+    }
+}
@@ -0,0 +1,448 @@
+package com.xiaoqu.qteamos.core.databases.core;
+
+import com.xiaoqu.qteamos.core.databases.exception.DatabaseException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * 编译型行映射器
+ * 按(结果类型, 列标签签名)生成一次映射器并缓存：构造器和setter通过预先解析的MethodHandle调用，
+ * 每列按目标属性类型使用getLong/getString等类型化读取，避免逐行反射和中间Map。
+ * 与本类位于同一模块的结果类型，setter进一步通过LambdaMetafactory编译为lambda；
+ * 插件类位于插件类加载器的未命名模块中，跨模块的Lookup没有LambdaMetafactory要求的完整权限，直接使用MethodHandle
+ *
+ * 支持Java record（按组件名匹配列）和带无参构造器的POJO（按setter匹配列），
+ * 列标签匹配时忽略大小写和下划线，未匹配的列被忽略
+ *
+ * @author yangqijun
+ * @date 2025-05-02
+ */
+@Slf4j
+public final class CompiledRowMappers {
+
+    /**
+     * 映射器缓存上限，超过后整体清空
+     */
+    private static final int MAX_CACHE_SIZE = 1024;
+
+    private static final Map<MapperKey, RowMapper<?>> CACHE = new ConcurrentHashMap<>();
+
+    private CompiledRowMappers() {
+    }
+
+    /**
+     * 行映射器
+     *
+     * @param <T> 结果类型
+     */
+    @FunctionalInterface
+    public interface RowMapper<T> {
+        /**
+         * 将结果集当前行映射为对象
+         *
+         * @param rs 结果集
+         * @return 映射结果
+         * @throws SQLException SQL异常
+         */
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * 列读取器，按目标类型读取指定列
+     */
+    @FunctionalInterface
+    private interface ColumnReader {
+        Object read(ResultSet rs, int column) throws SQLException;
+    }
+
+    /**
+     * 获取结果类型对应当前结果集列布局的映射器
+     *
+     * @param type 结果类型
+     * @param metaData 结果集元数据
+     * @param <T> 结果类型
+     * @return 行映射器
+     * @throws SQLException SQL异常
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> RowMapper<T> forType(Class<T> type, ResultSetMetaData metaData) throws SQLException {
+        String[] labels = ResultRow.readLabels(metaData);
+        MapperKey key = new MapperKey(type, labels);
+        RowMapper<?> mapper = CACHE.get(key);
+        if (mapper == null) {
+            mapper = compile(type, labels);
+            if (CACHE.size() >= MAX_CACHE_SIZE) {
+                CACHE.clear();
+            }
+            CACHE.put(key, mapper);
+        }
+        return (RowMapper<T>) mapper;
+    }
+
+    /**
+     * 移除指定类加载器加载的类型的映射器，插件卸载时调用以免持有插件类
+     *
+     * @param classLoader 类加载器
+     */
+    public static void evict(ClassLoader classLoader) {
+        CACHE.keySet().removeIf(key -> key.type.getClassLoader() == classLoader);
+    }
+
+    private static <T> RowMapper<T> compile(Class<T> type, String[] labels) {
+        try {
+            if (type.isRecord()) {
+                return compileRecord(type, labels);
+            }
+            return compileBean(type, labels);
+        } catch (DatabaseException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new DatabaseException("无法为结果类型生成映射器: " + type.getName() + ", " + e.getMessage(), e);
+        }
+    }
+
+    private static <T> RowMapper<T> compileRecord(Class<T> type, String[] labels) throws Throwable {
+        RecordComponent[] components = type.getRecordComponents();
+        Class<?>[] componentTypes = new Class<?>[components.length];
+        for (int i = 0; i < components.length; i++) {
+            componentTypes[i] = components[i].getType();
+        }
+
+        Map<String, Integer> columns = indexColumns(labels);
+        int[] columnIndexes = new int[components.length];
+        ColumnReader[] readers = new ColumnReader[components.length];
+        Object[] defaults = new Object[components.length];
+        for (int i = 0; i < components.length; i++) {
+            Integer column = columns.get(normalize(components[i].getName()));
+            columnIndexes[i] = column != null ? column : -1;
+            readers[i] = readerFor(componentTypes[i]);
+            defaults[i] = defaultValue(componentTypes[i]);
+        }
+
+        Constructor<T> constructor = type.getDeclaredConstructor(componentTypes);
+        MethodHandles.Lookup lookup = lookupFor(type);
+        MethodHandle handle = lookup.unreflectConstructor(constructor)
+                .asSpreader(Object[].class, components.length)
+                .asType(MethodType.methodType(Object.class, Object[].class));
+
+        int size = components.length;
+        return rs -> {
+            Object[] args = new Object[size];
+            for (int i = 0; i < size; i++) {
+                args[i] = columnIndexes[i] > 0 ? readers[i].read(rs, columnIndexes[i]) : defaults[i];
+                if (args[i] == null) {
+                    args[i] = defaults[i];
+                }
+            }
+            try {
+                @SuppressWarnings("unchecked")
+                T result = (T) (Object) handle.invokeExact(args);
+                return result;
+            } catch (Throwable e) {
+                throw new SQLException("创建结果对象失败: " + type.getName(), e);
+            }
+        };
+    }
+
+    private static <T> RowMapper<T> compileBean(Class<T> type, String[] labels) throws Throwable {
+        Constructor<T> constructor;
+        try {
+            constructor = type.getDeclaredConstructor();
+        } catch (NoSuchMethodException e) {
+            throw new DatabaseException("结果类型缺少无参构造器: " + type.getName());
+        }
+        MethodHandles.Lookup lookup = lookupFor(type);
+        MethodHandle factory = lookup.unreflectConstructor(constructor)
+                .asType(MethodType.methodType(Object.class));
+
+        // 收集setter，同名setter只取第一个
+        Map<String, Method> setters = new HashMap<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Method method : c.getDeclaredMethods()) {
+                if (method.getParameterCount() == 1 && method.getName().startsWith("set")
+                        && method.getName().length() > 3 && !method.isBridge()
+                        && !Modifier.isStatic(method.getModifiers())) {
+                    setters.putIfAbsent(normalize(method.getName().substring(3)), method);
+                }
+            }
+        }
+
+        List<Integer> columnList = new ArrayList<>();
+        List<ColumnReader> readerList = new ArrayList<>();
+        List<BiConsumer<Object, Object>> setterList = new ArrayList<>();
+        List<Boolean> primitiveList = new ArrayList<>();
+        for (int column = 1; column <= labels.length; column++) {
+            Method setter = setters.remove(normalize(labels[column - 1]));
+            if (setter == null) {
+                continue;
+            }
+            Class<?> parameterType = setter.getParameterTypes()[0];
+            columnList.add(column);
+            readerList.add(readerFor(parameterType));
+            setterList.add(compileSetter(setter));
+            primitiveList.add(parameterType.isPrimitive());
+        }
+
+        int size = columnList.size();
+        int[] columns = new int[size];
+        boolean[] primitive = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            columns[i] = columnList.get(i);
+            primitive[i] = primitiveList.get(i);
+        }
+        ColumnReader[] readers = readerList.toArray(new ColumnReader[0]);
+        @SuppressWarnings("unchecked")
+        BiConsumer<Object, Object>[] assigners = setterList.toArray(new BiConsumer[0]);
+
+        return rs -> {
+            Object target;
+            try {
+                target = (Object) factory.invokeExact();
+            } catch (Throwable e) {
+                throw new SQLException("创建结果对象失败: " + type.getName(), e);
+            }
+            for (int i = 0; i < size; i++) {
+                Object value = readers[i].read(rs, columns[i]);
+                // 基本类型属性遇到NULL时保持默认值
+                if (value != null || !primitive[i]) {
+                    assigners[i].accept(target, value);
+                }
+            }
+            return type.cast(target);
+        };
+    }
+
+    /**
+     * 把setter编译为BiConsumer：Lookup具有完整权限时通过LambdaMetafactory生成lambda，否则使用MethodHandle调用
+     */
+    @SuppressWarnings("unchecked")
+    private static BiConsumer<Object, Object> compileSetter(Method setter) throws IllegalAccessException {
+        // 使用声明类的Lookup，父类中的非公开setter同样可访问
+        MethodHandles.Lookup lookup = lookupFor(setter.getDeclaringClass());
+        MethodHandle handle = lookup.unreflect(setter);
+        if (lookup.hasFullPrivilegeAccess()) {
+            try {
+                Class<?> parameterType = setter.getParameterTypes()[0];
+                CallSite site = LambdaMetafactory.metafactory(lookup, "accept",
+                        MethodType.methodType(BiConsumer.class),
+                        MethodType.methodType(void.class, Object.class, Object.class),
+                        handle,
+                        MethodType.methodType(void.class, setter.getDeclaringClass(), box(parameterType)));
+                return (BiConsumer<Object, Object>) site.getTarget().invokeExact();
+            } catch (Throwable e) {
+                log.debug("setter无法编译为lambda，使用MethodHandle调用: {}", setter, e);
+            }
+        }
+        MethodHandle generic = handle.asType(MethodType.methodType(void.class, Object.class, Object.class));
+        return (target, value) -> {
+            try {
+                generic.invokeExact(target, value);
+            } catch (RuntimeException | Error ex) {
+                throw ex;
+            } catch (Throwable ex) {
+                throw new DatabaseException("设置属性失败: " + setter.getName(), ex);
+            }
+        };
+    }
+
+    /**
+     * 获取可访问目标类型私有成员的Lookup。目标类型与本类不在同一模块（如插件类）时，返回的Lookup不含MODULE权限
+     */
+    private static MethodHandles.Lookup lookupFor(Class<?> type) throws IllegalAccessException {
+        return MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+    }
+
+    /**
+     * 按目标类型选择类型化的列读取方式
+     */
+    private static ColumnReader readerFor(Class<?> type) {
+        if (type == String.class) {
+            return ResultSet::getString;
+        }
+        if (type == long.class || type == Long.class) {
+            return (rs, column) -> {
+                long value = rs.getLong(column);
+                return rs.wasNull() ? null : value;
+            };
+        }
+        if (type == int.class || type == Integer.class) {
+            return (rs, column) -> {
+                int value = rs.getInt(column);
+                return rs.wasNull() ? null : value;
+            };
+        }
+        if (type == double.class || type == Double.class) {
+            return (rs, column) -> {
+                double value = rs.getDouble(column);
+                return rs.wasNull() ? null : value;
+            };
+        }
+        if (type == boolean.class || type == Boolean.class) {
+            return (rs, column) -> {
+                boolean value = rs.getBoolean(column);
+                return rs.wasNull() ? null : value;
+            };
+        }
+        if (type == float.class || type == Float.class) {
+            return (rs, column) -> {
+                float value = rs.getFloat(column);
+                return rs.wasNull() ? null : value;
+            };
+        }
+        if (type == short.class || type == Short.class) {
+            return (rs, column) -> {
+                short value = rs.getShort(column);
+                return rs.wasNull() ? null : value;
+            };
+        }
+        if (type == byte.class || type == Byte.class) {
+            return (rs, column) -> {
+                byte value = rs.getByte(column);
+                return rs.wasNull() ? null : value;
+            };
+        }
+        if (type == BigDecimal.class) {
+            return ResultSet::getBigDecimal;
+        }
+        if (type == byte[].class) {
+            return ResultSet::getBytes;
+        }
+        if (type == java.sql.Timestamp.class) {
+            return ResultSet::getTimestamp;
+        }
+        if (type == java.sql.Date.class) {
+            return ResultSet::getDate;
+        }
+        if (type == java.util.Date.class) {
+            return (rs, column) -> {
+                java.sql.Timestamp value = rs.getTimestamp(column);
+                return value != null ? new java.util.Date(value.getTime()) : null;
+            };
+        }
+        if (type == LocalDateTime.class || type == LocalDate.class || type == LocalTime.class
+                || type == OffsetDateTime.class) {
+            return (rs, column) -> rs.getObject(column, type);
+        }
+        if (type.isEnum()) {
+            return enumReader(type);
+        }
+        return (rs, column) -> {
+            Object value = rs.getObject(column);
+            return value == null || type.isInstance(value) ? value : rs.getObject(column, type);
+        };
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static ColumnReader enumReader(Class<?> type) {
+        Class<? extends Enum> enumType = (Class<? extends Enum>) type;
+        return (rs, column) -> {
+            String value = rs.getString(column);
+            return value != null ? Enum.valueOf(enumType, value) : null;
+        };
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return null;
+        }
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == char.class) {
+            return '\0';
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == double.class) {
+            return 0d;
+        }
+        if (type == float.class) {
+            return 0f;
+        }
+        if (type == short.class) {
+            return (short) 0;
+        }
+        if (type == byte.class) {
+            return (byte) 0;
+        }
+        return 0;
+    }
+
+    private static Class<?> box(Class<?> type) {
+        return type.isPrimitive() ? MethodType.methodType(type).wrap().returnType() : type;
+    }
+
+    private static Map<String, Integer> indexColumns(String[] labels) {
+        Map<String, Integer> columns = new HashMap<>(labels.length * 2);
+        for (int i = labels.length; i >= 1; i--) {
+            columns.put(normalize(labels[i - 1]), i);
+        }
+        return columns;
+    }
+
+    /**
+     * 名称归一化：去掉下划线并转小写，使user_name与userName匹配
+     */
+    private static String normalize(String name) {
+        StringBuilder builder = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c != '_') {
+                builder.append(Character.toLowerCase(c));
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 缓存键：结果类型 + 列标签签名
+     */
+    private static final class MapperKey {
+        private final Class<?> type;
+        private final String[] labels;
+        private final int hash;
+
+        private MapperKey(Class<?> type, String[] labels) {
+            this.type = type;
+            this.labels = labels;
+            this.hash = 31 * type.hashCode() + Arrays.hashCode(labels);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof MapperKey other)) {
+                return false;
+            }
+            return type == other.type && Arrays.equals(labels, other.labels);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
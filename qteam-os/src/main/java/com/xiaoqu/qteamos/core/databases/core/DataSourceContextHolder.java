@@ -2,52 +2,413 @@ package com.xiaoqu.qteamos.core.databases.core;
 
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
 /**
  * 数据源上下文持有者
- * 基于ThreadLocal实现数据源切换的线程隔离
+ * 基于ThreadLocal栈实现数据源切换的线程隔离，支持嵌套切换：
+ * 内层用push/poll成对切换，退出后自动恢复外层数据源，栈空时移除ThreadLocal避免在线程池线程间残留。
+ * 通过snapshot和wrap系列方法可以把当前路由上下文传递给线程池、CompletableFuture或虚拟线程中执行的任务。
+ * 另外记录当前线程的只读意图，配置了只读副本时只读操作可路由到副本
  *
  * @author yangqijun
  * @date 2025-05-02
  */
 @Slf4j
 public class DataSourceContextHolder {
-    
+
     /**
      * 默认数据源名称
      */
     public static final String DEFAULT_DATASOURCE = "systemDataSource";
-    
+
+    /**
+     * 线程本地存储数据源栈，栈顶为当前数据源
+     */
+    private static final ThreadLocal<ArrayDeque<String>> CONTEXT_HOLDER = new ThreadLocal<>();
+
+    /**
+     * 线程本地存储只读意图的嵌套层数
+     */
+    private static final ThreadLocal<int[]> READ_ONLY_HOLDER = new ThreadLocal<>();
+
+    /**
+     * 空快照
+     */
+    private static final Snapshot EMPTY_SNAPSHOT = new Snapshot(new String[0], false);
+
+    /**
+     * 切换当前线程数据源，需与poll成对调用
+     *
+     * @param dataSourceName 数据源名称
+     */
+    public static void push(String dataSourceName) {
+        log.debug("切换数据源到: {}", dataSourceName);
+        ArrayDeque<String> stack = CONTEXT_HOLDER.get();
+        if (stack == null) {
+            stack = new ArrayDeque<>(4);
+            CONTEXT_HOLDER.set(stack);
+        }
+        stack.push(dataSourceName);
+    }
+
+    /**
+     * 退出当前数据源，恢复到外层数据源
+     */
+    public static void poll() {
+        ArrayDeque<String> stack = CONTEXT_HOLDER.get();
+        if (stack == null) {
+            return;
+        }
+        stack.poll();
+        if (stack.isEmpty()) {
+            CONTEXT_HOLDER.remove();
+        }
+        log.debug("恢复数据源: {}", getDataSource());
+    }
+
     /**
-     * 线程本地存储当前数据源名称
+     * 切换数据源并返回作用域，关闭作用域时恢复外层数据源
+     * 用法: try (DataSourceContextHolder.Scope ignored = DataSourceContextHolder.use(name)) {...}
+     *
+     * @param dataSourceName 数据源名称
+     * @return 作用域
      */
-    private static final ThreadLocal<String> CONTEXT_HOLDER = new ThreadLocal<>();
-    
+    public static Scope use(String dataSourceName) {
+        push(dataSourceName);
+        return DataSourceContextHolder::poll;
+    }
+
     /**
      * 设置当前线程数据源
+     * 替换栈顶数据源，不改变嵌套层次；需要嵌套切换时使用push/poll
      *
      * @param dataSourceName 数据源名称
      */
     public static void setDataSource(String dataSourceName) {
-        log.debug("切换数据源到: {}", dataSourceName);
-        CONTEXT_HOLDER.set(dataSourceName);
+        ArrayDeque<String> stack = CONTEXT_HOLDER.get();
+        if (stack != null && !stack.isEmpty()) {
+            stack.pop();
+        }
+        push(dataSourceName);
     }
-    
+
     /**
      * 获取当前线程数据源
      *
      * @return 当前数据源名称
      */
     public static String getDataSource() {
-        String dataSource = CONTEXT_HOLDER.get();
+        ArrayDeque<String> stack = CONTEXT_HOLDER.get();
+        String dataSource = stack != null ? stack.peek() : null;
         return dataSource == null ? DEFAULT_DATASOURCE : dataSource;
     }
-    
+
     /**
      * 清除当前线程数据源
-     * 将使用默认数据源
+     * 清空整个栈和只读意图，将使用默认数据源；用于线程边界处的兜底清理
      */
     public static void clearDataSource() {
         log.debug("清除数据源设置，切换为默认数据源");
         CONTEXT_HOLDER.remove();
+        READ_ONLY_HOLDER.remove();
+    }
+
+    /**
+     * 声明之后的操作只读，关闭作用域时恢复，可嵌套
+     * 配置了只读副本时，作用域内不在读写事务中的查询路由到副本
+     * 用法: try (DataSourceContextHolder.Scope ignored = DataSourceContextHolder.useReadOnly()) {...}
+     *
+     * @return 作用域
+     */
+    public static Scope useReadOnly() {
+        int[] depth = READ_ONLY_HOLDER.get();
+        if (depth == null) {
+            depth = new int[1];
+            READ_ONLY_HOLDER.set(depth);
+        }
+        depth[0]++;
+        return DataSourceContextHolder::exitReadOnly;
+    }
+
+    private static void exitReadOnly() {
+        int[] depth = READ_ONLY_HOLDER.get();
+        if (depth != null && --depth[0] <= 0) {
+            READ_ONLY_HOLDER.remove();
+        }
+    }
+
+    /**
+     * 当前线程是否声明了只读意图
+     *
+     * @return 是否只读
+     */
+    public static boolean isReadOnly() {
+        return READ_ONLY_HOLDER.get() != null;
+    }
+
+    /**
+     * 捕获当前线程的路由上下文
+     *
+     * @return 上下文快照
+     */
+    public static Snapshot snapshot() {
+        ArrayDeque<String> stack = CONTEXT_HOLDER.get();
+        boolean readOnly = isReadOnly();
+        if ((stack == null || stack.isEmpty()) && !readOnly) {
+            return EMPTY_SNAPSHOT;
+        }
+        return new Snapshot(stack != null ? stack.toArray(new String[0]) : new String[0], readOnly);
+    }
+
+    /**
+     * 包装任务，使其在执行线程上使用提交时的路由上下文
+     *
+     * @param task 任务
+     * @return 包装后的任务
+     */
+    public static Runnable wrap(Runnable task) {
+        Snapshot snapshot = snapshot();
+        return () -> {
+            try (Scope ignored = snapshot.attach()) {
+                task.run();
+            }
+        };
+    }
+
+    /**
+     * 包装任务，使其在执行线程上使用提交时的路由上下文
+     *
+     * @param task 任务
+     * @param <T> 返回值类型
+     * @return 包装后的任务
+     */
+    public static <T> Callable<T> wrap(Callable<T> task) {
+        Snapshot snapshot = snapshot();
+        return () -> {
+            try (Scope ignored = snapshot.attach()) {
+                return task.call();
+            }
+        };
+    }
+
+    /**
+     * 包装任务，使其在执行线程上使用提交时的路由上下文
+     *
+     * @param task 任务
+     * @param <T> 返回值类型
+     * @return 包装后的任务
+     */
+    public static <T> Supplier<T> wrapSupplier(Supplier<T> task) {
+        Snapshot snapshot = snapshot();
+        return () -> {
+            try (Scope ignored = snapshot.attach()) {
+                return task.get();
+            }
+        };
+    }
+
+    /**
+     * 包装执行器，提交的每个任务都携带提交线程的路由上下文
+     * 可直接传给CompletableFuture.supplyAsync(supplier, executor)等方法
+     *
+     * @param executor 执行器
+     * @return 传播路由上下文的执行器
+     */
+    public static Executor wrapExecutor(Executor executor) {
+        if (executor instanceof PropagatingExecutorService) {
+            return executor;
+        }
+        return task -> executor.execute(wrap(task));
+    }
+
+    /**
+     * 包装线程池，提交的每个任务都携带提交线程的路由上下文
+     * 同样适用于Java 21的虚拟线程执行器(Executors.newVirtualThreadPerTaskExecutor)
+     *
+     * @param executorService 线程池
+     * @return 传播路由上下文的线程池
+     */
+    public static ExecutorService wrapExecutorService(ExecutorService executorService) {
+        if (executorService instanceof PropagatingExecutorService) {
+            return executorService;
+        }
+        return new PropagatingExecutorService(executorService);
+    }
+
+    /**
+     * 在指定执行器上异步执行，任务使用当前线程的路由上下文
+     *
+     * @param supplier 任务
+     * @param executor 执行器
+     * @param <T> 返回值类型
+     * @return 异步结果
+     */
+    public static <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier, Executor executor) {
+        return CompletableFuture.supplyAsync(wrapSupplier(supplier), executor);
+    }
+
+    /**
+     * 路由上下文作用域，关闭时恢复进入前的上下文
+     */
+    @FunctionalInterface
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * 路由上下文快照，不可变，可在多个线程上重复使用
+     */
+    public static final class Snapshot {
+
+        private final String[] dataSources;
+
+        private final boolean readOnly;
+
+        private Snapshot(String[] dataSources, boolean readOnly) {
+            this.dataSources = dataSources;
+            this.readOnly = readOnly;
+        }
+
+        /**
+         * 快照中的当前数据源
+         *
+         * @return 数据源名称
+         */
+        public String getDataSource() {
+            return dataSources.length > 0 ? dataSources[0] : DEFAULT_DATASOURCE;
+        }
+
+        /**
+         * 在当前线程上安装快照，关闭返回的作用域时恢复当前线程原有上下文
+         *
+         * @return 作用域
+         */
+        public Scope attach() {
+            ArrayDeque<String> previous = CONTEXT_HOLDER.get();
+            int[] previousReadOnly = READ_ONLY_HOLDER.get();
+            if (readOnly) {
+                READ_ONLY_HOLDER.set(new int[]{1});
+            } else {
+                READ_ONLY_HOLDER.remove();
+            }
+            if (dataSources.length == 0) {
+                CONTEXT_HOLDER.remove();
+            } else {
+                ArrayDeque<String> stack = new ArrayDeque<>(Math.max(4, dataSources.length));
+                // toArray按栈顶在前的顺序输出，倒序压栈还原
+                for (int i = dataSources.length - 1; i >= 0; i--) {
+                    stack.push(dataSources[i]);
+                }
+                CONTEXT_HOLDER.set(stack);
+            }
+            return () -> {
+                if (previous == null) {
+                    CONTEXT_HOLDER.remove();
+                } else {
+                    CONTEXT_HOLDER.set(previous);
+                }
+                if (previousReadOnly == null) {
+                    READ_ONLY_HOLDER.remove();
+                } else {
+                    READ_ONLY_HOLDER.set(previousReadOnly);
+                }
+            };
+        }
+    }
+
+    /**
+     * 传播路由上下文的线程池
+     */
+    private static final class PropagatingExecutorService implements ExecutorService {
+
+        private final ExecutorService delegate;
+
+        private PropagatingExecutorService(ExecutorService delegate) {
+            this.delegate = delegate;
+        }
+
+        private <T> List<Callable<T>> wrapAll(Collection<? extends Callable<T>> tasks) {
+            return tasks.stream().map(DataSourceContextHolder::wrap).toList();
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            delegate.execute(wrap(command));
+        }
+
+        @Override
+        public <T> Future<T> submit(Callable<T> task) {
+            return delegate.submit(wrap(task));
+        }
+
+        @Override
+        public <T> Future<T> submit(Runnable task, T result) {
+            return delegate.submit(wrap(task), result);
+        }
+
+        @Override
+        public Future<?> submit(Runnable task) {
+            return delegate.submit(wrap(task));
+        }
+
+        @Override
+        public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException {
+            return delegate.invokeAll(wrapAll(tasks));
+        }
+
+        @Override
+        public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+                throws InterruptedException {
+            return delegate.invokeAll(wrapAll(tasks), timeout, unit);
+        }
+
+        @Override
+        public <T> T invokeAny(Collection<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException {
+            return delegate.invokeAny(wrapAll(tasks));
+        }
+
+        @Override
+        public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            return delegate.invokeAny(wrapAll(tasks), timeout, unit);
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
     }
-} 
\ No newline at end of file
+}
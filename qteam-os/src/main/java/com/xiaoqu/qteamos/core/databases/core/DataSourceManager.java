@@ -3,22 +3,38 @@ package com.xiaoqu.qteamos.core.databases.core;
 import com.alibaba.druid.pool.DruidDataSource;
 import com.xiaoqu.qteamos.core.databases.config.DataSourceProperties;
 import com.xiaoqu.qteamos.core.databases.exception.DatabaseException;
+import com.xiaoqu.qteamos.core.plugin.event.Event;
+import com.xiaoqu.qteamos.core.plugin.event.EventListener;
+import com.xiaoqu.qteamos.core.plugin.event.PluginEvent;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * 数据源管理器
- * 负责管理系统中的所有数据源，包括创建、获取、移除等操作
+ * 负责管理系统中的所有数据源，包括创建、获取、移除等操作；
+ * 同时管理各插件在共享连接池上的连接配额，以及读写分离的只读副本组和副本健康检查
  *
  * @author yangqijun
  * @date 2025-05-02
@@ -27,13 +43,136 @@ import java.util.concurrent.ConcurrentHashMap;
 @Component
 public class DataSourceManager implements DisposableBean {
 
+    private static final String QUOTA_PREFIX = "spring.datasource.plugin-quota.";
+
     @Autowired
     private DynamicDataSource dynamicDataSource;
+
+    @Autowired
+    private Environment environment;
+
+    /**
+     * 是否启用插件连接配额
+     */
+    @Value("${spring.datasource.plugin-quota.enabled:true}")
+    private boolean quotaEnabled;
+
+    /**
+     * 单个插件默认最大连接数
+     */
+    @Value("${spring.datasource.plugin-quota.max-connections:5}")
+    private int defaultMaxConnections;
+
+    /**
+     * 等待连接配额的默认超时时间(毫秒)
+     */
+    @Value("${spring.datasource.plugin-quota.wait-timeout-ms:3000}")
+    private long defaultWaitTimeoutMs;
+
+    /**
+     * 插件语句默认查询超时(秒)，0表示不限制
+     */
+    @Value("${spring.datasource.plugin-quota.statement-timeout-seconds:30}")
+    private int defaultStatementTimeoutSeconds;
+
+    @Value("${spring.datasource.primary-name:systemDataSource}")
+    private String primaryDataSourceName;
+
+    /**
+     * 是否启用读写分离
+     */
+    @Value("${spring.datasource.read-write.enabled:false}")
+    private boolean readWriteEnabled;
+
+    /**
+     * 副本负载均衡策略：least-outstanding或latency-weighted
+     */
+    @Value("${spring.datasource.read-write.strategy:least-outstanding}")
+    private String replicaStrategy;
+
+    /**
+     * 写入后继续读主库的窗口(毫秒)
+     */
+    @Value("${spring.datasource.read-write.sticky-window-ms:1000}")
+    private long stickyWindowMillis;
+
+    /**
+     * 副本健康检查间隔(毫秒)
+     */
+    @Value("${spring.datasource.read-write.health-check-interval-ms:5000}")
+    private long healthCheckIntervalMillis;
+
+    /**
+     * 副本健康检查超时(秒)
+     */
+    @Value("${spring.datasource.read-write.health-check-timeout-seconds:2}")
+    private int healthCheckTimeoutSeconds;
+
+    /**
+     * 连续失败多少次后摘除副本
+     */
+    @Value("${spring.datasource.read-write.failure-threshold:2}")
+    private int failureThreshold;
+
+    /**
+     * 摘除后连续检查成功多少次重新加入
+     */
+    @Value("${spring.datasource.read-write.recovery-threshold:2}")
+    private int recoveryThreshold;
+
+    /**
+     * 副本健康检查调度器
+     */
+    private ScheduledExecutorService healthCheckScheduler;
     
     /**
      * 数据源缓存
      */
     private final Map<String, DataSource> dataSourceMap = new ConcurrentHashMap<>(16);
+
+    /**
+     * 插件连接配额
+     */
+    private final Map<String, PluginConnectionQuota> pluginQuotas = new ConcurrentHashMap<>(16);
+
+    /**
+     * 初始化读写分离，加载主数据源的只读副本(spring.datasource.replicas)并启动健康检查
+     */
+    @PostConstruct
+    public void init() {
+        dynamicDataSource.setReadWriteSplitting(readWriteEnabled, stickyWindowMillis);
+        if (!readWriteEnabled) {
+            return;
+        }
+        List<DataSourceProperties> replicas = Binder.get(environment)
+                .bind("spring.datasource.replicas", Bindable.listOf(DataSourceProperties.class))
+                .orElse(Collections.emptyList());
+        if (!replicas.isEmpty()) {
+            DataSourceProperties primary = new DataSourceProperties();
+            primary.setName(primaryDataSourceName);
+            primary.setDriverClassName(environment.getProperty("spring.datasource.driver-class-name"));
+            primary.setUsername(environment.getProperty("spring.datasource.username"));
+            primary.setPassword(environment.getProperty("spring.datasource.password"));
+            primary.setReplicas(replicas);
+            registerReplicas(primary);
+        }
+    }
+
+    /**
+     * 设置写后读粘滞的会话标识来源，返回null时按线程区分会话
+     *
+     * @param resolver 会话标识来源
+     */
+    public void setReadSessionResolver(Supplier<String> resolver) {
+        dynamicDataSource.setSessionKeyResolver(resolver);
+    }
+
+    /**
+     * 记录当前会话发生了写入，粘滞窗口内的只读操作仍读主库
+     */
+    public void markWrite() {
+        dynamicDataSource.markWrite();
+    }
     
     /**
      * 获取数据源
@@ -45,6 +184,16 @@ public class DataSourceManager implements DisposableBean {
         return dataSourceMap.get(name);
     }
     
+    /**
+     * 判断数据源是否存在，包括启动时配置的路由数据源
+     *
+     * @param name 数据源名称
+     * @return 是否存在
+     */
+    public boolean containsDataSource(String name) {
+        return dataSourceMap.containsKey(name) || dynamicDataSource.getRoutes().containsKey(name);
+    }
+    
     /**
      * 获取所有数据源
      * 
@@ -63,12 +212,8 @@ public class DataSourceManager implements DisposableBean {
     public void addDataSource(String name, DataSource dataSource) {
         dataSourceMap.put(name, dataSource);
         
-        // 更新动态数据源
-        Map<Object, Object> targetDataSources = new HashMap<>(dataSourceMap.size());
-        dataSourceMap.forEach((k, v) -> targetDataSources.put(k, v));
-        
-        dynamicDataSource.setTargetDataSources(targetDataSources);
-        dynamicDataSource.afterPropertiesSet();
+        // 原子替换动态数据源的路由表
+        dynamicDataSource.putRoute(name, dataSource);
         
         log.info("添加数据源: {}", name);
     }
@@ -80,6 +225,11 @@ public class DataSourceManager implements DisposableBean {
      */
     public void removeDataSource(String name) {
         DataSource dataSource = dataSourceMap.remove(name);
+        
+        // 先从路由表移除，新的请求不再路由到即将关闭的数据源
+        dynamicDataSource.removeRoute(name);
+        removeReplicas(name);
+        
         if (dataSource != null && dataSource instanceof DruidDataSource) {
             try {
                 ((DruidDataSource) dataSource).close();
@@ -88,15 +238,182 @@ public class DataSourceManager implements DisposableBean {
             }
         }
         
-        // 更新动态数据源
-        Map<Object, Object> targetDataSources = new HashMap<>(dataSourceMap.size());
-        dataSourceMap.forEach((k, v) -> targetDataSources.put(k, v));
-        
-        dynamicDataSource.setTargetDataSources(targetDataSources);
-        dynamicDataSource.afterPropertiesSet();
-        
         log.info("移除数据源: {}", name);
     }
+
+    /**
+     * 为数据源登记只读副本组，替换已有的副本组
+     * 未启用读写分离或没有配置副本时不做处理
+     *
+     * @param properties 主数据源属性，副本取自其replicas
+     */
+    public void registerReplicas(DataSourceProperties properties) {
+        List<DataSourceProperties> replicas = properties.getReplicas();
+        if (!readWriteEnabled || replicas == null || replicas.isEmpty()) {
+            return;
+        }
+        String name = properties.getName();
+        Map<String, DataSource> replicaDataSources = new LinkedHashMap<>(replicas.size());
+        try {
+            for (int i = 0; i < replicas.size(); i++) {
+                DataSourceProperties replica = replicas.get(i);
+                String replicaName = replica.getName() != null ? replica.getName() : name + "-replica-" + i;
+                replica.setName(replicaName);
+                if (replica.getDriverClassName() == null) {
+                    replica.setDriverClassName(properties.getDriverClassName());
+                }
+                if (replica.getUsername() == null) {
+                    replica.setUsername(properties.getUsername());
+                }
+                if (replica.getPassword() == null) {
+                    replica.setPassword(properties.getPassword());
+                }
+                replicaDataSources.put(replicaName, createDataSource(replica));
+            }
+        } catch (RuntimeException e) {
+            replicaDataSources.values().forEach(DataSourceManager::closeQuietly);
+            throw e;
+        }
+
+        ReplicaGroup previous = dynamicDataSource.putReplicaGroup(new ReplicaGroup(name, replicaDataSources,
+                ReplicaGroup.Strategy.of(replicaStrategy), failureThreshold, recoveryThreshold));
+        closeReplicas(previous);
+        startHealthCheck();
+        log.info("登记只读副本: {} -> {}", name, replicaDataSources.keySet());
+    }
+
+    /**
+     * 移除数据源的只读副本组并关闭副本连接池
+     *
+     * @param name 主数据源名称
+     */
+    public void removeReplicas(String name) {
+        ReplicaGroup group = dynamicDataSource.removeReplicaGroup(name);
+        if (group != null) {
+            closeReplicas(group);
+            log.info("移除只读副本: {}", name);
+        }
+    }
+
+    private synchronized void startHealthCheck() {
+        if (healthCheckScheduler != null || healthCheckIntervalMillis <= 0) {
+            return;
+        }
+        healthCheckScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "replica-health-check");
+            t.setDaemon(true);
+            return t;
+        });
+        healthCheckScheduler.scheduleWithFixedDelay(() -> {
+            for (ReplicaGroup group : dynamicDataSource.getReplicaGroups().values()) {
+                try {
+                    group.checkHealth(healthCheckTimeoutSeconds);
+                } catch (RuntimeException e) {
+                    log.error("副本健康检查异常: {}", group.getName(), e);
+                }
+            }
+        }, healthCheckIntervalMillis, healthCheckIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static void closeReplicas(ReplicaGroup group) {
+        if (group != null) {
+            group.getReplicas().forEach(replica -> closeQuietly(replica.getDataSource()));
+        }
+    }
+
+    private static void closeQuietly(DataSource dataSource) {
+        if (dataSource instanceof DruidDataSource) {
+            try {
+                ((DruidDataSource) dataSource).close();
+            } catch (Exception e) {
+                log.error("关闭数据源异常", e);
+            }
+        }
+    }
+
+    /**
+     * 包装数据源，使通过它获取的连接受当前插件的连接配额约束
+     *
+     * @param target 共享数据源
+     * @param pluginIdSupplier 当前插件ID来源，返回null表示不在插件上下文中
+     * @return 受配额约束的数据源
+     */
+    public DataSource wrapWithPluginQuota(DataSource target, Supplier<String> pluginIdSupplier) {
+        return new PluginQuotaDataSource(target, () -> {
+            if (!quotaEnabled) {
+                return null;
+            }
+            String pluginId = pluginIdSupplier.get();
+            return pluginId != null ? getPluginQuota(pluginId) : null;
+        });
+    }
+
+    /**
+     * 获取插件连接配额，首次访问时按配置创建
+     * 可通过spring.datasource.plugin-quota.plugins.[插件ID].*为单个插件覆盖默认值
+     *
+     * @param pluginId 插件ID
+     * @return 连接配额
+     */
+    public PluginConnectionQuota getPluginQuota(String pluginId) {
+        PluginConnectionQuota quota = pluginQuotas.get(pluginId);
+        if (quota != null) {
+            return quota;
+        }
+        return pluginQuotas.computeIfAbsent(pluginId, id -> {
+            String prefix = QUOTA_PREFIX + "plugins." + id + ".";
+            return new PluginConnectionQuota(id,
+                    environment.getProperty(prefix + "max-connections", Integer.class, defaultMaxConnections),
+                    environment.getProperty(prefix + "wait-timeout-ms", Long.class, defaultWaitTimeoutMs),
+                    environment.getProperty(prefix + "statement-timeout-seconds", Integer.class, defaultStatementTimeoutSeconds));
+        });
+    }
+
+    /**
+     * 设置插件连接配额
+     * 新配额只约束之后借出的连接，已借出的连接关闭时归还到原配额
+     *
+     * @param pluginId 插件ID
+     * @param maxConnections 最大连接数
+     * @param waitTimeoutMs 等待配额超时时间(毫秒)
+     * @param statementTimeoutSeconds 语句查询超时(秒)，0表示不限制
+     */
+    public void setPluginQuota(String pluginId, int maxConnections, long waitTimeoutMs, int statementTimeoutSeconds) {
+        pluginQuotas.put(pluginId, new PluginConnectionQuota(pluginId, maxConnections, waitTimeoutMs, statementTimeoutSeconds));
+        log.info("设置插件连接配额: pluginId={}, maxConnections={}, waitTimeoutMs={}, statementTimeoutSeconds={}",
+                pluginId, maxConnections, waitTimeoutMs, statementTimeoutSeconds);
+    }
+
+    /**
+     * 移除插件连接配额
+     *
+     * @param pluginId 插件ID
+     */
+    public void removePluginQuota(String pluginId) {
+        pluginQuotas.remove(pluginId);
+    }
+
+    /**
+     * 插件卸载时移除其连接配额，未归还的连接关闭时仍归还到原配额
+     */
+    @EventListener(topics = PluginEvent.TOPIC, types = PluginEvent.TYPE_UNLOADED)
+    public boolean onPluginUnloaded(Event event) {
+        if (event instanceof PluginEvent) {
+            removePluginQuota(((PluginEvent) event).getPluginId());
+        }
+        return true;
+    }
+
+    /**
+     * 获取各插件的连接配额统计
+     *
+     * @return 插件ID到统计信息的映射
+     */
+    public Map<String, PluginPoolMetrics> getPluginPoolMetrics() {
+        Map<String, PluginPoolMetrics> metrics = new HashMap<>(pluginQuotas.size());
+        pluginQuotas.forEach((pluginId, quota) -> metrics.put(pluginId, quota.getMetrics()));
+        return metrics;
+    }
     
     /**
      * 创建数据源
@@ -190,6 +507,12 @@ public class DataSourceManager implements DisposableBean {
     @Override
     public void destroy() {
         log.info("正在关闭所有数据源...");
+        if (healthCheckScheduler != null) {
+            healthCheckScheduler.shutdownNow();
+        }
+        for (String name : dynamicDataSource.getReplicaGroups().keySet()) {
+            removeReplicas(name);
+        }
         for (Map.Entry<String, DataSource> entry : dataSourceMap.entrySet()) {
             if (entry.getValue() instanceof DruidDataSource) {
                 try {
@@ -1,5 +1,6 @@
 package com.xiaoqu.qteamos.core.databases.core;
 
+import com.xiaoqu.qteamos.api.core.plugin.api.DataServiceApi;
 import com.xiaoqu.qteamos.core.databases.config.DataSourceProperties;
 
 import java.sql.Connection;
@@ -57,6 +58,54 @@ public interface DatabaseService {
      */
     <T> List<T> executeQuery(String dataSourceName, String sql, Class<T> resultType, Object... params);
     
+    /**
+     * 流式查询（使用默认数据源），逐行回调处理，结果不在内存中累积
+     *
+     * @param sql SQL语句
+     * @param fetchSize 每次从数据库抓取的行数
+     * @param handler 行处理器
+     * @param params 查询参数
+     * @return 处理的行数
+     */
+    long executeQueryForEach(String sql, int fetchSize, DataServiceApi.RowHandler handler, Object... params);
+    
+    /**
+     * 流式查询（指定数据源），逐行回调处理，结果不在内存中累积
+     *
+     * @param dataSourceName 数据源名称
+     * @param sql SQL语句
+     * @param fetchSize 每次从数据库抓取的行数
+     * @param handler 行处理器
+     * @param params 查询参数
+     * @return 处理的行数
+     */
+    long executeQueryForEach(String dataSourceName, String sql, int fetchSize,
+                             DataServiceApi.RowHandler handler, Object... params);
+    
+    /**
+     * 打开查询游标（指定数据源），调用方负责关闭
+     *
+     * @param dataSourceName 数据源名称
+     * @param sql SQL语句
+     * @param fetchSize 每次从数据库抓取的行数
+     * @param params 查询参数
+     * @return 查询游标
+     */
+    DataServiceApi.QueryCursor openCursor(String dataSourceName, String sql, int fetchSize, Object... params);
+    
+    /**
+     * 按列批量查询（指定数据源），列缓冲区在批次之间复用
+     *
+     * @param dataSourceName 数据源名称
+     * @param sql SQL语句
+     * @param batchSize 每批行数
+     * @param handler 批处理器
+     * @param params 查询参数
+     * @return 处理的行数
+     */
+    long executeQueryInBatches(String dataSourceName, String sql, int batchSize,
+                               DataServiceApi.BatchHandler handler, Object... params);
+    
     /**
      * 执行SQL更新（使用默认数据源）
      *
@@ -124,6 +173,14 @@ public interface DatabaseService {
      */
     List<String> getAvailableDataSourceNames();
     
+    /**
+     * 获取各插件的连接配额统计
+     * 包括当前占用连接数、等待时间和等待超时次数
+     *
+     * @return 插件ID到统计信息的映射
+     */
+    Map<String, PluginPoolMetrics> getPluginPoolMetrics();
+    
     /**
      * 执行事务操作
      *
@@ -161,7 +218,7 @@ public interface DatabaseService {
     
     /**
      * 初始化插件数据库
-     * 自动查找并执行插件的db/init.sql文件
+     * 按版本顺序执行插件的db/init.sql和db/migration/V*.sql中尚未执行的脚本
      * 
      * @param pluginId 插件ID
      * @return 是否成功
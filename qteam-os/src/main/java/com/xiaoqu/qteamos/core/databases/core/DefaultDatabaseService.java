@@ -1,7 +1,10 @@
 package com.xiaoqu.qteamos.core.databases.core;
 
+import com.xiaoqu.qteamos.api.core.plugin.api.DataServiceApi;
 import com.xiaoqu.qteamos.core.databases.config.DataSourceProperties;
 import com.xiaoqu.qteamos.core.databases.exception.DatabaseException;
+import com.xiaoqu.qteamos.core.databases.migration.MigrationReport;
+import com.xiaoqu.qteamos.core.databases.migration.PluginMigrationRunner;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -14,9 +17,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 import java.io.File;
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -36,6 +39,9 @@ public class DefaultDatabaseService implements DatabaseService {
 
     @Autowired
     private DataSourceManager dataSourceManager;
+
+    @Autowired
+    private PluginMigrationRunner migrationRunner;
     
     /**
      * 是否已初始化
@@ -140,10 +146,7 @@ public class DefaultDatabaseService implements DatabaseService {
 
     @Override
     public Connection getConnection(String dataSourceName) throws SQLException {
-        // 设置当前线程数据源
-        DataSourceContextHolder.setDataSource(dataSourceName);
-        
-        // 获取数据源
+        // 直接获取指定数据源，不修改线程的路由上下文，避免打断外层的数据源切换
         DataSource dataSource = dataSourceManager.getDataSource(dataSourceName);
         if (dataSource == null) {
             throw new SQLException("数据源不存在: " + dataSourceName);
@@ -178,8 +181,54 @@ public class DefaultDatabaseService implements DatabaseService {
         } catch (SQLException e) {
             log.error("执行查询失败: {}", sql, e);
             throw new DatabaseException("执行查询失败: " + e.getMessage(), e);
-        } finally {
-            DataSourceContextHolder.clearDataSource();
+        }
+    }
+
+    @Override
+    public long executeQueryForEach(String sql, int fetchSize, DataServiceApi.RowHandler handler, Object... params) {
+        return executeQueryForEach(primaryDataSourceName, sql, fetchSize, handler, params);
+    }
+
+    @Override
+    public long executeQueryForEach(String dataSourceName, String sql, int fetchSize,
+                                    DataServiceApi.RowHandler handler, Object... params) {
+        ResultSetCursor cursor = openResultSetCursor(dataSourceName, sql, fetchSize, params);
+        try {
+            return cursor.forEach(handler);
+        } catch (DatabaseException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("流式查询处理失败: {}", sql, e);
+            throw new DatabaseException("流式查询处理失败: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public DataServiceApi.QueryCursor openCursor(String dataSourceName, String sql, int fetchSize, Object... params) {
+        return openResultSetCursor(dataSourceName, sql, fetchSize, params);
+    }
+
+    private ResultSetCursor openResultSetCursor(String dataSourceName, String sql, int fetchSize, Object[] params) {
+        try {
+            Connection conn = getConnection(dataSourceName);
+            return ResultSetCursor.open(conn, Connection::close, sql, fetchSize, params);
+        } catch (SQLException e) {
+            log.error("打开查询游标失败: {}", sql, e);
+            throw new DatabaseException("打开查询游标失败: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public long executeQueryInBatches(String dataSourceName, String sql, int batchSize,
+                                      DataServiceApi.BatchHandler handler, Object... params) {
+        ResultSetCursor cursor = openResultSetCursor(dataSourceName, sql, batchSize, params);
+        try {
+            return cursor.forEachBatch(batchSize, handler);
+        } catch (DatabaseException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("批量查询处理失败: {}", sql, e);
+            throw new DatabaseException("批量查询处理失败: " + e.getMessage(), e);
         }
     }
 
@@ -201,8 +250,6 @@ public class DefaultDatabaseService implements DatabaseService {
         } catch (SQLException e) {
             log.error("执行更新失败: {}", sql, e);
             throw new DatabaseException("执行更新失败: " + e.getMessage(), e);
-        } finally {
-            DataSourceContextHolder.clearDataSource();
         }
     }
 
@@ -227,8 +274,6 @@ public class DefaultDatabaseService implements DatabaseService {
         } catch (SQLException e) {
             log.error("执行批处理失败: {}", sql, e);
             throw new DatabaseException("执行批处理失败: " + e.getMessage(), e);
-        } finally {
-            DataSourceContextHolder.clearDataSource();
         }
     }
 
@@ -242,6 +287,9 @@ public class DefaultDatabaseService implements DatabaseService {
         
         // 添加到数据源管理器
         dataSourceManager.addDataSource(name, dataSource);
+
+        // 登记只读副本
+        dataSourceManager.registerReplicas(properties);
         
         log.info("注册数据源成功: {}", name);
     }
@@ -292,6 +340,11 @@ public class DefaultDatabaseService implements DatabaseService {
         return availableDataSources;
     }
 
+    @Override
+    public Map<String, PluginPoolMetrics> getPluginPoolMetrics() {
+        return dataSourceManager.getPluginPoolMetrics();
+    }
+
     @Override
     public <T> T executeTransaction(TransactionAction<T> action) {
         return executeTransaction(primaryDataSourceName, action);
@@ -341,9 +394,6 @@ public class DefaultDatabaseService implements DatabaseService {
                     log.error("关闭连接失败", e);
                 }
             }
-            
-            // 清除数据源上下文
-            DataSourceContextHolder.clearDataSource();
         }
     }
 
@@ -410,11 +460,12 @@ public class DefaultDatabaseService implements DatabaseService {
             return results;
         }
         
-        // 处理复杂对象类型
-        // 在实际项目中，这里可能需要使用反射来创建对象并设置属性
-        // 或者使用ORM框架来处理对象映射
-        // 这里仅提供一个简单的实现
-        throw new SQLException("不支持的结果类型: " + resultType.getName() + "，请使用Map类型或基本类型");
+        // 处理复杂对象类型（record或JavaBean），映射器按类型和列标签编译后缓存复用
+        CompiledRowMappers.RowMapper<T> mapper = CompiledRowMappers.forType(resultType, metaData);
+        while (rs.next()) {
+            results.add(mapper.map(rs));
+        }
+        return results;
     }
 
     /**
@@ -444,20 +495,13 @@ public class DefaultDatabaseService implements DatabaseService {
     @Override
     public boolean initPluginDatabase(String pluginId) {
         log.info("初始化插件数据库: {}", pluginId);
-        try {
-            // 根据插件ID查找对应的SQL初始化文件
-            Path pluginDataPath = Paths.get("plugins", pluginId, "db", "init.sql");
-            if (!Files.exists(pluginDataPath)) {
-                log.warn("插件数据库初始化文件不存在: {}", pluginDataPath);
-                return false;
-            }
-            
-            // 执行初始化SQL文件
-            return executeSqlFile(pluginDataPath.toFile());
-        } catch (Exception e) {
-            log.error("初始化插件数据库失败: {}", pluginId, e);
+        // 执行插件的db/init.sql和db/migration下尚未执行的版本化脚本，已执行的脚本会跳过
+        MigrationReport report = migrationRunner.migrate(pluginId);
+        if (report.getScriptsFound() == 0) {
+            log.warn("插件没有数据库初始化或迁移脚本: {}", pluginId);
             return false;
         }
+        return report.isSuccess();
     }
     
     /**
@@ -501,41 +545,19 @@ public class DefaultDatabaseService implements DatabaseService {
         }
         
         try (Connection conn = getConnection();
-             BufferedReader reader = new BufferedReader(new FileReader(sqlFile))) {
+             Reader reader = Files.newBufferedReader(sqlFile.toPath(), StandardCharsets.UTF_8)) {
             
             // 设置自动提交为false，开启事务
             boolean autoCommit = conn.getAutoCommit();
             conn.setAutoCommit(false);
             
             try {
-                StringBuilder sqlStatement = new StringBuilder();
-                String line;
-                
-                while ((line = reader.readLine()) != null) {
-                    // 忽略注释和空行
-                    if (line.trim().isEmpty() || line.trim().startsWith("--") || line.trim().startsWith("#")) {
-                        continue;
-                    }
-                    
-                    sqlStatement.append(line);
-                    
-                    // 如果SQL语句结束，执行它
-                    if (line.trim().endsWith(";")) {
-                        String sql = sqlStatement.toString().trim();
-                        sql = sql.substring(0, sql.length() - 1); // 移除末尾的分号
-                        
-                        try (Statement stmt = conn.createStatement()) {
-                            stmt.execute(sql);
-                        }
-                        
-                        // 清空SQL语句缓存
-                        sqlStatement.setLength(0);
-                    }
-                }
+                // 流式切分语句，连续的同类语句合并为批处理执行
+                int statements = migrationRunner.newScriptExecutor().execute(conn, reader, sqlFile.getPath());
                 
                 // 提交事务
                 conn.commit();
-                log.info("SQL文件执行成功: {}", sqlFile.getPath());
+                log.info("SQL文件执行成功: {}, 语句{}条", sqlFile.getPath(), statements);
                 return true;
             } catch (Exception e) {
                 // 回滚事务
@@ -1,23 +1,299 @@
 package com.xiaoqu.qteamos.core.databases.core;
 
 import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
 /**
  * 动态数据源
- * 基于Spring的AbstractRoutingDataSource实现数据源动态切换
+ * 基于Spring的AbstractRoutingDataSource实现数据源动态切换。
+ * 路由表采用写时复制：运行期增删数据源只替换路由表引用，不再重新执行afterPropertiesSet，
+ * 读取路径无锁且总能看到一份完整的路由表。
+ * 为数据源登记只读副本组后，只读操作（只读事务或DataSourceContextHolder.useReadOnly作用域）从副本获取连接；
+ * 同一会话（插件或线程）写入后的粘滞窗口内仍读主库，保证读到自己的写入。
+ * 事务管理器在设置只读标记之前就获取连接，因此对外暴露的数据源是包装本数据源的RoutingLazyConnectionDataSourceProxy，
+ * 物理连接延迟到第一条语句获取，路由上下文以事务开启时为准
  *
  * @author yangqijun
  * @date 2025-05-02
  */
 public class DynamicDataSource extends AbstractRoutingDataSource {
 
+    /**
+     * 当前路由表，只读
+     */
+    private volatile Map<Object, DataSource> routes = Collections.emptyMap();
+
+    private final Object routeLock = new Object();
+
+    /**
+     * 只读副本组，按主数据源名称
+     */
+    private final Map<String, ReplicaGroup> replicaGroups = new ConcurrentHashMap<>(8);
+
+    /**
+     * 会话最近一次写入时间(纳秒)，按"数据源#会话"
+     */
+    private final Map<String, Long> lastWrites = new ConcurrentHashMap<>(16);
+
+    /**
+     * 无会话标识时按线程记录最近一次写入时间(纳秒)
+     */
+    private final ThreadLocal<long[]> threadLastWrite = new ThreadLocal<>();
+
+    private volatile boolean readWriteSplitting;
+
+    private volatile long stickyWindowNanos;
+
+    private volatile Supplier<String> sessionKeyResolver = () -> null;
+
+    /**
+     * 连接包装，用于SQL统计等在所有路由出的连接上生效的拦截
+     */
+    private volatile UnaryOperator<Connection> connectionWrapper = UnaryOperator.identity();
+
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+        synchronized (routeLock) {
+            Map<Object, DataSource> merged = new HashMap<>(getResolvedDataSources());
+            // 保留启动前已通过putRoute注册的数据源
+            merged.putAll(routes);
+            routes = Collections.unmodifiableMap(merged);
+        }
+    }
+
+    /**
+     * 添加或替换路由
+     *
+     * @param name 数据源名称
+     * @param dataSource 数据源
+     * @return 被替换的数据源，没有则为null
+     */
+    public DataSource putRoute(String name, DataSource dataSource) {
+        synchronized (routeLock) {
+            Map<Object, DataSource> copy = new HashMap<>(routes);
+            DataSource previous = copy.put(name, dataSource);
+            routes = Collections.unmodifiableMap(copy);
+            return previous;
+        }
+    }
+
+    /**
+     * 移除路由
+     *
+     * @param name 数据源名称
+     * @return 被移除的数据源，没有则为null
+     */
+    public DataSource removeRoute(String name) {
+        synchronized (routeLock) {
+            if (!routes.containsKey(name)) {
+                return null;
+            }
+            Map<Object, DataSource> copy = new HashMap<>(routes);
+            DataSource previous = copy.remove(name);
+            routes = Collections.unmodifiableMap(copy);
+            return previous;
+        }
+    }
+
+    /**
+     * 获取当前路由表快照
+     *
+     * @return 只读路由表
+     */
+    public Map<Object, DataSource> getRoutes() {
+        return routes;
+    }
+
+    /**
+     * 设置读写分离参数
+     *
+     * @param enabled 是否启用读写分离
+     * @param stickyWindowMillis 写入后继续读主库的窗口(毫秒)，0表示不粘滞
+     */
+    public void setReadWriteSplitting(boolean enabled, long stickyWindowMillis) {
+        this.readWriteSplitting = enabled;
+        this.stickyWindowNanos = Math.max(0, stickyWindowMillis) * 1_000_000L;
+    }
+
+    /**
+     * 设置写后读粘滞的会话标识来源，返回null时按线程区分会话
+     *
+     * @param resolver 会话标识来源
+     */
+    public void setSessionKeyResolver(Supplier<String> resolver) {
+        this.sessionKeyResolver = resolver != null ? resolver : () -> null;
+    }
+
+    /**
+     * 设置连接包装，主库和副本连接都会经过包装
+     *
+     * @param wrapper 连接包装，null表示不包装
+     */
+    public void setConnectionWrapper(UnaryOperator<Connection> wrapper) {
+        this.connectionWrapper = wrapper != null ? wrapper : UnaryOperator.identity();
+    }
+
+    /**
+     * 登记只读副本组，替换同名的旧副本组
+     *
+     * @param group 副本组
+     * @return 被替换的副本组，没有则为null
+     */
+    public ReplicaGroup putReplicaGroup(ReplicaGroup group) {
+        return replicaGroups.put(group.getName(), group);
+    }
+
+    /**
+     * 移除只读副本组
+     *
+     * @param name 主数据源名称
+     * @return 被移除的副本组，没有则为null
+     */
+    public ReplicaGroup removeReplicaGroup(String name) {
+        lastWrites.keySet().removeIf(key -> key.startsWith(name + "#"));
+        return replicaGroups.remove(name);
+    }
+
+    /**
+     * 获取所有只读副本组
+     *
+     * @return 只读视图
+     */
+    public Map<String, ReplicaGroup> getReplicaGroups() {
+        return Collections.unmodifiableMap(replicaGroups);
+    }
+
+    /**
+     * 记录当前会话在当前数据源上发生了写入，粘滞窗口内的只读操作仍走主库
+     */
+    public void markWrite() {
+        if (!readWriteSplitting || stickyWindowNanos == 0) {
+            return;
+        }
+        String lookupKey = DataSourceContextHolder.getDataSource();
+        if (!replicaGroups.containsKey(lookupKey)) {
+            return;
+        }
+        long now = System.nanoTime();
+        String session = sessionKeyResolver.get();
+        if (session == null) {
+            long[] holder = threadLastWrite.get();
+            if (holder == null) {
+                threadLastWrite.set(new long[]{now});
+            } else {
+                holder[0] = now;
+            }
+        } else {
+            lastWrites.put(lookupKey + "#" + session, now);
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        ReplicaGroup group = readReplicaGroup();
+        if (group != null) {
+            Connection connection = group.getConnection();
+            if (connection != null) {
+                return connectionWrapper.apply(connection);
+            }
+            // 没有可用副本时回退到主库
+        }
+        return connectionWrapper.apply(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return connectionWrapper.apply(super.getConnection(username, password));
+    }
+
+    /**
+     * 当前操作可以读副本时返回副本组
+     */
+    private ReplicaGroup readReplicaGroup() {
+        if (!readWriteSplitting || replicaGroups.isEmpty()) {
+            return null;
+        }
+        ReplicaGroup group = replicaGroups.get(DataSourceContextHolder.getDataSource());
+        if (group == null) {
+            return null;
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            // 读写事务的连接始终取主库，即使第一条语句处于只读作用域中，之后的写入也在同一连接上执行；
+            // 读写事务的连接视为写入，事务提交后粘滞窗口内读主库
+            markWrite();
+            return null;
+        }
+        boolean readOnly = DataSourceContextHolder.isReadOnly()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        if (!readOnly) {
+            return null;
+        }
+        return withinStickyWindow(group.getName()) ? null : group;
+    }
+
+    private boolean withinStickyWindow(String lookupKey) {
+        long window = stickyWindowNanos;
+        if (window == 0) {
+            return false;
+        }
+        String session = sessionKeyResolver.get();
+        long now = System.nanoTime();
+        if (session == null) {
+            long[] holder = threadLastWrite.get();
+            if (holder == null) {
+                return false;
+            }
+            if (now - holder[0] < window) {
+                return true;
+            }
+            // 窗口已过，清理线程记录
+            threadLastWrite.remove();
+            return false;
+        }
+        String key = lookupKey + "#" + session;
+        Long lastWrite = lastWrites.get(key);
+        if (lastWrite == null) {
+            return false;
+        }
+        if (now - lastWrite < window) {
+            return true;
+        }
+        lastWrites.remove(key, lastWrite);
+        return false;
+    }
+
     /**
      * 获取当前数据源的key
-     * 
+     *
      * @return 当前数据源的key
      */
     @Override
     protected Object determineCurrentLookupKey() {
         return DataSourceContextHolder.getDataSource();
     }
-} 
\ No newline at end of file
+
+    @Override
+    protected DataSource determineTargetDataSource() {
+        Object lookupKey = determineCurrentLookupKey();
+        DataSource dataSource = lookupKey != null ? routes.get(lookupKey) : null;
+        if (dataSource == null) {
+            dataSource = getResolvedDefaultDataSource();
+        }
+        if (dataSource == null) {
+            throw new IllegalStateException("无法确定数据源: " + lookupKey);
+        }
+        return dataSource;
+    }
+}
@@ -0,0 +1,659 @@
+package com.xiaoqu.qteamos.core.databases.core;
+
+import com.xiaoqu.qteamos.api.core.plugin.api.BatchWriterOptions;
+import com.xiaoqu.qteamos.api.core.plugin.api.DataServiceApi;
+import com.xiaoqu.qteamos.core.databases.exception.DatabaseException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * JDBC批量写入器
+ * 逐行接收参数，满足行数、估算字节数或等待时间任一条件即封批提交。
+ * 同一写入器的批次通过任务链按顺序执行；后写模式下用信号量限制未提交行数，缓冲区满时阻塞写入方。
+ * 同步模式下批次只在调用线程上提交，等待超时的未满批次在下一次写入时封批，以便加入调用方的事务
+ *
+ * @author yangqijun
+ * @date 2025-05-03
+ */
+@Slf4j
+public class JdbcBatchWriter implements DataServiceApi.BatchWriter {
+
+    /**
+     * 单条语句允许的最大参数个数（MySQL协议限制）
+     */
+    private static final int MAX_PARAMETERS = 65535;
+
+    /**
+     * 在调用线程上直接执行
+     */
+    private static final Executor DIRECT = Runnable::run;
+
+    private static final Object[] NO_PARAMS = new Object[0];
+
+    private final DataSource dataSource;
+
+    private final String sql;
+
+    private final BatchWriterOptions options;
+
+    private final Executor executor;
+
+    private final UnaryOperator<Runnable> taskDecorator;
+
+    private final Consumer<Throwable> errorListener;
+
+    private final Consumer<JdbcBatchWriter> closeListener;
+
+    /**
+     * 多行改写模板，不改写时为null
+     */
+    private final InsertTemplate insertTemplate;
+
+    /**
+     * 后写模式下的缓冲区配额，同步模式为null
+     */
+    private final Semaphore pendingPermits;
+
+    /**
+     * 后写模式下的定时提交任务，同步模式为null
+     */
+    private final ScheduledFuture<?> flushTask;
+
+    private final Object lock = new Object();
+
+    // 以下字段由lock保护
+    private PendingBatch current;
+    private long nextBatchIndex;
+    private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+    private boolean closed;
+
+    private final AtomicLong pendingRows = new AtomicLong();
+    private final AtomicLong writtenRows = new AtomicLong();
+    private volatile Throwable lastFailure;
+
+    /**
+     * 创建批量写入器
+     *
+     * @param dataSource 数据源
+     * @param sql 带占位符的语句
+     * @param options 选项
+     * @param scheduler 定时提交使用的调度器
+     * @param executor 后台提交使用的执行器
+     * @param taskDecorator 提交任务的包装，用于传递插件和数据源上下文
+     * @param errorListener 批次失败回调
+     * @param closeListener 写入器关闭后的回调
+     */
+    public JdbcBatchWriter(DataSource dataSource, String sql, BatchWriterOptions options,
+                           ScheduledExecutorService scheduler, Executor executor,
+                           UnaryOperator<Runnable> taskDecorator, Consumer<Throwable> errorListener,
+                           Consumer<JdbcBatchWriter> closeListener) {
+        if (options.getMaxBatchRows() <= 0) {
+            throw new IllegalArgumentException("每批最大行数必须大于0: " + options.getMaxBatchRows());
+        }
+        this.dataSource = dataSource;
+        this.sql = sql;
+        this.options = options;
+        this.executor = executor;
+        this.taskDecorator = taskDecorator;
+        this.errorListener = errorListener;
+        this.closeListener = closeListener;
+        this.insertTemplate = options.isRewriteInserts() ? InsertTemplate.parse(sql) : null;
+        if (options.isRewriteInserts() && insertTemplate == null) {
+            log.debug("语句无法改写为多行INSERT，按JDBC批处理执行: {}", sql);
+        }
+        this.pendingPermits = options.isWriteBehind()
+                ? new Semaphore(Math.max(options.getMaxBatchRows(), options.getMaxPendingRows()))
+                : null;
+
+        // 同步模式不在调度线程上提交，否则批次会脱离调用方的事务
+        long interval = options.getFlushIntervalMillis();
+        this.flushTask = interval > 0 && options.isWriteBehind()
+                ? scheduler.scheduleWithFixedDelay(this::flushIfDue, interval, Math.max(10, interval / 2), TimeUnit.MILLISECONDS)
+                : null;
+    }
+
+    @Override
+    public CompletableFuture<DataServiceApi.BatchResult> add(Object... params) {
+        Object[] row = params != null ? params : NO_PARAMS;
+        acquirePermit();
+
+        PendingBatch sealed = null;
+        CompletableFuture<DataServiceApi.BatchResult> future;
+        synchronized (lock) {
+            if (closed) {
+                if (pendingPermits != null) {
+                    pendingPermits.release();
+                }
+                throw new IllegalStateException("批量写入器已关闭");
+            }
+            if (current == null) {
+                current = new PendingBatch(nextBatchIndex++);
+            }
+            current.add(row);
+            future = current.future;
+            pendingRows.incrementAndGet();
+            if (current.rows.size() >= options.getMaxBatchRows() || current.bytes >= options.getMaxBatchBytes()
+                    || (!options.isWriteBehind() && isDue(current))) {
+                sealed = sealCurrent();
+            }
+        }
+
+        if (sealed != null) {
+            submit(sealed, options.isWriteBehind() ? executor : DIRECT);
+            if (!options.isWriteBehind()) {
+                await(future);
+            }
+        }
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<DataServiceApi.BatchResult> flush() {
+        PendingBatch sealed;
+        synchronized (lock) {
+            sealed = sealCurrent();
+        }
+        if (sealed == null) {
+            return CompletableFuture.completedFuture(new SimpleBatchResult(-1, 0, new int[0], 0));
+        }
+        submit(sealed, options.isWriteBehind() ? executor : DIRECT);
+        if (!options.isWriteBehind()) {
+            await(sealed.future);
+        }
+        return sealed.future;
+    }
+
+    @Override
+    public long getPendingRows() {
+        return pendingRows.get();
+    }
+
+    @Override
+    public long getWrittenRows() {
+        return writtenRows.get();
+    }
+
+    @Override
+    public void close() {
+        PendingBatch sealed;
+        CompletableFuture<Void> last;
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            sealed = sealCurrent();
+            last = tail;
+        }
+        if (flushTask != null) {
+            flushTask.cancel(false);
+        }
+        try {
+            if (sealed != null) {
+                submit(sealed, options.isWriteBehind() ? executor : DIRECT);
+            }
+            last.join();
+        } finally {
+            closeListener.accept(this);
+        }
+
+        Throwable failure = lastFailure;
+        if (failure != null) {
+            throw failure instanceof DatabaseException ? (DatabaseException) failure
+                    : new DatabaseException("批量写入失败: " + failure.getMessage(), failure);
+        }
+    }
+
+    /**
+     * 后写模式的定时检查，未满批次等待超过间隔时提交
+     */
+    private void flushIfDue() {
+        PendingBatch sealed = null;
+        synchronized (lock) {
+            if (current != null && isDue(current)) {
+                sealed = sealCurrent();
+            }
+        }
+        if (sealed != null) {
+            // 定时提交在后台执行，不占用调度线程
+            submit(sealed, executor);
+        }
+    }
+
+    private boolean isDue(PendingBatch batch) {
+        long interval = options.getFlushIntervalMillis();
+        return interval > 0 && System.nanoTime() - batch.createdNanos >= TimeUnit.MILLISECONDS.toNanos(interval);
+    }
+
+    /**
+     * 封存当前批次并追加到任务链末尾，调用方持有lock，
+     * 封批与入链在同一临界区内完成，任务链顺序与批次序号一致
+     *
+     * @return 封存的批次，没有未提交批次时返回null
+     */
+    private PendingBatch sealCurrent() {
+        PendingBatch sealed = current;
+        current = null;
+        if (sealed != null) {
+            sealed.previous = tail;
+            tail = sealed.done;
+        }
+        return sealed;
+    }
+
+    /**
+     * 在任务链上的前一批次完成后执行批次，保证同一写入器的批次按顺序执行
+     */
+    private void submit(PendingBatch batch, Executor target) {
+        Runnable task = taskDecorator.apply(() -> {
+            try {
+                execute(batch);
+            } finally {
+                batch.done.complete(null);
+            }
+        });
+        batch.previous.whenComplete((v, e) -> {
+            try {
+                target.execute(task);
+            } catch (RuntimeException ex) {
+                // 执行器拒绝时在当前线程执行，保证批次不丢失
+                task.run();
+            }
+        });
+    }
+
+    /**
+     * 执行一个批次
+     * 调用线程处于Spring事务中时加入该事务，否则每批在独立事务中提交
+     */
+    private void execute(PendingBatch batch) {
+        int rowCount = batch.rows.size();
+        long start = System.nanoTime();
+        Connection connection = null;
+        try {
+            connection = DataSourceUtils.getConnection(dataSource);
+            boolean manageCommit = !DataSourceUtils.isConnectionTransactional(connection, dataSource)
+                    && connection.getAutoCommit();
+            if (manageCommit) {
+                connection.setAutoCommit(false);
+            }
+            int[] counts;
+            try {
+                counts = insertTemplate != null
+                        ? executeRewritten(connection, batch.rows)
+                        : executeBatch(connection, batch.rows);
+                if (manageCommit) {
+                    connection.commit();
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (manageCommit) {
+                    rollbackQuietly(connection);
+                }
+                throw e;
+            } finally {
+                if (manageCommit) {
+                    connection.setAutoCommit(true);
+                }
+            }
+
+            writtenRows.addAndGet(rowCount);
+            batch.future.complete(new SimpleBatchResult(batch.index, rowCount, counts,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+        } catch (Throwable e) {
+            DatabaseException failure = new DatabaseException(
+                    "批量写入失败, 批次" + batch.index + ", " + rowCount + "行: " + e.getMessage(), e);
+            lastFailure = failure;
+            try {
+                errorListener.accept(failure);
+            } finally {
+                batch.future.completeExceptionally(failure);
+            }
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+            pendingRows.addAndGet(-rowCount);
+            if (pendingPermits != null) {
+                pendingPermits.release(rowCount);
+            }
+        }
+    }
+
+    private int[] executeBatch(Connection connection, List<Object[]> rows) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (Object[] row : rows) {
+                for (int i = 0; i < row.length; i++) {
+                    statement.setObject(i + 1, row[i]);
+                }
+                statement.addBatch();
+            }
+            return statement.executeBatch();
+        }
+    }
+
+    /**
+     * 按多行VALUES语句执行，受单条语句参数个数限制分段。
+     * 返回每行一个更新计数：一段语句的影响行数等于该段行数时每行记为1，
+     * 否则（如ON DUPLICATE KEY UPDATE）无法区分到行，与JDBC批处理一致记为SUCCESS_NO_INFO
+     */
+    private int[] executeRewritten(Connection connection, List<Object[]> rows) throws SQLException {
+        int perRow = insertTemplate.parametersPerRow;
+        int chunkSize = Math.max(1, Math.min(rows.size(), MAX_PARAMETERS / perRow));
+        int[] counts = new int[rows.size()];
+        for (int from = 0; from < rows.size(); from += chunkSize) {
+            int to = Math.min(rows.size(), from + chunkSize);
+            try (PreparedStatement statement = connection.prepareStatement(insertTemplate.sqlFor(to - from))) {
+                int index = 1;
+                for (int r = from; r < to; r++) {
+                    Object[] row = rows.get(r);
+                    if (row.length != perRow) {
+                        throw new IllegalArgumentException("参数个数与语句不匹配, 期望" + perRow + "个, 实际" + row.length + "个");
+                    }
+                    for (Object value : row) {
+                        statement.setObject(index++, value);
+                    }
+                }
+                int updated = statement.executeUpdate();
+                Arrays.fill(counts, from, to, updated == to - from ? 1 : Statement.SUCCESS_NO_INFO);
+            }
+        }
+        return counts;
+    }
+
+    private void acquirePermit() {
+        if (pendingPermits == null) {
+            return;
+        }
+        try {
+            if (!pendingPermits.tryAcquire(options.getOfferTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("批量写入缓冲区已满，等待" + options.getOfferTimeoutMillis() + "ms后超时");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待批量写入缓冲区时被中断", e);
+        }
+    }
+
+    /**
+     * 同步模式下等待批次完成，失败时抛出批次异常
+     */
+    private static void await(CompletableFuture<?> future) {
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : e;
+        }
+    }
+
+    private static void rollbackQuietly(Connection connection) {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            log.warn("批量写入回滚失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 估算一行参数占用的字节数
+     */
+    private static long estimateBytes(Object[] row) {
+        long bytes = 16;
+        for (Object value : row) {
+            if (value == null) {
+                bytes += 1;
+            } else if (value instanceof CharSequence) {
+                bytes += 2L * ((CharSequence) value).length();
+            } else if (value instanceof byte[]) {
+                bytes += ((byte[]) value).length;
+            } else if (value instanceof Number || value instanceof Boolean) {
+                bytes += 8;
+            } else {
+                bytes += 32;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * 待提交的批次
+     */
+    private static final class PendingBatch {
+
+        private final long index;
+
+        private final long createdNanos = System.nanoTime();
+
+        private final List<Object[]> rows = new ArrayList<>();
+
+        private final CompletableFuture<DataServiceApi.BatchResult> future = new CompletableFuture<>();
+
+        /**
+         * 任务链上本批次执行完毕的信号
+         */
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        /**
+         * 任务链上的前一批次，封批时设置
+         */
+        private CompletableFuture<Void> previous;
+
+        private long bytes;
+
+        private PendingBatch(long index) {
+            this.index = index;
+        }
+
+        private void add(Object[] row) {
+            rows.add(row);
+            bytes += estimateBytes(row);
+        }
+    }
+
+    private static final class SimpleBatchResult implements DataServiceApi.BatchResult {
+
+        private final long batchIndex;
+        private final int rowCount;
+        private final int[] updateCounts;
+        private final long elapsedMillis;
+
+        private SimpleBatchResult(long batchIndex, int rowCount, int[] updateCounts, long elapsedMillis) {
+            this.batchIndex = batchIndex;
+            this.rowCount = rowCount;
+            this.updateCounts = updateCounts;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        @Override
+        public long getBatchIndex() {
+            return batchIndex;
+        }
+
+        @Override
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        @Override
+        public int[] getUpdateCounts() {
+            return updateCounts.clone();
+        }
+
+        @Override
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "BatchResult[batch=" + batchIndex + ", rows=" + rowCount + ", elapsed=" + elapsedMillis + "ms]";
+        }
+    }
+
+    /**
+     * 多行INSERT模板
+     * 把INSERT ... VALUES (?, ?) [ON DUPLICATE KEY UPDATE ...]拆成前缀、单行VALUES组和后缀，
+     * 按行数重复VALUES组生成多行语句
+     */
+    static final class InsertTemplate {
+
+        private final String prefix;
+        private final String group;
+        private final String suffix;
+        private final int parametersPerRow;
+
+        private final Map<Integer, String> sqlCache = new ConcurrentHashMap<>();
+
+        private InsertTemplate(String prefix, String group, String suffix, int parametersPerRow) {
+            this.prefix = prefix;
+            this.group = group;
+            this.suffix = suffix;
+            this.parametersPerRow = parametersPerRow;
+        }
+
+        /**
+         * 解析语句，不是单行VALUES形式的INSERT/REPLACE时返回null
+         *
+         * @param sql 语句
+         * @return 模板
+         */
+        static InsertTemplate parse(String sql) {
+            String text = sql.trim();
+            String lower = text.toLowerCase(Locale.ROOT);
+            if (!lower.startsWith("insert") && !lower.startsWith("replace")) {
+                return null;
+            }
+            int values = indexOfKeyword(text, lower, "values");
+            if (values < 0) {
+                return null;
+            }
+            int open = values + "values".length();
+            while (open < text.length() && Character.isWhitespace(text.charAt(open))) {
+                open++;
+            }
+            if (open >= text.length() || text.charAt(open) != '(') {
+                return null;
+            }
+            int close = matchParenthesis(text, open);
+            if (close < 0) {
+                return null;
+            }
+            String prefix = text.substring(0, open);
+            String group = text.substring(open, close + 1);
+            String suffix = text.substring(close + 1);
+            // 已经是多行VALUES，或占位符不只出现在VALUES组中时不改写
+            if (suffix.trim().startsWith(",") || countPlaceholders(prefix) > 0 || countPlaceholders(suffix) > 0) {
+                return null;
+            }
+            int parameters = countPlaceholders(group);
+            return parameters > 0 ? new InsertTemplate(prefix, group, suffix, parameters) : null;
+        }
+
+        String sqlFor(int rows) {
+            return sqlCache.computeIfAbsent(rows, n -> {
+                StringBuilder sb = new StringBuilder(prefix.length() + suffix.length() + (group.length() + 1) * n);
+                sb.append(prefix);
+                for (int i = 0; i < n; i++) {
+                    if (i > 0) {
+                        sb.append(',');
+                    }
+                    sb.append(group);
+                }
+                return sb.append(suffix).toString();
+            });
+        }
+
+        /**
+         * 查找引号外、独立成词的关键字
+         */
+        private static int indexOfKeyword(String text, String lower, String keyword) {
+            char quote = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (quote != 0) {
+                    if (c == '\\') {
+                        i++;
+                    } else if (c == quote) {
+                        quote = 0;
+                    }
+                } else if (c == '\'' || c == '"' || c == '`') {
+                    quote = c;
+                } else if (lower.startsWith(keyword, i)
+                        && (i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1)))
+                        && (i + keyword.length() >= text.length()
+                        || !Character.isLetterOrDigit(text.charAt(i + keyword.length())))) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * 查找与给定左括号匹配的右括号，忽略引号内的字符
+         */
+        private static int matchParenthesis(String text, int open) {
+            int depth = 0;
+            char quote = 0;
+            for (int i = open; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (quote != 0) {
+                    if (c == '\\') {
+                        i++;
+                    } else if (c == quote) {
+                        quote = 0;
+                    }
+                } else if (c == '\'' || c == '"' || c == '`') {
+                    quote = c;
+                } else if (c == '(') {
+                    depth++;
+                } else if (c == ')' && --depth == 0) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * 统计引号外的参数占位符个数
+         */
+        private static int countPlaceholders(String text) {
+            int count = 0;
+            char quote = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (quote != 0) {
+                    if (c == '\\') {
+                        i++;
+                    } else if (c == quote) {
+                        quote = 0;
+                    }
+                } else if (c == '\'' || c == '"' || c == '`') {
+                    quote = c;
+                } else if (c == '?') {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.xiaoqu.qteamos.core.databases.core;
+
+import org.springframework.jdbc.datasource.ConnectionProxy;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 插件连接配额
+ * 插件从共享连接池借用连接前先获取信号量许可，连接关闭时归还许可；
+ * 单个插件最多只能占用maxConnections个连接，慢查询插件不会耗尽整个连接池
+ *
+ * @author yangqijun
+ * @date 2025-05-03
+ */
+public class PluginConnectionQuota {
+
+    /**
+     * 从底层数据源获取连接
+     */
+    @FunctionalInterface
+    public interface ConnectionSource {
+        Connection getConnection() throws SQLException;
+    }
+
+    private final String pluginId;
+
+    private final int maxConnections;
+
+    private final long waitTimeoutMillis;
+
+    private final int statementTimeoutSeconds;
+
+    private final Semaphore permits;
+
+    // 统计信息
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger peakActive = new AtomicInteger();
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public PluginConnectionQuota(String pluginId, int maxConnections, long waitTimeoutMillis, int statementTimeoutSeconds) {
+        if (maxConnections <= 0) {
+            throw new IllegalArgumentException("插件最大连接数必须大于0: " + maxConnections);
+        }
+        this.pluginId = pluginId;
+        this.maxConnections = maxConnections;
+        this.waitTimeoutMillis = Math.max(0, waitTimeoutMillis);
+        this.statementTimeoutSeconds = Math.max(0, statementTimeoutSeconds);
+        this.permits = new Semaphore(maxConnections, true);
+    }
+
+    /**
+     * 在配额内借用连接
+     * 等待许可超时抛出SQLTransientConnectionException，返回的连接关闭时归还许可
+     *
+     * @param source 底层连接来源
+     * @return 受配额约束的连接
+     * @throws SQLException 获取许可超时或获取连接失败
+     */
+    public Connection lease(ConnectionSource source) throws SQLException {
+        long start = System.nanoTime();
+        boolean granted;
+        try {
+            granted = permits.tryAcquire(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("等待插件连接配额时被中断: " + pluginId, e);
+        }
+        long waited = System.nanoTime() - start;
+        totalWaitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+
+        if (!granted) {
+            timeouts.increment();
+            throw new SQLTransientConnectionException(String.format(
+                    "插件[%s]数据库连接已达上限%d，等待%dms后超时", pluginId, maxConnections, waitTimeoutMillis));
+        }
+
+        Connection connection;
+        try {
+            connection = source.getConnection();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+
+        acquired.increment();
+        int current = active.incrementAndGet();
+        peakActive.accumulateAndGet(current, Math::max);
+        return (Connection) Proxy.newProxyInstance(ConnectionProxy.class.getClassLoader(),
+                new Class<?>[]{ConnectionProxy.class}, new LeasedConnectionHandler(connection));
+    }
+
+    /**
+     * 归还许可，每个连接只归还一次
+     */
+    private void release() {
+        active.decrementAndGet();
+        permits.release();
+    }
+
+    public String getPluginId() {
+        return pluginId;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public long getWaitTimeoutMillis() {
+        return waitTimeoutMillis;
+    }
+
+    public int getStatementTimeoutSeconds() {
+        return statementTimeoutSeconds;
+    }
+
+    /**
+     * 获取当前统计快照
+     *
+     * @return 统计信息
+     */
+    public PluginPoolMetrics getMetrics() {
+        long count = acquired.sum();
+        long waitTotal = totalWaitNanos.sum();
+        return new PluginPoolMetrics()
+                .setPluginId(pluginId)
+                .setMaxConnections(maxConnections)
+                .setActiveConnections(active.get())
+                .setPeakActiveConnections(peakActive.get())
+                .setAcquiredCount(count)
+                .setTimeoutCount(timeouts.sum())
+                .setTotalWaitMillis(TimeUnit.NANOSECONDS.toMillis(waitTotal))
+                .setMaxWaitMillis(TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()))
+                .setAverageWaitMillis(count == 0 ? 0 : (double) waitTotal / count / 1_000_000d);
+    }
+
+    /**
+     * 借出连接的代理
+     * 拦截close归还许可，并为创建的语句设置查询超时
+     */
+    private class LeasedConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        LeasedConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PluginLeasedConnection[" + pluginId + "] " + target;
+                case "getTargetConnection":
+                    return target;
+                case "isClosed":
+                    return released.get() || target.isClosed();
+                case "close":
+                    if (released.compareAndSet(false, true)) {
+                        try {
+                            target.close();
+                        } finally {
+                            release();
+                        }
+                    }
+                    return null;
+                default:
+                    break;
+            }
+
+            if (released.get()) {
+                throw new SQLException("连接已关闭: " + method.getName());
+            }
+
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+
+            if (result instanceof Statement && statementTimeoutSeconds > 0) {
+                // 作为默认超时，调用方之后仍可自行设置
+                ((Statement) result).setQueryTimeout(statementTimeoutSeconds);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.xiaoqu.qteamos.core.databases.core;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+/**
+ * 插件连接配额统计信息
+ *
+ * @author yangqijun
+ * @date 2025-05-03
+ */
+@Data
+@Accessors(chain = true)
+public class PluginPoolMetrics {
+
+    /**
+     * 插件ID
+     */
+    private String pluginId;
+
+    /**
+     * 最大连接数
+     */
+    private int maxConnections;
+
+    /**
+     * 当前占用连接数
+     */
+    private int activeConnections;
+
+    /**
+     * 历史最大占用连接数
+     */
+    private int peakActiveConnections;
+
+    /**
+     * 累计借出连接次数
+     */
+    private long acquiredCount;
+
+    /**
+     * 等待配额超时次数
+     */
+    private long timeoutCount;
+
+    /**
+     * 累计等待时间(毫秒)
+     */
+    private long totalWaitMillis;
+
+    /**
+     * 最长一次等待时间(毫秒)
+     */
+    private long maxWaitMillis;
+
+    /**
+     * 平均等待时间(毫秒)
+     */
+    private double averageWaitMillis;
+}
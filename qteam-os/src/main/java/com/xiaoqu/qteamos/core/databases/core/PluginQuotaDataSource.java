@@ -0,0 +1,51 @@
+package com.xiaoqu.qteamos.core.databases.core;
+
+import org.springframework.core.InfrastructureProxy;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.function.Supplier;
+
+/**
+ * 按插件配额借用连接的数据源
+ * 每次获取连接时解析当前插件的配额，未处于插件上下文时直接使用底层数据源。
+ * 实现InfrastructureProxy，事务资源以底层数据源为键绑定，与事务管理器共用同一个事务连接；
+ * 以本数据源创建的事务管理器开启事务时，绑定的事务连接同样在配额内借用，事务结束时归还
+ *
+ * @author yangqijun
+ * @date 2025-05-03
+ */
+public class PluginQuotaDataSource extends DelegatingDataSource implements InfrastructureProxy {
+
+    private final Supplier<PluginConnectionQuota> quotaResolver;
+
+    public PluginQuotaDataSource(DataSource targetDataSource, Supplier<PluginConnectionQuota> quotaResolver) {
+        super(targetDataSource);
+        this.quotaResolver = quotaResolver;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        PluginConnectionQuota quota = quotaResolver.get();
+        if (quota == null) {
+            return obtainTargetDataSource().getConnection();
+        }
+        return quota.lease(() -> obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        PluginConnectionQuota quota = quotaResolver.get();
+        if (quota == null) {
+            return obtainTargetDataSource().getConnection(username, password);
+        }
+        return quota.lease(() -> obtainTargetDataSource().getConnection(username, password));
+    }
+
+    @Override
+    public Object getWrappedObject() {
+        return obtainTargetDataSource();
+    }
+}
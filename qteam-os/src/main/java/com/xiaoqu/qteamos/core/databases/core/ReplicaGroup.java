@@ -0,0 +1,395 @@
+package com.xiaoqu.qteamos.core.databases.core;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 只读副本组
+ * 管理一个主数据源对应的多个只读副本，按负载均衡策略挑选副本：
+ * 从健康副本中随机取两个，比较未归还连接数（LEAST_OUTSTANDING）或以未归还连接数加权的平均耗时（LATENCY_WEIGHTED），
+ * 取负载较低者。副本上每条语句的执行耗时以指数加权移动平均记录为副本耗时（不含连接被持有但空闲的时间）。
+ * 健康检查或获取连接连续失败达到阈值的副本被摘除，之后健康检查连续成功后重新加入
+ *
+ * @author yangqijun
+ * @date 2025-05-03
+ */
+@Slf4j
+public class ReplicaGroup {
+
+    /**
+     * 负载均衡策略
+     */
+    public enum Strategy {
+        /**
+         * 最少未归还连接
+         */
+        LEAST_OUTSTANDING,
+        /**
+         * 按耗时加权
+         */
+        LATENCY_WEIGHTED;
+
+        /**
+         * 解析配置值，如least-outstanding、latency-weighted
+         *
+         * @param value 配置值
+         * @return 策略，无法识别时为LEAST_OUTSTANDING
+         */
+        public static Strategy of(String value) {
+            if (value == null) {
+                return LEAST_OUTSTANDING;
+            }
+            try {
+                return valueOf(value.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                log.warn("未知的副本负载均衡策略: {}，使用least-outstanding", value);
+                return LEAST_OUTSTANDING;
+            }
+        }
+    }
+
+    /**
+     * 耗时移动平均的新样本权重
+     */
+    private static final double EWMA_ALPHA = 0.2;
+
+    private final String name;
+
+    private final List<Replica> replicas;
+
+    private final Strategy strategy;
+
+    private final int failureThreshold;
+
+    private final int recoveryThreshold;
+
+    /**
+     * 创建副本组
+     *
+     * @param name 主数据源名称
+     * @param replicas 副本数据源，按名称
+     * @param strategy 负载均衡策略
+     * @param failureThreshold 连续失败多少次后摘除
+     * @param recoveryThreshold 摘除后连续检查成功多少次重新加入
+     */
+    public ReplicaGroup(String name, Map<String, DataSource> replicas, Strategy strategy,
+                        int failureThreshold, int recoveryThreshold) {
+        this.name = name;
+        List<Replica> list = new ArrayList<>(replicas.size());
+        replicas.forEach((replicaName, dataSource) -> list.add(new Replica(replicaName, dataSource)));
+        this.replicas = Collections.unmodifiableList(list);
+        this.strategy = strategy;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.recoveryThreshold = Math.max(1, recoveryThreshold);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * 从健康副本获取连接
+     *
+     * @return 连接，没有可用副本时返回null，由调用方回退到主库
+     */
+    public Connection getConnection() {
+        // 获取失败的副本记一次失败后换一个再试，最多尝试副本数次
+        for (int attempt = 0; attempt < replicas.size(); attempt++) {
+            Replica replica = choose();
+            if (replica == null) {
+                return null;
+            }
+            replica.outstanding.incrementAndGet();
+            try {
+                Connection connection = replica.dataSource.getConnection();
+                replica.onSuccess();
+                return wrap(replica, connection);
+            } catch (SQLException | RuntimeException e) {
+                replica.outstanding.decrementAndGet();
+                log.warn("从副本获取连接失败: {}/{}, {}", name, replica.name, e.getMessage());
+                replica.onFailure();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 两次随机选择，在负载均衡效果和选择开销之间取平衡
+     */
+    private Replica choose() {
+        int size = replicas.size();
+        if (size == 0) {
+            return null;
+        }
+        if (size == 1) {
+            Replica only = replicas.get(0);
+            return only.healthy ? only : null;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int a = random.nextInt(size);
+        int b = random.nextInt(size - 1);
+        if (b >= a) {
+            b++;
+        }
+        Replica first = replicas.get(a);
+        Replica second = replicas.get(b);
+        if (first.healthy && second.healthy) {
+            return score(second) < score(first) ? second : first;
+        }
+        if (first.healthy || second.healthy) {
+            return first.healthy ? first : second;
+        }
+        // 两个候选都已摘除时顺序找一个健康副本
+        for (int i = 1; i < size; i++) {
+            Replica candidate = replicas.get((a + i) % size);
+            if (candidate.healthy) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private double score(Replica replica) {
+        int outstanding = replica.outstanding.get();
+        if (strategy == Strategy.LATENCY_WEIGHTED) {
+            return (outstanding + 1) * Math.max(replica.latencyMicros, 1d);
+        }
+        return outstanding;
+    }
+
+    /**
+     * 检查所有副本的连接可用性，更新健康状态
+     *
+     * @param timeoutSeconds 单个副本的检查超时(秒)
+     */
+    public void checkHealth(int timeoutSeconds) {
+        for (Replica replica : replicas) {
+            boolean valid;
+            try (Connection connection = replica.dataSource.getConnection()) {
+                valid = connection.isValid(timeoutSeconds);
+            } catch (SQLException | RuntimeException e) {
+                log.debug("副本健康检查失败: {}/{}, {}", name, replica.name, e.getMessage());
+                valid = false;
+            }
+            if (valid) {
+                replica.onCheckSuccess();
+            } else {
+                replica.onFailure();
+            }
+        }
+    }
+
+    /**
+     * 是否有健康副本
+     *
+     * @return 有健康副本时为true
+     */
+    public boolean hasHealthyReplica() {
+        for (Replica replica : replicas) {
+            if (replica.healthy) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Connection wrap(Replica replica, Connection connection) {
+        return (Connection) Proxy.newProxyInstance(ConnectionProxy.class.getClassLoader(),
+                new Class<?>[]{ConnectionProxy.class}, new ReplicaConnectionHandler(replica, connection));
+    }
+
+    /**
+     * 副本及其负载统计
+     */
+    public final class Replica {
+
+        private final String name;
+
+        private final DataSource dataSource;
+
+        private final AtomicInteger outstanding = new AtomicInteger();
+
+        private volatile double latencyMicros;
+
+        private volatile boolean healthy = true;
+
+        private int consecutiveFailures;
+
+        private int consecutiveSuccesses;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public DataSource getDataSource() {
+            return dataSource;
+        }
+
+        public int getOutstanding() {
+            return outstanding.get();
+        }
+
+        public double getLatencyMicros() {
+            return latencyMicros;
+        }
+
+        public boolean isHealthy() {
+            return healthy;
+        }
+
+        private void recordLatency(long nanos) {
+            double sample = nanos / 1000d;
+            double current = latencyMicros;
+            // 并发更新时可能丢失个别样本，对移动平均影响可以忽略
+            latencyMicros = current == 0 ? sample : current + EWMA_ALPHA * (sample - current);
+        }
+
+        private synchronized void onSuccess() {
+            consecutiveFailures = 0;
+        }
+
+        private synchronized void onCheckSuccess() {
+            consecutiveFailures = 0;
+            if (!healthy && ++consecutiveSuccesses >= recoveryThreshold) {
+                healthy = true;
+                consecutiveSuccesses = 0;
+                log.info("副本恢复，重新加入: {}/{}", ReplicaGroup.this.name, name);
+            }
+        }
+
+        private synchronized void onFailure() {
+            consecutiveSuccesses = 0;
+            if (healthy && ++consecutiveFailures >= failureThreshold) {
+                healthy = false;
+                consecutiveFailures = 0;
+                log.warn("副本不可用，已摘除: {}/{}", ReplicaGroup.this.name, name);
+            }
+        }
+    }
+
+    /**
+     * 副本连接代理，关闭时扣减未归还连接数；创建的语句被包装，执行时记录耗时
+     */
+    private static final class ReplicaConnectionHandler implements InvocationHandler {
+
+        private final Replica replica;
+
+        private final Connection target;
+
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        ReplicaConnectionHandler(Replica replica, Connection target) {
+            this.replica = replica;
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "ReplicaConnection[" + replica.name + "] " + target;
+                case "getTargetConnection":
+                    return target;
+                case "isClosed":
+                    return closed.get() || target.isClosed();
+                case "close":
+                    if (closed.compareAndSet(false, true)) {
+                        try {
+                            target.close();
+                        } finally {
+                            replica.outstanding.decrementAndGet();
+                        }
+                    }
+                    return null;
+                default:
+                    break;
+            }
+
+            if (closed.get()) {
+                throw new SQLException("连接已关闭: " + method.getName());
+            }
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+            if (result instanceof Statement && method.getReturnType().isInterface()
+                    && Statement.class.isAssignableFrom(method.getReturnType())) {
+                return Proxy.newProxyInstance(ConnectionProxy.class.getClassLoader(),
+                        new Class<?>[]{method.getReturnType()}, new ReplicaStatementHandler(replica, result));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 副本语句代理，记录execute系列方法的耗时
+     */
+    private static final class ReplicaStatementHandler implements InvocationHandler {
+
+        private final Replica replica;
+
+        private final Object target;
+
+        ReplicaStatementHandler(Replica replica, Object target) {
+            this.replica = replica;
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "ReplicaStatement[" + replica.name + "] " + target;
+                default:
+                    break;
+            }
+            boolean execute = method.getName().startsWith("execute");
+            long start = execute ? System.nanoTime() : 0L;
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            } finally {
+                if (execute) {
+                    replica.recordLatency(System.nanoTime() - start);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.xiaoqu.qteamos.core.databases.core;
+
+import com.xiaoqu.qteamos.api.core.plugin.api.DataServiceApi;
+import com.xiaoqu.qteamos.core.databases.exception.DatabaseException;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 结果集当前行视图
+ * 直接读取底层ResultSet，不为每行分配Map；列元数据只在创建时读取一次
+ *
+ * @author yangqijun
+ * @date 2025-05-02
+ */
+public class ResultRow implements DataServiceApi.Row {
+
+    private final ResultSet resultSet;
+
+    private final String[] labels;
+
+    private final Map<String, Integer> labelIndex;
+
+    private long rowNumber;
+
+    ResultRow(ResultSet resultSet) throws SQLException {
+        this.resultSet = resultSet;
+        this.labels = readLabels(resultSet.getMetaData());
+        this.labelIndex = new HashMap<>(labels.length * 2);
+        for (int i = labels.length; i >= 1; i--) {
+            // 同名列以第一个为准
+            labelIndex.put(labels[i - 1].toLowerCase(Locale.ROOT), i);
+        }
+    }
+
+    /**
+     * 读取结果集的列标签
+     *
+     * @param metaData 结果集元数据
+     * @return 列标签数组，下标0对应第1列
+     * @throws SQLException SQL异常
+     */
+    static String[] readLabels(ResultSetMetaData metaData) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        String[] labels = new String[columnCount];
+        for (int i = 1; i <= columnCount; i++) {
+            labels[i - 1] = metaData.getColumnLabel(i);
+        }
+        return labels;
+    }
+
+    /**
+     * 游标前进一行后调用
+     */
+    void advance() {
+        rowNumber++;
+    }
+
+    @Override
+    public long getRowNumber() {
+        return rowNumber;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return labels.length;
+    }
+
+    @Override
+    public String getColumnLabel(int column) {
+        return labels[column - 1];
+    }
+
+    @Override
+    public int findColumn(String label) {
+        Integer index = labelIndex.get(label.toLowerCase(Locale.ROOT));
+        return index != null ? index : -1;
+    }
+
+    private int requireColumn(String label) {
+        int index = findColumn(label);
+        if (index < 0) {
+            throw new DatabaseException("结果集中不存在列: " + label);
+        }
+        return index;
+    }
+
+    @Override
+    public Object getObject(int column) {
+        try {
+            return resultSet.getObject(column);
+        } catch (SQLException e) {
+            throw readFailed(column, e);
+        }
+    }
+
+    @Override
+    public Object getObject(String label) {
+        return getObject(requireColumn(label));
+    }
+
+    @Override
+    public String getString(int column) {
+        try {
+            return resultSet.getString(column);
+        } catch (SQLException e) {
+            throw readFailed(column, e);
+        }
+    }
+
+    @Override
+    public String getString(String label) {
+        return getString(requireColumn(label));
+    }
+
+    @Override
+    public long getLong(int column) {
+        try {
+            return resultSet.getLong(column);
+        } catch (SQLException e) {
+            throw readFailed(column, e);
+        }
+    }
+
+    @Override
+    public long getLong(String label) {
+        return getLong(requireColumn(label));
+    }
+
+    @Override
+    public int getInt(int column) {
+        try {
+            return resultSet.getInt(column);
+        } catch (SQLException e) {
+            throw readFailed(column, e);
+        }
+    }
+
+    @Override
+    public int getInt(String label) {
+        return getInt(requireColumn(label));
+    }
+
+    @Override
+    public double getDouble(int column) {
+        try {
+            return resultSet.getDouble(column);
+        } catch (SQLException e) {
+            throw readFailed(column, e);
+        }
+    }
+
+    @Override
+    public double getDouble(String label) {
+        return getDouble(requireColumn(label));
+    }
+
+    @Override
+    public boolean getBoolean(int column) {
+        try {
+            return resultSet.getBoolean(column);
+        } catch (SQLException e) {
+            throw readFailed(column, e);
+        }
+    }
+
+    @Override
+    public boolean getBoolean(String label) {
+        return getBoolean(requireColumn(label));
+    }
+
+    @Override
+    public BigDecimal getBigDecimal(int column) {
+        try {
+            return resultSet.getBigDecimal(column);
+        } catch (SQLException e) {
+            throw readFailed(column, e);
+        }
+    }
+
+    @Override
+    public BigDecimal getBigDecimal(String label) {
+        return getBigDecimal(requireColumn(label));
+    }
+
+    @Override
+    public Timestamp getTimestamp(int column) {
+        try {
+            return resultSet.getTimestamp(column);
+        } catch (SQLException e) {
+            throw readFailed(column, e);
+        }
+    }
+
+    @Override
+    public Timestamp getTimestamp(String label) {
+        return getTimestamp(requireColumn(label));
+    }
+
+    @Override
+    public boolean wasNull() {
+        try {
+            return resultSet.wasNull();
+        } catch (SQLException e) {
+            throw new DatabaseException("读取结果集失败: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>(labels.length * 2);
+        for (int i = 1; i <= labels.length; i++) {
+            map.put(labels[i - 1], getObject(i));
+        }
+        return map;
+    }
+
+    private DatabaseException readFailed(int column, SQLException e) {
+        String label = column >= 1 && column <= labels.length ? labels[column - 1] : String.valueOf(column);
+        return new DatabaseException("读取列失败: " + label + ", " + e.getMessage(), e);
+    }
+}
@@ -0,0 +1,221 @@
+package com.xiaoqu.qteamos.core.databases.core;
+
+import com.xiaoqu.qteamos.api.core.plugin.api.DataServiceApi;
+import com.xiaoqu.qteamos.core.databases.exception.DatabaseException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.*;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 基于服务端游标的流式查询
+ * 使用只进、只读的语句并设置抓取大小，数据按需从数据库拉取；
+ * 读完或出错时自动释放语句和连接
+ *
+ * @author yangqijun
+ * @date 2025-05-02
+ */
+@Slf4j
+public class ResultSetCursor implements DataServiceApi.QueryCursor {
+
+    /**
+     * 连接释放方式，不同调用方对连接的归属不同（直接关闭或交还给事务管理）
+     */
+    @FunctionalInterface
+    public interface ConnectionReleaser {
+        void release(Connection connection) throws SQLException;
+    }
+
+    private final Connection connection;
+    private final ConnectionReleaser releaser;
+    private final PreparedStatement statement;
+    private final ResultSet resultSet;
+    private final ResultRow row;
+
+    // 是否已预读下一行
+    private boolean prefetched;
+    private boolean hasNext;
+    private boolean iterated;
+    private boolean closed;
+
+    private ResultSetCursor(Connection connection, ConnectionReleaser releaser,
+                            PreparedStatement statement, ResultSet resultSet) throws SQLException {
+        this.connection = connection;
+        this.releaser = releaser;
+        this.statement = statement;
+        this.resultSet = resultSet;
+        this.row = new ResultRow(resultSet);
+    }
+
+    /**
+     * 在给定连接上执行流式查询
+     * 打开失败时会释放连接
+     *
+     * @param connection 数据库连接
+     * @param releaser 连接释放方式
+     * @param sql SQL语句
+     * @param fetchSize 抓取大小
+     * @param params 参数
+     * @return 查询游标
+     * @throws SQLException SQL异常
+     */
+    public static ResultSetCursor open(Connection connection, ConnectionReleaser releaser,
+                                       String sql, int fetchSize, Object[] params) throws SQLException {
+        PreparedStatement statement = null;
+        try {
+            statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            applyFetchSize(connection, statement, fetchSize);
+            if (params != null) {
+                for (int i = 0; i < params.length; i++) {
+                    statement.setObject(i + 1, params[i]);
+                }
+            }
+            ResultSet resultSet = statement.executeQuery();
+            return new ResultSetCursor(connection, releaser, statement, resultSet);
+        } catch (SQLException | RuntimeException e) {
+            closeQuietly(statement);
+            try {
+                releaser.release(connection);
+            } catch (SQLException ex) {
+                e.addSuppressed(ex);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 设置抓取大小
+     * MySQL驱动默认会把整个结果集读入内存，未开启useCursorFetch时需使用Integer.MIN_VALUE进入逐行流式模式
+     */
+    private static void applyFetchSize(Connection connection, Statement statement, int fetchSize) throws SQLException {
+        if (fetchSize <= 0) {
+            return;
+        }
+        DatabaseMetaData metaData = connection.getMetaData();
+        String product = metaData.getDatabaseProductName();
+        if (product != null && (product.contains("MySQL") || product.contains("MariaDB"))) {
+            String url = metaData.getURL();
+            if (url == null || !url.contains("useCursorFetch=true")) {
+                statement.setFetchSize(Integer.MIN_VALUE);
+                return;
+            }
+        }
+        statement.setFetchSize(fetchSize);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        if (!prefetched) {
+            try {
+                hasNext = resultSet.next();
+            } catch (SQLException e) {
+                close();
+                throw new DatabaseException("读取结果集失败: " + e.getMessage(), e);
+            }
+            prefetched = true;
+            if (!hasNext) {
+                close();
+            }
+        }
+        return hasNext;
+    }
+
+    @Override
+    public DataServiceApi.Row next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        prefetched = false;
+        iterated = true;
+        row.advance();
+        return row;
+    }
+
+    @Override
+    public Stream<DataServiceApi.Row> stream() {
+        Spliterator<DataServiceApi.Row> spliterator = Spliterators.spliteratorUnknownSize(
+                this, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(this::close);
+    }
+
+    /**
+     * 逐行回调处理剩余的所有行
+     *
+     * @param handler 行处理器
+     * @return 处理的行数
+     * @throws Exception 处理器抛出的异常
+     */
+    public long forEach(DataServiceApi.RowHandler handler) throws Exception {
+        try {
+            long count = 0;
+            while (hasNext()) {
+                handler.handle(next());
+                count++;
+            }
+            return count;
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * 按列批量处理所有行，列缓冲区在批次间复用
+     * 只能在未开始迭代的游标上调用
+     *
+     * @param batchSize 每批行数
+     * @param handler 批处理器
+     * @return 处理的行数
+     * @throws Exception 处理器抛出的异常
+     */
+    public long forEachBatch(int batchSize, DataServiceApi.BatchHandler handler) throws Exception {
+        if (iterated || prefetched) {
+            throw new IllegalStateException("游标已开始逐行迭代，不能再按批读取");
+        }
+        try {
+            ColumnBatch batch = new ColumnBatch(
+                    ResultRow.readLabels(resultSet.getMetaData()), Math.max(1, batchSize));
+            long count = 0;
+            int rows;
+            while (!closed && (rows = batch.fill(resultSet)) > 0) {
+                handler.handle(batch);
+                count += rows;
+            }
+            return count;
+        } finally {
+            close();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        closeQuietly(resultSet);
+        closeQuietly(statement);
+        try {
+            releaser.release(connection);
+        } catch (SQLException e) {
+            log.warn("释放数据库连接失败: {}", e.getMessage());
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            log.debug("关闭JDBC资源失败: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.xiaoqu.qteamos.core.databases.core;
+
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * 固定路由上下文的延迟连接数据源代理
+ * LazyConnectionDataSourceProxy把物理连接的获取推迟到第一条语句，而第一条语句执行时线程上的数据源
+ * 可能已被内层调用（如@DataSource注解的方法）切换。本代理在获取逻辑连接时记录当时的路由上下文，
+ * 该连接上的调用都在记录的上下文中执行，事务的物理连接由事务开启时的数据源和只读意图决定，
+ * 事务内的数据源切换不会改变已开启事务的连接
+ *
+ * @author yangqijun
+ * @date 2025-05-02
+ */
+public class RoutingLazyConnectionDataSourceProxy extends LazyConnectionDataSourceProxy {
+
+    public RoutingLazyConnectionDataSourceProxy(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return pin(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return pin(super.getConnection(username, password));
+    }
+
+    /**
+     * 包装逻辑连接，连接上的调用在获取连接时的路由上下文中执行
+     */
+    private Connection pin(Connection connection) {
+        DataSourceContextHolder.Snapshot snapshot = DataSourceContextHolder.snapshot();
+        return (Connection) Proxy.newProxyInstance(ConnectionProxy.class.getClassLoader(),
+                new Class<?>[]{ConnectionProxy.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "toString":
+                            return "Routing pinned to [" + snapshot.getDataSource() + "] " + connection;
+                        default:
+                            break;
+                    }
+                    try (DataSourceContextHolder.Scope ignored = snapshot.attach()) {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+    }
+}
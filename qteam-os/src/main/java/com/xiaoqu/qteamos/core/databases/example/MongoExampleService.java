@@ -207,8 +207,7 @@ public class MongoExampleService {
             // 获取Repository
             UserRepository userRepo = mongoPlusService.getRepository(UserRepository.class);
             
-            // 调用Repository方法
-            // 注意：这里只是演示，实际实现需要更完善的代理处理逻辑
+            // 调用Repository方法，查询条件由方法名派生
             try {
                 List<UserInfo> users = userRepo.findByStatus("active");
                 log.info("通过Repository查询到用户数: {}", users.size());
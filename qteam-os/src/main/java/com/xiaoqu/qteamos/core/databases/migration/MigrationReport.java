@@ -0,0 +1,63 @@
+package com.xiaoqu.qteamos.core.databases.migration;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 插件迁移结果
+ *
+ * @author yangqijun
+ * @date 2025-05-03
+ */
+@Data
+@Accessors(chain = true)
+public class MigrationReport {
+
+    /**
+     * 插件ID
+     */
+    private String pluginId;
+
+    /**
+     * 是否成功
+     */
+    private boolean success = true;
+
+    /**
+     * 发现的脚本数
+     */
+    private int scriptsFound;
+
+    /**
+     * 本次执行的版本
+     */
+    private List<String> appliedVersions = new ArrayList<>();
+
+    /**
+     * 本次建立基线（记为已执行但未实际执行）的版本
+     */
+    private List<String> baselineVersions = new ArrayList<>();
+
+    /**
+     * 本次执行的语句数
+     */
+    private long statementCount;
+
+    /**
+     * 失败的版本
+     */
+    private String failedVersion;
+
+    /**
+     * 失败原因
+     */
+    private String message;
+
+    /**
+     * 耗时（毫秒）
+     */
+    private long elapsedMillis;
+}
@@ -0,0 +1,176 @@
+package com.xiaoqu.qteamos.core.databases.migration;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * 插件版本化迁移脚本
+ * 文件名格式为V[版本]__[描述].sql，版本号各段按数字比较，如V1__init.sql、V1.2.1__add_index.sql；
+ * 历史遗留的db/init.sql视为版本0
+ *
+ * @author yangqijun
+ * @date 2025-05-03
+ */
+public final class MigrationScript implements Comparable<MigrationScript> {
+
+    /**
+     * 迁移脚本文件名格式
+     */
+    private static final Pattern NAME_PATTERN = Pattern.compile("^V([0-9][0-9A-Za-z._]*?)__(.+)\\.sql$");
+
+    /**
+     * 遗留初始化脚本对应的版本
+     */
+    public static final String INIT_VERSION = "0";
+
+    /**
+     * 打开脚本内容
+     */
+    @FunctionalInterface
+    public interface Source {
+        InputStream open() throws IOException;
+    }
+
+    private final String version;
+    private final String description;
+    private final String location;
+    private final Source source;
+    private final long[] versionParts;
+
+    private volatile Long checksum;
+
+    private MigrationScript(String version, String description, String location, Source source) {
+        this.version = version;
+        this.description = description;
+        this.location = location;
+        this.source = source;
+        this.versionParts = parseVersion(version);
+    }
+
+    /**
+     * 按文件名创建迁移脚本
+     *
+     * @param fileName 文件名（不含目录）
+     * @param location 脚本位置描述
+     * @param source 内容来源
+     * @return 迁移脚本，文件名不符合格式时返回null
+     */
+    public static MigrationScript of(String fileName, String location, Source source) {
+        Matcher matcher = NAME_PATTERN.matcher(fileName);
+        if (!matcher.matches()) {
+            return null;
+        }
+        return new MigrationScript(matcher.group(1).replace('_', '.'),
+                matcher.group(2).replace('_', ' '), location, source);
+    }
+
+    /**
+     * 创建遗留初始化脚本
+     *
+     * @param location 脚本位置描述
+     * @param source 内容来源
+     * @return 迁移脚本
+     */
+    public static MigrationScript init(String location, Source source) {
+        return new MigrationScript(INIT_VERSION, "init", location, source);
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    /**
+     * 以UTF-8打开脚本内容
+     *
+     * @return 字符流
+     * @throws IOException 读取失败
+     */
+    public Reader openReader() throws IOException {
+        return new BufferedReader(new InputStreamReader(source.open(), StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    /**
+     * 脚本内容的CRC32校验和，首次调用时流式计算并缓存
+     *
+     * @return 校验和
+     * @throws IOException 读取失败
+     */
+    public long getChecksum() throws IOException {
+        Long value = checksum;
+        if (value == null) {
+            CRC32 crc = new CRC32();
+            byte[] buffer = new byte[64 * 1024];
+            try (InputStream in = source.open()) {
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    crc.update(buffer, 0, n);
+                }
+            }
+            value = crc.getValue();
+            checksum = value;
+        }
+        return value;
+    }
+
+    @Override
+    public int compareTo(MigrationScript other) {
+        return compareVersions(versionParts, other.versionParts);
+    }
+
+    /**
+     * 比较两个版本号
+     *
+     * @param left 版本号
+     * @param right 版本号
+     * @return 比较结果
+     */
+    public static int compareVersions(String left, String right) {
+        return compareVersions(parseVersion(left), parseVersion(right));
+    }
+
+    private static int compareVersions(long[] left, long[] right) {
+        int length = Math.max(left.length, right.length);
+        for (int i = 0; i < length; i++) {
+            long l = i < left.length ? left[i] : 0;
+            long r = i < right.length ? right[i] : 0;
+            if (l != r) {
+                return Long.compare(l, r);
+            }
+        }
+        return 0;
+    }
+
+    private static long[] parseVersion(String version) {
+        String[] segments = version.split("\\.");
+        long[] parts = new long[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            String digits = segments[i].replaceAll("\\D.*$", "");
+            try {
+                parts[i] = digits.isEmpty() ? 0 : Long.parseLong(digits);
+            } catch (NumberFormatException e) {
+                parts[i] = Long.MAX_VALUE;
+            }
+        }
+        return parts;
+    }
+
+    @Override
+    public String toString() {
+        return "V" + version + " (" + description + ") " + location;
+    }
+}
@@ -0,0 +1,538 @@
+package com.xiaoqu.qteamos.core.databases.migration;
+
+import com.xiaoqu.qteamos.core.databases.exception.DatabaseException;
+import com.xiaoqu.qteamos.core.plugin.manager.PluginRegistry;
+import com.xiaoqu.qteamos.core.plugin.running.PluginDependency;
+import com.xiaoqu.qteamos.core.plugin.running.PluginInfo;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.regex.Pattern;
+
+/**
+ * 插件数据库迁移执行器
+ * 每个插件的迁移脚本按版本顺序执行一次，执行记录和校验和保存在迁移历史表中，已执行的脚本被修改时拒绝继续迁移。
+ * 脚本来源：插件包内的db/migration/V*.sql和db/init.sql，以及插件目录下同名路径（目录中的同版本脚本优先）。
+ * 多个插件的迁移在独立线程中并发执行，存在依赖关系的插件等待被依赖插件迁移完成后再执行
+ *
+ * @author yangqijun
+ * @date 2025-05-03
+ */
+@Slf4j
+@Component
+public class PluginMigrationRunner {
+
+    private static final String MIGRATION_DIR = "db/migration/";
+
+    private static final String INIT_SCRIPT = "db/init.sql";
+
+    private static final Pattern TABLE_NAME = Pattern.compile("[A-Za-z0-9_]+");
+
+    @Value("${plugin.storage-path:./plugins}")
+    private String pluginDir;
+
+    @Value("${spring.datasource.migration.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 并发迁移的插件数
+     */
+    @Value("${spring.datasource.migration.parallelism:4}")
+    private int parallelism;
+
+    /**
+     * 合并为一次JDBC批处理的最大语句数
+     */
+    @Value("${spring.datasource.migration.batch-size:200}")
+    private int batchSize;
+
+    /**
+     * 是否校验已执行脚本的校验和
+     */
+    @Value("${spring.datasource.migration.validate-checksum:true}")
+    private boolean validateChecksum;
+
+    /**
+     * 脚本字符串中的反斜杠是否为转义符，PostgreSQL等标准SQL数据库应设为false
+     */
+    @Value("${spring.datasource.migration.backslash-escapes:true}")
+    private boolean backslashEscapes;
+
+    /**
+     * 启动时迁移没有任何迁移记录的已安装插件时，把不高于基线版本的脚本记为已执行而不实际执行。
+     * 引入迁移记录前，已安装插件的db/init.sql已在安装时执行过，默认基线为init.sql的版本0
+     */
+    @Value("${spring.datasource.migration.baseline-on-migrate:true}")
+    private boolean baselineOnMigrate;
+
+    @Value("${spring.datasource.migration.baseline-version:" + MigrationScript.INIT_VERSION + "}")
+    private String baselineVersion;
+
+    @Value("${spring.datasource.migration.history-table:sys_plugin_migration_history}")
+    private String historyTable;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PluginRegistry pluginRegistry;
+
+    private ExecutorService executor;
+
+    /**
+     * 插件级迁移锁，避免同一插件被并发迁移
+     */
+    private final Map<String, Object> pluginLocks = new ConcurrentHashMap<>();
+
+    private volatile boolean historyTableReady;
+
+    @PostConstruct
+    public void init() {
+        if (!TABLE_NAME.matcher(historyTable).matches()) {
+            throw new IllegalArgumentException("迁移历史表名不合法: " + historyTable);
+        }
+        AtomicInteger counter = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Math.max(1, parallelism), r -> {
+            Thread t = new Thread(r, "plugin-migration-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 创建与迁移相同配置的脚本执行器
+     *
+     * @return 脚本执行器
+     */
+    public SqlScriptExecutor newScriptExecutor() {
+        return new SqlScriptExecutor(batchSize, backslashEscapes);
+    }
+
+    /**
+     * 迁移已注册的插件
+     *
+     * @param pluginId 插件ID
+     * @return 迁移结果
+     */
+    public MigrationReport migrate(String pluginId) {
+        Path jarPath = pluginRegistry.getPlugin(pluginId).map(PluginInfo::getJarPath).orElse(null);
+        return migrate(pluginId, jarPath);
+    }
+
+    /**
+     * 迁移插件，异常不会抛出而是记录在结果中
+     *
+     * @param pluginId 插件ID
+     * @param jarPath 插件包路径，可以为null
+     * @return 迁移结果
+     */
+    public MigrationReport migrate(String pluginId, Path jarPath) {
+        return migrate(pluginId, jarPath, false);
+    }
+
+    private MigrationReport migrate(String pluginId, Path jarPath, boolean installed) {
+        MigrationReport report = new MigrationReport().setPluginId(pluginId);
+        if (!enabled) {
+            return report.setMessage("插件数据库迁移已禁用");
+        }
+        long start = System.currentTimeMillis();
+        synchronized (pluginLocks.computeIfAbsent(pluginId, id -> new Object())) {
+            try {
+                doMigrate(pluginId, jarPath, installed, report);
+            } catch (Exception e) {
+                log.error("插件[{}]数据库迁移失败: {}", pluginId, e.getMessage(), e);
+                report.setSuccess(false).setMessage(e.getMessage());
+            } finally {
+                report.setElapsedMillis(System.currentTimeMillis() - start);
+            }
+        }
+        return report;
+    }
+
+    /**
+     * 并发迁移多个已安装的插件
+     * 插件之间没有依赖关系时并行执行；依赖的插件迁移失败时，依赖它的插件不再迁移。
+     * 没有迁移记录的插件先按基线版本建立基线
+     *
+     * @param plugins 插件列表
+     * @return 插件ID到迁移结果
+     */
+    public Map<String, MigrationReport> migrateAll(Collection<PluginInfo> plugins) {
+        Map<String, PluginInfo> byId = new LinkedHashMap<>();
+        for (PluginInfo plugin : plugins) {
+            if (plugin.getPluginId() != null) {
+                byId.put(plugin.getPluginId(), plugin);
+            }
+        }
+        if (byId.isEmpty() || !enabled) {
+            return Map.of();
+        }
+
+        long start = System.currentTimeMillis();
+        Map<String, CompletableFuture<MigrationReport>> futures = new HashMap<>();
+        for (String pluginId : byId.keySet()) {
+            schedule(pluginId, byId, futures, new HashSet<>());
+        }
+
+        Map<String, MigrationReport> reports = new LinkedHashMap<>();
+        byId.keySet().forEach(id -> reports.put(id, futures.get(id).join()));
+        long failed = reports.values().stream().filter(r -> !r.isSuccess()).count();
+        log.info("插件数据库迁移完成: 插件{}个, 失败{}个, 耗时{}ms", reports.size(), failed,
+                System.currentTimeMillis() - start);
+        return reports;
+    }
+
+    private CompletableFuture<MigrationReport> schedule(String pluginId, Map<String, PluginInfo> byId,
+                                                        Map<String, CompletableFuture<MigrationReport>> futures,
+                                                        Set<String> visiting) {
+        CompletableFuture<MigrationReport> existing = futures.get(pluginId);
+        if (existing != null) {
+            return existing;
+        }
+        visiting.add(pluginId);
+
+        PluginInfo plugin = byId.get(pluginId);
+        Map<String, CompletableFuture<MigrationReport>> required = new LinkedHashMap<>();
+        List<PluginDependency> dependencies = plugin.getDescriptor() != null
+                ? plugin.getDescriptor().getDependencies() : null;
+        if (dependencies != null) {
+            for (PluginDependency dependency : dependencies) {
+                String dependencyId = dependency.getPluginId();
+                // 只等待本批次中的依赖，循环依赖时忽略回边
+                if (byId.containsKey(dependencyId) && !visiting.contains(dependencyId)) {
+                    CompletableFuture<MigrationReport> future = schedule(dependencyId, byId, futures, visiting);
+                    if (!dependency.isOptional()) {
+                        required.put(dependencyId, future);
+                    }
+                }
+            }
+        }
+        visiting.remove(pluginId);
+
+        CompletableFuture<MigrationReport> future = CompletableFuture
+                .allOf(required.values().toArray(new CompletableFuture[0]))
+                .thenApplyAsync(ignored -> {
+                    for (Map.Entry<String, CompletableFuture<MigrationReport>> entry : required.entrySet()) {
+                        if (!entry.getValue().join().isSuccess()) {
+                            return new MigrationReport().setPluginId(pluginId).setSuccess(false)
+                                    .setMessage("依赖插件[" + entry.getKey() + "]迁移失败");
+                        }
+                    }
+                    return migrate(pluginId, plugin.getJarPath(), true);
+                }, executor);
+        futures.put(pluginId, future);
+        return future;
+    }
+
+    private void doMigrate(String pluginId, Path jarPath, boolean installed, MigrationReport report)
+            throws SQLException, IOException {
+        List<MigrationScript> scripts = discoverScripts(pluginId, jarPath);
+        report.setScriptsFound(scripts.size());
+        if (scripts.isEmpty()) {
+            log.debug("插件[{}]没有数据库迁移脚本", pluginId);
+            return;
+        }
+
+        try (Connection connection = dataSource.getConnection()) {
+            ensureHistoryTable(connection);
+            Map<String, AppliedMigration> applied = loadHistory(connection, pluginId);
+            if (installed && baselineOnMigrate && applied.isEmpty()) {
+                baseline(connection, pluginId, scripts, applied, report);
+            }
+            // 不支持DDL事务的数据库（如MySQL）中，DDL会隐式提交，失败的脚本需记录下来便于排查
+            boolean transactionalDdl = connection.getMetaData().supportsDataDefinitionAndDataManipulationTransactions();
+
+            for (MigrationScript script : scripts) {
+                AppliedMigration previous = applied.get(script.getVersion());
+                if (previous != null && previous.success) {
+                    if (validateChecksum && previous.checksum != script.getChecksum()) {
+                        throw new DatabaseException("插件[" + pluginId + "]已执行的迁移脚本被修改: " + script
+                                + ", 记录的校验和" + previous.checksum + ", 当前" + script.getChecksum());
+                    }
+                    continue;
+                }
+
+                try {
+                    report.setStatementCount(report.getStatementCount() + apply(connection, pluginId, script));
+                    report.getAppliedVersions().add(script.getVersion());
+                } catch (SQLException | IOException | RuntimeException e) {
+                    report.setFailedVersion(script.getVersion());
+                    if (!transactionalDdl) {
+                        recordQuietly(connection, pluginId, script, 0, 0, false);
+                    }
+                    throw e;
+                }
+            }
+        }
+
+        if (!report.getAppliedVersions().isEmpty()) {
+            log.info("插件[{}]执行数据库迁移 {}个, 语句{}条: {}", pluginId, report.getAppliedVersions().size(),
+                    report.getStatementCount(), report.getAppliedVersions());
+        }
+    }
+
+    /**
+     * 在一个事务中执行脚本并写入历史记录
+     */
+    private int apply(Connection connection, String pluginId, MigrationScript script) throws SQLException, IOException {
+        log.info("插件[{}]执行迁移脚本: {}", pluginId, script);
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        long start = System.currentTimeMillis();
+        try {
+            int statements;
+            try (Reader reader = script.openReader()) {
+                statements = newScriptExecutor().execute(connection, reader, script.getLocation());
+            }
+            record(connection, pluginId, script, statements, System.currentTimeMillis() - start, true);
+            connection.commit();
+            return statements;
+        } catch (SQLException | IOException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * 为没有迁移记录的已安装插件建立基线，不高于基线版本的脚本只写入历史记录
+     */
+    private void baseline(Connection connection, String pluginId, List<MigrationScript> scripts,
+                          Map<String, AppliedMigration> applied, MigrationReport report)
+            throws SQLException, IOException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            for (MigrationScript script : scripts) {
+                if (MigrationScript.compareVersions(script.getVersion(), baselineVersion) > 0) {
+                    break;
+                }
+                record(connection, pluginId, script, 0, 0, true);
+                applied.put(script.getVersion(), new AppliedMigration(script.getChecksum(), true));
+                report.getBaselineVersions().add(script.getVersion());
+            }
+            connection.commit();
+        } catch (SQLException | IOException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        if (!report.getBaselineVersions().isEmpty()) {
+            log.info("插件[{}]没有迁移记录，按基线版本{}记为已执行: {}", pluginId, baselineVersion,
+                    report.getBaselineVersions());
+        }
+    }
+
+    /**
+     * 查找插件的迁移脚本，按版本排序
+     */
+    private List<MigrationScript> discoverScripts(String pluginId, Path jarPath) throws IOException {
+        Map<String, MigrationScript> byVersion = new TreeMap<>(MigrationScript::compareVersions);
+
+        if (jarPath != null && Files.isRegularFile(jarPath)) {
+            try (JarFile jar = new JarFile(jarPath.toFile())) {
+                for (JarEntry entry : jar.stream().toList()) {
+                    String name = entry.getName();
+                    MigrationScript.Source source = () -> {
+                        JarFile file = new JarFile(jarPath.toFile());
+                        return new FilterInputStream(file.getInputStream(file.getJarEntry(name))) {
+                            @Override
+                            public void close() throws IOException {
+                                try {
+                                    super.close();
+                                } finally {
+                                    file.close();
+                                }
+                            }
+                        };
+                    };
+                    String location = jarPath.getFileName() + "!/" + name;
+                    if (INIT_SCRIPT.equals(name)) {
+                        put(byVersion, MigrationScript.init(location, source));
+                    } else if (name.startsWith(MIGRATION_DIR) && name.indexOf('/', MIGRATION_DIR.length()) < 0) {
+                        put(byVersion, MigrationScript.of(name.substring(MIGRATION_DIR.length()), location, source));
+                    }
+                }
+            }
+        }
+
+        // 插件目录下的脚本覆盖包内同版本脚本
+        Path pluginHome = Paths.get(pluginDir, pluginId);
+        for (Path base : List.of(pluginHome, pluginHome.resolve("config"))) {
+            Path init = base.resolve(INIT_SCRIPT);
+            if (Files.isRegularFile(init)) {
+                put(byVersion, MigrationScript.init(init.toString(), () -> Files.newInputStream(init)));
+            }
+            Path dir = base.resolve(MIGRATION_DIR);
+            if (Files.isDirectory(dir)) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "V*.sql")) {
+                    for (Path file : files) {
+                        put(byVersion, MigrationScript.of(file.getFileName().toString(), file.toString(),
+                                () -> Files.newInputStream(file)));
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(byVersion.values());
+    }
+
+    private static void put(Map<String, MigrationScript> byVersion, MigrationScript script) {
+        if (script != null) {
+            byVersion.put(script.getVersion(), script);
+        }
+    }
+
+    /**
+     * 创建迁移历史表
+     */
+    private void ensureHistoryTable(Connection connection) throws SQLException {
+        if (historyTableReady) {
+            return;
+        }
+        synchronized (this) {
+            if (historyTableReady) {
+                return;
+            }
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE IF NOT EXISTS " + historyTable + " ("
+                        + "plugin_id VARCHAR(100) NOT NULL, "
+                        + "version VARCHAR(50) NOT NULL, "
+                        + "description VARCHAR(200), "
+                        + "script VARCHAR(500), "
+                        + "checksum BIGINT, "
+                        + "statement_count INT, "
+                        + "execution_time BIGINT, "
+                        + "success INT NOT NULL, "
+                        + "installed_on TIMESTAMP DEFAULT CURRENT_TIMESTAMP, "
+                        + "PRIMARY KEY (plugin_id, version))");
+            }
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+            historyTableReady = true;
+        }
+    }
+
+    private Map<String, AppliedMigration> loadHistory(Connection connection, String pluginId) throws SQLException {
+        Map<String, AppliedMigration> applied = new HashMap<>();
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT version, checksum, success FROM " + historyTable + " WHERE plugin_id = ?")) {
+            statement.setString(1, pluginId);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    applied.put(rs.getString(1), new AppliedMigration(rs.getLong(2), rs.getInt(3) == 1));
+                }
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * 写入历史记录，已有记录（之前失败的执行）时原地更新，否则插入
+     */
+    private void record(Connection connection, String pluginId, MigrationScript script, int statements,
+                        long elapsed, boolean success) throws SQLException, IOException {
+        try (PreparedStatement update = connection.prepareStatement("UPDATE " + historyTable
+                + " SET description = ?, script = ?, checksum = ?, statement_count = ?, execution_time = ?,"
+                + " success = ?, installed_on = CURRENT_TIMESTAMP WHERE plugin_id = ? AND version = ?")) {
+            update.setString(1, truncate(script.getDescription(), 200));
+            update.setString(2, truncate(script.getLocation(), 500));
+            update.setLong(3, script.getChecksum());
+            update.setInt(4, statements);
+            update.setLong(5, elapsed);
+            update.setInt(6, success ? 1 : 0);
+            update.setString(7, pluginId);
+            update.setString(8, script.getVersion());
+            if (update.executeUpdate() > 0) {
+                return;
+            }
+        }
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO " + historyTable
+                + " (plugin_id, version, description, script, checksum, statement_count, execution_time, success)"
+                + " VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+            insert.setString(1, pluginId);
+            insert.setString(2, script.getVersion());
+            insert.setString(3, truncate(script.getDescription(), 200));
+            insert.setString(4, truncate(script.getLocation(), 500));
+            insert.setLong(5, script.getChecksum());
+            insert.setInt(6, statements);
+            insert.setLong(7, elapsed);
+            insert.setInt(8, success ? 1 : 0);
+            insert.executeUpdate();
+        }
+    }
+
+    private void recordQuietly(Connection connection, String pluginId, MigrationScript script,
+                               int statements, long elapsed, boolean success) {
+        try {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(true);
+            try {
+                record(connection, pluginId, script, statements, elapsed, success);
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException | IOException e) {
+            log.warn("记录插件[{}]迁移失败信息失败: {}", pluginId, e.getMessage());
+        }
+    }
+
+    private static String truncate(String value, int max) {
+        return value != null && value.length() > max ? value.substring(value.length() - max) : value;
+    }
+
+    /**
+     * 已执行的迁移记录
+     */
+    private static final class AppliedMigration {
+
+        private final long checksum;
+
+        private final boolean success;
+
+        private AppliedMigration(long checksum, boolean success) {
+            this.checksum = checksum;
+            this.success = success;
+        }
+    }
+}
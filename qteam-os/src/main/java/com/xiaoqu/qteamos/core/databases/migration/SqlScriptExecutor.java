@@ -0,0 +1,187 @@
+package com.xiaoqu.qteamos.core.databases.migration;
+
+import com.xiaoqu.qteamos.core.databases.exception.DatabaseException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Reader;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * SQL脚本执行器
+ * 以流式方式逐条读取脚本语句，把连续的同类语句（DDL或DML）合并为JDBC批处理提交，
+ * 减少大批量初始化数据脚本的网络往返；驱动不支持批处理时逐条执行。
+ * 事务由调用方控制
+ *
+ * @author yangqijun
+ * @date 2025-05-03
+ */
+@Slf4j
+public class SqlScriptExecutor {
+
+    /**
+     * 语句类别
+     */
+    enum Kind {
+        /**
+         * 结构变更语句
+         */
+        DDL,
+        /**
+         * 数据变更语句
+         */
+        DML,
+        /**
+         * 查询、SET、CALL等不能放入批处理的语句
+         */
+        OTHER
+    }
+
+    private final int batchSize;
+
+    private final boolean backslashEscapes;
+
+    /**
+     * 创建脚本执行器
+     *
+     * @param batchSize 每批最多语句数，小于等于1时逐条执行
+     * @param backslashEscapes 字符串中的反斜杠是否为转义符
+     */
+    public SqlScriptExecutor(int batchSize, boolean backslashEscapes) {
+        this.batchSize = Math.max(1, batchSize);
+        this.backslashEscapes = backslashEscapes;
+    }
+
+    /**
+     * 执行脚本
+     *
+     * @param connection 数据库连接
+     * @param reader 脚本输入，由调用方关闭
+     * @param scriptName 脚本名称，用于错误信息
+     * @return 执行的语句数
+     * @throws SQLException 语句执行失败
+     */
+    public int execute(Connection connection, Reader reader, String scriptName) throws SQLException {
+        boolean batching = batchSize > 1 && connection.getMetaData().supportsBatchUpdates();
+        SqlScriptTokenizer tokenizer = new SqlScriptTokenizer(reader, backslashEscapes);
+
+        int executed = 0;
+        try (Statement statement = connection.createStatement()) {
+            List<Integer> batchLines = new ArrayList<>(batching ? batchSize : 0);
+            Kind batchKind = null;
+
+            String sql;
+            while ((sql = nextStatement(tokenizer, scriptName)) != null) {
+                int line = tokenizer.getStatementLine();
+                Kind kind = classify(sql);
+
+                if (!batching || kind == Kind.OTHER) {
+                    flush(statement, batchLines, scriptName);
+                    batchKind = null;
+                    runSingle(statement, sql, line, scriptName);
+                } else {
+                    // 类别变化时先提交前一批，保证DDL与DML的执行顺序
+                    if (kind != batchKind || batchLines.size() >= batchSize) {
+                        flush(statement, batchLines, scriptName);
+                        batchKind = kind;
+                    }
+                    statement.addBatch(sql);
+                    batchLines.add(line);
+                }
+                executed++;
+            }
+            flush(statement, batchLines, scriptName);
+        }
+        return executed;
+    }
+
+    private static String nextStatement(SqlScriptTokenizer tokenizer, String scriptName) {
+        try {
+            return tokenizer.nextStatement();
+        } catch (RuntimeException e) {
+            throw new DatabaseException("读取SQL脚本失败: " + scriptName, e);
+        }
+    }
+
+    private static void runSingle(Statement statement, String sql, int line, String scriptName) throws SQLException {
+        try {
+            statement.execute(sql);
+            // 丢弃可能返回的结果集，避免占用游标
+            while (statement.getMoreResults() || statement.getUpdateCount() != -1) {
+                // 继续读取
+            }
+        } catch (SQLException e) {
+            throw new SQLException(describe(scriptName, line, e), e.getSQLState(), e.getErrorCode(), e);
+        }
+    }
+
+    private static void flush(Statement statement, List<Integer> batchLines, String scriptName) throws SQLException {
+        if (batchLines.isEmpty()) {
+            return;
+        }
+        try {
+            statement.executeBatch();
+        } catch (BatchUpdateException e) {
+            // 驱动遇错即停时，更新计数的长度就是失败语句在批次中的位置
+            int[] counts = e.getUpdateCounts();
+            int failed = counts != null && counts.length < batchLines.size() ? counts.length : 0;
+            if (counts != null && counts.length == batchLines.size()) {
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] == Statement.EXECUTE_FAILED) {
+                        failed = i;
+                        break;
+                    }
+                }
+            }
+            throw new SQLException(describe(scriptName, batchLines.get(failed), e), e.getSQLState(), e.getErrorCode(), e);
+        } finally {
+            statement.clearBatch();
+            batchLines.clear();
+        }
+    }
+
+    private static String describe(String scriptName, int line, SQLException e) {
+        return "执行SQL脚本失败: " + scriptName + " 第" + line + "行附近: " + e.getMessage();
+    }
+
+    /**
+     * 按首个关键字判断语句类别
+     */
+    static Kind classify(String sql) {
+        int start = 0;
+        while (start < sql.length() && !Character.isLetter(sql.charAt(start))) {
+            // 跳过可执行注释和括号等前缀，这类语句按OTHER逐条执行
+            if (sql.startsWith("/*", start)) {
+                return Kind.OTHER;
+            }
+            start++;
+        }
+        int end = start;
+        while (end < sql.length() && Character.isLetter(sql.charAt(end))) {
+            end++;
+        }
+        switch (sql.substring(start, end).toUpperCase(Locale.ROOT)) {
+            case "CREATE":
+            case "ALTER":
+            case "DROP":
+            case "TRUNCATE":
+            case "RENAME":
+            case "COMMENT":
+                return Kind.DDL;
+            case "INSERT":
+            case "UPDATE":
+            case "DELETE":
+            case "REPLACE":
+            case "MERGE":
+            case "UPSERT":
+                return Kind.DML;
+            default:
+                return Kind.OTHER;
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package com.xiaoqu.qteamos.core.databases.migration;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * SQL脚本流式分词器
+ * 按字符流读取脚本并逐条切分语句，内存中只保留当前语句：
+ * 识别单/双/反引号字符串、PostgreSQL美元符号字符串、行注释和块注释（保留MySQL可执行注释），
+ * 支持DELIMITER指令；在存储过程、函数、触发器定义中跟踪BEGIN...END层次，块内的分号不会切断语句
+ *
+ * @author yangqijun
+ * @date 2025-05-03
+ */
+public class SqlScriptTokenizer implements Closeable {
+
+    private static final String DEFAULT_DELIMITER = ";";
+
+    private static final String DELIMITER_DIRECTIVE = "delimiter";
+
+    /**
+     * 需要跟踪BEGIN...END层次的对象类型
+     */
+    private static final Set<String> ROUTINE_TYPES = Set.of("PROCEDURE", "FUNCTION", "TRIGGER", "EVENT");
+
+    /**
+     * END之后表示结束其他控制结构的关键字
+     */
+    private static final Set<String> END_SUFFIXES = Set.of("IF", "LOOP", "WHILE", "REPEAT");
+
+    private static final int EOF = -1;
+
+    private final Reader reader;
+
+    /**
+     * 字符串中的反斜杠是否为转义符（MySQL默认行为）
+     */
+    private final boolean backslashEscapes;
+
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+    private int pushedBack = EOF - 1;
+
+    private String delimiter = DEFAULT_DELIMITER;
+    private int line = 1;
+
+    // 当前语句的状态
+    private final StringBuilder statement = new StringBuilder(256);
+    private final StringBuilder word = new StringBuilder(16);
+    private int statementLine;
+    private int wordIndex;
+    private boolean routine;
+    private int blockDepth;
+    private String previousWord;
+
+    /**
+     * 创建分词器，字符串中的反斜杠按转义符处理
+     *
+     * @param reader 脚本输入
+     */
+    public SqlScriptTokenizer(Reader reader) {
+        this(reader, true);
+    }
+
+    /**
+     * 创建分词器
+     *
+     * @param reader 脚本输入
+     * @param backslashEscapes 字符串中的反斜杠是否为转义符
+     */
+    public SqlScriptTokenizer(Reader reader, boolean backslashEscapes) {
+        this.reader = reader;
+        this.backslashEscapes = backslashEscapes;
+    }
+
+    /**
+     * 读取下一条语句
+     *
+     * @return 去掉结束符的语句，脚本结束时返回null
+     */
+    public String nextStatement() {
+        resetStatement();
+        while (true) {
+            int c = read();
+            if (c == EOF) {
+                endWord();
+                return finishStatement();
+            }
+
+            // 语句开头的DELIMITER指令
+            if (isBlank() && (c == 'd' || c == 'D')) {
+                // 不是指令时已读字符已放入当前语句
+                tryDelimiterDirective(c);
+                continue;
+            }
+
+            if (!isWordChar(c)) {
+                endWord();
+            }
+            if (c == delimiter.charAt(0) && (blockDepth <= 0 || !DEFAULT_DELIMITER.equals(delimiter))
+                    && matchDelimiterRest()) {
+                // 自定义结束符时由脚本作者负责切分，不再跟踪BEGIN...END层次
+                String result = finishStatement();
+                if (result != null) {
+                    return result;
+                }
+                resetStatement();
+            } else if (c == '\'' || c == '"' || c == '`') {
+                if (isBlank()) {
+                    statementLine = line;
+                }
+                readQuoted((char) c);
+            } else if (c == '-' && peek() == '-') {
+                skipLineComment();
+            } else if (c == '#') {
+                skipLineComment();
+            } else if (c == '/' && peek() == '*') {
+                readBlockComment();
+            } else if (c == '$' && delimiter.charAt(0) != '$' && !isWordChar(lastChar())) {
+                readDollarQuoted();
+            } else {
+                if (isWordChar(c)) {
+                    word.append((char) c);
+                }
+                if (!isBlank() || !Character.isWhitespace(c)) {
+                    if (isBlank()) {
+                        statementLine = line;
+                    }
+                    statement.append((char) c);
+                }
+            }
+        }
+    }
+
+    /**
+     * 当前语句在脚本中的起始行号
+     *
+     * @return 行号
+     */
+    public int getStatementLine() {
+        return statementLine;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void resetStatement() {
+        statement.setLength(0);
+        word.setLength(0);
+        statementLine = line;
+        wordIndex = 0;
+        routine = false;
+        blockDepth = 0;
+        previousWord = null;
+    }
+
+    private String finishStatement() {
+        if (statement.length() == 0 && word.length() == 0) {
+            return null;
+        }
+        String sql = statement.toString().trim();
+        return sql.isEmpty() ? null : sql;
+    }
+
+    private boolean isBlank() {
+        return statement.length() == 0;
+    }
+
+    private char lastChar() {
+        return statement.length() == 0 ? ' ' : statement.charAt(statement.length() - 1);
+    }
+
+    /**
+     * 一个单词结束，更新存储过程块的层次
+     */
+    private void endWord() {
+        if (word.length() == 0) {
+            return;
+        }
+        String current = word.toString().toUpperCase(Locale.ROOT);
+        word.setLength(0);
+        wordIndex++;
+
+        if (wordIndex == 1) {
+            routine = false;
+        } else if (!routine && wordIndex <= 6 && ROUTINE_TYPES.contains(current)
+                && "CREATE".equalsIgnoreCase(firstWord())) {
+            // CREATE [OR REPLACE] [DEFINER=...] PROCEDURE/FUNCTION/TRIGGER/EVENT
+            routine = true;
+        }
+
+        if (routine) {
+            if ("BEGIN".equals(current)) {
+                blockDepth++;
+            } else if ("CASE".equals(current) && !"END".equals(previousWord)) {
+                blockDepth++;
+            } else if ("END".equals(current)) {
+                blockDepth--;
+            } else if ("END".equals(previousWord) && END_SUFFIXES.contains(current)) {
+                // END IF/END LOOP等结束的不是BEGIN块，撤销上一次的减少
+                blockDepth++;
+            }
+        }
+        previousWord = current;
+    }
+
+    private String firstWord() {
+        int end = 0;
+        while (end < statement.length() && isWordChar(statement.charAt(end))) {
+            end++;
+        }
+        return statement.substring(0, end);
+    }
+
+    /**
+     * 处理DELIMITER指令，不是指令时把已读字符原样放回语句
+     */
+    private boolean tryDelimiterDirective(int first) {
+        StringBuilder read = new StringBuilder().append((char) first);
+        for (int i = 1; i < DELIMITER_DIRECTIVE.length(); i++) {
+            int c = read();
+            if (c == EOF) {
+                appendWordChars(read);
+                return false;
+            }
+            read.append((char) c);
+            if (Character.toLowerCase(c) != DELIMITER_DIRECTIVE.charAt(i)) {
+                unread(read.charAt(read.length() - 1));
+                read.setLength(read.length() - 1);
+                appendWordChars(read);
+                return false;
+            }
+        }
+        int next = peek();
+        if (next != ' ' && next != '\t') {
+            appendWordChars(read);
+            return false;
+        }
+
+        // 读取指令的剩余部分作为新的结束符
+        StringBuilder value = new StringBuilder();
+        int c;
+        while ((c = read()) != EOF && c != '\n') {
+            value.append((char) c);
+        }
+        String newDelimiter = value.toString().trim();
+        if (!newDelimiter.isEmpty()) {
+            delimiter = newDelimiter;
+        }
+        resetStatement();
+        return true;
+    }
+
+    private void appendWordChars(CharSequence chars) {
+        statementLine = line;
+        statement.append(chars);
+        word.append(chars);
+    }
+
+    private boolean matchDelimiterRest() {
+        if (delimiter.length() == 1) {
+            return true;
+        }
+        StringBuilder read = new StringBuilder();
+        for (int i = 1; i < delimiter.length(); i++) {
+            int c = read();
+            if (c == EOF || c != delimiter.charAt(i)) {
+                if (c != EOF) {
+                    unread((char) c);
+                }
+                // 多字符结束符只匹配了一部分，把首字符和已读字符作为普通内容
+                statement.append(delimiter.charAt(0)).append(read);
+                return false;
+            }
+            read.append((char) c);
+        }
+        return true;
+    }
+
+    private void readQuoted(char quote) {
+        statement.append(quote);
+        int c;
+        while ((c = read()) != EOF) {
+            statement.append((char) c);
+            if (c == '\\' && backslashEscapes && quote != '`') {
+                int escaped = read();
+                if (escaped != EOF) {
+                    statement.append((char) escaped);
+                }
+            } else if (c == quote) {
+                // 连续两个引号表示引号本身
+                if (peek() == quote) {
+                    statement.append((char) read());
+                } else {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void skipLineComment() {
+        int c;
+        while ((c = read()) != EOF && c != '\n') {
+            // 跳过注释内容
+        }
+        if (!isBlank()) {
+            statement.append('\n');
+        }
+    }
+
+    private void readBlockComment() {
+        read();
+        boolean executable = peek() == '!' || peek() == '+';
+        if (executable) {
+            // MySQL可执行注释和Oracle提示需要原样发送
+            if (isBlank()) {
+                statementLine = line;
+            }
+            statement.append("/*");
+        }
+        int previous = 0;
+        int c;
+        while ((c = read()) != EOF) {
+            if (executable) {
+                statement.append((char) c);
+            }
+            if (previous == '*' && c == '/') {
+                break;
+            }
+            previous = c;
+        }
+        if (!executable && !isBlank()) {
+            statement.append(' ');
+        }
+    }
+
+    /**
+     * 读取PostgreSQL的$tag$...$tag$字符串，不是合法标签时按普通字符处理
+     */
+    private void readDollarQuoted() {
+        StringBuilder tag = new StringBuilder("$");
+        int c;
+        while ((c = peek()) != EOF && (Character.isLetterOrDigit(c) || c == '_')) {
+            tag.append((char) read());
+        }
+        if (peek() != '$') {
+            statement.append(tag);
+            return;
+        }
+        tag.append((char) read());
+        statement.append(tag);
+
+        String closing = tag.toString();
+        int matched = 0;
+        while ((c = read()) != EOF) {
+            statement.append((char) c);
+            if (c == closing.charAt(matched)) {
+                if (++matched == closing.length()) {
+                    return;
+                }
+            } else {
+                matched = c == closing.charAt(0) ? 1 : 0;
+            }
+        }
+    }
+
+    private static boolean isWordChar(int c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    private int read() {
+        int c;
+        if (pushedBack >= EOF) {
+            c = pushedBack;
+            pushedBack = EOF - 1;
+        } else {
+            if (position >= limit && !fill()) {
+                return EOF;
+            }
+            c = buffer[position++];
+        }
+        if (c == '\n') {
+            line++;
+        }
+        return c;
+    }
+
+    private int peek() {
+        if (pushedBack >= EOF) {
+            return pushedBack;
+        }
+        if (position >= limit && !fill()) {
+            return EOF;
+        }
+        return buffer[position];
+    }
+
+    private void unread(char c) {
+        pushedBack = c;
+        if (c == '\n') {
+            line--;
+        }
+    }
+
+    private boolean fill() {
+        try {
+            int n;
+            do {
+                n = reader.read(buffer, 0, buffer.length);
+            } while (n == 0);
+            if (n < 0) {
+                return false;
+            }
+            position = 0;
+            limit = n;
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取SQL脚本失败", e);
+        }
+    }
+}
@@ -0,0 +1,769 @@
+package com.xiaoqu.qteamos.core.databases.mongo;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * 按方法名派生的MongoDB查询
+ * 每个Repository方法只解析一次，生成条件模板；调用时只按参数绑定条件值并执行。
+ * 支持的方法名形如：
+ * findByNameAndAgeGreaterThan、findTop10ByStatusOrderByCreateTimeDesc、countByStatus、existsByEmail、deleteByUsername，
+ * 条件之间可用And/Or连接，属性后缀支持Is、Not、GreaterThan(Equal)、LessThan(Equal)、Between（两端包含）、
+ * Before、After、In、NotIn、Like、NotLike、StartingWith、EndingWith、Containing、NotContaining、Regex、
+ * Exists、IsNull、IsNotNull、True、False、IgnoreCase；嵌套属性可写作Address_City或AddressCity。
+ * 返回值可以是实体、Optional、List等集合、Stream（游标流式读取）、Page（配合Pageable参数）；
+ * 返回类型与实体不同时按投影处理，只读取投影类型声明的属性
+ *
+ * @author yangqijun
+ * @date 2025-05-03
+ */
+public final class DerivedMongoQuery {
+
+    private static final Pattern PREFIX = Pattern.compile("^(find|read|get|query|search|stream|count|exists|delete|remove)(\\p{Lu}.*?)??By(.*)$");
+
+    private static final Pattern LIMITING = Pattern.compile("(First|Top)(\\d*)");
+
+    private static final String ORDER_BY = "OrderBy";
+
+    private static final String ALL_IGNORE_CASE = "AllIgnoreCase";
+
+    /**
+     * 查询动作
+     */
+    enum Action {
+        FIND, COUNT, EXISTS, DELETE
+    }
+
+    /**
+     * 返回值形式
+     */
+    enum ResultShape {
+        SINGLE, OPTIONAL, LIST, STREAM, PAGE, NUMBER, BOOLEAN, VOID
+    }
+
+    /**
+     * 条件运算符及其方法名后缀
+     */
+    enum Operator {
+        GREATER_THAN_EQUAL(1, "GreaterThanEqual", "IsGreaterThanEqual"),
+        LESS_THAN_EQUAL(1, "LessThanEqual", "IsLessThanEqual"),
+        GREATER_THAN(1, "GreaterThan", "IsGreaterThan", "After", "IsAfter"),
+        LESS_THAN(1, "LessThan", "IsLessThan", "Before", "IsBefore"),
+        BETWEEN(2, "Between", "IsBetween"),
+        NOT_NULL(0, "IsNotNull", "NotNull"),
+        IS_NULL(0, "IsNull", "Null"),
+        NOT_IN(1, "NotIn", "IsNotIn"),
+        IN(1, "In", "IsIn"),
+        NOT_LIKE(1, "NotLike", "IsNotLike"),
+        LIKE(1, "Like", "IsLike"),
+        STARTING_WITH(1, "StartingWith", "IsStartingWith", "StartsWith"),
+        ENDING_WITH(1, "EndingWith", "IsEndingWith", "EndsWith"),
+        NOT_CONTAINING(1, "NotContaining", "NotContains"),
+        CONTAINING(1, "Containing", "IsContaining", "Contains"),
+        REGEX(1, "Regex", "MatchesRegex", "Matches"),
+        EXISTS(1, "Exists"),
+        TRUE(0, "IsTrue", "True"),
+        FALSE(0, "IsFalse", "False"),
+        NOT(1, "IsNot", "Not"),
+        EQUALS(1, "Is", "Equals");
+
+        private final int arguments;
+        private final String[] keywords;
+
+        Operator(int arguments, String... keywords) {
+            this.arguments = arguments;
+            this.keywords = keywords;
+        }
+    }
+
+    /**
+     * 解析后的单个条件
+     */
+    private static final class Part {
+        private final String path;
+        private final Operator operator;
+        private final boolean ignoreCase;
+        private final int argumentIndex;
+
+        private Part(String path, Operator operator, boolean ignoreCase, int argumentIndex) {
+            this.path = path;
+            this.operator = operator;
+            this.ignoreCase = ignoreCase;
+            this.argumentIndex = argumentIndex;
+        }
+    }
+
+    private final Method method;
+    private final Class<?> entityClass;
+    private final Class<?> resultType;
+    private final Action action;
+    private final ResultShape shape;
+
+    /**
+     * Or分组，每组内的条件以And连接
+     */
+    private final List<List<Part>> groups;
+
+    /**
+     * 每组内是否有重复属性，重复时需使用$and组合
+     */
+    private final boolean[] duplicatePaths;
+
+    private final Sort sort;
+    private final int limit;
+    private final int pageableIndex;
+    private final int sortIndex;
+
+    private DerivedMongoQuery(Method method, Class<?> entityClass, Class<?> resultType, Action action,
+                              ResultShape shape, List<List<Part>> groups, Sort sort, int limit,
+                              int pageableIndex, int sortIndex) {
+        this.method = method;
+        this.entityClass = entityClass;
+        this.resultType = resultType;
+        this.action = action;
+        this.shape = shape;
+        this.groups = groups;
+        this.sort = sort;
+        this.limit = limit;
+        this.pageableIndex = pageableIndex;
+        this.sortIndex = sortIndex;
+        this.duplicatePaths = new boolean[groups.size()];
+        for (int i = 0; i < groups.size(); i++) {
+            Set<String> paths = new HashSet<>();
+            for (Part part : groups.get(i)) {
+                duplicatePaths[i] |= !paths.add(part.path);
+            }
+        }
+    }
+
+    /**
+     * 解析Repository方法
+     *
+     * @param method Repository方法
+     * @param repositoryEntity Repository级别的实体类型，无法确定时为null
+     * @return 派生查询
+     * @throws IllegalArgumentException 方法名不符合约定或参数个数不匹配
+     */
+    public static DerivedMongoQuery compile(Method method, Class<?> repositoryEntity) {
+        String name = method.getName();
+        Matcher matcher = PREFIX.matcher(name);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("无法解析Repository方法名: " + describe(method));
+        }
+
+        Action action = switch (matcher.group(1)) {
+            case "count" -> Action.COUNT;
+            case "exists" -> Action.EXISTS;
+            case "delete", "remove" -> Action.DELETE;
+            default -> Action.FIND;
+        };
+
+        int limit = 0;
+        String subject = matcher.group(2);
+        if (subject != null) {
+            Matcher limiting = LIMITING.matcher(subject);
+            if (limiting.find()) {
+                limit = limiting.group(2).isEmpty() ? 1 : Integer.parseInt(limiting.group(2));
+            }
+        }
+
+        ResultShape shape = resolveShape(method, action);
+        Class<?> resultType = resolveResultType(method);
+        Class<?> entityClass = resolveEntity(resultType, repositoryEntity, method);
+        if (resultType == null || isSimpleType(resultType) || shape == ResultShape.NUMBER
+                || shape == ResultShape.BOOLEAN || shape == ResultShape.VOID) {
+            resultType = entityClass;
+        }
+
+        // 拆分条件和排序部分
+        String predicate = matcher.group(3);
+        Sort sort = Sort.unsorted();
+        int orderBy = predicate.indexOf(ORDER_BY);
+        if (orderBy >= 0) {
+            sort = parseSort(predicate.substring(orderBy + ORDER_BY.length()), entityClass, method);
+            predicate = predicate.substring(0, orderBy);
+        }
+        boolean allIgnoreCase = predicate.endsWith(ALL_IGNORE_CASE);
+        if (allIgnoreCase) {
+            predicate = predicate.substring(0, predicate.length() - ALL_IGNORE_CASE.length());
+        }
+
+        // 识别分页和排序参数，其余参数按顺序绑定到条件
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        int pageableIndex = -1;
+        int sortIndex = -1;
+        List<Integer> bindable = new ArrayList<>();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (Pageable.class.isAssignableFrom(parameterTypes[i])) {
+                pageableIndex = i;
+            } else if (Sort.class.isAssignableFrom(parameterTypes[i])) {
+                sortIndex = i;
+            } else {
+                bindable.add(i);
+            }
+        }
+
+        List<List<Part>> groups = new ArrayList<>();
+        Iterator<Integer> arguments = bindable.iterator();
+        if (!predicate.isEmpty()) {
+            for (String orPart : splitKeyword(predicate, "Or")) {
+                List<Part> group = new ArrayList<>();
+                for (String andPart : splitKeyword(orPart, "And")) {
+                    group.add(parsePart(andPart, allIgnoreCase, entityClass, arguments, method));
+                }
+                groups.add(group);
+            }
+        }
+        if (arguments.hasNext()) {
+            throw new IllegalArgumentException("Repository方法参数个数多于条件需要的个数: " + describe(method));
+        }
+        if (shape == ResultShape.PAGE && pageableIndex < 0) {
+            throw new IllegalArgumentException("返回Page的Repository方法需要Pageable参数: " + describe(method));
+        }
+
+        return new DerivedMongoQuery(method, entityClass, resultType, action, shape, groups, sort, limit,
+                pageableIndex, sortIndex);
+    }
+
+    /**
+     * 按参数绑定并执行
+     *
+     * @param template MongoDB模板
+     * @param args 方法参数
+     * @return 方法返回值
+     */
+    public Object execute(MongoTemplate template, Object[] args) {
+        Object[] values = args != null ? args : new Object[0];
+        Query query = bind(values);
+
+        switch (action) {
+            case COUNT:
+                return toNumber(template.count(query, entityClass));
+            case EXISTS:
+                return template.exists(query, entityClass);
+            case DELETE:
+                if (shape == ResultShape.LIST) {
+                    return template.findAllAndRemove(query, entityClass);
+                }
+                return toNumber(template.remove(query, entityClass).getDeletedCount());
+            default:
+                return find(template, query, values);
+        }
+    }
+
+    /**
+     * 按参数生成查询对象，条件结构在解析时已确定
+     *
+     * @param args 方法参数
+     * @return 查询对象
+     */
+    public Query bind(Object[] args) {
+        Query query = new Query();
+        if (groups.size() == 1) {
+            query.addCriteria(buildGroup(0, args));
+        } else if (groups.size() > 1) {
+            Criteria[] alternatives = new Criteria[groups.size()];
+            for (int i = 0; i < groups.size(); i++) {
+                alternatives[i] = buildGroup(i, args);
+            }
+            query.addCriteria(new Criteria().orOperator(alternatives));
+        }
+
+        if (sort.isSorted()) {
+            query.with(sort);
+        }
+        if (sortIndex >= 0 && args[sortIndex] != null) {
+            query.with((Sort) args[sortIndex]);
+        }
+        if (limit > 0) {
+            query.limit(limit);
+        }
+        return query;
+    }
+
+    private Object find(MongoTemplate template, Query query, Object[] args) {
+        Pageable pageable = pageableIndex >= 0 ? (Pageable) args[pageableIndex] : null;
+        if (shape == ResultShape.PAGE) {
+            // 总数按不带分页的条件统计
+            long total = template.count(Query.of(query).limit(0).skip(0), entityClass);
+            if (pageable != null && pageable.isPaged()) {
+                query.with(pageable);
+            }
+            List<?> content = template.query(entityClass).as(resultType).matching(query).all();
+            return new PageImpl<>(content, pageable != null ? pageable : Pageable.unpaged(), total);
+        }
+        if (pageable != null && pageable.isPaged()) {
+            query.with(pageable);
+        } else if (pageable != null) {
+            query.with(pageable.getSort());
+        }
+
+        var terminating = template.query(entityClass).as(resultType).matching(query);
+        switch (shape) {
+            case LIST:
+                return adaptCollection(terminating.all());
+            case STREAM:
+                return terminating.stream();
+            case OPTIONAL:
+                return Optional.ofNullable(terminating.firstValue());
+            default:
+                return terminating.firstValue();
+        }
+    }
+
+    private Object adaptCollection(List<?> result) {
+        Class<?> returnType = method.getReturnType();
+        if (returnType.isAssignableFrom(List.class)) {
+            return result;
+        }
+        if (Set.class.isAssignableFrom(returnType)) {
+            return new java.util.LinkedHashSet<>(result);
+        }
+        if (returnType.isArray()) {
+            Object array = Array.newInstance(returnType.getComponentType(), result.size());
+            for (int i = 0; i < result.size(); i++) {
+                Array.set(array, i, result.get(i));
+            }
+            return array;
+        }
+        return result;
+    }
+
+    private Object toNumber(long value) {
+        Class<?> returnType = method.getReturnType();
+        if (returnType == int.class || returnType == Integer.class) {
+            return (int) value;
+        }
+        if (returnType == void.class) {
+            return null;
+        }
+        return value;
+    }
+
+    private Criteria buildGroup(int index, Object[] args) {
+        List<Part> parts = groups.get(index);
+        if (parts.size() == 1) {
+            return buildPart(Criteria.where(parts.get(0).path), parts.get(0), args);
+        }
+        if (duplicatePaths[index]) {
+            Criteria[] criteria = new Criteria[parts.size()];
+            for (int i = 0; i < parts.size(); i++) {
+                criteria[i] = buildPart(Criteria.where(parts.get(i).path), parts.get(i), args);
+            }
+            return new Criteria().andOperator(criteria);
+        }
+        // 属性不重复时合并为一个条件文档，便于使用复合索引
+        Criteria criteria = buildPart(Criteria.where(parts.get(0).path), parts.get(0), args);
+        for (int i = 1; i < parts.size(); i++) {
+            buildPart(criteria.and(parts.get(i).path), parts.get(i), args);
+        }
+        return criteria;
+    }
+
+    private static Criteria buildPart(Criteria criteria, Part part, Object[] args) {
+        Object value = part.operator.arguments > 0 ? args[part.argumentIndex] : null;
+        String options = part.ignoreCase ? "i" : null;
+        switch (part.operator) {
+            case GREATER_THAN_EQUAL:
+                return criteria.gte(value);
+            case LESS_THAN_EQUAL:
+                return criteria.lte(value);
+            case GREATER_THAN:
+                return criteria.gt(value);
+            case LESS_THAN:
+                return criteria.lt(value);
+            case BETWEEN:
+                return criteria.gte(value).lte(args[part.argumentIndex + 1]);
+            case NOT_NULL:
+                return criteria.ne(null);
+            case IS_NULL:
+                return criteria.is(null);
+            case NOT_IN:
+                return criteria.nin(toCollection(value));
+            case IN:
+                return criteria.in(toCollection(value));
+            case NOT_LIKE:
+                return criteria.not().regex(likeToRegex(String.valueOf(value)), options);
+            case LIKE:
+                return criteria.regex(likeToRegex(String.valueOf(value)), options);
+            case STARTING_WITH:
+                // 区分大小写的前缀匹配可以使用索引
+                return criteria.regex("^" + Pattern.quote(String.valueOf(value)), options);
+            case ENDING_WITH:
+                return criteria.regex(Pattern.quote(String.valueOf(value)) + "$", options);
+            case NOT_CONTAINING:
+                return value instanceof String
+                        ? criteria.not().regex(Pattern.quote((String) value), options)
+                        : criteria.ne(value);
+            case CONTAINING:
+                // 数组属性包含某个元素时直接按相等匹配
+                return value instanceof String
+                        ? criteria.regex(Pattern.quote((String) value), options)
+                        : criteria.is(value);
+            case REGEX:
+                return criteria.regex(String.valueOf(value), options);
+            case EXISTS:
+                return criteria.exists(!Boolean.FALSE.equals(value));
+            case TRUE:
+                return criteria.is(true);
+            case FALSE:
+                return criteria.is(false);
+            case NOT:
+                return part.ignoreCase && value instanceof String
+                        ? criteria.not().regex("^" + Pattern.quote((String) value) + "$", options)
+                        : criteria.ne(value);
+            default:
+                return part.ignoreCase && value instanceof String
+                        ? criteria.regex("^" + Pattern.quote((String) value) + "$", options)
+                        : criteria.is(value);
+        }
+    }
+
+    private static Collection<?> toCollection(Object value) {
+        if (value instanceof Collection) {
+            return (Collection<?>) value;
+        }
+        if (value != null && value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            List<Object> list = new ArrayList<>(length);
+            for (int i = 0; i < length; i++) {
+                list.add(Array.get(value, i));
+            }
+            return list;
+        }
+        return value == null ? List.of() : List.of(value);
+    }
+
+    /**
+     * 把SQL风格的%、_和*通配符转换为正则，没有通配符时按包含匹配
+     */
+    private static String likeToRegex(String like) {
+        if (like.indexOf('%') < 0 && like.indexOf('_') < 0 && like.indexOf('*') < 0) {
+            return Pattern.quote(like);
+        }
+        StringBuilder regex = new StringBuilder("^");
+        StringBuilder literal = new StringBuilder();
+        for (char c : like.toCharArray()) {
+            if (c == '%' || c == '*' || c == '_') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(c == '_' ? "." : ".*");
+            } else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return regex.append('$').toString();
+    }
+
+    private static Part parsePart(String source, boolean allIgnoreCase, Class<?> entityClass,
+                                  Iterator<Integer> arguments, Method method) {
+        String text = source;
+        boolean ignoreCase = allIgnoreCase;
+        for (String suffix : new String[]{"IgnoringCase", "IgnoreCase"}) {
+            if (text.endsWith(suffix)) {
+                text = text.substring(0, text.length() - suffix.length());
+                ignoreCase = true;
+                break;
+            }
+        }
+
+        // 按后缀从长到短尝试，属性不存在时继续尝试更短的后缀，兼容loggedIn、isNull这类以关键字结尾的属性名
+        List<Object[]> candidates = new ArrayList<>();
+        for (Operator candidate : Operator.values()) {
+            for (String keyword : candidate.keywords) {
+                if (text.length() > keyword.length() && text.endsWith(keyword)) {
+                    candidates.add(new Object[]{candidate, text.substring(0, text.length() - keyword.length())});
+                }
+            }
+        }
+        candidates.sort((a, b) -> Integer.compare(((String) a[1]).length(), ((String) b[1]).length()));
+        candidates.add(new Object[]{Operator.EQUALS, text});
+
+        Operator operator = null;
+        String path = null;
+        for (Object[] candidate : candidates) {
+            path = resolvePath(entityClass, (String) candidate[1]);
+            if (path != null) {
+                operator = (Operator) candidate[0];
+                break;
+            }
+        }
+        if (operator == null) {
+            throw new IllegalArgumentException("实体" + entityClass.getSimpleName() + "中没有属性[" + text
+                    + "]: " + describe(method));
+        }
+
+        int argumentIndex = -1;
+        for (int i = 0; i < operator.arguments; i++) {
+            if (!arguments.hasNext()) {
+                throw new IllegalArgumentException("Repository方法参数个数少于条件需要的个数: " + describe(method));
+            }
+            int index = arguments.next();
+            if (i == 0) {
+                argumentIndex = index;
+            } else if (index != argumentIndex + i) {
+                throw new IllegalArgumentException("Between条件的两个参数必须相邻: " + describe(method));
+            }
+        }
+        return new Part(path, operator, ignoreCase, argumentIndex);
+    }
+
+    private static Sort parseSort(String source, Class<?> entityClass, Method method) {
+        List<Sort.Order> orders = new ArrayList<>();
+        Matcher matcher = Pattern.compile("(.+?)(Asc|Desc)(?=\\p{Lu}|$)").matcher(source);
+        int end = 0;
+        while (matcher.find()) {
+            String path = resolvePath(entityClass, matcher.group(1));
+            if (path == null) {
+                throw new IllegalArgumentException("排序属性不存在[" + matcher.group(1) + "]: " + describe(method));
+            }
+            orders.add("Desc".equals(matcher.group(2)) ? Sort.Order.desc(path) : Sort.Order.asc(path));
+            end = matcher.end();
+        }
+        if (end != source.length()) {
+            // 最后一个属性未声明方向时按升序
+            String rest = source.substring(end);
+            String path = resolvePath(entityClass, rest);
+            if (path == null) {
+                throw new IllegalArgumentException("排序属性不存在[" + rest + "]: " + describe(method));
+            }
+            orders.add(Sort.Order.asc(path));
+        }
+        return Sort.by(orders);
+    }
+
+    /**
+     * 按关键字拆分，关键字后必须是大写字母，避免拆开Order、Android等属性名
+     */
+    private static List<String> splitKeyword(String source, String keyword) {
+        List<String> parts = new ArrayList<>();
+        int start = 0;
+        int index = source.indexOf(keyword, 1);
+        while (index > 0) {
+            int next = index + keyword.length();
+            if (next < source.length() && Character.isUpperCase(source.charAt(next))) {
+                parts.add(source.substring(start, index));
+                start = next;
+            }
+            index = source.indexOf(keyword, next);
+        }
+        parts.add(source.substring(start));
+        return parts;
+    }
+
+    /**
+     * 把方法名中的属性解析为属性路径，支持Address_City和AddressCity两种嵌套写法
+     *
+     * @return 属性路径，不存在时返回null；实体为Map类型时不校验
+     */
+    static String resolvePath(Class<?> type, String property) {
+        if (property.isEmpty()) {
+            return null;
+        }
+        if (property.contains("_")) {
+            StringBuilder path = new StringBuilder();
+            Class<?> current = type;
+            for (String segment : property.split("_")) {
+                String resolved = resolvePath(current, segment);
+                if (resolved == null) {
+                    return null;
+                }
+                path.append(path.length() > 0 ? "." : "").append(resolved);
+                current = current == null || Map.class.isAssignableFrom(current) ? null : fieldType(current, resolved);
+            }
+            return path.toString();
+        }
+
+        String name = decapitalize(property);
+        if (type == null || Map.class.isAssignableFrom(type)) {
+            return name;
+        }
+        if (ReflectionUtils.findField(type, name) != null) {
+            return name;
+        }
+        // 从左到右尝试把驼峰名拆成嵌套属性
+        for (int i = 1; i < property.length(); i++) {
+            if (Character.isUpperCase(property.charAt(i))) {
+                String head = decapitalize(property.substring(0, i));
+                Field field = ReflectionUtils.findField(type, head);
+                if (field != null) {
+                    String tail = resolvePath(elementType(field), property.substring(i));
+                    if (tail != null) {
+                        return head + "." + tail;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Class<?> fieldType(Class<?> type, String path) {
+        Class<?> current = type;
+        for (String segment : path.split("\\.")) {
+            Field field = current != null ? ReflectionUtils.findField(current, segment) : null;
+            current = field != null ? elementType(field) : null;
+        }
+        return current;
+    }
+
+    /**
+     * 属性类型，集合属性取元素类型
+     */
+    private static Class<?> elementType(Field field) {
+        ResolvableType type = ResolvableType.forField(field);
+        if (type.isArray()) {
+            return type.getComponentType().resolve();
+        }
+        if (Collection.class.isAssignableFrom(field.getType())) {
+            return type.asCollection().getGeneric(0).resolve();
+        }
+        if (Map.class.isAssignableFrom(field.getType())) {
+            return Map.class;
+        }
+        return field.getType();
+    }
+
+    private static String decapitalize(String name) {
+        if (name.length() > 1 && Character.isUpperCase(name.charAt(1)) && Character.isUpperCase(name.charAt(0))) {
+            return name;
+        }
+        return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private static ResultShape resolveShape(Method method, Action action) {
+        Class<?> returnType = method.getReturnType();
+        if (returnType == void.class) {
+            return ResultShape.VOID;
+        }
+        if (action == Action.COUNT) {
+            return ResultShape.NUMBER;
+        }
+        if (action == Action.EXISTS) {
+            return ResultShape.BOOLEAN;
+        }
+        if (action == Action.DELETE) {
+            return Collection.class.isAssignableFrom(returnType) ? ResultShape.LIST : ResultShape.NUMBER;
+        }
+        if (Stream.class.isAssignableFrom(returnType)) {
+            return ResultShape.STREAM;
+        }
+        if (Page.class.isAssignableFrom(returnType)) {
+            return ResultShape.PAGE;
+        }
+        if (Optional.class.isAssignableFrom(returnType)) {
+            return ResultShape.OPTIONAL;
+        }
+        if (Iterable.class.isAssignableFrom(returnType) || returnType.isArray()) {
+            return ResultShape.LIST;
+        }
+        return ResultShape.SINGLE;
+    }
+
+    /**
+     * 返回值的元素类型：List&lt;T&gt;、Stream&lt;T&gt;、Optional&lt;T&gt;、Page&lt;T&gt;、T[]中的T或返回类型本身
+     */
+    private static Class<?> resolveResultType(Method method) {
+        ResolvableType returnType = ResolvableType.forMethodReturnType(method);
+        if (returnType.isArray()) {
+            return returnType.getComponentType().resolve();
+        }
+        Class<?> raw = returnType.resolve();
+        if (raw == null) {
+            return null;
+        }
+        if (Iterable.class.isAssignableFrom(raw) || Stream.class.isAssignableFrom(raw)
+                || Optional.class.isAssignableFrom(raw)) {
+            return returnType.getGeneric(0).resolve();
+        }
+        return raw;
+    }
+
+    private static Class<?> resolveEntity(Class<?> resultType, Class<?> repositoryEntity, Method method) {
+        if (repositoryEntity != null) {
+            return repositoryEntity;
+        }
+        if (resultType != null && !isSimpleType(resultType) && !resultType.isInterface()) {
+            return resultType;
+        }
+        throw new IllegalArgumentException("无法确定Repository方法的实体类型，请让Repository继承带实体泛型的接口: "
+                + describe(method));
+    }
+
+    /**
+     * 解析Repository级别的实体类型
+     * 优先取父接口的第一个泛型参数（如MongoRepository&lt;User, String&gt;），
+     * 否则取所有查询方法返回的唯一实体类型
+     *
+     * @param repositoryClass Repository接口
+     * @return 实体类型，无法确定时返回null
+     */
+    public static Class<?> resolveRepositoryEntity(Class<?> repositoryClass) {
+        for (ResolvableType parent : ResolvableType.forClass(repositoryClass).getInterfaces()) {
+            if (parent.hasGenerics()) {
+                Class<?> candidate = parent.getGeneric(0).resolve();
+                if (candidate != null && !isSimpleType(candidate) && !candidate.isInterface()) {
+                    return candidate;
+                }
+            }
+        }
+
+        Set<Class<?>> candidates = new HashSet<>();
+        for (Method method : repositoryClass.getMethods()) {
+            if (method.isDefault() || method.getDeclaringClass() == Object.class) {
+                continue;
+            }
+            Class<?> type = resolveResultType(method);
+            if (type != null && !isSimpleType(type) && !type.isInterface() && method.getName().matches("^(find|read|get|query|search|stream).*")) {
+                candidates.add(type);
+            }
+        }
+        return candidates.size() == 1 ? candidates.iterator().next() : null;
+    }
+
+    private static boolean isSimpleType(Class<?> type) {
+        return type.isPrimitive() || Number.class.isAssignableFrom(type) || CharSequence.class.isAssignableFrom(type)
+                || Boolean.class == type || Character.class == type || type.isEnum()
+                || java.util.Date.class.isAssignableFrom(type) || type.getName().startsWith("java.time.")
+                || Void.class == type || Object.class == type;
+    }
+
+    private static String describe(Method method) {
+        return method.getDeclaringClass().getSimpleName() + "." + method.getName()
+                + Arrays.toString(method.getParameterTypes()).replace('[', '(').replace(']', ')');
+    }
+
+    @Override
+    public String toString() {
+        return "DerivedMongoQuery[" + describe(method) + " -> " + action.name().toLowerCase(Locale.ROOT)
+                + " " + entityClass.getSimpleName() + "]";
+    }
+}
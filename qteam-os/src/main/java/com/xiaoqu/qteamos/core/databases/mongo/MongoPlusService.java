@@ -1,7 +1,10 @@
 package com.xiaoqu.qteamos.core.databases.mongo;
 
+import com.xiaoqu.qteamos.core.plugin.event.Event;
+import com.xiaoqu.qteamos.core.plugin.event.EventListener;
+import com.xiaoqu.qteamos.core.plugin.event.PluginEvent;
+import com.xiaoqu.qteamos.core.plugin.loader.DynamicClassLoader;
 import lombok.extern.slf4j.Slf4j;
-import org.bson.Document;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.data.domain.Page;
@@ -38,6 +41,16 @@ public class MongoPlusService {
 
     private final Map<String, MongoTemplate> mongoTemplates = new ConcurrentHashMap<>();
 
+    /**
+     * Repository实现缓存，键为"数据源名称#接口类名"
+     */
+    private final Map<String, Object> repositories = new ConcurrentHashMap<>();
+
+    /**
+     * 已解析的派生查询，所有数据源共用
+     */
+    private final Map<Method, DerivedMongoQuery> queryCache = new ConcurrentHashMap<>();
+
     @Autowired
     @Qualifier("primaryMongoTemplate")
     private MongoTemplate primaryMongoTemplate;
@@ -239,13 +252,13 @@ public class MongoPlusService {
      * @param repositoryClass Repository接口类
      * @return Repository接口实现
      */
-    @SuppressWarnings("unchecked")
     public <T> T getRepository(Class<T> repositoryClass) {
         return getRepository(repositoryClass, "primary");
     }
     
     /**
      * 获取指定数据源的Repository接口实现
+     * 方法按方法名派生查询条件，解析结果按Method缓存；返回的实现线程安全，按数据源缓存复用
      * @param repositoryClass Repository接口类
      * @param dataSourceName 数据源名称
      * @return Repository接口实现
@@ -254,97 +267,89 @@ public class MongoPlusService {
     public <T> T getRepository(Class<T> repositoryClass, String dataSourceName) {
         MongoTemplate template = getMongoTemplate(dataSourceName);
         
-        // 使用JDK动态代理创建Repository实现
-        return (T) Proxy.newProxyInstance(
-            repositoryClass.getClassLoader(),
-            new Class<?>[] { repositoryClass },
-            new MongoRepositoryInvocationHandler(template)
+        return (T) repositories.computeIfAbsent(dataSourceName + "#" + repositoryClass.getName(), key ->
+            // 使用JDK动态代理创建Repository实现
+            Proxy.newProxyInstance(
+                repositoryClass.getClassLoader(),
+                new Class<?>[] { repositoryClass },
+                new MongoRepositoryInvocationHandler(repositoryClass, template, queryCache)
+            )
         );
     }
     
+    /**
+     * 插件卸载后清除其Repository和查询缓存
+     */
+    @EventListener(topics = PluginEvent.TOPIC, types = PluginEvent.TYPE_UNLOADED)
+    public boolean onPluginUnloaded(Event event) {
+        if (event instanceof PluginEvent) {
+            String pluginId = ((PluginEvent) event).getPluginId();
+            repositories.values().removeIf(repository -> isLoadedBy(repository.getClass().getInterfaces()[0], pluginId));
+            queryCache.keySet().removeIf(method -> isLoadedBy(method.getDeclaringClass(), pluginId));
+        }
+        return true;
+    }
+    
+    private static boolean isLoadedBy(Class<?> type, String pluginId) {
+        ClassLoader classLoader = type.getClassLoader();
+        return classLoader instanceof DynamicClassLoader
+                && pluginId.equals(((DynamicClassLoader) classLoader).getPluginId());
+    }
+    
     /**
      * MongoDB Repository调用处理器
      */
     private static class MongoRepositoryInvocationHandler implements InvocationHandler {
         
+        private final Class<?> repositoryClass;
+        
         private final MongoTemplate mongoTemplate;
         
-        public MongoRepositoryInvocationHandler(MongoTemplate mongoTemplate) {
+        private final Map<Method, DerivedMongoQuery> queryCache;
+        
+        /**
+         * Repository级别的实体类型，由接口泛型或查询方法的返回类型确定
+         */
+        private final Class<?> repositoryEntity;
+        
+        public MongoRepositoryInvocationHandler(Class<?> repositoryClass, MongoTemplate mongoTemplate,
+                                                Map<Method, DerivedMongoQuery> queryCache) {
+            this.repositoryClass = repositoryClass;
             this.mongoTemplate = mongoTemplate;
+            this.queryCache = queryCache;
+            this.repositoryEntity = DerivedMongoQuery.resolveRepositoryEntity(repositoryClass);
         }
         
         @Override
         public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-            if (method.getName().equals("toString")) {
-                return "MongoRepositoryProxy";
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return "MongoRepositoryProxy[" + repositoryClass.getName() + "]";
+                }
             }
             
-            if (method.getName().equals("equals")) {
-                return proxy == args[0];
+            // 接口默认方法直接执行，可在其中组合派生查询
+            if (method.isDefault()) {
+                return InvocationHandler.invokeDefault(proxy, method, args);
             }
             
-            if (method.getName().equals("hashCode")) {
-                return System.identityHashCode(proxy);
+            DerivedMongoQuery query = queryCache.get(method);
+            if (query == null) {
+                query = queryCache.computeIfAbsent(method, m -> {
+                    try {
+                        return DerivedMongoQuery.compile(m, repositoryEntity);
+                    } catch (IllegalArgumentException e) {
+                        throw new UnsupportedOperationException("不支持的Repository方法: " + e.getMessage(), e);
+                    }
+                });
+                log.debug("解析MongoDB Repository方法: {}", query);
             }
-            
-            // 处理其他方法调用
-            // 这里可以根据方法名和参数解析具体的MongoDB操作
-            // 示例：假设方法名格式如 findByNameAndAge(String name, int age)
-            String methodName = method.getName();
-            
-            // 简单处理，实际情况下需要更复杂的解析逻辑
-            // 这里只是一个示例框架
-            log.debug("调用MongoDB Repository方法: {}", methodName);
-            
-            if (methodName.startsWith("findBy")) {
-                return handleFindBy(method, args);
-            } else if (methodName.startsWith("countBy")) {
-                return handleCountBy(method, args);
-            } else if (methodName.startsWith("deleteBy")) {
-                return handleDeleteBy(method, args);
-            }
-            
-            throw new UnsupportedOperationException("不支持的Repository方法: " + methodName);
-        }
-        
-        private Object handleFindBy(Method method, Object[] args) {
-            // 示例实现，实际应用中需要更复杂的解析
-            // 解析方法名为查询条件
-            Class<?> returnType = method.getReturnType();
-            Class<?> entityClass = extractEntityClass(method);
-            
-            Query query = new Query();
-            // 这里应该解析方法名为查询条件
-            
-            if (List.class.isAssignableFrom(returnType)) {
-                return mongoTemplate.find(query, entityClass);
-            } else {
-                return mongoTemplate.findOne(query, entityClass);
-            }
-        }
-        
-        private Object handleCountBy(Method method, Object[] args) {
-            // 示例实现
-            Class<?> entityClass = extractEntityClass(method);
-            Query query = new Query();
-            // 解析方法名为查询条件
-            
-            return mongoTemplate.count(query, entityClass);
-        }
-        
-        private Object handleDeleteBy(Method method, Object[] args) {
-            // 示例实现
-            Class<?> entityClass = extractEntityClass(method);
-            Query query = new Query();
-            // 解析方法名为查询条件
-            
-            return mongoTemplate.remove(query, entityClass).getDeletedCount();
-        }
-        
-        private Class<?> extractEntityClass(Method method) {
-            // 实际应用中需要从接口泛型或注解中提取
-            // 这里简单返回Document类型
-            return Document.class;
+            return query.execute(mongoTemplate, args);
         }
     }
-} 
\ No newline at end of file
+}
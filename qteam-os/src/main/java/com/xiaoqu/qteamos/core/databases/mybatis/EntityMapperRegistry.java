@@ -0,0 +1,298 @@
+package com.xiaoqu.qteamos.core.databases.mybatis;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.xiaoqu.qteamos.core.databases.exception.DatabaseException;
+import com.xiaoqu.qteamos.core.plugin.event.Event;
+import com.xiaoqu.qteamos.core.plugin.event.EventListener;
+import com.xiaoqu.qteamos.core.plugin.event.PluginEvent;
+import com.xiaoqu.qteamos.core.plugin.loader.DynamicClassLoader;
+import com.xiaoqu.qteamos.core.plugin.manager.PluginRegistry;
+import com.xiaoqu.qteamos.core.plugin.running.PluginInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.session.Configuration;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.ResolvableType;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * 实体与Mapper绑定注册表
+ * 实体到Mapper的绑定只解析一次；Mapper注册到应用共享的MyBatis配置中，
+ * Mapper XML和注入的CRUD语句只解析一次并被所有数据源共用（数据源由DynamicDataSource按上下文路由）。
+ * 插件加载时扫描插件包中的Mapper并增量注册，卸载时移除
+ *
+ * @author yangqijun
+ * @date 2025-05-03
+ */
+@Slf4j
+@Component
+public class EntityMapperRegistry {
+
+    /**
+     * 插件包中Mapper类文件的后缀
+     */
+    private static final String MAPPER_CLASS_SUFFIX = "Mapper.class";
+
+    @Autowired
+    private SqlSessionTemplate sqlSessionTemplate;
+
+    @Autowired
+    private PluginRegistry pluginRegistry;
+
+    /**
+     * 实体类到Mapper绑定
+     */
+    private final Map<Class<?>, MapperBinding> bindings = new ConcurrentHashMap<>(64);
+
+    /**
+     * 插件ID到其注册的Mapper类
+     */
+    private final Map<String, List<Class<?>>> pluginMappers = new ConcurrentHashMap<>();
+
+    /**
+     * 获取实体对应的Mapper
+     * 未注册时按约定查找：与实体同包的[实体名]Mapper，或上级包mapper子包下的[实体名]Mapper
+     *
+     * @param entityClass 实体类
+     * @param <T> 实体类型
+     * @return Mapper实例，线程安全，可参与Spring事务
+     */
+    @SuppressWarnings("unchecked")
+    public <T> BaseMapper<T> getMapper(Class<T> entityClass) {
+        MapperBinding binding = bindings.get(entityClass);
+        if (binding == null) {
+            binding = resolveByConvention(entityClass);
+        }
+        return (BaseMapper<T>) binding.mapper;
+    }
+
+    /**
+     * 获取已注册的Mapper实例
+     *
+     * @param mapperClass Mapper接口
+     * @param <M> Mapper类型
+     * @return Mapper实例
+     */
+    public <M> M getMapperInstance(Class<M> mapperClass) {
+        ensureRegistered(mapperClass);
+        return sqlSessionTemplate.getMapper(mapperClass);
+    }
+
+    /**
+     * 获取共享的SqlSessionTemplate
+     *
+     * @return SqlSessionTemplate
+     */
+    public SqlSessionTemplate getSqlSessionTemplate() {
+        return sqlSessionTemplate;
+    }
+
+    /**
+     * 注册Mapper
+     *
+     * @param mapperClass Mapper接口
+     * @param ownerPluginId 所属插件ID，系统Mapper为null
+     */
+    public void registerMapper(Class<?> mapperClass, String ownerPluginId) {
+        ensureRegistered(mapperClass);
+
+        Class<?> entityClass = resolveEntityClass(mapperClass);
+        if (entityClass == null) {
+            log.debug("Mapper未继承BaseMapper，只注册到MyBatis配置: {}", mapperClass.getName());
+            return;
+        }
+        bindings.put(entityClass, new MapperBinding(ownerPluginId, sqlSessionTemplate.getMapper(mapperClass)));
+        log.debug("注册实体Mapper: {} -> {}", entityClass.getName(), mapperClass.getName());
+    }
+
+    /**
+     * 扫描并注册插件包中的Mapper
+     *
+     * @param pluginInfo 插件信息
+     * @return 注册的Mapper数量
+     */
+    public int registerPluginMappers(PluginInfo pluginInfo) {
+        String pluginId = pluginInfo.getPluginId();
+        ClassLoader classLoader = pluginInfo.getClassLoader();
+        File pluginFile = pluginInfo.getPluginFile() != null ? pluginInfo.getPluginFile()
+                : pluginInfo.getJarPath() != null ? pluginInfo.getJarPath().toFile() : null;
+        if (classLoader == null || pluginFile == null || !pluginFile.isFile()) {
+            return 0;
+        }
+
+        List<Class<?>> registered = new ArrayList<>();
+        try (JarFile jar = new JarFile(pluginFile)) {
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+                if (!name.endsWith(MAPPER_CLASS_SUFFIX) || name.contains("$")) {
+                    continue;
+                }
+                String className = name.substring(0, name.length() - 6).replace('/', '.');
+                try {
+                    Class<?> clazz = classLoader.loadClass(className);
+                    if (clazz.isInterface() && BaseMapper.class.isAssignableFrom(clazz)) {
+                        registerMapper(clazz, pluginId);
+                        registered.add(clazz);
+                    }
+                } catch (ClassNotFoundException | LinkageError e) {
+                    log.debug("加载插件Mapper类失败: {}, {}", className, e.getMessage());
+                } catch (RuntimeException e) {
+                    log.warn("注册插件Mapper失败: pluginId={}, mapper={}, error={}", pluginId, className, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            log.error("扫描插件Mapper失败: {}", pluginId, e);
+        }
+
+        if (!registered.isEmpty()) {
+            pluginMappers.computeIfAbsent(pluginId, id -> new CopyOnWriteArrayList<>()).addAll(registered);
+            log.info("插件[{}]注册Mapper {}个", pluginId, registered.size());
+        }
+        return registered.size();
+    }
+
+    /**
+     * 移除插件注册的Mapper
+     *
+     * @param pluginId 插件ID
+     */
+    public void unregisterPluginMappers(String pluginId) {
+        bindings.values().removeIf(binding -> pluginId.equals(binding.ownerPluginId));
+        List<Class<?>> mappers = pluginMappers.remove(pluginId);
+        if (mappers == null) {
+            return;
+        }
+
+        Configuration configuration = sqlSessionTemplate.getConfiguration();
+        if (configuration instanceof MybatisConfiguration) {
+            synchronized (this) {
+                for (Class<?> mapperClass : mappers) {
+                    // 同时清除注入的语句和表信息，插件类加载器才能被回收
+                    ((MybatisConfiguration) configuration).removeMapper(mapperClass);
+                }
+            }
+        }
+        log.info("插件[{}]移除Mapper {}个", pluginId, mappers.size());
+    }
+
+    /**
+     * 插件加载后注册其Mapper
+     */
+    @EventListener(topics = PluginEvent.TOPIC, types = PluginEvent.TYPE_LOADED)
+    public boolean onPluginLoaded(Event event) {
+        if (event instanceof PluginEvent) {
+            String pluginId = ((PluginEvent) event).getPluginId();
+            pluginRegistry.getPlugin(pluginId).ifPresent(this::registerPluginMappers);
+        }
+        return true;
+    }
+
+    /**
+     * 插件卸载后移除其Mapper
+     */
+    @EventListener(topics = PluginEvent.TOPIC, types = PluginEvent.TYPE_UNLOADED)
+    public boolean onPluginUnloaded(Event event) {
+        if (event instanceof PluginEvent) {
+            unregisterPluginMappers(((PluginEvent) event).getPluginId());
+        }
+        return true;
+    }
+
+    /**
+     * 确保Mapper已注册到共享的MyBatis配置
+     * MyBatis配置的注册过程不是线程安全的，需要串行执行
+     */
+    private void ensureRegistered(Class<?> mapperClass) {
+        Configuration configuration = sqlSessionTemplate.getConfiguration();
+        if (configuration.hasMapper(mapperClass)) {
+            return;
+        }
+        synchronized (this) {
+            if (!configuration.hasMapper(mapperClass)) {
+                configuration.addMapper(mapperClass);
+            }
+        }
+    }
+
+    /**
+     * 按命名约定解析实体对应的Mapper
+     */
+    private synchronized MapperBinding resolveByConvention(Class<?> entityClass) {
+        MapperBinding binding = bindings.get(entityClass);
+        if (binding != null) {
+            return binding;
+        }
+
+        String packageName = entityClass.getPackageName();
+        String mapperName = entityClass.getSimpleName() + "Mapper";
+        List<String> candidates = new ArrayList<>(2);
+        candidates.add(packageName + "." + mapperName);
+        int lastDot = packageName.lastIndexOf('.');
+        if (lastDot > 0) {
+            candidates.add(packageName.substring(0, lastDot) + ".mapper." + mapperName);
+        }
+
+        // 使用实体自身的类加载器，插件实体可以找到插件内的Mapper
+        ClassLoader classLoader = entityClass.getClassLoader();
+        for (String candidate : candidates) {
+            try {
+                Class<?> mapperClass = Class.forName(candidate, false, classLoader);
+                if (BaseMapper.class.isAssignableFrom(mapperClass)
+                        && entityClass.equals(resolveEntityClass(mapperClass))) {
+                    // 插件类加载器加载的Mapper归属该插件，卸载时一并移除
+                    String ownerPluginId = classLoader instanceof DynamicClassLoader
+                            ? ((DynamicClassLoader) classLoader).getPluginId() : null;
+                    registerMapper(mapperClass, ownerPluginId);
+                    if (ownerPluginId != null) {
+                        pluginMappers.computeIfAbsent(ownerPluginId, id -> new CopyOnWriteArrayList<>()).add(mapperClass);
+                    }
+                    return bindings.get(entityClass);
+                }
+            } catch (ClassNotFoundException e) {
+                // 尝试下一个候选
+            }
+        }
+        throw new DatabaseException("找不到实体对应的Mapper类: " + String.join(", ", candidates));
+    }
+
+    /**
+     * 解析BaseMapper的实体泛型参数
+     */
+    private static Class<?> resolveEntityClass(Class<?> mapperClass) {
+        if (!BaseMapper.class.isAssignableFrom(mapperClass)) {
+            return null;
+        }
+        return ResolvableType.forClass(mapperClass).as(BaseMapper.class).getGeneric(0).resolve();
+    }
+
+    /**
+     * 实体与Mapper绑定
+     */
+    private static final class MapperBinding {
+
+        private final String ownerPluginId;
+
+        /**
+         * 基于SqlSessionTemplate的Mapper代理，线程安全，每次调用自动获取/复用会话
+         */
+        private final Object mapper;
+
+        private MapperBinding(String ownerPluginId, Object mapper) {
+            this.ownerPluginId = ownerPluginId;
+            this.mapper = mapper;
+        }
+    }
+}
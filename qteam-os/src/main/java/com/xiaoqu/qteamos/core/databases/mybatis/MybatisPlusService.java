@@ -9,6 +9,10 @@ import com.xiaoqu.qteamos.core.databases.annotation.DataSource;
 import com.xiaoqu.qteamos.core.databases.core.DataSourceContextHolder;
 import com.xiaoqu.qteamos.core.databases.core.DataSourceManager;
 import com.xiaoqu.qteamos.core.databases.exception.DatabaseException;
+import com.xiaoqu.qteamos.core.plugin.event.Event;
+import com.xiaoqu.qteamos.core.plugin.event.EventListener;
+import com.xiaoqu.qteamos.core.plugin.event.PluginEvent;
+import com.xiaoqu.qteamos.core.plugin.loader.DynamicClassLoader;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
@@ -16,7 +20,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -24,7 +30,9 @@ import java.util.function.Function;
 
 /**
  * MyBatis Plus服务类
- * 提供获取指定数据源的Mapper功能
+ * 提供获取指定数据源的Mapper功能。
+ * 所有数据源共用应用的MyBatis配置和SqlSessionTemplate，按调用时的数据源上下文路由，
+ * 不再为每个数据源重复扫描和解析Mapper XML；实体到Mapper的绑定由EntityMapperRegistry解析一次后缓存
  *
  * @author yangqijun
  * @date 2025-05-03
@@ -39,8 +47,11 @@ public class MybatisPlusService {
     @Autowired
     private DataSourceManager dataSourceManager;
 
-    // 缓存SqlSessionFactory，避免重复创建
-    private final Map<String, SqlSessionFactory> sessionFactoryCache = new ConcurrentHashMap<>();
+    @Autowired
+    private EntityMapperRegistry mapperRegistry;
+
+    // 缓存绑定到数据源的Mapper代理，键为"数据源名称#Mapper类名"
+    private final Map<String, Object> mapperCache = new ConcurrentHashMap<>();
 
     /**
      * 获取默认数据源的SqlSessionFactory
@@ -53,63 +64,15 @@ public class MybatisPlusService {
 
     /**
      * 获取指定数据源的SqlSessionFactory
+     * 所有数据源共用同一个SqlSessionFactory，会话在获取连接时按当前数据源上下文路由，
+     * 因此打开的会话需在DataSourceContextHolder切换到该数据源后使用
      *
      * @param dataSourceName 数据源名称
      * @return SqlSessionFactory
      */
     public SqlSessionFactory getSqlSessionFactory(String dataSourceName) {
-        return sessionFactoryCache.computeIfAbsent(dataSourceName, name -> {
-            try {
-                // 从Spring上下文中获取SqlSessionFactory
-                // 这里假设使用的是Spring的SqlSessionFactoryBean配置的SqlSessionFactory
-                
-                // 获取数据源并设置线程上下文
-                DataSourceContextHolder.setDataSource(name);
-                
-                // 获取对应数据源
-                javax.sql.DataSource dataSource = dataSourceManager.getDataSource(name);
-                if (dataSource == null) {
-                    throw new DatabaseException("无法获取数据源: " + name);
-                }
-                
-                // 创建新的SqlSessionFactory
-                try {
-                    log.info("为数据源{}创建SqlSessionFactory", name);
-                    
-                    // 使用MyBatis-Spring提供的SqlSessionFactoryBean创建SqlSessionFactory
-                    org.mybatis.spring.SqlSessionFactoryBean factoryBean = new org.mybatis.spring.SqlSessionFactoryBean();
-                    
-                    // 设置数据源
-                    factoryBean.setDataSource(dataSource);
-                    
-                    // 设置MyBatis配置
-                    org.apache.ibatis.session.Configuration configuration = new org.apache.ibatis.session.Configuration();
-                    configuration.setCacheEnabled(true);
-                    configuration.setLazyLoadingEnabled(false);
-                    configuration.setMapUnderscoreToCamelCase(true);
-                    factoryBean.setConfiguration(configuration);
-                    
-                    // 设置类型别名包
-                    factoryBean.setTypeAliasesPackage("com.xiaoqu.qteamos.**.entity");
-                    
-                    // 设置映射器位置
-                    org.springframework.core.io.Resource[] resources = new org.springframework.core.io.support.PathMatchingResourcePatternResolver()
-                            .getResources("classpath*:mapper/**/*.xml");
-                    factoryBean.setMapperLocations(resources);
-                    
-                    // 创建并返回SqlSessionFactory
-                    return factoryBean.getObject();
-                } catch (Exception e) {
-                    log.error("创建SqlSessionFactory失败: {}", name, e);
-                    throw new DatabaseException("创建SqlSessionFactory失败: " + e.getMessage(), e);
-                }
-            } catch (Exception e) {
-                log.error("获取SqlSessionFactory失败: {}", name, e);
-                throw new DatabaseException("获取SqlSessionFactory失败: " + e.getMessage(), e);
-            } finally {
-                DataSourceContextHolder.clearDataSource();
-            }
-        });
+        checkDataSource(dataSourceName);
+        return mapperRegistry.getSqlSessionTemplate().getSqlSessionFactory();
     }
 
     /**
@@ -125,30 +88,43 @@ public class MybatisPlusService {
 
     /**
      * 获取指定数据源的Mapper
+     * 返回的Mapper线程安全，每次方法调用都切换到指定数据源执行，可缓存复用
      *
      * @param mapperClass Mapper接口类
      * @param dataSourceName 数据源名称
      * @param <T> Mapper类型
      * @return Mapper实例
      */
+    @SuppressWarnings("unchecked")
     public <T> T getMapper(Class<T> mapperClass, String dataSourceName) {
-        try {
-            // 设置当前线程数据源
-            DataSourceContextHolder.setDataSource(dataSourceName);
-            
-            // 获取SqlSessionFactory
-            SqlSessionFactory sqlSessionFactory = getSqlSessionFactory(dataSourceName);
-            if (sqlSessionFactory == null) {
-                throw new DatabaseException("无法获取数据源的SqlSessionFactory: " + dataSourceName);
-            }
-            
-            // 创建SqlSession并获取Mapper
-            try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
-                return sqlSession.getMapper(mapperClass);
-            }
-        } finally {
-            DataSourceContextHolder.clearDataSource();
+        checkDataSource(dataSourceName);
+        return (T) mapperCache.computeIfAbsent(dataSourceName + "#" + mapperClass.getName(), key -> {
+            T target = mapperRegistry.getMapperInstance(mapperClass);
+            InvocationHandler handler = (proxy, method, args) -> {
+                DataSourceContextHolder.push(dataSourceName);
+                try {
+                    return method.invoke(target, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getTargetException();
+                } finally {
+                    DataSourceContextHolder.poll();
+                }
+            };
+            return Proxy.newProxyInstance(mapperClass.getClassLoader(), new Class<?>[]{mapperClass}, handler);
+        });
+    }
+
+    /**
+     * 插件卸载后清除其Mapper代理缓存
+     */
+    @EventListener(topics = PluginEvent.TOPIC, types = PluginEvent.TYPE_UNLOADED)
+    public boolean onPluginUnloaded(Event event) {
+        if (event instanceof PluginEvent) {
+            String pluginId = ((PluginEvent) event).getPluginId();
+            mapperCache.values().removeIf(mapper -> mapper.getClass().getClassLoader() instanceof DynamicClassLoader
+                    && pluginId.equals(((DynamicClassLoader) mapper.getClass().getClassLoader()).getPluginId()));
         }
+        return true;
     }
 
     /**
@@ -172,31 +148,12 @@ public class MybatisPlusService {
      */
     @DataSource
     public <T> List<T> selectList(String dataSourceName, Class<T> entityClass, Wrapper<T> queryWrapper) {
+        BaseMapper<T> mapper = resolveMapper(dataSourceName, entityClass);
+        DataSourceContextHolder.push(dataSourceName);
         try {
-            DataSourceContextHolder.setDataSource(dataSourceName);
-            
-            // 获取对应的SqlSession和Mapper
-            SqlSessionFactory sqlSessionFactory = getSqlSessionFactory(dataSourceName);
-            if (sqlSessionFactory == null) {
-                throw new DatabaseException("无法获取数据源的SqlSessionFactory: " + dataSourceName);
-            }
-            
-            try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
-                // 尝试获取BaseMapper
-                // 约定Mapper接口命名为 [EntityName]Mapper
-                String mapperClassName = entityClass.getPackage().getName() + "." + entityClass.getSimpleName() + "Mapper";
-                try {
-                    Class<?> mapperClass = Class.forName(mapperClassName);
-                    @SuppressWarnings("unchecked")
-                    BaseMapper<T> mapper = (BaseMapper<T>) sqlSession.getMapper(mapperClass);
-                    return mapper.selectList(queryWrapper);
-                } catch (ClassNotFoundException e) {
-                    log.error("找不到Mapper类: {}", mapperClassName, e);
-                    throw new DatabaseException("找不到Mapper类: " + mapperClassName);
-                }
-            }
+            return mapper.selectList(queryWrapper);
         } finally {
-            DataSourceContextHolder.clearDataSource();
+            DataSourceContextHolder.poll();
         }
     }
 
@@ -212,30 +169,12 @@ public class MybatisPlusService {
      */
     @DataSource
     public <T> IPage<T> selectPage(String dataSourceName, Page<T> page, Class<T> entityClass, Wrapper<T> queryWrapper) {
+        BaseMapper<T> mapper = resolveMapper(dataSourceName, entityClass);
+        DataSourceContextHolder.push(dataSourceName);
         try {
-            DataSourceContextHolder.setDataSource(dataSourceName);
-            
-            // 获取对应的SqlSession和Mapper
-            SqlSessionFactory sqlSessionFactory = getSqlSessionFactory(dataSourceName);
-            if (sqlSessionFactory == null) {
-                throw new DatabaseException("无法获取数据源的SqlSessionFactory: " + dataSourceName);
-            }
-            
-            try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
-                // 尝试获取BaseMapper
-                String mapperClassName = entityClass.getPackage().getName() + "." + entityClass.getSimpleName() + "Mapper";
-                try {
-                    Class<?> mapperClass = Class.forName(mapperClassName);
-                    @SuppressWarnings("unchecked")
-                    BaseMapper<T> mapper = (BaseMapper<T>) sqlSession.getMapper(mapperClass);
-                    return mapper.selectPage(page, queryWrapper);
-                } catch (ClassNotFoundException e) {
-                    log.error("找不到Mapper类: {}", mapperClassName, e);
-                    throw new DatabaseException("找不到Mapper类: " + mapperClassName);
-                }
-            }
+            return mapper.selectPage(page, queryWrapper);
         } finally {
-            DataSourceContextHolder.clearDataSource();
+            DataSourceContextHolder.poll();
         }
     }
 
@@ -248,33 +187,26 @@ public class MybatisPlusService {
      * @return 操作结果
      */
     public <T> T executeTransaction(String dataSourceName, Function<SqlSession, T> action) {
+        SqlSessionFactory sqlSessionFactory = getSqlSessionFactory(dataSourceName);
+
+        // 设置当前线程数据源，会话在首次执行语句时按此获取连接
+        DataSourceContextHolder.push(dataSourceName);
         SqlSession sqlSession = null;
         try {
-            // 设置当前线程数据源
-            DataSourceContextHolder.setDataSource(dataSourceName);
-            
-            // 获取SqlSessionFactory
-            SqlSessionFactory sqlSessionFactory = getSqlSessionFactory(dataSourceName);
-            if (sqlSessionFactory == null) {
-                throw new DatabaseException("无法获取数据源的SqlSessionFactory: " + dataSourceName);
-            }
-            
             // 创建SqlSession并开始事务
             sqlSession = sqlSessionFactory.openSession(false);
-            
+
             try {
                 // 执行事务操作
                 T result = action.apply(sqlSession);
-                
+
                 // 提交事务
                 sqlSession.commit();
-                
+
                 return result;
             } catch (Exception e) {
                 // 回滚事务
-                if (sqlSession != null) {
-                    sqlSession.rollback();
-                }
+                sqlSession.rollback();
                 throw e;
             }
         } finally {
@@ -282,9 +214,9 @@ public class MybatisPlusService {
             if (sqlSession != null) {
                 sqlSession.close();
             }
-            
-            // 清除数据源上下文
-            DataSourceContextHolder.clearDataSource();
+
+            // 恢复外层数据源
+            DataSourceContextHolder.poll();
         }
     }
 
@@ -298,30 +230,12 @@ public class MybatisPlusService {
      */
     @DataSource
     public <T> boolean insert(String dataSourceName, T entity) {
+        BaseMapper<T> mapper = resolveMapper(dataSourceName, entityClassOf(entity));
+        DataSourceContextHolder.push(dataSourceName);
         try {
-            DataSourceContextHolder.setDataSource(dataSourceName);
-            
-            // 获取对应的SqlSession和Mapper
-            SqlSessionFactory sqlSessionFactory = getSqlSessionFactory(dataSourceName);
-            if (sqlSessionFactory == null) {
-                throw new DatabaseException("无法获取数据源的SqlSessionFactory: " + dataSourceName);
-            }
-            
-            try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
-                // 尝试获取BaseMapper
-                String mapperClassName = entity.getClass().getPackage().getName() + "." + entity.getClass().getSimpleName() + "Mapper";
-                try {
-                    Class<?> mapperClass = Class.forName(mapperClassName);
-                    @SuppressWarnings("unchecked")
-                    BaseMapper<T> mapper = (BaseMapper<T>) sqlSession.getMapper(mapperClass);
-                    return mapper.insert(entity) > 0;
-                } catch (ClassNotFoundException e) {
-                    log.error("找不到Mapper类: {}", mapperClassName, e);
-                    throw new DatabaseException("找不到Mapper类: " + mapperClassName);
-                }
-            }
+            return mapper.insert(entity) > 0;
         } finally {
-            DataSourceContextHolder.clearDataSource();
+            DataSourceContextHolder.poll();
         }
     }
 
@@ -336,30 +250,12 @@ public class MybatisPlusService {
      */
     @DataSource
     public <T> boolean update(String dataSourceName, T entity, Wrapper<T> updateWrapper) {
+        BaseMapper<T> mapper = resolveMapper(dataSourceName, entityClassOf(entity));
+        DataSourceContextHolder.push(dataSourceName);
         try {
-            DataSourceContextHolder.setDataSource(dataSourceName);
-            
-            // 获取对应的SqlSession和Mapper
-            SqlSessionFactory sqlSessionFactory = getSqlSessionFactory(dataSourceName);
-            if (sqlSessionFactory == null) {
-                throw new DatabaseException("无法获取数据源的SqlSessionFactory: " + dataSourceName);
-            }
-            
-            try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
-                // 尝试获取BaseMapper
-                String mapperClassName = entity.getClass().getPackage().getName() + "." + entity.getClass().getSimpleName() + "Mapper";
-                try {
-                    Class<?> mapperClass = Class.forName(mapperClassName);
-                    @SuppressWarnings("unchecked")
-                    BaseMapper<T> mapper = (BaseMapper<T>) sqlSession.getMapper(mapperClass);
-                    return mapper.update(entity, updateWrapper) > 0;
-                } catch (ClassNotFoundException e) {
-                    log.error("找不到Mapper类: {}", mapperClassName, e);
-                    throw new DatabaseException("找不到Mapper类: " + mapperClassName);
-                }
-            }
+            return mapper.update(entity, updateWrapper) > 0;
         } finally {
-            DataSourceContextHolder.clearDataSource();
+            DataSourceContextHolder.poll();
         }
     }
 
@@ -374,30 +270,34 @@ public class MybatisPlusService {
      */
     @DataSource
     public <T> boolean delete(String dataSourceName, Class<T> entityClass, Wrapper<T> queryWrapper) {
+        BaseMapper<T> mapper = resolveMapper(dataSourceName, entityClass);
+        DataSourceContextHolder.push(dataSourceName);
         try {
-            DataSourceContextHolder.setDataSource(dataSourceName);
-            
-            // 获取对应的SqlSession和Mapper
-            SqlSessionFactory sqlSessionFactory = getSqlSessionFactory(dataSourceName);
-            if (sqlSessionFactory == null) {
-                throw new DatabaseException("无法获取数据源的SqlSessionFactory: " + dataSourceName);
-            }
-            
-            try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
-                // 尝试获取BaseMapper
-                String mapperClassName = entityClass.getPackage().getName() + "." + entityClass.getSimpleName() + "Mapper";
-                try {
-                    Class<?> mapperClass = Class.forName(mapperClassName);
-                    @SuppressWarnings("unchecked")
-                    BaseMapper<T> mapper = (BaseMapper<T>) sqlSession.getMapper(mapperClass);
-                    return mapper.delete(queryWrapper) > 0;
-                } catch (ClassNotFoundException e) {
-                    log.error("找不到Mapper类: {}", mapperClassName, e);
-                    throw new DatabaseException("找不到Mapper类: " + mapperClassName);
-                }
-            }
+            return mapper.delete(queryWrapper) > 0;
         } finally {
-            DataSourceContextHolder.clearDataSource();
+            DataSourceContextHolder.poll();
+        }
+    }
+
+    /**
+     * 校验数据源并获取实体对应的Mapper
+     */
+    private <T> BaseMapper<T> resolveMapper(String dataSourceName, Class<T> entityClass) {
+        checkDataSource(dataSourceName);
+        return mapperRegistry.getMapper(entityClass);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Class<T> entityClassOf(T entity) {
+        return (Class<T>) entity.getClass();
+    }
+
+    /**
+     * 校验数据源是否存在
+     */
+    private void checkDataSource(String dataSourceName) {
+        if (!primaryDataSourceName.equals(dataSourceName) && !dataSourceManager.containsDataSource(dataSourceName)) {
+            throw new DatabaseException("无法获取数据源: " + dataSourceName);
         }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,255 @@
+package com.xiaoqu.qteamos.core.databases.stat;
+
+import org.springframework.jdbc.datasource.ConnectionProxy;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * 统计连接、语句和结果集的动态代理
+ * 连接代理包装创建的语句；语句代理为execute系列方法计时并记录预编译参数；
+ * 结果集代理统计next读取的行数，在结果集或语句关闭时计入对应SQL
+ *
+ * @author yangqijun
+ * @date 2025-05-03
+ */
+final class InstrumentedConnections {
+
+    private InstrumentedConnections() {
+    }
+
+    static Connection wrap(Connection connection, SqlStatCollector collector) {
+        if (connection == null || Proxy.isProxyClass(connection.getClass())
+                && Proxy.getInvocationHandler(connection) instanceof ConnectionHandler) {
+            return connection;
+        }
+        return (Connection) Proxy.newProxyInstance(ConnectionProxy.class.getClassLoader(),
+                new Class<?>[]{ConnectionProxy.class}, new ConnectionHandler(connection, collector));
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    /**
+     * 连接代理
+     */
+    private static final class ConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+
+        private final SqlStatCollector collector;
+
+        ConnectionHandler(Connection target, SqlStatCollector collector) {
+            this.target = target;
+            this.collector = collector;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "InstrumentedConnection " + target;
+                case "getTargetConnection":
+                    return target;
+                default:
+                    break;
+            }
+
+            Object result = invokeTarget(target, method, args);
+            switch (method.getName()) {
+                case "createStatement":
+                    return wrapStatement(Statement.class, (Statement) result, null);
+                case "prepareStatement":
+                    return wrapStatement(PreparedStatement.class, (Statement) result, (String) args[0]);
+                case "prepareCall":
+                    return wrapStatement(CallableStatement.class, (Statement) result, (String) args[0]);
+                default:
+                    return result;
+            }
+        }
+
+        private Object wrapStatement(Class<? extends Statement> type, Statement statement, String sql) {
+            return Proxy.newProxyInstance(ConnectionProxy.class.getClassLoader(), new Class<?>[]{type},
+                    new StatementHandler(statement, sql, collector));
+        }
+    }
+
+    /**
+     * 语句代理
+     */
+    private static final class StatementHandler implements InvocationHandler {
+
+        private final Statement target;
+
+        private final String preparedSql;
+
+        private final SqlStatCollector collector;
+
+        private Object[] parameters;
+
+        private String lastBatchSql;
+
+        private ResultSetHandler openResultSet;
+
+        StatementHandler(Statement target, String preparedSql, SqlStatCollector collector) {
+            this.target = target;
+            this.preparedSql = preparedSql;
+            this.collector = collector;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "InstrumentedStatement " + target;
+                case "close":
+                    flushResultSet();
+                    return invokeTarget(target, method, args);
+                case "clearParameters":
+                    parameters = null;
+                    return invokeTarget(target, method, args);
+                case "addBatch":
+                    if (args != null && args.length == 1 && args[0] instanceof String) {
+                        lastBatchSql = (String) args[0];
+                    }
+                    return invokeTarget(target, method, args);
+                case "getResultSet":
+                    return wrapResultSet(invokeTarget(target, method, args), openResultSet);
+                default:
+                    break;
+            }
+            if (name.startsWith("execute")) {
+                return execute(method, args);
+            }
+            if (preparedSql != null && name.startsWith("set") && args != null && args.length >= 2
+                    && args[0] instanceof Integer && collector.isCaptureParameters()) {
+                captureParameter((Integer) args[0], args[1]);
+            }
+            return invokeTarget(target, method, args);
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            flushResultSet();
+            String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0]
+                    : preparedSql != null ? preparedSql : lastBatchSql;
+
+            SqlStatCollector.PluginStats plugin = collector.currentPlugin();
+            plugin.enter();
+            long start = System.nanoTime();
+            boolean failed = true;
+            Object result;
+            try {
+                result = invokeTarget(target, method, args);
+                failed = false;
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                plugin.exit();
+                SqlStatCollector.SqlStats stats = collector.record(plugin, sql, elapsed, failed,
+                        preparedSql != null ? parameters : null);
+                openResultSet = new ResultSetHandler(stats);
+            }
+            if ("executeBatch".equals(method.getName()) || "executeLargeBatch".equals(method.getName())) {
+                lastBatchSql = null;
+            }
+            return wrapResultSet(result, openResultSet);
+        }
+
+        private void captureParameter(int index, Object value) {
+            if (index < 1 || index > 65535) {
+                return;
+            }
+            if (parameters == null) {
+                parameters = new Object[Math.max(index, 8)];
+            } else if (parameters.length < index) {
+                parameters = Arrays.copyOf(parameters, Math.max(index, parameters.length * 2));
+            }
+            parameters[index - 1] = value;
+        }
+
+        private Object wrapResultSet(Object result, ResultSetHandler handler) {
+            if (!(result instanceof ResultSet) || handler == null) {
+                return result;
+            }
+            handler.target = (ResultSet) result;
+            return Proxy.newProxyInstance(ConnectionProxy.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                    handler);
+        }
+
+        private void flushResultSet() {
+            if (openResultSet != null) {
+                openResultSet.flush();
+                openResultSet = null;
+            }
+        }
+    }
+
+    /**
+     * 结果集代理，统计读取行数
+     */
+    private static final class ResultSetHandler implements InvocationHandler {
+
+        private final SqlStatCollector.SqlStats stats;
+
+        private ResultSet target;
+
+        private long rows;
+
+        ResultSetHandler(SqlStatCollector.SqlStats stats) {
+            this.stats = stats;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "InstrumentedResultSet " + target;
+                case "next":
+                    Object hasNext = invokeTarget(target, method, args);
+                    if (Boolean.TRUE.equals(hasNext)) {
+                        rows++;
+                    }
+                    return hasNext;
+                case "close":
+                    flush();
+                    return invokeTarget(target, method, args);
+                default:
+                    return invokeTarget(target, method, args);
+            }
+        }
+
+        /**
+         * 计入读取行数，结果集与语句都可能触发，只计一次增量
+         */
+        void flush() {
+            long pending = rows;
+            rows = 0;
+            stats.addRows(pending);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.xiaoqu.qteamos.core.databases.stat;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 耗时直方图
+ * 以微秒为单位按2的幂分桶，记录无锁，百分位返回所在桶的上界，误差不超过一倍，足以区分快慢SQL
+ *
+ * @author yangqijun
+ * @date 2025-05-03
+ */
+public class LatencyHistogram {
+
+    /**
+     * 桶数，最后一个桶容纳约18分钟以上的耗时
+     */
+    private static final int BUCKETS = 32;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder totalNanos = new LongAdder();
+
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * 记录一次耗时
+     *
+     * @param nanos 耗时(纳秒)
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos) / 1000;
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        buckets.incrementAndGet(bucket);
+        count.increment();
+        totalNanos.add(nanos);
+        if (nanos > maxNanos.get()) {
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * 累计耗时(毫秒)
+     */
+    public double getTotalMillis() {
+        return totalNanos.sum() / 1_000_000d;
+    }
+
+    /**
+     * 平均耗时(毫秒)
+     */
+    public double getMeanMillis() {
+        long n = count.sum();
+        return n == 0 ? 0 : totalNanos.sum() / 1_000_000d / n;
+    }
+
+    /**
+     * 最大耗时(毫秒)
+     */
+    public double getMaxMillis() {
+        return maxNanos.get() / 1_000_000d;
+    }
+
+    /**
+     * 估算百分位耗时
+     *
+     * @param percentile 百分位，0到1之间
+     * @return 耗时(毫秒)
+     */
+    public double getPercentileMillis(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(Math.min(1d, Math.max(0d, percentile)) * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank && snapshot[i] > 0) {
+                // 第i个桶容纳[2^(i-1), 2^i)微秒，不超过实际最大值
+                double upperMillis = (i == 0 ? 1 : (1L << i)) / 1000d;
+                return Math.min(upperMillis, getMaxMillis());
+            }
+        }
+        return getMaxMillis();
+    }
+}
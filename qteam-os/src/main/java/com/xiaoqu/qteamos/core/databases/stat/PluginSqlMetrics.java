@@ -0,0 +1,88 @@
+package com.xiaoqu.qteamos.core.databases.stat;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 插件SQL统计信息
+ *
+ * @author yangqijun
+ * @date 2025-05-03
+ */
+@Data
+@Accessors(chain = true)
+public class PluginSqlMetrics {
+
+    /**
+     * 插件ID，不在插件上下文中执行的SQL归为system
+     */
+    private String pluginId;
+
+    /**
+     * 执行次数
+     */
+    private long executions;
+
+    /**
+     * 失败次数
+     */
+    private long errors;
+
+    /**
+     * 读取行数
+     */
+    private long rowsRead;
+
+    /**
+     * 慢查询次数
+     */
+    private long slowQueries;
+
+    /**
+     * 正在执行的语句数
+     */
+    private int inFlight;
+
+    /**
+     * 历史最大同时执行的语句数
+     */
+    private int peakInFlight;
+
+    /**
+     * 累计耗时(毫秒)，反映插件占用连接执行SQL的总时长
+     */
+    private double totalMillis;
+
+    /**
+     * 平均耗时(毫秒)
+     */
+    private double meanMillis;
+
+    /**
+     * 50分位耗时(毫秒)
+     */
+    private double p50Millis;
+
+    /**
+     * 95分位耗时(毫秒)
+     */
+    private double p95Millis;
+
+    /**
+     * 99分位耗时(毫秒)
+     */
+    private double p99Millis;
+
+    /**
+     * 最大耗时(毫秒)
+     */
+    private double maxMillis;
+
+    /**
+     * 按累计耗时排序的SQL统计
+     */
+    private List<SqlMetrics> topSql = new ArrayList<>();
+}
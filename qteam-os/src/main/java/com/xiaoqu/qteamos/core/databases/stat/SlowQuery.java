@@ -0,0 +1,52 @@
+package com.xiaoqu.qteamos.core.databases.stat;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.util.List;
+
+/**
+ * 慢查询记录
+ *
+ * @author yangqijun
+ * @date 2025-05-03
+ */
+@Data
+@Accessors(chain = true)
+public class SlowQuery {
+
+    /**
+     * 插件ID
+     */
+    private String pluginId;
+
+    /**
+     * 原始SQL
+     */
+    private String sql;
+
+    /**
+     * 参数值，未采集时为null
+     */
+    private List<String> parameters;
+
+    /**
+     * 耗时(毫秒)
+     */
+    private double elapsedMillis;
+
+    /**
+     * 是否执行失败
+     */
+    private boolean failed;
+
+    /**
+     * 执行线程
+     */
+    private String thread;
+
+    /**
+     * 完成时间戳
+     */
+    private long timestamp;
+}
@@ -0,0 +1,55 @@
+package com.xiaoqu.qteamos.core.databases.stat;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+/**
+ * 单条归一化SQL的统计信息
+ *
+ * @author yangqijun
+ * @date 2025-05-03
+ */
+@Data
+@Accessors(chain = true)
+public class SqlMetrics {
+
+    /**
+     * 归一化后的SQL
+     */
+    private String sql;
+
+    /**
+     * 执行次数
+     */
+    private long executions;
+
+    /**
+     * 失败次数
+     */
+    private long errors;
+
+    /**
+     * 读取行数
+     */
+    private long rowsRead;
+
+    /**
+     * 累计耗时(毫秒)
+     */
+    private double totalMillis;
+
+    /**
+     * 平均耗时(毫秒)
+     */
+    private double meanMillis;
+
+    /**
+     * 95分位耗时(毫秒)
+     */
+    private double p95Millis;
+
+    /**
+     * 最大耗时(毫秒)
+     */
+    private double maxMillis;
+}
@@ -0,0 +1,152 @@
+package com.xiaoqu.qteamos.core.databases.stat;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SQL归一化
+ * 把字符串和数字字面量替换为?，合并空白，把IN (?, ?, ...)折叠为IN (?)，
+ * 使只有参数不同的语句归为同一条统计。预编译语句的SQL文本数量有限，归一化结果按原文缓存
+ *
+ * @author yangqijun
+ * @date 2025-05-03
+ */
+public final class SqlNormalizer {
+
+    /**
+     * 缓存上限，拼接字面量的SQL过多时不再缓存，避免占用内存
+     */
+    private static final int CACHE_LIMIT = 4096;
+
+    /**
+     * 归一化结果的最大长度
+     */
+    private static final int MAX_LENGTH = 2048;
+
+    private static final Map<String, String> CACHE = new ConcurrentHashMap<>(256);
+
+    private SqlNormalizer() {
+    }
+
+    /**
+     * 归一化SQL
+     *
+     * @param sql 原始SQL
+     * @return 归一化后的SQL
+     */
+    public static String normalize(String sql) {
+        if (sql == null) {
+            return "";
+        }
+        String normalized = CACHE.get(sql);
+        if (normalized != null) {
+            return normalized;
+        }
+        normalized = doNormalize(sql);
+        if (CACHE.size() < CACHE_LIMIT) {
+            CACHE.put(sql, normalized);
+        }
+        return normalized;
+    }
+
+    private static String doNormalize(String sql) {
+        int length = sql.length();
+        StringBuilder out = new StringBuilder(Math.min(length, MAX_LENGTH));
+        boolean pendingSpace = false;
+        int i = 0;
+        while (i < length && out.length() < MAX_LENGTH) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = out.length() > 0;
+                i++;
+                continue;
+            }
+            if (pendingSpace) {
+                out.append(' ');
+                pendingSpace = false;
+            }
+            if (c == '\'') {
+                // 字符串字面量，''为转义的单引号
+                i++;
+                while (i < length) {
+                    char q = sql.charAt(i++);
+                    if (q == '\\' && i < length) {
+                        i++;
+                    } else if (q == '\'') {
+                        if (i < length && sql.charAt(i) == '\'') {
+                            i++;
+                        } else {
+                            break;
+                        }
+                    }
+                }
+                out.append('?');
+                continue;
+            }
+            if (Character.isDigit(c) && !isIdentifierPart(out)) {
+                while (i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                out.append('?');
+                continue;
+            }
+            if (c == '(' && endsWithIn(out)) {
+                int close = collapsibleList(sql, i);
+                if (close > 0) {
+                    out.append("(?)");
+                    i = close + 1;
+                    continue;
+                }
+            }
+            out.append(c);
+            i++;
+        }
+        return out.toString();
+    }
+
+    private static boolean isIdentifierPart(StringBuilder out) {
+        if (out.length() == 0) {
+            return false;
+        }
+        char last = out.charAt(out.length() - 1);
+        return Character.isLetterOrDigit(last) || last == '_' || last == '$';
+    }
+
+    private static boolean endsWithIn(StringBuilder out) {
+        int end = out.length();
+        while (end > 0 && out.charAt(end - 1) == ' ') {
+            end--;
+        }
+        if (end < 2) {
+            return false;
+        }
+        char i = Character.toUpperCase(out.charAt(end - 2));
+        char n = Character.toUpperCase(out.charAt(end - 1));
+        return i == 'I' && n == 'N' && (end == 2 || !Character.isLetterOrDigit(out.charAt(end - 3)));
+    }
+
+    /**
+     * 括号内只有占位符、字面量、逗号和空白时返回右括号位置，否则返回-1
+     */
+    private static int collapsibleList(String sql, int open) {
+        boolean inString = false;
+        for (int i = open + 1; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (inString) {
+                if (c == '\'') {
+                    inString = false;
+                }
+                continue;
+            }
+            if (c == '\'') {
+                inString = true;
+            } else if (c == ')') {
+                return i;
+            } else if (!(c == '?' || c == ',' || c == '.' || c == '-' || Character.isDigit(c)
+                    || Character.isWhitespace(c))) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+}
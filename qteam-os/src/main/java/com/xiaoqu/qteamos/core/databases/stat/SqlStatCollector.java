@@ -0,0 +1,387 @@
+package com.xiaoqu.qteamos.core.databases.stat;
+
+import com.xiaoqu.qteamos.core.databases.core.DynamicDataSource;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 插件SQL统计收集器
+ * 包装动态数据源路由出的所有连接，按执行时的插件上下文归属每条语句，
+ * 按插件和归一化SQL分别记录耗时直方图、执行次数和读取行数；
+ * 超过阈值的慢查询按采样率写入固定容量的环形缓冲区（开启参数采集时连同参数值），新记录覆盖最旧的记录
+ *
+ * @author yangqijun
+ * @date 2025-05-03
+ */
+@Slf4j
+@Component
+public class SqlStatCollector {
+
+    /**
+     * 不在插件上下文中执行的SQL的归属
+     */
+    public static final String SYSTEM = "system";
+
+    /**
+     * 单个插件的SQL条目超过上限后，新SQL归入此条目
+     */
+    static final String OTHER_SQL = "<other>";
+
+    @Autowired
+    private DynamicDataSource dynamicDataSource;
+
+    /**
+     * 是否启用SQL统计
+     */
+    @Value("${spring.datasource.sql-stat.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 慢查询阈值(毫秒)
+     */
+    @Value("${spring.datasource.sql-stat.slow-threshold-ms:1000}")
+    private long slowThresholdMillis;
+
+    /**
+     * 慢查询采样率，0到1之间
+     */
+    @Value("${spring.datasource.sql-stat.slow-sample-rate:1.0}")
+    private double slowSampleRate;
+
+    /**
+     * 慢查询环形缓冲区容量
+     */
+    @Value("${spring.datasource.sql-stat.slow-query-capacity:200}")
+    private int slowQueryCapacity;
+
+    /**
+     * 是否采集慢查询的参数值，参数值可能包含敏感数据并通过监控接口返回，默认关闭
+     */
+    @Value("${spring.datasource.sql-stat.capture-parameters:false}")
+    private boolean captureParameters;
+
+    /**
+     * 单个参数值记录的最大长度
+     */
+    @Value("${spring.datasource.sql-stat.max-parameter-length:200}")
+    private int maxParameterLength;
+
+    /**
+     * 单个插件最多单独统计的SQL条数
+     */
+    @Value("${spring.datasource.sql-stat.max-sql-per-plugin:500}")
+    private int maxSqlPerPlugin;
+
+    private volatile Supplier<String> pluginIdResolver = () -> null;
+
+    private final Map<String, PluginStats> plugins = new ConcurrentHashMap<>(16);
+
+    private long slowThresholdNanos;
+
+    private AtomicReferenceArray<SlowQuery> slowQueries;
+
+    private final AtomicLong slowCursor = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        slowThresholdNanos = Math.max(0, slowThresholdMillis) * 1_000_000L;
+        slowQueries = new AtomicReferenceArray<>(Math.max(1, slowQueryCapacity));
+        if (enabled) {
+            dynamicDataSource.setConnectionWrapper(this::instrument);
+            log.info("SQL统计已启用，慢查询阈值: {}ms", slowThresholdMillis);
+        }
+    }
+
+    /**
+     * 设置当前插件ID来源，返回null表示不在插件上下文中，由数据源配置在启动时设置
+     *
+     * @param resolver 插件ID来源
+     */
+    public void setPluginIdResolver(Supplier<String> resolver) {
+        this.pluginIdResolver = resolver != null ? resolver : () -> null;
+    }
+
+    /**
+     * 包装连接，通过它创建的语句都会被统计
+     *
+     * @param connection 连接
+     * @return 统计连接
+     */
+    public Connection instrument(Connection connection) {
+        return InstrumentedConnections.wrap(connection, this);
+    }
+
+    boolean isCaptureParameters() {
+        return captureParameters;
+    }
+
+    /**
+     * 当前线程所属插件的统计
+     */
+    PluginStats currentPlugin() {
+        String pluginId = pluginIdResolver.get();
+        String key = pluginId != null ? pluginId : SYSTEM;
+        PluginStats stats = plugins.get(key);
+        return stats != null ? stats : plugins.computeIfAbsent(key, PluginStats::new);
+    }
+
+    /**
+     * 记录一次语句执行
+     *
+     * @param plugin 插件统计
+     * @param sql 原始SQL
+     * @param nanos 耗时(纳秒)
+     * @param failed 是否失败
+     * @param parameters 参数值，可为null
+     * @return SQL统计，用于之后累计读取行数
+     */
+    SqlStats record(PluginStats plugin, String sql, long nanos, boolean failed, Object[] parameters) {
+        SqlStats sqlStats = plugin.sqlStats(SqlNormalizer.normalize(sql), maxSqlPerPlugin);
+        plugin.histogram.record(nanos);
+        sqlStats.histogram.record(nanos);
+        if (failed) {
+            plugin.errors.increment();
+            sqlStats.errors.increment();
+        }
+        if (nanos >= slowThresholdNanos) {
+            plugin.slowQueries.increment();
+            if (slowSampleRate >= 1d || ThreadLocalRandom.current().nextDouble() < slowSampleRate) {
+                addSlowQuery(plugin.pluginId, sql, nanos, failed, parameters);
+            }
+        }
+        return sqlStats;
+    }
+
+    private void addSlowQuery(String pluginId, String sql, long nanos, boolean failed, Object[] parameters) {
+        SlowQuery slowQuery = new SlowQuery()
+                .setPluginId(pluginId)
+                .setSql(sql)
+                .setParameters(parameters != null ? describeParameters(parameters) : null)
+                .setElapsedMillis(nanos / 1_000_000d)
+                .setFailed(failed)
+                .setThread(Thread.currentThread().getName())
+                .setTimestamp(System.currentTimeMillis());
+        int slot = (int) (slowCursor.getAndIncrement() % slowQueries.length());
+        slowQueries.set(slot, slowQuery);
+    }
+
+    private List<String> describeParameters(Object[] parameters) {
+        List<String> values = new ArrayList<>(parameters.length);
+        for (Object value : parameters) {
+            String text;
+            if (value == null) {
+                text = "null";
+            } else if (value instanceof byte[]) {
+                text = "<byte[" + ((byte[]) value).length + "]>";
+            } else if (value instanceof InputStream || value instanceof Reader
+                    || value instanceof Blob || value instanceof Clob) {
+                text = "<" + value.getClass().getSimpleName() + ">";
+            } else {
+                text = String.valueOf(value);
+            }
+            if (text.length() > maxParameterLength) {
+                text = text.substring(0, maxParameterLength) + "...";
+            }
+            values.add(text);
+        }
+        return values;
+    }
+
+    /**
+     * 获取所有插件的SQL统计，按累计耗时降序
+     *
+     * @param topSql 每个插件返回的SQL条数
+     * @return 统计信息
+     */
+    public List<PluginSqlMetrics> getPluginMetrics(int topSql) {
+        List<PluginSqlMetrics> result = new ArrayList<>(plugins.size());
+        plugins.values().forEach(stats -> result.add(stats.toMetrics(topSql)));
+        result.sort(Comparator.comparingDouble(PluginSqlMetrics::getTotalMillis).reversed());
+        return result;
+    }
+
+    /**
+     * 获取指定插件的SQL统计
+     *
+     * @param pluginId 插件ID，system表示非插件执行的SQL
+     * @param topSql 返回的SQL条数
+     * @return 统计信息
+     */
+    public Optional<PluginSqlMetrics> getPluginMetrics(String pluginId, int topSql) {
+        PluginStats stats = plugins.get(pluginId);
+        return Optional.ofNullable(stats).map(s -> s.toMetrics(topSql));
+    }
+
+    /**
+     * 获取最近的慢查询，按时间倒序
+     *
+     * @param pluginId 插件ID，null表示全部
+     * @param limit 最多返回条数
+     * @return 慢查询记录
+     */
+    public List<SlowQuery> getSlowQueries(String pluginId, int limit) {
+        int capacity = slowQueries.length();
+        long end = slowCursor.get();
+        long start = Math.max(0, end - capacity);
+        List<SlowQuery> result = new ArrayList<>(Math.min(limit, capacity));
+        for (long i = end - 1; i >= start && result.size() < limit; i--) {
+            SlowQuery slowQuery = slowQueries.get((int) (i % capacity));
+            if (slowQuery != null && (pluginId == null || pluginId.equals(slowQuery.getPluginId()))) {
+                result.add(slowQuery);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 清空统计
+     *
+     * @param pluginId 插件ID，null表示清空全部（包括慢查询记录）
+     */
+    public void reset(String pluginId) {
+        if (pluginId != null) {
+            plugins.remove(pluginId);
+            return;
+        }
+        plugins.clear();
+        for (int i = 0; i < slowQueries.length(); i++) {
+            slowQueries.set(i, null);
+        }
+    }
+
+    /**
+     * 单个插件的统计
+     */
+    static final class PluginStats {
+
+        private final String pluginId;
+
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        private final LongAdder errors = new LongAdder();
+
+        private final LongAdder rowsRead = new LongAdder();
+
+        private final LongAdder slowQueries = new LongAdder();
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        private final AtomicInteger peakInFlight = new AtomicInteger();
+
+        private final Map<String, SqlStats> sql = new ConcurrentHashMap<>(64);
+
+        PluginStats(String pluginId) {
+            this.pluginId = pluginId;
+        }
+
+        void enter() {
+            int current = inFlight.incrementAndGet();
+            if (current > peakInFlight.get()) {
+                peakInFlight.accumulateAndGet(current, Math::max);
+            }
+        }
+
+        void exit() {
+            inFlight.decrementAndGet();
+        }
+
+        private SqlStats sqlStats(String normalizedSql, int limit) {
+            SqlStats stats = sql.get(normalizedSql);
+            if (stats != null) {
+                return stats;
+            }
+            // 超过上限时不再新增条目，避免拼接字面量的SQL撑大统计表
+            String key = sql.size() < limit ? normalizedSql : OTHER_SQL;
+            return sql.computeIfAbsent(key, k -> new SqlStats(k, this));
+        }
+
+        private PluginSqlMetrics toMetrics(int topSql) {
+            SqlStats[] all = sql.values().toArray(new SqlStats[0]);
+            Arrays.sort(all, Comparator.comparingDouble((SqlStats s) -> s.histogram.getTotalMillis()).reversed());
+            List<SqlMetrics> top = new ArrayList<>(Math.min(all.length, Math.max(0, topSql)));
+            for (int i = 0; i < all.length && i < topSql; i++) {
+                top.add(all[i].toMetrics());
+            }
+            return new PluginSqlMetrics()
+                    .setPluginId(pluginId)
+                    .setExecutions(histogram.getCount())
+                    .setErrors(errors.sum())
+                    .setRowsRead(rowsRead.sum())
+                    .setSlowQueries(slowQueries.sum())
+                    .setInFlight(inFlight.get())
+                    .setPeakInFlight(peakInFlight.get())
+                    .setTotalMillis(histogram.getTotalMillis())
+                    .setMeanMillis(histogram.getMeanMillis())
+                    .setP50Millis(histogram.getPercentileMillis(0.5))
+                    .setP95Millis(histogram.getPercentileMillis(0.95))
+                    .setP99Millis(histogram.getPercentileMillis(0.99))
+                    .setMaxMillis(histogram.getMaxMillis())
+                    .setTopSql(top);
+        }
+    }
+
+    /**
+     * 单条归一化SQL的统计
+     */
+    static final class SqlStats {
+
+        private final String sql;
+
+        private final PluginStats plugin;
+
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        private final LongAdder errors = new LongAdder();
+
+        private final LongAdder rowsRead = new LongAdder();
+
+        SqlStats(String sql, PluginStats plugin) {
+            this.sql = sql;
+            this.plugin = plugin;
+        }
+
+        /**
+         * 累计读取行数，同时计入所属插件
+         */
+        void addRows(long rows) {
+            if (rows > 0) {
+                rowsRead.add(rows);
+                plugin.rowsRead.add(rows);
+            }
+        }
+
+        private SqlMetrics toMetrics() {
+            return new SqlMetrics()
+                    .setSql(sql)
+                    .setExecutions(histogram.getCount())
+                    .setErrors(errors.sum())
+                    .setRowsRead(rowsRead.sum())
+                    .setTotalMillis(histogram.getTotalMillis())
+                    .setMeanMillis(histogram.getMeanMillis())
+                    .setP95Millis(histogram.getPercentileMillis(0.95))
+                    .setMaxMillis(histogram.getMaxMillis());
+        }
+    }
+}
@@ -17,6 +17,7 @@ import com.google.common.util.concurrent.RateLimiter;
 import com.xiaoqu.qteamos.common.result.Result;
 import com.xiaoqu.qteamos.common.result.ResultCode;
 import com.xiaoqu.qteamos.core.gateway.service.impl.GatewayServiceImpl;
+import com.xiaoqu.qteamos.core.security.integration.RequestPathClassifier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,8 +35,6 @@ import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * API限流过滤器
@@ -56,8 +55,8 @@ public class ApiRateLimitFilter extends OncePerRequestFilter {
     @Autowired
     private ObjectMapper objectMapper;
     
-    @Value("${qteamos.gateway.api-prefix:/api}")
-    private String apiPrefix;
+    @Autowired
+    private RequestPathClassifier pathClassifier;
     
     @Value("${qteamos.gateway.enable-rate-limit:true}")
     private boolean enableRateLimit;
@@ -68,29 +67,23 @@ public class ApiRateLimitFilter extends OncePerRequestFilter {
     // 存储插件的限流器，pluginId -> RateLimiter
     private final Map<String, RateLimiter> rateLimiters = new ConcurrentHashMap<>();
     
-    // 提取插件ID的正则表达式
-    private static final Pattern PLUGIN_ID_PATTERN = Pattern.compile("/api/p-([^/]+)/?.*");
-    
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) 
             throws ServletException, IOException {
         
-        String path = request.getRequestURI();
-        
-        // 检查是否是API路径
-        if (!enableRateLimit || !path.startsWith(apiPrefix)) {
-            // 不启用限流或非API路径，直接放行
+        if (!enableRateLimit) {
             filterChain.doFilter(request, response);
             return;
         }
         
-        // 提取插件ID
-        String pluginId = extractPluginId(path);
-        if (pluginId == null) {
-            // 无法提取插件ID，直接放行
+        // 复用请求分类结果，只对插件API限流
+        RequestPathClassifier.Route route = pathClassifier.classify(request);
+        if (!route.isPluginApi()) {
             filterChain.doFilter(request, response);
             return;
         }
+        String pluginId = route.getPluginId();
+        String path = route.getPath();
         
         // 获取或创建令牌桶
         RateLimiter limiter = getRateLimiter(pluginId);
@@ -153,15 +146,4 @@ public class ApiRateLimitFilter extends OncePerRequestFilter {
             return RateLimiter.create(permitsPerSecond);
         });
     }
-    
-    /**
-     * 从路径中提取插件ID
-     */
-    private String extractPluginId(String path) {
-        Matcher matcher = PLUGIN_ID_PATTERN.matcher(path);
-        if (matcher.matches()) {
-            return matcher.group(1);
-        }
-        return null;
-    }
-} 
\ No newline at end of file
+}
\ No newline at end of file
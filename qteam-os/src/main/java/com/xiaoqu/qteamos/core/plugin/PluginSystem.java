@@ -14,6 +14,7 @@ package com.xiaoqu.qteamos.core.plugin;
 
 import com.xiaoqu.qteamos.api.core.plugin.Plugin;
 import com.xiaoqu.qteamos.api.core.plugin.exception.PluginLifecycleException;
+import com.xiaoqu.qteamos.core.plugin.coordinator.PluginOperationEngine;
 import com.xiaoqu.qteamos.core.plugin.coordinator.PluginSystemCoordinator;
 import com.xiaoqu.qteamos.core.plugin.running.PluginInfo;
 import jakarta.annotation.PreDestroy;
@@ -44,9 +45,12 @@ public class PluginSystem {
     
     private final PluginSystemCoordinator coordinator;
     
+    private final PluginOperationEngine operationEngine;
+    
     @Autowired
-    public PluginSystem(PluginSystemCoordinator coordinator) {
+    public PluginSystem(PluginSystemCoordinator coordinator, PluginOperationEngine operationEngine) {
         this.coordinator = coordinator;
+        this.operationEngine = operationEngine;
         log.warn("PluginSystem类已弃用，请使用PluginSystemCoordinator。此类将在未来版本中移除。");
     }
     
@@ -133,15 +137,20 @@ public class PluginSystem {
     }
     
     /**
-     * 安装插件
+     * 安装插件，提交到插件操作引擎异步执行
      * @param jarFile 插件JAR文件
-     * @return 是否成功安装
-     * @deprecated PluginInstaller组件自动处理插件安装
+     * @return 是否成功提交
+     * @deprecated 使用 {@link PluginOperationEngine#submitLoad(Path)} 替代
      */
     @Deprecated
     public boolean installPlugin(File jarFile) {
-        log.warn("installPlugin()已弃用，现在由PluginInstaller组件自动处理");
-        // 现在由PluginInstaller组件通过文件监控自动处理
+        log.warn("installPlugin()已弃用，委托给PluginOperationEngine");
+        if (jarFile == null || !jarFile.exists()) {
+            log.error("插件文件不存在: {}", jarFile);
+            return false;
+        }
+        String operationId = operationEngine.submitLoad(jarFile.toPath());
+        log.info("插件安装已提交: {}, 操作ID: {}", jarFile.getName(), operationId);
         return true;
     }
     
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2023-2024 XiaoQuTeam. All rights reserved.
+ * QTeamOS is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+
+package com.xiaoqu.qteamos.core.plugin.coordinator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.xiaoqu.qteamos.common.result.Result;
+import com.xiaoqu.qteamos.core.plugin.coordinator.PluginSystemCoordinator.OperationStatus;
+
+/**
+ * 插件操作接口
+ * 安装、升级和热更新通过插件操作引擎异步执行，上传后立即返回操作ID，
+ * 调用方通过操作ID查询进度和结果
+ *
+ * @author yangqijun
+ * @date 2025-06-03
+ * @since 1.0.0
+ */
+@RestController
+@RequestMapping("/api/plugins/operations")
+@PreAuthorize("hasAuthority('core:plugin:manage')")
+public class PluginOperationController {
+    private static final Logger log = LoggerFactory.getLogger(PluginOperationController.class);
+
+    /**
+     * 上传文件暂存目录，不能位于插件目录或被监控的插件临时目录下，避免文件监控重复加载
+     */
+    @Value("${plugin.operation.upload-dir:./plugins-upload}")
+    private String uploadDir;
+
+    @Autowired
+    private PluginOperationEngine operationEngine;
+
+    /**
+     * 上传并安装插件
+     */
+    @PostMapping("/install")
+    public Result<String> install(@RequestParam("file") MultipartFile file) {
+        Path staged;
+        try {
+            staged = stage(file);
+        } catch (IllegalArgumentException | IOException e) {
+            return Result.failed("保存插件文件失败: " + e.getMessage());
+        }
+        String operationId = operationEngine.submitLoad(staged);
+        // 安装阶段已将插件复制到插件目录，操作结束后删除暂存文件
+        cleanupOnCompletion(operationId, staged);
+        return Result.success(operationId);
+    }
+
+    /**
+     * 上传新版本并升级插件
+     */
+    @PostMapping("/{pluginId}/upgrade")
+    public Result<String> upgrade(@PathVariable String pluginId, @RequestParam("file") MultipartFile file) {
+        Path staged;
+        try {
+            staged = stage(file);
+        } catch (IllegalArgumentException | IOException e) {
+            return Result.failed("保存插件文件失败: " + e.getMessage());
+        }
+        String operationId = operationEngine.submitUpgrade(pluginId, staged.toFile());
+        // 升级时安装器已将新版本复制到插件目录，操作结束后删除暂存文件
+        cleanupOnCompletion(operationId, staged);
+        return Result.success(operationId);
+    }
+
+    /**
+     * 上传新版本并热更新插件
+     * 热更新直接从暂存文件加载新版本，暂存文件需保留到下一次更新或卸载
+     */
+    @PostMapping("/{pluginId}/hot-update")
+    public Result<String> hotUpdate(@PathVariable String pluginId, @RequestParam("file") MultipartFile file) {
+        Path staged;
+        try {
+            staged = stage(file);
+        } catch (IllegalArgumentException | IOException e) {
+            return Result.failed("保存插件文件失败: " + e.getMessage());
+        }
+        String operationId = operationEngine.submitHotUpdate(pluginId, staged.toFile());
+        // 热更新失败时新版本未被使用，删除暂存文件
+        operationEngine.getCompletion(operationId).ifPresent(completion -> completion.thenAccept(status -> {
+            if (!status.isSuccess()) {
+                deleteStaged(staged);
+            }
+        }));
+        return Result.success(operationId);
+    }
+
+    /**
+     * 查询操作状态
+     */
+    @GetMapping("/{operationId}")
+    public Result<OperationStatus> getOperation(@PathVariable String operationId) {
+        return operationEngine.getOperation(operationId)
+                .map(Result::success)
+                .orElseGet(() -> Result.failed("操作不存在: " + operationId));
+    }
+
+    /**
+     * 将上传文件保存到独立的暂存子目录，保留原文件名（热更新从文件名中解析版本号）
+     */
+    private Path stage(MultipartFile file) throws IOException {
+        if (file == null || file.isEmpty()) {
+            throw new IllegalArgumentException("插件文件为空");
+        }
+        String originalName = file.getOriginalFilename();
+        String fileName = originalName != null ? Paths.get(originalName).getFileName().toString() : null;
+        if (fileName == null || !fileName.toLowerCase().endsWith(".jar")) {
+            throw new IllegalArgumentException("插件文件必须是JAR文件");
+        }
+
+        Path directory = Paths.get(uploadDir).toAbsolutePath().normalize().resolve(UUID.randomUUID().toString());
+        Files.createDirectories(directory);
+        Path target = directory.resolve(fileName);
+        try (InputStream in = file.getInputStream()) {
+            Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return target;
+    }
+
+    private void cleanupOnCompletion(String operationId, Path staged) {
+        operationEngine.getCompletion(operationId)
+                .ifPresent(completion -> completion.thenAccept(status -> deleteStaged(staged)));
+    }
+
+    /**
+     * 删除暂存文件及其所在的暂存子目录
+     */
+    private void deleteStaged(Path staged) {
+        Path directory = staged.getParent();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    log.warn("删除插件暂存文件失败: {}", path, e);
+                }
+            });
+        } catch (IOException e) {
+            log.warn("清理插件暂存目录失败: {}", directory, e);
+        }
+    }
+}
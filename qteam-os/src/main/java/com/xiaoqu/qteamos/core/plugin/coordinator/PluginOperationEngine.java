@@ -0,0 +1,474 @@
+/*
+ * Copyright (c) 2023-2024 XiaoQuTeam. All rights reserved.
+ * QTeamOS is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+
+package com.xiaoqu.qteamos.core.plugin.coordinator;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.xiaoqu.qteamos.api.core.plugin.api.PluginInfo;
+import com.xiaoqu.qteamos.api.core.plugin.api.PluginInstaller;
+import com.xiaoqu.qteamos.core.plugin.coordinator.PluginSystemCoordinator.OperationStatus;
+import com.xiaoqu.qteamos.core.plugin.coordinator.PluginSystemCoordinator.OperationType;
+import com.xiaoqu.qteamos.core.plugin.event.EventBus;
+import com.xiaoqu.qteamos.core.plugin.event.plugins.PluginOperationEvent;
+import com.xiaoqu.qteamos.core.plugin.manager.PluginHotDeployService;
+import com.xiaoqu.qteamos.core.plugin.running.PluginDescriptor;
+import com.xiaoqu.qteamos.core.utils.PluginFileUtils;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * 插件异步操作引擎
+ * 将插件加载、升级和热更新拆分为I/O阶段（校验和计算、描述符解析、文件复制）
+ * 和计算阶段（类加载、控制器扫描、启动），两个阶段在不同线程池中流水线执行，
+ * 提交后立即返回操作ID，调用方通过操作状态或进度事件跟踪执行情况
+ *
+ * @author yangqijun
+ * @date 2025-06-03
+ * @since 1.0.0
+ */
+@Component
+public class PluginOperationEngine {
+    private static final Logger log = LoggerFactory.getLogger(PluginOperationEngine.class);
+
+    /**
+     * 阶段名称
+     */
+    public static final String STAGE_QUEUED = "QUEUED";
+    public static final String STAGE_PREPARE = "PREPARE";
+    public static final String STAGE_INSTALL = "INSTALL";
+    public static final String STAGE_ACTIVATE = "ACTIVATE";
+    public static final String STAGE_DONE = "DONE";
+
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+    @Value("${plugin.operation.io-threads:4}")
+    private int ioThreads;
+
+    @Value("${plugin.operation.activation-threads:2}")
+    private int activationThreads;
+
+    @Value("${plugin.operation.queue-capacity:64}")
+    private int queueCapacity;
+
+    @Value("${plugin.operation.retention-minutes:60}")
+    private long retentionMinutes;
+
+    private final PluginSystemCoordinator coordinator;
+    private final PluginInstaller pluginInstaller;
+    private final PluginHotDeployService hotDeployService;
+    private final EventBus eventBus;
+
+    // I/O阶段线程池：校验和、描述符解析、文件复制
+    private ExecutorService ioExecutor;
+
+    // 计算阶段线程池：类加载、路由注册、插件启动
+    private ExecutorService activationExecutor;
+
+    // 所有操作，key为操作ID
+    private final Map<String, OperationStatus> operations = new ConcurrentHashMap<>();
+
+    // 操作完成通知，key为操作ID
+    private final Map<String, CompletableFuture<OperationStatus>> completions = new ConcurrentHashMap<>();
+
+    // 进度监听器，key为操作ID
+    private final Map<String, List<Consumer<PluginOperationEvent>>> progressListeners = new ConcurrentHashMap<>();
+
+    // 正在执行操作的插件，同一插件同时只允许一个操作
+    private final Set<String> busyPlugins = ConcurrentHashMap.newKeySet();
+
+    // 持有插件互斥的操作，key为操作ID，value为插件ID
+    private final Map<String, String> lockOwners = new ConcurrentHashMap<>();
+
+    @Autowired
+    public PluginOperationEngine(PluginSystemCoordinator coordinator,
+                                 PluginInstaller pluginInstaller,
+                                 PluginHotDeployService hotDeployService,
+                                 EventBus eventBus) {
+        this.coordinator = coordinator;
+        this.pluginInstaller = pluginInstaller;
+        this.hotDeployService = hotDeployService;
+        this.eventBus = eventBus;
+    }
+
+    @PostConstruct
+    public void init() {
+        ioExecutor = newBoundedExecutor("plugin-op-io", Math.max(1, ioThreads));
+        activationExecutor = newBoundedExecutor("plugin-op-activate", Math.max(1, activationThreads));
+        log.info("插件操作引擎已启动: I/O线程={}, 激活线程={}, 队列容量={}",
+                ioThreads, activationThreads, queueCapacity);
+    }
+
+    private ExecutorService newBoundedExecutor(String namePrefix, int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(Math.max(1, queueCapacity)), r -> {
+                    Thread t = new Thread(r, namePrefix + "-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    /**
+     * 异步加载插件
+     *
+     * @param jarPath 插件JAR或目录路径
+     * @return 操作ID
+     */
+    public String submitLoad(Path jarPath) {
+        OperationStatus status = newOperation(null, OperationType.LOAD);
+
+        startPipeline(status, () -> prepare(status, coordinator.resolvePluginPath(jarPath), null))
+                .thenApplyAsync(prepared -> {
+                    enterStage(status, STAGE_INSTALL, 40, "安装插件文件");
+                    return install(prepared);
+                }, ioExecutor)
+                .thenApplyAsync(installed -> {
+                    enterStage(status, STAGE_ACTIVATE, 70, "加载插件类并注册路由");
+                    activate(installed, status);
+                    return installed.pluginInfo.getPluginId();
+                }, activationExecutor)
+                .whenComplete((pluginId, error) -> finish(status, error, "插件加载完成"));
+
+        return status.getOperationId();
+    }
+
+    /**
+     * 异步升级插件
+     *
+     * @param pluginId 插件ID
+     * @param newPluginFile 新插件文件
+     * @return 操作ID
+     */
+    public String submitUpgrade(String pluginId, File newPluginFile) {
+        OperationStatus status = newOperation(pluginId, OperationType.UPDATE);
+
+        startPipeline(status, () -> prepare(status, newPluginFile.toPath(), pluginId))
+                .thenApplyAsync(prepared -> {
+                    // 替换文件与重新注册、激活在同一次调用中完成，与加载和热更新的激活阶段共用计算线程池
+                    enterStage(status, STAGE_ACTIVATE, 50, "替换插件文件并重新激活");
+                    PluginInfo upgraded = pluginInstaller.upgradePlugin(pluginId, prepared.path.toFile());
+                    if (upgraded == null) {
+                        throw new CompletionException(new IllegalStateException("升级插件失败: " + pluginId));
+                    }
+                    return upgraded;
+                }, activationExecutor)
+                .whenComplete((upgraded, error) -> finish(status, error, "插件升级完成"));
+
+        return status.getOperationId();
+    }
+
+    /**
+     * 异步热更新插件
+     *
+     * @param pluginId 插件ID
+     * @param pluginFile 新插件文件
+     * @return 操作ID
+     */
+    public String submitHotUpdate(String pluginId, File pluginFile) {
+        OperationStatus status = newOperation(pluginId, OperationType.HOT_UPDATE);
+
+        startPipeline(status, () -> prepare(status, pluginFile.toPath(), pluginId))
+                .thenApplyAsync(prepared -> {
+                    enterStage(status, STAGE_ACTIVATE, 50, "热更新插件");
+                    if (!hotDeployService.triggerHotUpdate(pluginId, prepared.path.toFile())) {
+                        throw new CompletionException(new IllegalStateException("热更新插件失败: " + pluginId));
+                    }
+                    return prepared;
+                }, activationExecutor)
+                .whenComplete((prepared, error) -> finish(status, error, "插件热更新完成"));
+
+        return status.getOperationId();
+    }
+
+    /**
+     * 获取操作状态
+     *
+     * @param operationId 操作ID
+     * @return 操作状态
+     */
+    public Optional<OperationStatus> getOperation(String operationId) {
+        return Optional.ofNullable(operations.get(operationId));
+    }
+
+    /**
+     * 获取操作完成通知，操作结束（无论成功与否）时完成
+     *
+     * @param operationId 操作ID
+     * @return 完成通知，操作不存在时为空
+     */
+    public Optional<CompletableFuture<OperationStatus>> getCompletion(String operationId) {
+        return Optional.ofNullable(completions.get(operationId));
+    }
+
+    /**
+     * 订阅操作进度，操作结束后监听器自动移除
+     *
+     * @param operationId 操作ID
+     * @param listener 进度监听器
+     * @return 是否订阅成功，操作不存在或已结束时返回false
+     */
+    public boolean addProgressListener(String operationId, Consumer<PluginOperationEvent> listener) {
+        OperationStatus status = operations.get(operationId);
+        if (status == null || status.isCompleted()) {
+            return false;
+        }
+        progressListeners.computeIfAbsent(operationId, k -> new CopyOnWriteArrayList<>()).add(listener);
+        return true;
+    }
+
+    /**
+     * 取消订阅操作进度
+     *
+     * @param operationId 操作ID
+     * @param listener 进度监听器
+     */
+    public void removeProgressListener(String operationId, Consumer<PluginOperationEvent> listener) {
+        List<Consumer<PluginOperationEvent>> listeners = progressListeners.get(operationId);
+        if (listeners != null) {
+            listeners.remove(listener);
+        }
+    }
+
+    private OperationStatus newOperation(String pluginId, OperationType type) {
+        evictExpiredOperations();
+
+        OperationStatus status = new OperationStatus(pluginId, type);
+        status.setStage(STAGE_QUEUED, 0);
+        operations.put(status.getOperationId(), status);
+        completions.put(status.getOperationId(), new CompletableFuture<>());
+        coordinator.trackOperation(status);
+        return status;
+    }
+
+    /**
+     * 启动流水线的第一个阶段，提交被拒绝时直接以失败结束操作
+     */
+    private CompletableFuture<PreparedArtifact> startPipeline(OperationStatus status,
+                                                              Supplier<PreparedArtifact> prepare) {
+        try {
+            return CompletableFuture.supplyAsync(prepare, ioExecutor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(new IllegalStateException("插件操作队列已满，请稍后重试"));
+        }
+    }
+
+    /**
+     * 准备阶段：计算校验和并解析描述符，确定插件ID后加入操作互斥
+     */
+    private PreparedArtifact prepare(OperationStatus status, Path path, String expectedPluginId) {
+        enterStage(status, STAGE_PREPARE, 10, "校验插件文件");
+
+        if (path == null || !Files.exists(path)) {
+            throw new CompletionException(new IllegalArgumentException("插件路径不存在: " + path));
+        }
+
+        String checksum = Files.isRegularFile(path) ? sha256(path) : null;
+        PluginDescriptor descriptor = Files.isDirectory(path)
+                ? PluginFileUtils.parsePluginYml(path.resolve("plugin.yml").toFile())
+                : PluginFileUtils.parsePluginDescriptor(path);
+        if (descriptor == null || descriptor.getPluginId() == null) {
+            throw new CompletionException(new IllegalArgumentException("无法解析插件描述符: " + path));
+        }
+
+        String pluginId = descriptor.getPluginId();
+        if (expectedPluginId != null && !expectedPluginId.equals(pluginId)) {
+            throw new CompletionException(new IllegalArgumentException(
+                    "插件ID不匹配: " + pluginId + " != " + expectedPluginId));
+        }
+
+        if (!busyPlugins.add(pluginId)) {
+            throw new CompletionException(new IllegalStateException("插件正在处理中: " + pluginId));
+        }
+        lockOwners.put(status.getOperationId(), pluginId);
+        if (status.getPluginId() == null) {
+            status.setPluginId(pluginId);
+            coordinator.trackOperation(status);
+        }
+
+        log.info("插件操作准备完成: operationId={}, pluginId={}, version={}, sha256={}",
+                status.getOperationId(), pluginId, descriptor.getVersion(), checksum);
+        return new PreparedArtifact(path, descriptor, checksum);
+    }
+
+    private InstalledArtifact install(PreparedArtifact prepared) {
+        try {
+            return new InstalledArtifact(prepared, coordinator.installPlugin(prepared.path));
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private void activate(InstalledArtifact installed, OperationStatus status) {
+        try {
+            coordinator.activatePlugin(installed.prepared.path, installed.pluginInfo, status);
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * 流式计算文件SHA-256校验和
+     */
+    private String sha256(Path path) {
+        try (InputStream in = Files.newInputStream(path)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[HASH_BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private void enterStage(OperationStatus status, String stage, int progress, String message) {
+        status.setStage(stage, progress);
+        status.setMessage(message);
+        publish(status, PluginOperationEvent.TYPE_PROGRESS);
+    }
+
+    private void finish(OperationStatus status, Throwable error, String successMessage) {
+        if (error == null) {
+            status.setStage(STAGE_DONE, 100);
+            status.setMessage(successMessage);
+            status.setSuccess(true);
+            log.info("插件操作完成: operationId={}, pluginId={}, 耗时={}ms",
+                    status.getOperationId(), status.getPluginId(), status.getDuration());
+        } else {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            status.setMessage(cause.getMessage());
+            status.setSuccess(false);
+            log.error("插件操作失败: operationId={}, pluginId={}, 阶段={}",
+                    status.getOperationId(), status.getPluginId(), status.getStage(), cause);
+        }
+
+        // 释放插件互斥：仅当准备阶段成功占用时才由本操作释放
+        String lockedPluginId = lockOwners.remove(status.getOperationId());
+        if (lockedPluginId != null) {
+            busyPlugins.remove(lockedPluginId);
+        }
+
+        publish(status, error == null ? PluginOperationEvent.TYPE_COMPLETED : PluginOperationEvent.TYPE_FAILED);
+        progressListeners.remove(status.getOperationId());
+
+        CompletableFuture<OperationStatus> completion = completions.get(status.getOperationId());
+        if (completion != null) {
+            completion.complete(status);
+        }
+    }
+
+    private void publish(OperationStatus status, String type) {
+        PluginOperationEvent event = new PluginOperationEvent(type, status.getOperationId(), status.getPluginId(),
+                status.getType(), status.getStage(), status.getProgress(), status.getMessage());
+
+        List<Consumer<PluginOperationEvent>> listeners = progressListeners.get(status.getOperationId());
+        if (listeners != null) {
+            for (Consumer<PluginOperationEvent> listener : listeners) {
+                try {
+                    listener.accept(event);
+                } catch (Exception e) {
+                    log.warn("插件操作进度监听器异常: {}", status.getOperationId(), e);
+                }
+            }
+        }
+
+        try {
+            eventBus.postEvent(event);
+        } catch (Exception e) {
+            log.warn("发布插件操作事件失败: {}", status.getOperationId(), e);
+        }
+    }
+
+    /**
+     * 清理超过保留时间的已完成操作
+     */
+    private void evictExpiredOperations() {
+        long expireBefore = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(retentionMinutes);
+        operations.values().removeIf(status -> {
+            boolean expired = status.isCompleted() && status.getEndTime() < expireBefore;
+            if (expired) {
+                completions.remove(status.getOperationId());
+            }
+            return expired;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (ioExecutor != null) {
+            ioExecutor.shutdownNow();
+        }
+        if (activationExecutor != null) {
+            activationExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 准备阶段产物
+     */
+    private static class PreparedArtifact {
+        private final Path path;
+        private final PluginDescriptor descriptor;
+        private final String checksum;
+
+        PreparedArtifact(Path path, PluginDescriptor descriptor, String checksum) {
+            this.path = path;
+            this.descriptor = descriptor;
+            this.checksum = checksum;
+        }
+    }
+
+    /**
+     * 安装阶段产物
+     */
+    private static class InstalledArtifact {
+        private final PreparedArtifact prepared;
+        private final PluginInfo pluginInfo;
+
+        InstalledArtifact(PreparedArtifact prepared, PluginInfo pluginInfo) {
+            this.prepared = prepared;
+            this.pluginInfo = pluginInfo;
+        }
+    }
+}
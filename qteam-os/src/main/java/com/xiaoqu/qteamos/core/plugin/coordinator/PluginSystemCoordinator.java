@@ -14,14 +14,21 @@ package com.xiaoqu.qteamos.core.plugin.coordinator;
 
 import java.io.File;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.UUID;
 import java.util.function.Predicate;
 
 import org.slf4j.Logger;
@@ -36,13 +43,17 @@ import com.xiaoqu.qteamos.api.core.plugin.api.PluginInstaller;
 import com.xiaoqu.qteamos.api.core.plugin.api.PluginLifecycleHandler;
 import com.xiaoqu.qteamos.api.core.plugin.api.PluginScanner;
 import com.xiaoqu.qteamos.api.core.plugin.exception.PluginLifecycleException;
+import com.xiaoqu.qteamos.core.databases.migration.MigrationReport;
+import com.xiaoqu.qteamos.core.databases.migration.PluginMigrationRunner;
 import com.xiaoqu.qteamos.core.plugin.event.EventBus;
 import com.xiaoqu.qteamos.core.plugin.event.PluginEvent;
 import com.xiaoqu.qteamos.core.plugin.event.plugins.SystemShutdownEvent;
 import com.xiaoqu.qteamos.core.plugin.manager.DependencyResolver;
 import com.xiaoqu.qteamos.core.plugin.manager.PluginRegistry;
 import com.xiaoqu.qteamos.core.plugin.manager.PluginStateManager;
+import com.xiaoqu.qteamos.core.plugin.manager.persistence.PluginRegistrySnapshotManager;
 import com.xiaoqu.qteamos.core.plugin.manager.persistence.PluginStatePersistenceManager;
+import com.xiaoqu.qteamos.core.plugin.model.entity.SysPluginStatus;
 import com.xiaoqu.qteamos.core.plugin.running.PluginInfo;
 import com.xiaoqu.qteamos.core.plugin.running.PluginState;
 import com.xiaoqu.qteamos.api.core.event.PluginEventDispatcher;
@@ -87,6 +98,8 @@ public class PluginSystemCoordinator {
     private final PluginStatePersistenceManager persistenceManager;
     private final PluginEventDispatcher eventDispatcher;
     private final PluginInfoAdapter pluginInfoAdapter;
+    private final PluginRegistrySnapshotManager snapshotManager;
+    private final PluginMigrationRunner migrationRunner;
     
     // 线程池
     private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
@@ -113,7 +126,9 @@ public class PluginSystemCoordinator {
             PluginInstaller pluginInstaller,
             PluginStatePersistenceManager persistenceManager,
             PluginEventDispatcher eventDispatcher,
-            PluginInfoAdapter pluginInfoAdapter) {
+            PluginInfoAdapter pluginInfoAdapter,
+            PluginRegistrySnapshotManager snapshotManager,
+            PluginMigrationRunner migrationRunner) {
         
         this.pluginRegistry = pluginRegistry;
         this.lifecycleHandler = lifecycleHandler;
@@ -126,6 +141,8 @@ public class PluginSystemCoordinator {
         this.persistenceManager = persistenceManager;
         this.eventDispatcher = eventDispatcher;
         this.pluginInfoAdapter = pluginInfoAdapter;
+        this.snapshotManager = snapshotManager;
+        this.migrationRunner = migrationRunner;
     }
     
     /**
@@ -222,14 +239,99 @@ public class PluginSystemCoordinator {
         }
     }
     
+    /**
+     * 获取已有插件：优先从注册表快照还原，按快照中的依赖顺序排列
+     * 只用一次轻量的版本和状态查询核对快照，版本一致的插件直接使用快照并以数据库中的启用状态和插件状态为准；
+     * 快照中已变化、版本不一致以及快照之后新增的插件才从数据库加载完整信息，数据库中已不存在的插件被忽略
+     */
+    private Collection<PluginInfo> getExistingPlugins() {
+        PluginRegistrySnapshotManager.RestoreResult restored = snapshotManager.restore();
+        if (!restored.isAvailable()) {
+            return persistenceManager.getAllPlugins();
+        }
+        
+        Map<String, SysPluginStatus> statuses = persistenceManager.getPluginStatusIndex();
+        
+        // 核对快照，找出需要从数据库加载的插件
+        Map<String, PluginInfo> reusable = new HashMap<>();
+        Set<String> matchedKeys = new HashSet<>();
+        for (PluginInfo snapshot : restored.getPlugins()) {
+            String pluginId = snapshot.getDescriptor().getPluginId();
+            String key = pluginId + "@" + snapshot.getDescriptor().getVersion();
+            SysPluginStatus status = statuses.get(key);
+            if (status != null) {
+                applyStatus(snapshot, status);
+                reusable.put(pluginId, snapshot);
+                matchedKeys.add(key);
+            }
+        }
+        Set<String> reloadIds = new LinkedHashSet<>();
+        for (Map.Entry<String, SysPluginStatus> entry : statuses.entrySet()) {
+            if (!matchedKeys.contains(entry.getKey())) {
+                reloadIds.add(entry.getValue().getPluginId());
+            }
+        }
+        if (!reloadIds.isEmpty()) {
+            log.info("以下插件自上次快照后发生变化或新增，从数据库加载: {}", reloadIds);
+        }
+        Set<String> removed = new LinkedHashSet<>(restored.getPluginOrder());
+        statuses.values().forEach(status -> removed.remove(status.getPluginId()));
+        if (!removed.isEmpty()) {
+            log.info("以下插件在快照中存在但数据库中已不存在，忽略: {}", removed);
+        }
+        
+        Map<String, List<PluginInfo>> reloaded = new LinkedHashMap<>();
+        for (PluginInfo plugin : persistenceManager.getPlugins(reloadIds)) {
+            String pluginId = plugin.getDescriptor().getPluginId();
+            PluginInfo kept = reusable.get(pluginId);
+            // 同一插件的其他版本已由快照还原
+            if (kept == null || !Objects.equals(kept.getDescriptor().getVersion(), plugin.getDescriptor().getVersion())) {
+                reloaded.computeIfAbsent(pluginId, k -> new ArrayList<>()).add(plugin);
+            }
+        }
+        
+        // 按快照顺序排列，快照之后新增的插件追加在末尾
+        List<PluginInfo> plugins = new ArrayList<>(statuses.size());
+        for (String pluginId : restored.getPluginOrder()) {
+            PluginInfo snapshot = reusable.get(pluginId);
+            if (snapshot != null) {
+                plugins.add(snapshot);
+            }
+            List<PluginInfo> fromDatabase = reloaded.remove(pluginId);
+            if (fromDatabase != null) {
+                plugins.addAll(fromDatabase);
+            }
+        }
+        reloaded.values().forEach(plugins::addAll);
+        return plugins;
+    }
+    
+    /**
+     * 以数据库中的启用状态和插件状态覆盖快照中的值
+     */
+    private void applyStatus(PluginInfo plugin, SysPluginStatus status) {
+        plugin.setEnabled(Boolean.TRUE.equals(status.getEnabled()));
+        if (status.getStatus() != null) {
+            try {
+                plugin.setState(PluginState.valueOf(status.getStatus()));
+            } catch (IllegalArgumentException e) {
+                log.warn("未知的插件状态: {}, 设置为CREATED", status.getStatus());
+                plugin.setState(PluginState.CREATED);
+            }
+        }
+        if (status.getErrorMessage() != null) {
+            plugin.setErrorMessage(status.getErrorMessage());
+        }
+    }
+    
     /**
      * 从数据库加载已有插件
      */
     private void loadExistingPlugins() {
         log.info("从数据库加载已有插件...");
         try {
-            // 从持久化存储获取所有已注册的插件信息
-            Collection<PluginInfo> existingPlugins = persistenceManager.getAllPlugins();
+            // 从快照或持久化存储获取所有已注册的插件信息
+            Collection<PluginInfo> existingPlugins = getExistingPlugins();
             
             if (existingPlugins.isEmpty()) {
                 log.info("数据库中没有已注册的插件");
@@ -238,9 +340,9 @@ public class PluginSystemCoordinator {
 
             log.info("发现{}个已注册插件，开始加载...", existingPlugins.size());
             
+            List<PluginInfo> loadablePlugins = new ArrayList<>(existingPlugins.size());
             for (PluginInfo pluginInfo : existingPlugins) {
                 try {
-                    String pluginId = pluginInfo.getDescriptor().getPluginId();
                     Path jarPath = pluginInfo.getJarPath();
                     
                     // 处理相对路径：如果是相对路径，则转换为绝对路径
@@ -269,6 +371,29 @@ public class PluginSystemCoordinator {
                         log.warn("插件文件不存在，跳过加载: {}", jarPath);
                         continue;
                     }
+                    loadablePlugins.add(pluginInfo);
+                } catch (Exception e) {
+                    log.error("加载已有插件失败: {}", pluginInfo.getDescriptor().getPluginId(), e);
+                }
+            }
+            
+            // 已启用插件的数据库迁移并发执行，全部完成后再依次加载插件
+            Map<String, MigrationReport> migrationReports =
+                    migrationRunner.migrateAll(loadablePlugins.stream().filter(PluginInfo::isEnabled).toList());
+            
+            for (PluginInfo pluginInfo : loadablePlugins) {
+                try {
+                    String pluginId = pluginInfo.getDescriptor().getPluginId();
+                    Path jarPath = pluginInfo.getJarPath();
+                    
+                    // 数据库迁移失败的插件不加载，避免在不完整的表结构上运行
+                    MigrationReport migrationReport = migrationReports.get(pluginId);
+                    if (migrationReport != null && !migrationReport.isSuccess()) {
+                        String errorMsg = "数据库迁移失败: " + migrationReport.getMessage();
+                        log.error("跳过加载插件: {}, {}", pluginId, errorMsg);
+                        stateManager.recordFailure(pluginId, errorMsg);
+                        continue;
+                    }
 
                     // 转换为API层PluginInfo
                     com.xiaoqu.qteamos.api.core.plugin.api.PluginInfo apiPluginInfo = 
@@ -279,6 +404,9 @@ public class PluginSystemCoordinator {
                         log.info("加载已启用的插件: {}", pluginId);
                         // 对于之前运行的插件，执行完整的加载流程
                         processPluginLoading(jarPath, apiPluginInfo);
+                        
+                        // 按快照中的类加载索引在后台预热
+                        executor.submit(() -> snapshotManager.warmUp(pluginId));
                     } else {
                         log.info("注册未启用的插件: {}", pluginId);
                         // 对于未启用的插件，只进行基础加载
@@ -370,6 +498,27 @@ public class PluginSystemCoordinator {
      */
     private void processPluginLoading(Path jarPath, com.xiaoqu.qteamos.api.core.plugin.api.PluginInfo apiPluginInfo) 
             throws PluginLifecycleException {
+        OperationStatus status = new OperationStatus(apiPluginInfo.getPluginId(), OperationType.LOAD);
+        try {
+            processPluginLoading(jarPath, apiPluginInfo, status);
+            status.setSuccess(true);
+        } catch (PluginLifecycleException e) {
+            status.setSuccess(false);
+            throw e;
+        }
+    }
+    
+    /**
+     * 处理插件加载的完整流程，使用调用方提供的操作状态记录进度，
+     * 只更新进度消息，操作的结束状态由调用方设置
+     * 
+     * @param jarPath 插件JAR路径
+     * @param apiPluginInfo 插件信息
+     * @param status 操作状态
+     * @throws PluginLifecycleException 生命周期异常
+     */
+    private void processPluginLoading(Path jarPath, com.xiaoqu.qteamos.api.core.plugin.api.PluginInfo apiPluginInfo,
+                                      OperationStatus status) throws PluginLifecycleException {
         String pluginId = apiPluginInfo.getPluginId();
         String version = apiPluginInfo.getVersion();
         
@@ -383,8 +532,7 @@ public class PluginSystemCoordinator {
             apiPluginInfo.getType(), apiPluginInfo.getTrust(), isSystemPlugin, isTrusted);
         
         // 记录操作状态
-        OperationStatus status = new OperationStatus(pluginId, OperationType.LOAD);
-        pluginOperationStatus.put(pluginId, status);
+        trackOperation(status);
         
         try {
             long startTime = System.currentTimeMillis();
@@ -428,7 +576,6 @@ public class PluginSystemCoordinator {
             }
             
             // 更新操作状态
-            status.setSuccess(true);
             status.setMessage("插件加载流程处理完成");
             
             log.info("插件加载流程处理完成: {} v{}", pluginId, version);
@@ -438,7 +585,6 @@ public class PluginSystemCoordinator {
             log.error(errorMsg, e);
             
             // 更新操作状态
-            status.setSuccess(false);
             status.setMessage(errorMsg);
             
             // 记录失败状态
@@ -511,6 +657,24 @@ public class PluginSystemCoordinator {
     public String loadPlugin(Path jarPath) throws PluginLifecycleException {
         log.info("开始加载插件: {}", jarPath);
         
+        jarPath = resolvePluginPath(jarPath);
+        
+        // 通过安装器安装插件
+        com.xiaoqu.qteamos.api.core.plugin.api.PluginInfo apiPluginInfo = installPlugin(jarPath);
+        
+        // 处理完整的插件加载流程
+        processPluginLoading(jarPath, apiPluginInfo);
+        
+        return apiPluginInfo.getPluginId();
+    }
+    
+    /**
+     * 解析插件路径，相对路径基于插件目录转换为绝对路径
+     *
+     * @param jarPath 插件JAR路径
+     * @return 规范化后的路径
+     */
+    public Path resolvePluginPath(Path jarPath) {
         // 处理相对路径：如果是相对路径，则转换为绝对路径
         if (jarPath != null && !jarPath.isAbsolute()) {
             // 获取当前运行目录
@@ -529,17 +693,36 @@ public class PluginSystemCoordinator {
             jarPath = resolvedFile.toPath().normalize();
             log.info("将相对路径转换为真正的绝对路径: {} -> {}", jarPath, resolvedFile.toPath());
         }
-        
-        // 通过安装器安装插件
+        return jarPath;
+    }
+    
+    /**
+     * 通过安装器安装插件（复制文件、解析描述符并注册），不创建类加载器
+     *
+     * @param jarPath 插件路径
+     * @return 安装后的插件信息
+     * @throws PluginLifecycleException 安装失败
+     */
+    public com.xiaoqu.qteamos.api.core.plugin.api.PluginInfo installPlugin(Path jarPath) throws PluginLifecycleException {
         com.xiaoqu.qteamos.api.core.plugin.api.PluginInfo apiPluginInfo = pluginInstaller.installFromPath(jarPath);
         if (apiPluginInfo == null) {
             throw new PluginLifecycleException("安装插件失败: " + jarPath);
         }
-        
-        // 处理完整的插件加载流程
-        processPluginLoading(jarPath, apiPluginInfo);
-        
-        return apiPluginInfo.getPluginId();
+        return apiPluginInfo;
+    }
+    
+    /**
+     * 激活已安装的插件：加载类、初始化并按信任级别启动
+     * 供异步操作引擎在计算阶段调用，进度记录到给定的操作状态中
+     *
+     * @param jarPath 插件路径
+     * @param apiPluginInfo 已安装的插件信息
+     * @param status 操作状态
+     * @throws PluginLifecycleException 生命周期异常
+     */
+    public void activatePlugin(Path jarPath, com.xiaoqu.qteamos.api.core.plugin.api.PluginInfo apiPluginInfo,
+                               OperationStatus status) throws PluginLifecycleException {
+        processPluginLoading(jarPath, apiPluginInfo, status);
     }
     
     /**
@@ -900,6 +1083,18 @@ public class PluginSystemCoordinator {
         return Optional.ofNullable(pluginOperationStatus.get(pluginId));
     }
     
+    /**
+     * 记录插件最近一次操作的状态
+     * 异步操作引擎在获知插件ID后调用，使同步和异步操作共用同一状态视图
+     *
+     * @param status 操作状态
+     */
+    public void trackOperation(OperationStatus status) {
+        if (status.getPluginId() != null) {
+            pluginOperationStatus.put(status.getPluginId(), status);
+        }
+    }
+    
     /**
      * 关闭插件系统
      */
@@ -910,6 +1105,9 @@ public class PluginSystemCoordinator {
         // 中断所有执行任务
         executor.shutdownNow();
         
+        // 卸载插件前写入最终的注册表快照，供下次快速启动
+        snapshotManager.writeFinalSnapshot();
+        
         // 停止文件监控
         fileWatcher.stopWatching();
         
@@ -940,30 +1138,47 @@ public class PluginSystemCoordinator {
         RELOAD,
         INSTALL,
         UNINSTALL,
-        UPDATE
+        UPDATE,
+        HOT_UPDATE
     }
     
     /**
      * 插件操作状态
+     * 字段可能由异步操作引擎的工作线程更新，均为volatile以保证可见性
      */
     public static class OperationStatus {
-        private final String pluginId;
+        private final String operationId;
+        private volatile String pluginId;
         private final OperationType type;
         private final long startTime;
-        private long endTime;
-        private boolean success;
-        private String message;
+        private volatile long endTime;
+        private volatile boolean success;
+        private volatile String message;
+        private volatile String stage;
+        private volatile int progress;
         
         public OperationStatus(String pluginId, OperationType type) {
+            this.operationId = UUID.randomUUID().toString();
             this.pluginId = pluginId;
             this.type = type;
             this.startTime = System.currentTimeMillis();
         }
         
+        public String getOperationId() {
+            return operationId;
+        }
+        
         public String getPluginId() {
             return pluginId;
         }
         
+        /**
+         * 设置插件ID，仅用于插件ID在描述符解析后才能确定的异步操作
+         */
+        void setPluginId(String pluginId) {
+            this.pluginId = pluginId;
+        }
+        
         public OperationType getType() {
             return type;
         }
@@ -995,6 +1210,25 @@ public class PluginSystemCoordinator {
             this.message = message;
         }
         
+        public String getStage() {
+            return stage;
+        }
+        
+        public int getProgress() {
+            return progress;
+        }
+        
+        /**
+         * 更新当前阶段和进度
+         *
+         * @param stage 阶段名称
+         * @param progress 进度百分比(0-100)
+         */
+        public void setStage(String stage, int progress) {
+            this.stage = stage;
+            this.progress = progress;
+        }
+        
         public long getDuration() {
             return (endTime > 0 ? endTime : System.currentTimeMillis()) - startTime;
         }
@@ -43,14 +43,12 @@ public class DefaultDataSourceSwitcher implements DataSourceSwitcher {
     
     @Override
     public <T> T executeWith(String dataSourceName, Supplier<T> action) {
-        String currentDataSource = DataSourceContextHolder.getDataSource();
+        log.debug("切换到数据源: {}", dataSourceName);
+        DataSourceContextHolder.push(dataSourceName);
         try {
-            log.debug("切换到数据源: {}", dataSourceName);
-            DataSourceContextHolder.setDataSource(dataSourceName);
             return action.get();
         } finally {
-            log.debug("恢复数据源: {}", currentDataSource);
-            DataSourceContextHolder.setDataSource(currentDataSource);
+            DataSourceContextHolder.poll();
         }
     }
     
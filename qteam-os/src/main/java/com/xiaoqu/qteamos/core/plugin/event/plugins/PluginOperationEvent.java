@@ -0,0 +1,105 @@
+package com.xiaoqu.qteamos.core.plugin.event.plugins;
+
+import com.xiaoqu.qteamos.core.plugin.coordinator.PluginSystemCoordinator.OperationType;
+import com.xiaoqu.qteamos.core.plugin.event.AbstractEvent;
+
+/**
+ * 插件异步操作进度事件
+ * 由插件操作引擎在每个阶段开始和操作结束时发布，用于向管理端推送安装/升级进度
+ *
+ * @author yangqijun
+ * @date 2025-06-03
+ */
+public class PluginOperationEvent extends AbstractEvent {
+
+    /**
+     * 插件操作事件主题
+     */
+    public static final String TOPIC = "plugin.operation";
+
+    /**
+     * 操作进度事件类型
+     */
+    public static final String TYPE_PROGRESS = "progress";
+
+    /**
+     * 操作完成事件类型
+     */
+    public static final String TYPE_COMPLETED = "completed";
+
+    /**
+     * 操作失败事件类型
+     */
+    public static final String TYPE_FAILED = "failed";
+
+    private final String operationId;
+    private final String pluginId;
+    private final OperationType operationType;
+    private final String stage;
+    private final int progress;
+    private final String message;
+
+    /**
+     * 构造函数
+     *
+     * @param type 事件类型
+     * @param operationId 操作ID
+     * @param pluginId 插件ID，描述符解析前可能为空
+     * @param operationType 操作类型
+     * @param stage 当前阶段
+     * @param progress 进度百分比
+     * @param message 附加消息
+     */
+    public PluginOperationEvent(String type, String operationId, String pluginId, OperationType operationType,
+                                String stage, int progress, String message) {
+        super(TOPIC, type, "plugin.operation");
+        this.operationId = operationId;
+        this.pluginId = pluginId;
+        this.operationType = operationType;
+        this.stage = stage;
+        this.progress = progress;
+        this.message = message;
+    }
+
+    public String getOperationId() {
+        return operationId;
+    }
+
+    public String getPluginId() {
+        return pluginId;
+    }
+
+    public OperationType getOperationType() {
+        return operationType;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    public int getProgress() {
+        return progress;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public boolean isFinished() {
+        return TYPE_COMPLETED.equals(getType()) || TYPE_FAILED.equals(getType());
+    }
+
+    @Override
+    public String toString() {
+        return "PluginOperationEvent{" +
+                "type='" + getType() + '\'' +
+                ", operationId='" + operationId + '\'' +
+                ", pluginId='" + pluginId + '\'' +
+                ", operationType=" + operationType +
+                ", stage='" + stage + '\'' +
+                ", progress=" + progress +
+                ", message='" + message + '\'' +
+                ", timestamp=" + getTimestamp() +
+                '}';
+    }
+}
@@ -28,6 +28,7 @@ import com.xiaoqu.qteamos.core.plugin.manager.PluginStateManager;
 import com.xiaoqu.qteamos.core.plugin.running.PluginDescriptor;
 import com.xiaoqu.qteamos.core.plugin.running.PluginDescriptorLoader;
 import com.xiaoqu.qteamos.core.plugin.running.PluginState;
+import com.xiaoqu.qteamos.core.plugin.security.PluginSecurityIntegration;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -88,6 +89,9 @@ public class DefaultPluginLoader implements PluginLoader {
     @Autowired
     private DefaultPluginInitializer pluginInitializer;
     
+    @Autowired(required = false)
+    private PluginSecurityIntegration securityIntegration;
+    
     @Override
     public boolean load(PluginInfo apiPluginInfo) throws PluginLifecycleException {
         if (apiPluginInfo == null) {
@@ -129,6 +133,7 @@ public class DefaultPluginLoader implements PluginLoader {
                 if (corePluginInfo.getJarPath() != null && corePluginInfo.getJarPath().toFile().exists()) {
                     log.info("插件[{}]类加载器为空，但发现有效的JAR路径，正在创建类加载器...", pluginId);
                     try {
+                        setupPluginSecurity(corePluginInfo.getDescriptor());
                         classLoader = classLoaderFactory.createClassLoader(pluginId, corePluginInfo.getJarPath().toFile());
                         corePluginInfo.setClassLoader(classLoader);
                         log.info("为插件[{}]创建了类加载器: {}", pluginId, classLoader.getClass().getName());
@@ -267,6 +272,9 @@ public class DefaultPluginLoader implements PluginLoader {
                         pluginRegistry.getPlugin(pluginId).orElse(null));
             }
             
+            // 先按描述符设置安全权限，类加载器的访问策略依赖插件声明的权限
+            setupPluginSecurity(descriptor);
+            
             // 创建类加载器
             DynamicClassLoader classLoader = classLoaderFactory.createClassLoader(pluginId, actualPluginFile);
             
@@ -686,6 +694,17 @@ public class DefaultPluginLoader implements PluginLoader {
         }
     }
     
+    /**
+     * 按插件描述符设置沙箱权限
+     * 
+     * @param descriptor 插件描述符
+     */
+    private void setupPluginSecurity(PluginDescriptor descriptor) {
+        if (securityIntegration != null && descriptor != null) {
+            securityIntegration.setupPluginSecurity(descriptor);
+        }
+    }
+    
     /**
      * 发布插件加载事件
      * 
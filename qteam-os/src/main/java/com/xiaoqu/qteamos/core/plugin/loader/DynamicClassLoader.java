@@ -17,6 +17,7 @@ import java.security.ProtectionDomain;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.stream.Collectors;
@@ -109,6 +110,11 @@ public class DynamicClassLoader extends URLClassLoader {
      */
     private volatile long lastUsedTime = System.currentTimeMillis();
     
+    /**
+     * 类访问策略，返回false的类拒绝加载，为null时不限制
+     */
+    private volatile Predicate<String> classAccessPolicy;
+    
     /**
      * 构造函数
      * 
@@ -308,6 +314,16 @@ public class DynamicClassLoader extends URLClassLoader {
         }
     }
     
+    /**
+     * 设置类访问策略
+     * 插件字节码中引用的类都经由本加载器解析，在此拒绝即可在加载时阻止插件使用危险类
+     * 
+     * @param classAccessPolicy 类访问策略，参数为类名
+     */
+    public void setClassAccessPolicy(Predicate<String> classAccessPolicy) {
+        this.classAccessPolicy = classAccessPolicy;
+    }
+    
     /**
      * 获取资源使用信息
      * 
@@ -387,6 +403,13 @@ public class DynamicClassLoader extends URLClassLoader {
             throw new ClassNotFoundException("类 " + name + " 被阻止加载，可能存在安全风险");
         }
         
+        // 按插件权限检查（沙箱）
+        Predicate<String> policy = classAccessPolicy;
+        if (policy != null && !policy.test(name)) {
+            log.warn("插件[{}]没有权限加载类: {}", pluginId, name);
+            throw new ClassNotFoundException("插件[" + pluginId + "]没有权限加载类 " + name);
+        }
+        
         // 首先从缓存中查找
         Class<?> loadedClass = loadedClassCache.get(name);
         if (loadedClass != null) {
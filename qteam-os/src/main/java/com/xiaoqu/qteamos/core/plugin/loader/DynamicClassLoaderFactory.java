@@ -1,6 +1,9 @@
 package com.xiaoqu.qteamos.core.plugin.loader;
 
+import com.xiaoqu.qteamos.core.databases.core.CompiledRowMappers;
+import com.xiaoqu.qteamos.core.plugin.security.PluginSecurityManager;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
@@ -35,6 +38,12 @@ public class DynamicClassLoaderFactory {
      */
     private final ClassLoaderConfiguration defaultConfiguration;
     
+    /**
+     * 插件安全管理器，在类加载时按插件权限拒绝危险类
+     */
+    @Autowired(required = false)
+    private PluginSecurityManager securityManager;
+    
     /**
      * 构造函数
      */
@@ -42,6 +51,18 @@ public class DynamicClassLoaderFactory {
         this.defaultConfiguration = createDefaultConfiguration();
     }
     
+    /**
+     * 设置插件类访问策略，需在添加JAR之前设置，预加载的类同样受约束
+     * 
+     * @param classLoader 插件类加载器
+     */
+    private void applyClassAccessPolicy(DynamicClassLoader classLoader) {
+        if (securityManager != null) {
+            String pluginId = classLoader.getPluginId();
+            classLoader.setClassAccessPolicy(className -> securityManager.isClassAllowed(pluginId, className));
+        }
+    }
+    
     /**
      * 创建默认的类加载器配置
      * 
@@ -127,6 +148,7 @@ public class DynamicClassLoaderFactory {
                 getClass().getClassLoader(),
                 config
         );
+        applyClassAccessPolicy(classLoader);
         
         try {
             // 根据文件类型添加资源
@@ -214,6 +236,7 @@ public class DynamicClassLoaderFactory {
                 getClass().getClassLoader(),
                 config
         );
+        applyClassAccessPolicy(classLoader);
         
         try {
             // 添加插件JAR文件，会自动分析JAR内容
@@ -295,6 +318,8 @@ public class DynamicClassLoaderFactory {
         // 先尝试释放插件类加载器
         PluginClassLoader pluginLoader = pluginClassLoaderCache.remove(pluginId);
         if (pluginLoader != null && !pluginLoader.isClosed()) {
+            // 清除缓存的行映射器，避免持有插件类导致类加载器无法回收
+            CompiledRowMappers.evict(pluginLoader);
             try {
                 pluginLoader.close();
                 log.info("关闭插件专用类加载器: pluginId={}", pluginId);
@@ -306,6 +331,7 @@ public class DynamicClassLoaderFactory {
         // 再尝试释放动态类加载器（兼容旧版）
         DynamicClassLoader classLoader = classLoaderCache.remove(pluginId);
         if (classLoader != null && !classLoader.isClosed()) {
+            CompiledRowMappers.evict(classLoader);
             try {
                 classLoader.close();
                 log.info("关闭插件动态类加载器: pluginId={}", pluginId);
@@ -1,8 +1,12 @@
 package com.xiaoqu.qteamos.core.plugin.manager;
 
 import com.xiaoqu.qteamos.common.utils.VersionUtils;
+import com.xiaoqu.qteamos.core.plugin.event.Event;
+import com.xiaoqu.qteamos.core.plugin.event.EventListener;
+import com.xiaoqu.qteamos.core.plugin.event.PluginEvent;
+import com.xiaoqu.qteamos.core.plugin.event.plugins.PluginInstalledEvent;
+import com.xiaoqu.qteamos.core.plugin.event.plugins.PluginUninstalledEvent;
 import com.xiaoqu.qteamos.core.plugin.manager.exception.PluginDependencyException;
-import com.xiaoqu.qteamos.core.plugin.running.PluginDependency;
 import com.xiaoqu.qteamos.core.plugin.running.PluginDescriptor;
 import com.xiaoqu.qteamos.core.plugin.running.PluginInfo;
 import org.slf4j.Logger;
@@ -12,7 +16,8 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * 增强版插件依赖解析器
@@ -43,11 +48,15 @@ public class EnhancedDependencyResolver extends DependencyResolver {
     // 默认的解析策略
     private ResolutionStrategy defaultStrategy = ResolutionStrategy.NEWEST;
     
-    // 依赖层级缓存
-    private final Map<String, Map<String, Integer>> dependencyLevels = new HashMap<>();
+    // 依赖图快照，安装/卸载时以写时复制方式增量更新，读取无锁
+    private final AtomicReference<PluginDependencyGraph> graphRef =
+            new AtomicReference<>(PluginDependencyGraph.EMPTY);
+    
+    // 可用版本候选索引，随依赖图变更失效
+    private volatile CandidateIndex candidateIndex;
     
     // 版本冲突记录
-    private final Map<String, List<VersionConflict>> versionConflicts = new HashMap<>();
+    private final Map<String, List<VersionConflict>> versionConflicts = new ConcurrentHashMap<>();
     
     /**
      * 设置默认的版本冲突解析策略
@@ -104,44 +113,12 @@ public class EnhancedDependencyResolver extends DependencyResolver {
     public List<VersionConflict> detectDependencyConflicts(String pluginId) throws PluginDependencyException {
         List<VersionConflict> conflicts = new ArrayList<>();
         
-        // 构建依赖图和层级信息
-        Map<String, Set<DependencyEdge>> dependencyGraph = buildDependencyGraph();
-        Map<String, Map<String, Integer>> pluginDependencyLevels = calculateDependencyLevels(dependencyGraph);
-        
-        // 记录层级信息
-        dependencyLevels.putAll(pluginDependencyLevels);
-        
-        // 查找同一插件的不同版本要求
-        Map<String, Map<String, Set<String>>> versionRequirements = new HashMap<>();
-        
-        // 遍历所有插件
-        for (PluginInfo plugin : pluginRegistry.getAllPlugins()) {
-            String currentPluginId = plugin.getDescriptor().getPluginId();
-            List<PluginDependency> dependencies = plugin.getDescriptor().getDependencies();
-            
-            if (dependencies == null || dependencies.isEmpty()) {
-                continue;
-            }
-            
-            // 收集所有依赖版本要求
-            for (PluginDependency dependency : dependencies) {
-                String dependencyId = dependency.getPluginId();
-                String versionRequirement = dependency.getVersionRequirement();
-                
-                if (versionRequirement == null || versionRequirement.isEmpty()) {
-                    continue;
-                }
-                
-                // 记录版本要求
-                versionRequirements
-                    .computeIfAbsent(dependencyId, k -> new HashMap<>())
-                    .computeIfAbsent(versionRequirement, k -> new HashSet<>())
-                    .add(currentPluginId);
-            }
-        }
+        // 获取与注册表同步的依赖图快照，版本要求已在图中建立索引
+        PluginDependencyGraph graph = currentGraph();
+        CandidateIndex candidates = currentCandidateIndex(graph);
         
         // 检查版本要求冲突
-        for (Map.Entry<String, Map<String, Set<String>>> entry : versionRequirements.entrySet()) {
+        for (Map.Entry<String, Map<String, Set<String>>> entry : graph.getRequirements().entrySet()) {
             String dependencyId = entry.getKey();
             Map<String, Set<String>> requirements = entry.getValue();
             
@@ -167,7 +144,7 @@ public class EnhancedDependencyResolver extends DependencyResolver {
                 }
                 
                 // 检查是否有不兼容的版本要求
-                if (!isRequirementsCompatible(conflict.getRequirements())) {
+                if (!candidates.isCompatible(conflict.getRequirements().values())) {
                     conflicts.add(conflict);
                 }
             }
@@ -179,37 +156,6 @@ public class EnhancedDependencyResolver extends DependencyResolver {
         return conflicts;
     }
     
-    /**
-     * 检查版本要求是否兼容
-     *
-     * @param requirements 版本要求
-     * @return 是否兼容
-     */
-    private boolean isRequirementsCompatible(Map<String, String> requirements) {
-        if (requirements.size() <= 1) {
-            return true;
-        }
-        
-        // 检查是否存在一个版本满足所有要求
-        List<String> allVersions = versionManager.getAllAvailableVersions();
-        for (String version : allVersions) {
-            boolean satisfiesAll = true;
-            
-            for (String requirement : requirements.values()) {
-                if (!VersionUtils.satisfiesRequirement(version, requirement)) {
-                    satisfiesAll = false;
-                    break;
-                }
-            }
-            
-            if (satisfiesAll) {
-                return true;
-            }
-        }
-        
-        return false;
-    }
-    
     /**
      * 解决版本冲突
      *
@@ -257,16 +203,9 @@ public class EnhancedDependencyResolver extends DependencyResolver {
      * @return 解析的版本
      */
     private String resolveNewestVersion(VersionConflict conflict) {
-        // 获取满足所有可能满足的版本
+        // 候选版本已按从高到低排序，取第一个满足所有要求的版本
         List<String> candidates = findCompatibleVersions(conflict);
-        if (candidates.isEmpty()) {
-            return null;
-        }
-        
-        // 按版本从高到低排序
-        candidates.sort((v1, v2) -> -VersionUtils.compare(v1, v2));
-        
-        return candidates.get(0);
+        return candidates.isEmpty() ? null : candidates.get(0);
     }
     
     /**
@@ -276,16 +215,9 @@ public class EnhancedDependencyResolver extends DependencyResolver {
      * @return 解析的版本
      */
     private String resolveOldestVersion(VersionConflict conflict) {
-        // 获取满足所有可能满足的版本
+        // 候选版本已按从高到低排序，取最后一个满足所有要求的版本
         List<String> candidates = findCompatibleVersions(conflict);
-        if (candidates.isEmpty()) {
-            return null;
-        }
-        
-        // 按版本从低到高排序
-        candidates.sort(VersionUtils::compare);
-        
-        return candidates.get(0);
+        return candidates.isEmpty() ? null : candidates.get(candidates.size() - 1);
     }
     
     /**
@@ -302,10 +234,11 @@ public class EnhancedDependencyResolver extends DependencyResolver {
         }
         
         // 计算每个依赖方的最小层级
+        PluginDependencyGraph graph = graphRef.get();
         Map<String, Integer> requesterLevels = new HashMap<>();
         for (String requester : conflict.getRequirements().keySet()) {
-            Map<String, Integer> levels = dependencyLevels.get(requester);
-            if (levels != null && levels.containsKey(conflict.getDependencyId())) {
+            Map<String, Integer> levels = graph.getLevels(requester);
+            if (levels.containsKey(conflict.getDependencyId())) {
                 requesterLevels.put(requester, levels.get(conflict.getDependencyId()));
             } else {
                 requesterLevels.put(requester, Integer.MAX_VALUE);
@@ -322,12 +255,9 @@ public class EnhancedDependencyResolver extends DependencyResolver {
             String versionReq = conflict.getRequirements().get(nearestRequester);
             
             // 在满足最近依赖方要求的版本中选择最高版本
-            List<String> nearestCandidates = candidates.stream()
-                    .filter(v -> VersionUtils.satisfiesRequirement(v, versionReq))
-                    .collect(Collectors.toList());
+            List<String> nearestCandidates = currentCandidateIndex(graph).filter(candidates, versionReq);
             
             if (!nearestCandidates.isEmpty()) {
-                nearestCandidates.sort((v1, v2) -> -VersionUtils.compare(v1, v2));
                 return nearestCandidates.get(0);
             }
         }
@@ -350,15 +280,14 @@ public class EnhancedDependencyResolver extends DependencyResolver {
         }
         
         // 查找每个依赖方的优先级
+        PluginDependencyGraph graph = graphRef.get();
         Map<String, Integer> requesterPriorities = new HashMap<>();
         for (String requester : conflict.getRequirements().keySet()) {
             // 根据插件的priority属性确定优先级，越小优先级越高
-            Optional<PluginInfo> pluginInfo = pluginRegistry.getPlugin(requester);
-            if (pluginInfo.isPresent()) {
-                requesterPriorities.put(requester, pluginInfo.get().getDescriptor().getPriority());
-            } else {
-                requesterPriorities.put(requester, Integer.MAX_VALUE);
-            }
+            Integer priority = graph.getDescriptor(requester)
+                    .map(PluginDescriptor::getPriority)
+                    .orElse(null);
+            requesterPriorities.put(requester, priority != null ? priority : Integer.MAX_VALUE);
         }
         
         // 找出优先级最高的依赖方
@@ -371,12 +300,9 @@ public class EnhancedDependencyResolver extends DependencyResolver {
             String versionReq = conflict.getRequirements().get(highestRankRequester);
             
             // 在满足优先级最高依赖方要求的版本中选择最高版本
-            List<String> highRankCandidates = candidates.stream()
-                    .filter(v -> VersionUtils.satisfiesRequirement(v, versionReq))
-                    .collect(Collectors.toList());
+            List<String> highRankCandidates = currentCandidateIndex(graph).filter(candidates, versionReq);
             
             if (!highRankCandidates.isEmpty()) {
-                highRankCandidates.sort((v1, v2) -> -VersionUtils.compare(v1, v2));
                 return highRankCandidates.get(0);
             }
         }
@@ -389,103 +315,95 @@ public class EnhancedDependencyResolver extends DependencyResolver {
      * 查找兼容的版本
      *
      * @param conflict 冲突
-     * @return 兼容版本列表
+     * @return 兼容版本列表，按版本从高到低排序
      */
     private List<String> findCompatibleVersions(VersionConflict conflict) {
-        String dependencyId = conflict.getDependencyId();
-        List<String> allVersions = versionManager.getAllAvailableVersions();
-        
-        // 过滤出满足所有要求的版本
-        return allVersions.stream()
-                .filter(version -> {
-                    for (String requirement : conflict.getRequirements().values()) {
-                        if (!VersionUtils.satisfiesRequirement(version, requirement)) {
-                            return false;
-                        }
-                    }
-                    return true;
-                })
-                .collect(Collectors.toList());
+        return currentCandidateIndex(graphRef.get()).compatibleVersions(conflict.getRequirements().values());
     }
     
     /**
-     * 构建依赖图
+     * 获取与插件注册表一致的依赖图快照
+     * 仅对描述符发生变化的插件做增量更新，未变化时直接返回当前快照
      *
-     * @return 依赖图
+     * @return 依赖图快照
      */
-    private Map<String, Set<DependencyEdge>> buildDependencyGraph() {
-        Map<String, Set<DependencyEdge>> graph = new HashMap<>();
-        
-        // 初始化图
+    public PluginDependencyGraph currentGraph() {
+        PluginDependencyGraph graph = graphRef.get();
+        if (isInSync(graph)) {
+            return graph;
+        }
+        return graphRef.updateAndGet(this::syncWithRegistry);
+    }
+    
+    private boolean isInSync(PluginDependencyGraph graph) {
+        if (graph.size() != pluginRegistry.getPluginCount()) {
+            return false;
+        }
         for (PluginInfo plugin : pluginRegistry.getAllPlugins()) {
-            String pluginId = plugin.getDescriptor().getPluginId();
-            graph.put(pluginId, new HashSet<>());
+            if (plugin.getDescriptor() == null || !graph.isCurrent(plugin.getDescriptor())) {
+                return false;
+            }
         }
-        
-        // 添加边
+        return true;
+    }
+    
+    private PluginDependencyGraph syncWithRegistry(PluginDependencyGraph graph) {
+        PluginDependencyGraph updated = graph;
+        Set<String> registered = new HashSet<>();
         for (PluginInfo plugin : pluginRegistry.getAllPlugins()) {
-            String pluginId = plugin.getDescriptor().getPluginId();
-            List<PluginDependency> dependencies = plugin.getDescriptor().getDependencies();
-            
-            if (dependencies != null) {
-                for (PluginDependency dependency : dependencies) {
-                    String dependencyId = dependency.getPluginId();
-                    
-                    // 如果依赖存在，添加边
-                    if (graph.containsKey(dependencyId)) {
-                        DependencyEdge edge = new DependencyEdge(
-                                dependencyId, pluginId, dependency.getVersionRequirement());
-                        graph.get(dependencyId).add(edge);
-                    }
-                }
+            PluginDescriptor descriptor = plugin.getDescriptor();
+            if (descriptor == null || descriptor.getPluginId() == null) {
+                continue;
             }
+            registered.add(descriptor.getPluginId());
+            updated = updated.withPlugin(descriptor);
         }
-        
-        return graph;
+        for (String pluginId : graph.getPluginIds()) {
+            if (!registered.contains(pluginId)) {
+                updated = updated.withoutPlugin(pluginId);
+            }
+        }
+        return updated;
     }
     
     /**
-     * 计算依赖层级
-     *
-     * @param graph 依赖图
-     * @return 层级信息
+     * 监听插件安装/卸载事件，增量更新依赖图
      */
-    private Map<String, Map<String, Integer>> calculateDependencyLevels(
-            Map<String, Set<DependencyEdge>> graph) {
-        Map<String, Map<String, Integer>> result = new HashMap<>();
-        
-        // 为每个插件计算所有依赖的层级
-        for (String pluginId : graph.keySet()) {
-            Map<String, Integer> levels = new HashMap<>();
-            Queue<DependencyNode> queue = new LinkedList<>();
-            
-            // 将自身添加到队列，层级为0
-            queue.add(new DependencyNode(pluginId, 0));
-            
-            // BFS遍历
-            while (!queue.isEmpty()) {
-                DependencyNode node = queue.poll();
-                String currentId = node.getPluginId();
-                int level = node.getLevel();
-                
-                // 已经访问过且层级更浅，跳过
-                if (levels.containsKey(currentId) && levels.get(currentId) <= level) {
-                    continue;
-                }
-                
-                // 记录层级
-                levels.put(currentId, level);
-                
-                // 遍历依赖
-                for (DependencyEdge edge : graph.getOrDefault(currentId, Collections.emptySet())) {
-                    queue.add(new DependencyNode(edge.getTarget(), level + 1));
-                }
-            }
-            
-            result.put(pluginId, levels);
+    @EventListener(topics = PluginEvent.TOPIC, types = {
+            PluginInstalledEvent.TYPE_INSTALLED, PluginUninstalledEvent.TYPE_UNINSTALLED,
+            PluginEvent.TYPE_LOADED, PluginEvent.TYPE_UNLOADED})
+    public boolean onPluginTopologyChanged(Event event) {
+        if (!(event instanceof PluginEvent)) {
+            return true;
+        }
+        String pluginId = ((PluginEvent) event).getPluginId();
+        if (pluginId == null) {
+            return true;
         }
         
-        return result;
+        Optional<PluginInfo> plugin = pluginRegistry.getPlugin(pluginId);
+        PluginDependencyGraph graph = graphRef.updateAndGet(current -> plugin
+                .map(PluginInfo::getDescriptor)
+                .map(current::withPlugin)
+                .orElseGet(() -> current.withoutPlugin(pluginId)));
+        
+        // 可用版本可能随安装/卸载变化，丢弃候选索引
+        candidateIndex = null;
+        versionConflicts.remove(pluginId);
+        log.debug("依赖图已更新: 插件={}, 修订号={}, 插件数={}", pluginId, graph.getRevision(), graph.size());
+        return true;
+    }
+    
+    /**
+     * 获取候选版本索引，依赖图修订号变化时重建
+     */
+    private CandidateIndex currentCandidateIndex(PluginDependencyGraph graph) {
+        CandidateIndex index = candidateIndex;
+        if (index == null || index.revision != graph.getRevision()) {
+            index = new CandidateIndex(graph.getRevision(), versionManager.getAllAvailableVersions());
+            candidateIndex = index;
+        }
+        return index;
     }
     
     /**
@@ -512,7 +430,7 @@ public class EnhancedDependencyResolver extends DependencyResolver {
      */
     public void clearConflictRecords() {
         versionConflicts.clear();
-        dependencyLevels.clear();
+        candidateIndex = null;
     }
     
     /**
@@ -590,66 +508,78 @@ public class EnhancedDependencyResolver extends DependencyResolver {
     }
     
     /**
-     * 依赖边
-     * 表示依赖关系图中的边
+     * 候选版本索引
+     * 可用版本按从高到低排序，每个版本要求只解析一次并缓存为满足条件的版本位图，
+     * 多个要求的兼容性检查即为位图求交
      */
-    private static class DependencyEdge {
-        private final String source;
-        private final String target;
-        private final String versionRequirement;
-        
-        public DependencyEdge(String source, String target, String versionRequirement) {
-            this.source = source;
-            this.target = target;
-            this.versionRequirement = versionRequirement;
-        }
-        
-        public String getSource() {
-            return source;
-        }
-        
-        public String getTarget() {
-            return target;
-        }
-        
-        public String getVersionRequirement() {
-            return versionRequirement;
-        }
-        
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            DependencyEdge that = (DependencyEdge) o;
-            return Objects.equals(source, that.source) &&
-                    Objects.equals(target, that.target);
-        }
-        
-        @Override
-        public int hashCode() {
-            return Objects.hash(source, target);
+    private static class CandidateIndex {
+        private final long revision;
+        private final List<String> versions;
+        private final Map<String, BitSet> requirementMatches = new ConcurrentHashMap<>();
+        private final Map<Set<String>, List<String>> solutions = new ConcurrentHashMap<>();
+        
+        CandidateIndex(long revision, List<String> availableVersions) {
+            this.revision = revision;
+            List<String> sorted = new ArrayList<>();
+            for (String version : availableVersions) {
+                if (VersionUtils.isValidVersion(version)) {
+                    sorted.add(version);
+                }
+            }
+            sorted.sort((v1, v2) -> -VersionUtils.compare(v1, v2));
+            this.versions = Collections.unmodifiableList(sorted);
         }
-    }
-    
-    /**
-     * 依赖节点
-     * 表示BFS遍历中的节点
-     */
-    private static class DependencyNode {
-        private final String pluginId;
-        private final int level;
         
-        public DependencyNode(String pluginId, int level) {
-            this.pluginId = pluginId;
-            this.level = level;
+        private BitSet matches(String requirement) {
+            return requirementMatches.computeIfAbsent(requirement, req -> {
+                BitSet bits = new BitSet(versions.size());
+                for (int i = 0; i < versions.size(); i++) {
+                    if (VersionUtils.satisfiesRequirement(versions.get(i), req)) {
+                        bits.set(i);
+                    }
+                }
+                return bits;
+            });
+        }
+        
+        /**
+         * 获取满足所有要求的版本，结果按要求集合缓存
+         */
+        List<String> compatibleVersions(Collection<String> requirements) {
+            return solutions.computeIfAbsent(new HashSet<>(requirements), reqs -> {
+                BitSet result = new BitSet(versions.size());
+                result.set(0, versions.size());
+                for (String requirement : reqs) {
+                    result.and(matches(requirement));
+                    if (result.isEmpty()) {
+                        break;
+                    }
+                }
+                List<String> compatible = new ArrayList<>(result.cardinality());
+                for (int i = result.nextSetBit(0); i >= 0; i = result.nextSetBit(i + 1)) {
+                    compatible.add(versions.get(i));
+                }
+                return Collections.unmodifiableList(compatible);
+            });
         }
         
-        public String getPluginId() {
-            return pluginId;
+        boolean isCompatible(Collection<String> requirements) {
+            return new HashSet<>(requirements).size() <= 1 || !compatibleVersions(requirements).isEmpty();
         }
         
-        public int getLevel() {
-            return level;
+        /**
+         * 从已排序的候选版本中过滤出满足指定要求的版本，保持原有顺序
+         */
+        List<String> filter(List<String> candidates, String requirement) {
+            BitSet bits = matches(requirement);
+            List<String> filtered = new ArrayList<>();
+            for (String candidate : candidates) {
+                int index = Collections.binarySearch(versions, candidate, (v1, v2) -> -VersionUtils.compare(v1, v2));
+                if (index >= 0 && bits.get(index)) {
+                    filtered.add(candidate);
+                }
+            }
+            return filtered;
         }
     }
-} 
\ No newline at end of file
+}
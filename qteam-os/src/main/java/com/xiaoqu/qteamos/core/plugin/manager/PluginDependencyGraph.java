@@ -0,0 +1,301 @@
+package com.xiaoqu.qteamos.core.plugin.manager;
+
+import com.xiaoqu.qteamos.core.plugin.running.PluginDependency;
+import com.xiaoqu.qteamos.core.plugin.running.PluginDescriptor;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 插件依赖图快照
+ * 不可变对象，每次插件安装/卸载时以写时复制方式生成新快照，
+ * 读取方无需加锁即可获得一致的依赖视图
+ *
+ * @author yangqijun
+ * @date 2024-07-18
+ */
+public final class PluginDependencyGraph {
+
+    /**
+     * 空依赖图
+     */
+    public static final PluginDependencyGraph EMPTY = new PluginDependencyGraph(
+            0L, Collections.emptyMap(), Collections.emptyMap());
+
+    /**
+     * 快照版本号，每次变更递增
+     */
+    private final long revision;
+
+    /**
+     * 插件节点，key为插件ID
+     */
+    private final Map<String, Node> nodes;
+
+    /**
+     * 依赖版本要求索引：被依赖插件ID -> 版本要求 -> 依赖方插件ID集合
+     */
+    private final Map<String, Map<String, Set<String>>> requirements;
+
+    /**
+     * 依赖层级缓存，按需计算，随快照一同失效
+     */
+    private final Map<String, Map<String, Integer>> levelCache = new ConcurrentHashMap<>();
+
+    private PluginDependencyGraph(long revision, Map<String, Node> nodes,
+                                  Map<String, Map<String, Set<String>>> requirements) {
+        this.revision = revision;
+        this.nodes = nodes;
+        this.requirements = requirements;
+    }
+
+    /**
+     * 根据插件描述符集合构建依赖图
+     *
+     * @param descriptors 插件描述符
+     * @return 依赖图快照
+     */
+    public static PluginDependencyGraph of(Collection<PluginDescriptor> descriptors) {
+        PluginDependencyGraph graph = EMPTY;
+        for (PluginDescriptor descriptor : descriptors) {
+            graph = graph.withPlugin(descriptor);
+        }
+        return graph;
+    }
+
+    /**
+     * 添加或替换插件，返回新的快照
+     *
+     * @param descriptor 插件描述符
+     * @return 新的依赖图快照
+     */
+    public PluginDependencyGraph withPlugin(PluginDescriptor descriptor) {
+        String pluginId = descriptor.getPluginId();
+        Node existing = nodes.get(pluginId);
+        if (existing != null && existing.descriptor == descriptor) {
+            return this;
+        }
+
+        PluginDependencyGraph base = existing != null ? withoutPlugin(pluginId) : this;
+
+        Map<String, Node> newNodes = new HashMap<>(base.nodes);
+        Map<String, Map<String, Set<String>>> newRequirements = new HashMap<>(base.requirements);
+
+        // 收集已存在插件中依赖当前插件的依赖方
+        Set<String> dependents = new HashSet<>();
+        for (Node node : base.nodes.values()) {
+            if (node.dependencyIds.contains(pluginId)) {
+                dependents.add(node.pluginId);
+            }
+        }
+
+        List<PluginDependency> dependencies = descriptor.getDependencies() != null
+                ? descriptor.getDependencies() : Collections.emptyList();
+        Set<String> dependencyIds = new LinkedHashSet<>();
+        for (PluginDependency dependency : dependencies) {
+            String dependencyId = dependency.getPluginId();
+            if (dependencyId == null) {
+                continue;
+            }
+            dependencyIds.add(dependencyId);
+
+            // 被依赖插件已存在时登记反向边
+            Node target = newNodes.get(dependencyId);
+            if (target != null) {
+                newNodes.put(dependencyId, target.withDependent(pluginId, true));
+            }
+
+            String versionRequirement = dependency.getVersionRequirement();
+            if (versionRequirement != null && !versionRequirement.isEmpty()) {
+                newRequirements.put(dependencyId, copyWith(newRequirements.get(dependencyId),
+                        versionRequirement, pluginId, true));
+            }
+        }
+
+        newNodes.put(pluginId, new Node(pluginId, descriptor, Collections.unmodifiableSet(dependencyIds),
+                Collections.unmodifiableSet(dependents)));
+        return new PluginDependencyGraph(base.revision + 1,
+                Collections.unmodifiableMap(newNodes), Collections.unmodifiableMap(newRequirements));
+    }
+
+    /**
+     * 移除插件，返回新的快照
+     *
+     * @param pluginId 插件ID
+     * @return 新的依赖图快照
+     */
+    public PluginDependencyGraph withoutPlugin(String pluginId) {
+        Node removed = nodes.get(pluginId);
+        if (removed == null) {
+            return this;
+        }
+
+        Map<String, Node> newNodes = new HashMap<>(nodes);
+        Map<String, Map<String, Set<String>>> newRequirements = new HashMap<>(requirements);
+        newNodes.remove(pluginId);
+
+        List<PluginDependency> dependencies = removed.descriptor.getDependencies() != null
+                ? removed.descriptor.getDependencies() : Collections.emptyList();
+        for (PluginDependency dependency : dependencies) {
+            String dependencyId = dependency.getPluginId();
+            if (dependencyId == null) {
+                continue;
+            }
+
+            Node target = newNodes.get(dependencyId);
+            if (target != null) {
+                newNodes.put(dependencyId, target.withDependent(pluginId, false));
+            }
+
+            String versionRequirement = dependency.getVersionRequirement();
+            if (versionRequirement != null && !versionRequirement.isEmpty()) {
+                Map<String, Set<String>> updated = copyWith(newRequirements.get(dependencyId),
+                        versionRequirement, pluginId, false);
+                if (updated.isEmpty()) {
+                    newRequirements.remove(dependencyId);
+                } else {
+                    newRequirements.put(dependencyId, updated);
+                }
+            }
+        }
+
+        return new PluginDependencyGraph(revision + 1,
+                Collections.unmodifiableMap(newNodes), Collections.unmodifiableMap(newRequirements));
+    }
+
+    /**
+     * 复制版本要求索引并添加或移除一个依赖方
+     */
+    private static Map<String, Set<String>> copyWith(Map<String, Set<String>> source, String requirement,
+                                                     String requester, boolean add) {
+        Map<String, Set<String>> copy = source != null ? new HashMap<>(source) : new HashMap<>();
+        Set<String> requesters = new HashSet<>(copy.getOrDefault(requirement, Collections.emptySet()));
+        if (add) {
+            requesters.add(requester);
+        } else {
+            requesters.remove(requester);
+        }
+        if (requesters.isEmpty()) {
+            copy.remove(requirement);
+        } else {
+            copy.put(requirement, Collections.unmodifiableSet(requesters));
+        }
+        return Collections.unmodifiableMap(copy);
+    }
+
+    public long getRevision() {
+        return revision;
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    public boolean contains(String pluginId) {
+        return nodes.containsKey(pluginId);
+    }
+
+    /**
+     * 判断快照中的插件描述符是否与给定描述符为同一实例
+     *
+     * @param descriptor 插件描述符
+     * @return 是否未发生变化
+     */
+    public boolean isCurrent(PluginDescriptor descriptor) {
+        Node node = nodes.get(descriptor.getPluginId());
+        return node != null && node.descriptor == descriptor;
+    }
+
+    public Set<String> getPluginIds() {
+        return nodes.keySet();
+    }
+
+    public Optional<PluginDescriptor> getDescriptor(String pluginId) {
+        Node node = nodes.get(pluginId);
+        return node != null ? Optional.of(node.descriptor) : Optional.empty();
+    }
+
+    /**
+     * 获取依赖指定插件的插件ID集合
+     *
+     * @param pluginId 插件ID
+     * @return 依赖方插件ID
+     */
+    public Set<String> getDependents(String pluginId) {
+        Node node = nodes.get(pluginId);
+        return node != null ? node.dependents : Collections.emptySet();
+    }
+
+    /**
+     * 获取所有版本要求索引
+     *
+     * @return 被依赖插件ID -> 版本要求 -> 依赖方插件ID集合
+     */
+    public Map<String, Map<String, Set<String>>> getRequirements() {
+        return requirements;
+    }
+
+    /**
+     * 获取插件的依赖层级，沿依赖方向广度优先遍历，结果在当前快照内缓存
+     *
+     * @param pluginId 插件ID
+     * @return 插件ID -> 层级
+     */
+    public Map<String, Integer> getLevels(String pluginId) {
+        if (!nodes.containsKey(pluginId)) {
+            return Collections.emptyMap();
+        }
+        return levelCache.computeIfAbsent(pluginId, this::computeLevels);
+    }
+
+    private Map<String, Integer> computeLevels(String pluginId) {
+        Map<String, Integer> levels = new HashMap<>();
+        Deque<String> queue = new ArrayDeque<>();
+        levels.put(pluginId, 0);
+        queue.add(pluginId);
+
+        // 无权图上的BFS，首次访问即为最短层级
+        while (!queue.isEmpty()) {
+            String currentId = queue.poll();
+            int level = levels.get(currentId);
+            for (String dependent : getDependents(currentId)) {
+                if (!levels.containsKey(dependent)) {
+                    levels.put(dependent, level + 1);
+                    queue.add(dependent);
+                }
+            }
+        }
+
+        return Collections.unmodifiableMap(levels);
+    }
+
+    /**
+     * 依赖图节点
+     */
+    private static final class Node {
+        private final String pluginId;
+        private final PluginDescriptor descriptor;
+        private final Set<String> dependencyIds;
+        private final Set<String> dependents;
+
+        private Node(String pluginId, PluginDescriptor descriptor, Set<String> dependencyIds, Set<String> dependents) {
+            this.pluginId = pluginId;
+            this.descriptor = descriptor;
+            this.dependencyIds = dependencyIds;
+            this.dependents = dependents;
+        }
+
+        private Node withDependent(String dependent, boolean add) {
+            if (dependents.contains(dependent) == add) {
+                return this;
+            }
+            Set<String> copy = new HashSet<>(dependents);
+            if (add) {
+                copy.add(dependent);
+            } else {
+                copy.remove(dependent);
+            }
+            return new Node(pluginId, descriptor, dependencyIds, Collections.unmodifiableSet(copy));
+        }
+    }
+}
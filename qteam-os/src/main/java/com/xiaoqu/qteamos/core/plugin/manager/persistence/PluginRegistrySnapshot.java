@@ -0,0 +1,409 @@
+package com.xiaoqu.qteamos.core.plugin.manager.persistence;
+
+import com.xiaoqu.qteamos.core.plugin.running.PluginDependency;
+import com.xiaoqu.qteamos.core.plugin.running.PluginDescriptor;
+import com.xiaoqu.qteamos.core.plugin.running.PluginInfo;
+import com.xiaoqu.qteamos.core.plugin.running.PluginState;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * 插件注册表快照
+ * 紧凑的二进制格式，保存插件描述符、依赖加载顺序、路由表和类加载索引，
+ * 用于重启时跳过数据库查询和plugin.yml解析
+ *
+ * 文件格式：魔数 | 格式版本 | 创建时间 | 条目数 | 条目... | CRC32
+ * 条目按依赖顺序写入，被依赖的插件在前
+ *
+ * @author yangqijun
+ * @date 2024-07-03
+ */
+public final class PluginRegistrySnapshot {
+
+    private static final int MAGIC = 0x51545253;
+
+    private static final short FORMAT_VERSION = 1;
+
+    /**
+     * 单个字段或集合的长度上限，防止损坏的文件在校验前触发超大内存分配
+     */
+    private static final int MAX_LENGTH = 16 * 1024 * 1024;
+
+    private final long createdAt;
+
+    private final List<Entry> entries;
+
+    public PluginRegistrySnapshot(long createdAt, List<Entry> entries) {
+        this.createdAt = createdAt;
+        this.entries = Collections.unmodifiableList(new ArrayList<>(entries));
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * 获取按依赖顺序排列的快照条目
+     *
+     * @return 快照条目
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * 根据插件ID查找快照条目
+     *
+     * @param pluginId 插件ID
+     * @return 快照条目，不存在时返回null
+     */
+    public Entry find(String pluginId) {
+        for (Entry entry : entries) {
+            if (entry.pluginId.equals(pluginId)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 将快照写入文件，先写临时文件再原子替换，避免中途崩溃留下损坏的快照
+     *
+     * @param file 快照文件
+     * @throws IOException 写入失败
+     */
+    public void write(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        CRC32 crc = new CRC32();
+        try (OutputStream fileOut = Files.newOutputStream(temp);
+             BufferedOutputStream buffered = new BufferedOutputStream(fileOut);
+             CheckedOutputStream checked = new CheckedOutputStream(buffered, crc);
+             DataOutputStream out = new DataOutputStream(checked)) {
+            out.writeInt(MAGIC);
+            out.writeShort(FORMAT_VERSION);
+            out.writeLong(createdAt);
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                entry.writeTo(out);
+            }
+            out.flush();
+            // 校验和本身不参与计算，直接写入底层流
+            new DataOutputStream(buffered).writeLong(crc.getValue());
+            buffered.flush();
+        }
+
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * 从文件读取快照
+     *
+     * @param file 快照文件
+     * @return 快照
+     * @throws IOException 文件不存在、格式不兼容或校验失败
+     */
+    public static PluginRegistrySnapshot read(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        try (InputStream fileIn = Files.newInputStream(file);
+             BufferedInputStream buffered = new BufferedInputStream(fileIn);
+             CheckedInputStream checked = new CheckedInputStream(buffered, crc)) {
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != MAGIC) {
+                throw new IOException("不是插件注册表快照文件: " + file);
+            }
+            short formatVersion = in.readShort();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IOException("不支持的快照格式版本: " + formatVersion);
+            }
+            long createdAt = in.readLong();
+            int count = checkLength(in.readInt());
+            List<Entry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                entries.add(Entry.readFrom(in));
+            }
+
+            long expected = crc.getValue();
+            long actual = new DataInputStream(buffered).readLong();
+            if (expected != actual) {
+                throw new IOException("快照文件校验失败: " + file);
+            }
+            return new PluginRegistrySnapshot(createdAt, entries);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        checkLength(length);
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int checkLength(int length) throws IOException {
+        if (length < 0 || length > MAX_LENGTH) {
+            throw new IOException("快照文件已损坏: 非法长度 " + length);
+        }
+        return length;
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int count = checkLength(in.readInt());
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+
+    /**
+     * 快照条目，对应一个已注册插件
+     */
+    public static final class Entry {
+        private final PluginDescriptor descriptor;
+        private final boolean enabled;
+        private final PluginState state;
+        private final String jarPath;
+        private final long jarSize;
+        private final long jarLastModified;
+        private final String jarHash;
+        private final List<String> routes;
+        private final List<String> classIndex;
+        private final String pluginId;
+
+        public Entry(PluginDescriptor descriptor, boolean enabled, PluginState state, String jarPath,
+                     long jarSize, long jarLastModified, String jarHash,
+                     List<String> routes, List<String> classIndex) {
+            this.descriptor = copyDescriptor(descriptor);
+            this.pluginId = descriptor.getPluginId();
+            this.enabled = enabled;
+            this.state = state;
+            this.jarPath = jarPath;
+            this.jarSize = jarSize;
+            this.jarLastModified = jarLastModified;
+            this.jarHash = jarHash;
+            this.routes = Collections.unmodifiableList(new ArrayList<>(routes));
+            this.classIndex = Collections.unmodifiableList(new ArrayList<>(classIndex));
+        }
+
+        public String getPluginId() {
+            return pluginId;
+        }
+
+        public String getVersion() {
+            return descriptor.getVersion();
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public PluginState getState() {
+            return state;
+        }
+
+        public String getJarPath() {
+            return jarPath;
+        }
+
+        public long getJarSize() {
+            return jarSize;
+        }
+
+        public long getJarLastModified() {
+            return jarLastModified;
+        }
+
+        public String getJarHash() {
+            return jarHash;
+        }
+
+        public List<String> getRoutes() {
+            return routes;
+        }
+
+        public List<String> getClassIndex() {
+            return classIndex;
+        }
+
+        /**
+         * 判断JAR文件的大小和修改时间是否与快照一致
+         *
+         * @param file JAR文件
+         * @return 是否一致
+         */
+        public boolean matchesFileStat(File file) {
+            return file.length() == jarSize && file.lastModified() == jarLastModified;
+        }
+
+        /**
+         * 还原为插件信息，每次调用生成新的描述符实例
+         *
+         * @return 插件信息
+         */
+        public PluginInfo toPluginInfo() {
+            PluginInfo pluginInfo = PluginInfo.builder()
+                    .descriptor(copyDescriptor(descriptor))
+                    .build();
+            pluginInfo.setEnabled(enabled);
+            pluginInfo.setState(state);
+            if (jarPath != null) {
+                pluginInfo.setJarPath(Path.of(jarPath));
+            }
+            return pluginInfo;
+        }
+
+        /**
+         * 复制快照需要的描述符字段，使快照与运行中的插件对象互不影响
+         */
+        private static PluginDescriptor copyDescriptor(PluginDescriptor descriptor) {
+            PluginDescriptor copy = new PluginDescriptor();
+            copy.setPluginId(descriptor.getPluginId());
+            copy.setName(descriptor.getName());
+            copy.setVersion(descriptor.getVersion());
+            copy.setDescription(descriptor.getDescription());
+            copy.setAuthor(descriptor.getAuthor());
+            copy.setMainClass(descriptor.getMainClass());
+            copy.setType(descriptor.getType());
+            copy.setTrust(descriptor.getTrust());
+            copy.setRequiredSystemVersion(descriptor.getRequiredSystemVersion());
+            copy.setPriority(descriptor.getPriority());
+            copy.setEnabled(descriptor.isEnabled());
+            if (descriptor.getPermissions() != null) {
+                copy.setPermissions(new ArrayList<>(descriptor.getPermissions()));
+            }
+            if (descriptor.getDependencies() != null) {
+                List<PluginDependency> dependencies = new ArrayList<>(descriptor.getDependencies().size());
+                for (PluginDependency dependency : descriptor.getDependencies()) {
+                    dependencies.add(PluginDependency.builder()
+                            .pluginId(dependency.getPluginId())
+                            .versionRequirement(dependency.getVersionRequirement())
+                            .optional(dependency.isOptional())
+                            .build());
+                }
+                copy.setDependencies(dependencies);
+            }
+            return copy;
+        }
+
+        private void writeTo(DataOutputStream out) throws IOException {
+            writeString(out, descriptor.getPluginId());
+            writeString(out, descriptor.getName());
+            writeString(out, descriptor.getVersion());
+            writeString(out, descriptor.getDescription());
+            writeString(out, descriptor.getAuthor());
+            writeString(out, descriptor.getMainClass());
+            writeString(out, descriptor.getType());
+            writeString(out, descriptor.getTrust());
+            writeString(out, descriptor.getRequiredSystemVersion());
+            out.writeBoolean(descriptor.getPriority() != null);
+            if (descriptor.getPriority() != null) {
+                out.writeInt(descriptor.getPriority());
+            }
+            out.writeBoolean(descriptor.isEnabled());
+            writeStrings(out, descriptor.getPermissions() != null ? descriptor.getPermissions() : Collections.emptyList());
+
+            List<PluginDependency> dependencies = descriptor.getDependencies() != null
+                    ? descriptor.getDependencies() : Collections.emptyList();
+            out.writeInt(dependencies.size());
+            for (PluginDependency dependency : dependencies) {
+                writeString(out, dependency.getPluginId());
+                writeString(out, dependency.getVersionRequirement());
+                out.writeBoolean(dependency.isOptional());
+            }
+
+            out.writeBoolean(enabled);
+            writeString(out, state != null ? state.name() : null);
+            writeString(out, jarPath);
+            out.writeLong(jarSize);
+            out.writeLong(jarLastModified);
+            writeString(out, jarHash);
+            writeStrings(out, routes);
+            writeStrings(out, classIndex);
+        }
+
+        private static Entry readFrom(DataInputStream in) throws IOException {
+            PluginDescriptor descriptor = new PluginDescriptor();
+            descriptor.setPluginId(readString(in));
+            descriptor.setName(readString(in));
+            descriptor.setVersion(readString(in));
+            descriptor.setDescription(readString(in));
+            descriptor.setAuthor(readString(in));
+            descriptor.setMainClass(readString(in));
+            descriptor.setType(readString(in));
+            descriptor.setTrust(readString(in));
+            descriptor.setRequiredSystemVersion(readString(in));
+            if (in.readBoolean()) {
+                descriptor.setPriority(in.readInt());
+            }
+            descriptor.setEnabled(in.readBoolean());
+            descriptor.setPermissions(readStrings(in));
+
+            int dependencyCount = checkLength(in.readInt());
+            List<PluginDependency> dependencies = new ArrayList<>(dependencyCount);
+            for (int i = 0; i < dependencyCount; i++) {
+                dependencies.add(PluginDependency.builder()
+                        .pluginId(readString(in))
+                        .versionRequirement(readString(in))
+                        .optional(in.readBoolean())
+                        .build());
+            }
+            descriptor.setDependencies(dependencies);
+
+            boolean enabled = in.readBoolean();
+            String stateName = readString(in);
+            PluginState state;
+            try {
+                state = stateName != null ? PluginState.valueOf(stateName) : PluginState.CREATED;
+            } catch (IllegalArgumentException e) {
+                state = PluginState.CREATED;
+            }
+            String jarPath = readString(in);
+            long jarSize = in.readLong();
+            long jarLastModified = in.readLong();
+            String jarHash = readString(in);
+            List<String> routes = readStrings(in);
+            List<String> classIndex = readStrings(in);
+            return new Entry(descriptor, enabled, state, jarPath, jarSize, jarLastModified, jarHash,
+                    routes, classIndex);
+        }
+    }
+}
@@ -0,0 +1,420 @@
+package com.xiaoqu.qteamos.core.plugin.manager.persistence;
+
+import com.xiaoqu.qteamos.core.gateway.mapping.GatewayPathMappingListener;
+import com.xiaoqu.qteamos.core.plugin.event.Event;
+import com.xiaoqu.qteamos.core.plugin.event.EventListener;
+import com.xiaoqu.qteamos.core.plugin.event.PluginEvent;
+import com.xiaoqu.qteamos.core.plugin.event.plugins.PluginInstalledEvent;
+import com.xiaoqu.qteamos.core.plugin.event.plugins.PluginUninstalledEvent;
+import com.xiaoqu.qteamos.core.plugin.loader.DynamicClassLoader;
+import com.xiaoqu.qteamos.core.plugin.manager.PluginRegistry;
+import com.xiaoqu.qteamos.core.plugin.running.PluginDependency;
+import com.xiaoqu.qteamos.core.plugin.running.PluginDescriptor;
+import com.xiaoqu.qteamos.core.plugin.running.PluginInfo;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 插件注册表快照管理器
+ * 在生命周期变化后（合并短时间内的多次变化）及系统关闭时写入注册表快照，
+ * 启动时校验快照中每个插件的JAR，未变化的插件直接从快照还原，只有变化的插件回退到数据库/JAR
+ *
+ * @author yangqijun
+ * @date 2024-07-03
+ */
+@Component
+public class PluginRegistrySnapshotManager {
+    private static final Logger log = LoggerFactory.getLogger(PluginRegistrySnapshotManager.class);
+
+    @Value("${plugin.snapshot.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 快照文件位置，不能放在被文件监控的插件目录或插件临时目录下
+     */
+    @Value("${plugin.snapshot.path:./plugins-state/registry.snapshot}")
+    private String snapshotPath;
+
+    @Value("${plugin.snapshot.write-delay-ms:1000}")
+    private long writeDelayMs;
+
+    @Autowired
+    private PluginRegistry pluginRegistry;
+
+    @Autowired(required = false)
+    private GatewayPathMappingListener gatewayPathMappingListener;
+
+    // 最近一次写入或读取的快照，用于复用未变化JAR的哈希
+    private volatile PluginRegistrySnapshot lastSnapshot;
+
+    // 冻结后不再写入，防止关闭过程中的卸载事件用空注册表覆盖快照
+    private volatile boolean frozen;
+
+    private final AtomicBoolean writeScheduled = new AtomicBoolean();
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "plugin-registry-snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 监听插件生命周期变化，延迟合并后写入快照
+     */
+    @EventListener(topics = PluginEvent.TOPIC, types = {
+            PluginInstalledEvent.TYPE_INSTALLED, PluginUninstalledEvent.TYPE_UNINSTALLED,
+            PluginEvent.TYPE_LOADED, PluginEvent.TYPE_STARTED, PluginEvent.TYPE_STOPPED,
+            PluginEvent.TYPE_UNLOADED, PluginEvent.TYPE_ENABLED, PluginEvent.TYPE_DISABLED})
+    public boolean onPluginLifecycleChanged(Event event) {
+        scheduleWrite();
+        return true;
+    }
+
+    /**
+     * 延迟写入快照，延迟期间的多次变化只写一次
+     */
+    public void scheduleWrite() {
+        if (!enabled || frozen || scheduler == null || scheduler.isShutdown()) {
+            return;
+        }
+        if (writeScheduled.compareAndSet(false, true)) {
+            scheduler.schedule(() -> {
+                writeScheduled.set(false);
+                writeNow();
+            }, writeDelayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 立即根据当前注册表写入快照
+     *
+     * @return 是否写入成功
+     */
+    public synchronized boolean writeNow() {
+        if (!enabled || frozen) {
+            return false;
+        }
+        try {
+            PluginRegistrySnapshot snapshot = capture();
+            snapshot.write(Path.of(snapshotPath));
+            lastSnapshot = snapshot;
+            log.debug("插件注册表快照已写入: {} 个插件", snapshot.getEntries().size());
+            return true;
+        } catch (Exception e) {
+            log.warn("写入插件注册表快照失败: {}", e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * 系统关闭前写入最终快照并冻结，之后的卸载事件不再覆盖快照
+     */
+    public synchronized void writeFinalSnapshot() {
+        writeNow();
+        frozen = true;
+    }
+
+    /**
+     * 读取并校验快照
+     *
+     * @return 还原结果，快照不可用时 {@link RestoreResult#isAvailable()} 为false
+     */
+    public RestoreResult restore() {
+        if (!enabled) {
+            return RestoreResult.UNAVAILABLE;
+        }
+        PluginRegistrySnapshot snapshot;
+        try {
+            snapshot = PluginRegistrySnapshot.read(Path.of(snapshotPath));
+        } catch (NoSuchFileException e) {
+            log.info("未找到插件注册表快照，将从数据库加载");
+            return RestoreResult.UNAVAILABLE;
+        } catch (IOException e) {
+            log.warn("插件注册表快照不可用，将从数据库加载: {}", e.getMessage());
+            return RestoreResult.UNAVAILABLE;
+        }
+
+        List<PluginInfo> plugins = new ArrayList<>();
+        Set<String> changed = new LinkedHashSet<>();
+        List<String> order = new ArrayList<>(snapshot.getEntries().size());
+        List<PluginRegistrySnapshot.Entry> validEntries = new ArrayList<>();
+        for (PluginRegistrySnapshot.Entry entry : snapshot.getEntries()) {
+            order.add(entry.getPluginId());
+            if (isUnchanged(entry)) {
+                plugins.add(entry.toPluginInfo());
+                validEntries.add(entry);
+            } else {
+                changed.add(entry.getPluginId());
+            }
+        }
+
+        lastSnapshot = new PluginRegistrySnapshot(snapshot.getCreatedAt(), validEntries);
+        log.info("插件注册表快照校验完成: 可还原 {} 个, 已变化 {} 个", plugins.size(), changed.size());
+        return new RestoreResult(true, plugins, changed, order);
+    }
+
+    /**
+     * 使用快照中的类加载索引预热插件类加载器
+     *
+     * @param pluginId 插件ID
+     */
+    public void warmUp(String pluginId) {
+        PluginRegistrySnapshot snapshot = lastSnapshot;
+        PluginRegistrySnapshot.Entry entry = snapshot != null ? snapshot.find(pluginId) : null;
+        if (entry == null || entry.getClassIndex().isEmpty()) {
+            return;
+        }
+        Optional<PluginInfo> pluginInfo = pluginRegistry.getPlugin(pluginId);
+        DynamicClassLoader classLoader = pluginInfo.map(PluginInfo::getClassLoader).orElse(null);
+        if (classLoader == null || classLoader.isClosed()) {
+            return;
+        }
+
+        int loaded = 0;
+        for (String className : entry.getClassIndex()) {
+            try {
+                classLoader.loadClass(className);
+                loaded++;
+            } catch (ClassNotFoundException | LinkageError e) {
+                log.debug("预热插件[{}]类失败: {}", pluginId, className);
+            }
+        }
+        log.debug("插件[{}]类加载器预热完成: {}/{}", pluginId, loaded, entry.getClassIndex().size());
+    }
+
+    /**
+     * 获取快照中记录的插件路由
+     *
+     * @param pluginId 插件ID
+     * @return 路由路径
+     */
+    public List<String> getSnapshotRoutes(String pluginId) {
+        PluginRegistrySnapshot snapshot = lastSnapshot;
+        PluginRegistrySnapshot.Entry entry = snapshot != null ? snapshot.find(pluginId) : null;
+        return entry != null ? entry.getRoutes() : Collections.emptyList();
+    }
+
+    /**
+     * 校验快照条目对应的JAR是否未变化
+     * 大小和修改时间一致时直接认可，否则重新计算哈希比较
+     */
+    private boolean isUnchanged(PluginRegistrySnapshot.Entry entry) {
+        if (entry.getJarPath() == null || entry.getJarHash() == null) {
+            return false;
+        }
+        File jarFile = new File(entry.getJarPath());
+        if (!jarFile.isFile()) {
+            return false;
+        }
+        if (entry.matchesFileStat(jarFile)) {
+            return true;
+        }
+        try {
+            return entry.getJarHash().equals(hash(jarFile.toPath()));
+        } catch (IOException e) {
+            log.warn("计算插件JAR哈希失败: {}", jarFile, e);
+            return false;
+        }
+    }
+
+    /**
+     * 根据当前注册表生成快照，条目按依赖顺序排列
+     */
+    private PluginRegistrySnapshot capture() throws IOException {
+        PluginRegistrySnapshot previous = lastSnapshot;
+        List<PluginRegistrySnapshot.Entry> entries = new ArrayList<>();
+        for (PluginInfo pluginInfo : sortByDependencies(pluginRegistry.getAllPlugins())) {
+            Path jarPath = pluginInfo.getJarPath();
+            if (jarPath == null || !Files.isRegularFile(jarPath)) {
+                continue;
+            }
+            File jarFile = jarPath.toFile();
+            long size = jarFile.length();
+            long lastModified = jarFile.lastModified();
+
+            // JAR未变化时复用上次的哈希
+            String pluginId = pluginInfo.getDescriptor().getPluginId();
+            PluginRegistrySnapshot.Entry old = previous != null ? previous.find(pluginId) : null;
+            String jarHash = old != null && jarPath.toString().equals(old.getJarPath()) && old.matchesFileStat(jarFile)
+                    ? old.getJarHash() : hash(jarPath);
+
+            entries.add(new PluginRegistrySnapshot.Entry(pluginInfo.getDescriptor(), pluginInfo.isEnabled(),
+                    pluginInfo.getState(), jarPath.toString(), size, lastModified, jarHash,
+                    collectRoutes(pluginId), collectClassIndex(pluginInfo)));
+        }
+        return new PluginRegistrySnapshot(System.currentTimeMillis(), entries);
+    }
+
+    private List<String> collectRoutes(String pluginId) {
+        if (gatewayPathMappingListener == null) {
+            return Collections.emptyList();
+        }
+        List<String> routes = new ArrayList<>(gatewayPathMappingListener.getPluginApis(pluginId));
+        Collections.sort(routes);
+        return routes;
+    }
+
+    private List<String> collectClassIndex(PluginInfo pluginInfo) {
+        DynamicClassLoader classLoader = pluginInfo.getClassLoader();
+        if (classLoader == null || classLoader.isClosed()) {
+            return Collections.emptyList();
+        }
+        List<String> classNames = new ArrayList<>();
+        for (Class<?> clazz : classLoader.getLoadedClasses()) {
+            classNames.add(clazz.getName());
+        }
+        Collections.sort(classNames);
+        return classNames;
+    }
+
+    /**
+     * 按依赖关系排序，被依赖的插件在前；存在循环依赖的插件追加在末尾
+     */
+    private List<PluginInfo> sortByDependencies(Collection<PluginInfo> plugins) {
+        Map<String, PluginInfo> byId = new TreeMap<>();
+        for (PluginInfo plugin : plugins) {
+            byId.put(plugin.getDescriptor().getPluginId(), plugin);
+        }
+
+        Map<String, Integer> inDegree = new HashMap<>();
+        Map<String, List<String>> dependents = new HashMap<>();
+        for (PluginInfo plugin : byId.values()) {
+            PluginDescriptor descriptor = plugin.getDescriptor();
+            int degree = 0;
+            if (descriptor.getDependencies() != null) {
+                for (PluginDependency dependency : descriptor.getDependencies()) {
+                    if (dependency.getPluginId() != null && byId.containsKey(dependency.getPluginId())) {
+                        dependents.computeIfAbsent(dependency.getPluginId(), k -> new ArrayList<>())
+                                .add(descriptor.getPluginId());
+                        degree++;
+                    }
+                }
+            }
+            inDegree.put(descriptor.getPluginId(), degree);
+        }
+
+        Deque<String> ready = new ArrayDeque<>();
+        for (Map.Entry<String, Integer> entry : inDegree.entrySet()) {
+            if (entry.getValue() == 0) {
+                ready.add(entry.getKey());
+            }
+        }
+
+        List<PluginInfo> sorted = new ArrayList<>(byId.size());
+        Set<String> visited = new HashSet<>();
+        while (!ready.isEmpty()) {
+            String pluginId = ready.poll();
+            visited.add(pluginId);
+            sorted.add(byId.get(pluginId));
+            for (String dependent : dependents.getOrDefault(pluginId, Collections.emptyList())) {
+                if (inDegree.merge(dependent, -1, Integer::sum) == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        for (Map.Entry<String, PluginInfo> entry : byId.entrySet()) {
+            if (!visited.contains(entry.getKey())) {
+                sorted.add(entry.getValue());
+            }
+        }
+        return sorted;
+    }
+
+    private static String hash(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256不可用", e);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * 快照还原结果
+     */
+    public static final class RestoreResult {
+
+        static final RestoreResult UNAVAILABLE = new RestoreResult(false,
+                Collections.emptyList(), Collections.emptySet(), Collections.emptyList());
+
+        private final boolean available;
+        private final List<PluginInfo> plugins;
+        private final Set<String> changedPluginIds;
+        private final List<String> pluginOrder;
+
+        RestoreResult(boolean available, List<PluginInfo> plugins, Set<String> changedPluginIds,
+                      List<String> pluginOrder) {
+            this.available = available;
+            this.plugins = Collections.unmodifiableList(plugins);
+            this.changedPluginIds = Collections.unmodifiableSet(changedPluginIds);
+            this.pluginOrder = Collections.unmodifiableList(pluginOrder);
+        }
+
+        /**
+         * 快照是否存在且格式有效
+         */
+        public boolean isAvailable() {
+            return available;
+        }
+
+        /**
+         * 可直接还原的插件，按依赖顺序排列
+         */
+        public List<PluginInfo> getPlugins() {
+            return plugins;
+        }
+
+        /**
+         * JAR已变化或缺失、需要回退到数据库/JAR加载的插件
+         */
+        public Set<String> getChangedPluginIds() {
+            return changedPluginIds;
+        }
+
+        /**
+         * 快照中全部插件（含已变化的）的依赖顺序
+         */
+        public List<String> getPluginOrder() {
+            return pluginOrder;
+        }
+    }
+}
@@ -32,6 +32,11 @@ import java.util.Optional;
 import java.util.ArrayList;
 import java.nio.file.Path;
 import java.util.Map;
+import java.util.Set;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.HashSet;
+import java.util.Collections;
 
 /**
  * 插件状态持久化管理器
@@ -56,6 +61,9 @@ public class PluginStatePersistenceManager {
     @Autowired
     private SysPluginUpdateHistoryMapper sysPluginUpdateHistoryMapper;
     
+    @Autowired
+    private PluginStateWriteBuffer stateWriteBuffer;
+    
     /**
      * 保存插件信息
      *
@@ -174,50 +182,33 @@ public class PluginStatePersistenceManager {
     
     /**
      * 保存插件状态
+     * 以单条upsert替代先查询再插入/更新，经写缓冲同步写入，缓冲区中该插件的旧状态随之作废
      */
     private void savePluginStatus(PluginInfo pluginInfo) {
         String pluginId = pluginInfo.getDescriptor().getPluginId();
         String version = pluginInfo.getDescriptor().getVersion();
         
-        // 查询是否存在
-        SysPluginStatus existingStatus = sysPluginStatusMapper.selectOne(
-                new LambdaQueryWrapper<SysPluginStatus>()
-                        .eq(SysPluginStatus::getPluginId, pluginId)
-                        .eq(SysPluginStatus::getVersion, version));
+        SysPluginStatus status = new SysPluginStatus()
+                .setPluginId(pluginId)
+                .setVersion(version)
+                .setEnabled(pluginInfo.isEnabled())
+                .setStatus(pluginInfo.getState().name());
         
-        if (existingStatus == null) {
-            // 插入新记录
-            SysPluginStatus status = new SysPluginStatus()
-                    .setPluginId(pluginId)
-                    .setVersion(version)
-                    .setEnabled(pluginInfo.isEnabled())
-                    .setStatus(pluginInfo.getState().name());
-            
-            sysPluginStatusMapper.insert(status);
-        } else {
-            // 更新现有记录
-            SysPluginStatus status = new SysPluginStatus();
-            status.setEnabled(pluginInfo.isEnabled());
-            status.setStatus(pluginInfo.getState().name());
-            
-            // 设置时间和错误信息
-            if (pluginInfo.getState() == PluginState.STARTED) {
-                status.setLastStartTime(LocalDateTime.now());
-            } else if (pluginInfo.getState() == PluginState.STOPPED) {
-                status.setLastStopTime(LocalDateTime.now());
-            } else if (pluginInfo.getState() == PluginState.ERROR) {
-                status.setErrorMessage(pluginInfo.getErrorMessage());
-            }
-            
-            sysPluginStatusMapper.update(status, 
-                    new LambdaQueryWrapper<SysPluginStatus>()
-                            .eq(SysPluginStatus::getPluginId, pluginId)
-                            .eq(SysPluginStatus::getVersion, version));
+        // 设置时间和错误信息
+        if (pluginInfo.getState() == PluginState.STARTED) {
+            status.setLastStartTime(LocalDateTime.now());
+        } else if (pluginInfo.getState() == PluginState.STOPPED) {
+            status.setLastStopTime(LocalDateTime.now());
+        } else if (pluginInfo.getState() == PluginState.ERROR) {
+            status.setErrorMessage(pluginInfo.getErrorMessage());
         }
+        
+        stateWriteBuffer.writeThrough(status);
     }
     
     /**
      * 保存插件依赖关系
+     * 删除现有依赖后以一条批量语句重新写入
      */
     private void savePluginDependencies(PluginInfo pluginInfo) {
         String pluginId = pluginInfo.getDescriptor().getPluginId();
@@ -230,17 +221,18 @@ public class PluginStatePersistenceManager {
                         .eq(SysPluginDependency::getPluginVersion, version));
         
         // 重新插入依赖关系
-        if (pluginInfo.getDescriptor().getDependencies() != null) {
-            pluginInfo.getDescriptor().getDependencies().forEach(dependency -> {
-                SysPluginDependency entity = new SysPluginDependency()
+        List<PluginDependency> dependencies = pluginInfo.getDescriptor().getDependencies();
+        if (dependencies != null && !dependencies.isEmpty()) {
+            List<SysPluginDependency> entities = new ArrayList<>(dependencies.size());
+            for (PluginDependency dependency : dependencies) {
+                entities.add(new SysPluginDependency()
                         .setPluginId(pluginId)
                         .setPluginVersion(version)
                         .setDependencyPluginId(dependency.getPluginId())
                         .setVersionRequirement(dependency.getVersionRequirement())
-                        .setOptional(dependency.isOptional());
-                
-                sysPluginDependencyMapper.insert(entity);
-            });
+                        .setOptional(dependency.isOptional()));
+            }
+            sysPluginDependencyMapper.insertBatch(entities);
         }
     }
     
@@ -387,60 +379,25 @@ public class PluginStatePersistenceManager {
     
     /**
      * 更新插件状态（带错误信息）
+     * 状态变更写入缓冲区，由写缓冲合并后批量落库
      */
     private void updatePluginState(String pluginId, String version, PluginState state, 
                                   LocalDateTime startTime, LocalDateTime stopTime, String errorMessage) {
-        SysPluginStatus status = new SysPluginStatus();
-        status.setStatus(state.name());
-        
-        if (startTime != null) {
-            status.setLastStartTime(startTime);
-        }
-        
-        if (stopTime != null) {
-            status.setLastStopTime(stopTime);
-        }
-        
-        if (errorMessage != null) {
-            status.setErrorMessage(errorMessage);
-        }
-        
-        LambdaQueryWrapper<SysPluginStatus> wrapper = new LambdaQueryWrapper<SysPluginStatus>()
-                .eq(SysPluginStatus::getPluginId, pluginId);
-        
-        if (version != null) {
-            // 如果版本号不为空，精确匹配
-            wrapper.eq(SysPluginStatus::getVersion, version);
-        } else {
-            // 如果版本号为空，查询最新版本
-            List<SysPluginStatus> statusList = sysPluginStatusMapper.selectList(
-                    new LambdaQueryWrapper<SysPluginStatus>()
-                            .eq(SysPluginStatus::getPluginId, pluginId)
-                            .orderByDesc(SysPluginStatus::getVersion)
-                            .last("LIMIT 1"));
-            
-            if (statusList.isEmpty()) {
-                log.warn("未找到插件状态记录: {}", pluginId);
-                return;
-            }
-            
-            wrapper.eq(SysPluginStatus::getVersion, statusList.get(0).getVersion());
-        }
-        
-        sysPluginStatusMapper.update(status, wrapper);
+        stateWriteBuffer.recordState(pluginId, version, state, startTime, stopTime, errorMessage);
     }
     
     /**
      * 更新插件启用状态
      */
     private void updatePluginEnabled(String pluginId, String version, boolean enabled) {
-        SysPluginStatus status = new SysPluginStatus();
-        status.setEnabled(enabled);
-        
-        sysPluginStatusMapper.update(status, 
-                new LambdaQueryWrapper<SysPluginStatus>()
-                        .eq(SysPluginStatus::getPluginId, pluginId)
-                        .eq(SysPluginStatus::getVersion, version));
+        stateWriteBuffer.recordEnabled(pluginId, version, enabled);
+    }
+    
+    /**
+     * 立即将缓冲中的插件状态写入数据库
+     */
+    public void flushPendingStates() {
+        stateWriteBuffer.flush();
     }
     
     /**
@@ -449,6 +406,9 @@ public class PluginStatePersistenceManager {
     @Transactional
     public void deletePluginRecord(String pluginId, String version) {
         try {
+            // 丢弃尚未落库的状态，避免删除后被重新写回
+            stateWriteBuffer.discard(pluginId);
+            
             // 删除依赖关系
             sysPluginDependencyMapper.delete(
                     new LambdaQueryWrapper<SysPluginDependency>()
@@ -513,78 +473,7 @@ public class PluginStatePersistenceManager {
             }
             
             log.info("从数据库获取到{}个插件信息", pluginDataList.size());
-            List<PluginInfo> result = new ArrayList<>();
-            
-            // 遍历每个插件信息，构建完整的PluginInfo对象
-            for (Map<String, Object> pluginData : pluginDataList) {
-                try {
-                    // 从联合查询结果中提取插件基本信息
-                    SysPluginInfo sysPluginInfo = new SysPluginInfo();
-                    sysPluginInfo.setId((Long) pluginData.get("id"));
-                    sysPluginInfo.setPluginId((String) pluginData.get("plugin_id"));
-                    sysPluginInfo.setName((String) pluginData.get("name"));
-                    sysPluginInfo.setVersion((String) pluginData.get("version"));
-                    sysPluginInfo.setDescription((String) pluginData.get("description"));
-                    sysPluginInfo.setAuthor((String) pluginData.get("author"));
-                    sysPluginInfo.setMainClass((String) pluginData.get("main_class"));
-                    sysPluginInfo.setType((String) pluginData.get("type"));
-                    sysPluginInfo.setTrust((String) pluginData.get("trust"));
-                    sysPluginInfo.setRequiredSystemVersion((String) pluginData.get("required_system_version"));
-                    sysPluginInfo.setPriority((Integer) pluginData.get("priority"));
-                    sysPluginInfo.setProvider((String) pluginData.get("provider"));
-                    sysPluginInfo.setLicense((String) pluginData.get("license"));
-                    sysPluginInfo.setCategory((String) pluginData.get("category"));
-                    sysPluginInfo.setWebsite((String) pluginData.get("website"));
-                    sysPluginInfo.setJarPath((String) pluginData.get("jar_file"));
-                    sysPluginInfo.setHaveDependency((Integer) pluginData.get("have_dependency"));
-                    
-                    // 创建插件描述符
-                    PluginDescriptor descriptor = createPluginDescriptor(sysPluginInfo);
-                    
-                    // 创建PluginInfo对象
-                    PluginInfo pluginInfo = PluginInfo.builder()
-                        .descriptor(descriptor)
-                        .build();
-                    
-                    // 从联合查询结果中提取插件状态信息
-                    if (pluginData.get("status") != null) {
-                        try {
-                            pluginInfo.setState(PluginState.valueOf((String) pluginData.get("status")));
-                        } catch (IllegalArgumentException e) {
-                            log.warn("未知的插件状态: {}, 设置为CREATED", pluginData.get("status"));
-                            pluginInfo.setState(PluginState.CREATED);
-                        }
-                    }
-                    
-                    // 设置插件启用状态
-                    Boolean enabled = (Boolean) pluginData.get("enabled");
-                    pluginInfo.setEnabled(enabled != null ? enabled : false);
-                    
-                    // 设置错误信息
-                    String errorMessage = (String) pluginData.get("error_message");
-                    if (errorMessage != null) {
-                        pluginInfo.setErrorMessage(errorMessage);
-                    }
-                    
-                    // 设置JAR路径
-                    String jarPath = (String) pluginData.get("jar_file");
-                    if (jarPath != null && !jarPath.isEmpty()) {
-                        log.info("从数据库读取到插件[{}]的JAR路径: {}", pluginInfo.getDescriptor().getPluginId(), jarPath);
-                        pluginInfo.setJarPath(Path.of(jarPath));
-                    } else if (sysPluginInfo.getJarPath() != null && !sysPluginInfo.getJarPath().isEmpty()) {
-                        log.info("从实体类读取到插件[{}]的JAR路径: {}", pluginInfo.getDescriptor().getPluginId(), sysPluginInfo.getJarPath());
-                        pluginInfo.setJarPath(Path.of(sysPluginInfo.getJarPath()));
-                    } else {
-                        log.warn("插件[{}]的JAR路径为空", pluginInfo.getDescriptor().getPluginId());
-                    }
-                    
-                    result.add(pluginInfo);
-                    
-                } catch (Exception e) {
-                    log.error("处理插件信息时发生错误: {}", pluginData.get("plugin_id"), e);
-                }
-            }
-            
+            List<PluginInfo> result = toPluginInfos(pluginDataList);
             log.info("成功加载{}个插件信息", result.size());
             return result;
             
@@ -594,10 +483,158 @@ public class PluginStatePersistenceManager {
         }
     }
     
+    /**
+     * 获取指定插件的信息，用于注册表快照中已变化或缺失的插件
+     *
+     * @param pluginIds 插件ID集合
+     * @return 插件信息集合，按数据库顺序
+     */
+    public List<PluginInfo> getPlugins(Collection<String> pluginIds) {
+        if (pluginIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        try {
+            return toPluginInfos(sysPluginInfoMapper.selectPluginsWithStatusByIds(pluginIds));
+        } catch (Exception e) {
+            log.error("获取插件信息时发生错误: {}", pluginIds, e);
+            return new ArrayList<>();
+        }
+    }
+    
+    /**
+     * 获取所有插件的版本和状态，不加载描述信息和依赖，用于启动时与注册表快照核对
+     *
+     * @return key为"插件ID@版本"，按数据库顺序
+     */
+    public Map<String, SysPluginStatus> getPluginStatusIndex() {
+        Map<String, SysPluginStatus> index = new LinkedHashMap<>();
+        for (Map<String, Object> row : sysPluginInfoMapper.selectPluginVersionsWithStatus()) {
+            String pluginId = (String) row.get("plugin_id");
+            String version = (String) row.get("version");
+            index.put(pluginId + "@" + version, new SysPluginStatus()
+                    .setPluginId(pluginId)
+                    .setVersion(version)
+                    .setEnabled((Boolean) row.get("enabled"))
+                    .setStatus((String) row.get("status"))
+                    .setErrorMessage((String) row.get("error_message")));
+        }
+        return index;
+    }
+    
+    /**
+     * 将插件信息和状态的联合查询结果转换为PluginInfo
+     */
+    private List<PluginInfo> toPluginInfos(List<Map<String, Object>> pluginDataList) {
+        List<PluginInfo> result = new ArrayList<>(pluginDataList.size());
+        
+        // 一次性查询所有插件的依赖，避免逐个插件查询
+        Map<String, List<SysPluginDependency>> dependencyIndex = loadDependencyIndex(pluginDataList);
+        
+        // 遍历每个插件信息，构建完整的PluginInfo对象
+        for (Map<String, Object> pluginData : pluginDataList) {
+            try {
+                // 从联合查询结果中提取插件基本信息
+                SysPluginInfo sysPluginInfo = new SysPluginInfo();
+                sysPluginInfo.setId((Long) pluginData.get("id"));
+                sysPluginInfo.setPluginId((String) pluginData.get("plugin_id"));
+                sysPluginInfo.setName((String) pluginData.get("name"));
+                sysPluginInfo.setVersion((String) pluginData.get("version"));
+                sysPluginInfo.setDescription((String) pluginData.get("description"));
+                sysPluginInfo.setAuthor((String) pluginData.get("author"));
+                sysPluginInfo.setMainClass((String) pluginData.get("main_class"));
+                sysPluginInfo.setType((String) pluginData.get("type"));
+                sysPluginInfo.setTrust((String) pluginData.get("trust"));
+                sysPluginInfo.setRequiredSystemVersion((String) pluginData.get("required_system_version"));
+                sysPluginInfo.setPriority((Integer) pluginData.get("priority"));
+                sysPluginInfo.setProvider((String) pluginData.get("provider"));
+                sysPluginInfo.setLicense((String) pluginData.get("license"));
+                sysPluginInfo.setCategory((String) pluginData.get("category"));
+                sysPluginInfo.setWebsite((String) pluginData.get("website"));
+                sysPluginInfo.setJarPath((String) pluginData.get("jar_file"));
+                sysPluginInfo.setHaveDependency((Integer) pluginData.get("have_dependency"));
+                
+                // 创建插件描述符
+                PluginDescriptor descriptor = createPluginDescriptor(sysPluginInfo,
+                        dependencyIndex.getOrDefault(sysPluginInfo.getPluginId() + "@" + sysPluginInfo.getVersion(),
+                                Collections.emptyList()));
+                
+                // 创建PluginInfo对象
+                PluginInfo pluginInfo = PluginInfo.builder()
+                    .descriptor(descriptor)
+                    .build();
+                
+                // 从联合查询结果中提取插件状态信息
+                if (pluginData.get("status") != null) {
+                    try {
+                        pluginInfo.setState(PluginState.valueOf((String) pluginData.get("status")));
+                    } catch (IllegalArgumentException e) {
+                        log.warn("未知的插件状态: {}, 设置为CREATED", pluginData.get("status"));
+                        pluginInfo.setState(PluginState.CREATED);
+                    }
+                }
+                
+                // 设置插件启用状态
+                Boolean enabled = (Boolean) pluginData.get("enabled");
+                pluginInfo.setEnabled(enabled != null ? enabled : false);
+                
+                // 设置错误信息
+                String errorMessage = (String) pluginData.get("error_message");
+                if (errorMessage != null) {
+                    pluginInfo.setErrorMessage(errorMessage);
+                }
+                
+                // 设置JAR路径
+                String jarPath = (String) pluginData.get("jar_file");
+                if (jarPath != null && !jarPath.isEmpty()) {
+                    log.info("从数据库读取到插件[{}]的JAR路径: {}", pluginInfo.getDescriptor().getPluginId(), jarPath);
+                    pluginInfo.setJarPath(Path.of(jarPath));
+                } else if (sysPluginInfo.getJarPath() != null && !sysPluginInfo.getJarPath().isEmpty()) {
+                    log.info("从实体类读取到插件[{}]的JAR路径: {}", pluginInfo.getDescriptor().getPluginId(), sysPluginInfo.getJarPath());
+                    pluginInfo.setJarPath(Path.of(sysPluginInfo.getJarPath()));
+                } else {
+                    log.warn("插件[{}]的JAR路径为空", pluginInfo.getDescriptor().getPluginId());
+                }
+                
+                result.add(pluginInfo);
+                
+            } catch (Exception e) {
+                log.error("处理插件信息时发生错误: {}", pluginData.get("plugin_id"), e);
+            }
+        }
+        
+        return result;
+    }
+    
+    /**
+     * 批量查询插件依赖并按"插件ID@版本"分组
+     */
+    private Map<String, List<SysPluginDependency>> loadDependencyIndex(List<Map<String, Object>> pluginDataList) {
+        Set<String> pluginIds = new HashSet<>();
+        for (Map<String, Object> pluginData : pluginDataList) {
+            Object pluginId = pluginData.get("plugin_id");
+            if (pluginId != null) {
+                pluginIds.add((String) pluginId);
+            }
+        }
+        if (pluginIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        
+        Map<String, List<SysPluginDependency>> index = new HashMap<>();
+        List<SysPluginDependency> dependencies = sysPluginDependencyMapper.selectList(
+                new LambdaQueryWrapper<SysPluginDependency>()
+                        .in(SysPluginDependency::getPluginId, pluginIds));
+        for (SysPluginDependency dependency : dependencies) {
+            index.computeIfAbsent(dependency.getPluginId() + "@" + dependency.getPluginVersion(),
+                    key -> new ArrayList<>()).add(dependency);
+        }
+        return index;
+    }
+    
     /**
      * 创建插件描述符
      */
-    private PluginDescriptor createPluginDescriptor(SysPluginInfo sysPluginInfo) {
+    private PluginDescriptor createPluginDescriptor(SysPluginInfo sysPluginInfo, List<SysPluginDependency> dependencies) {
         // 构建插件描述符
         PluginDescriptor descriptor = new PluginDescriptor();
             
@@ -619,12 +656,6 @@ public class PluginStatePersistenceManager {
         descriptor.setRequiredSystemVersion(sysPluginInfo.getRequiredSystemVersion());
         descriptor.setPriority(sysPluginInfo.getPriority());
         
-        // 查询插件依赖
-        List<SysPluginDependency> dependencies = sysPluginDependencyMapper.selectList(
-                new LambdaQueryWrapper<SysPluginDependency>()
-                        .eq(SysPluginDependency::getPluginId, sysPluginInfo.getPluginId())
-                        .eq(SysPluginDependency::getPluginVersion, sysPluginInfo.getVersion()));
-        
         // 添加依赖到描述符
         if (!dependencies.isEmpty()) {
             List<PluginDependency> pluginDependencies = 
@@ -0,0 +1,357 @@
+package com.xiaoqu.qteamos.core.plugin.manager.persistence;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.xiaoqu.qteamos.core.plugin.model.entity.SysPluginStatus;
+import com.xiaoqu.qteamos.core.plugin.model.mapper.SysPluginStatusMapper;
+import com.xiaoqu.qteamos.core.plugin.running.PluginState;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 插件状态写缓冲
+ * 在内存中维护插件的最新状态，将同一插件的连续状态变更（如LOADED→INITIALIZED→STARTED）合并为一次写入，
+ * 按固定间隔或在生命周期屏障（出错、卸载、关闭）时以批量upsert刷新到数据库
+ *
+ * @author yangqijun
+ * @date 2024-07-03
+ */
+@Component
+public class PluginStateWriteBuffer {
+    private static final Logger log = LoggerFactory.getLogger(PluginStateWriteBuffer.class);
+
+    @Value("${plugin.persistence.flush-interval-ms:500}")
+    private long flushIntervalMs;
+
+    @Value("${plugin.persistence.max-batch-size:200}")
+    private int maxBatchSize;
+
+    @Autowired
+    private SysPluginStatusMapper sysPluginStatusMapper;
+
+    // 待刷新的状态，key为"插件ID@版本"，版本未知时为"插件ID@"
+    private final Map<String, PendingState> pending = new ConcurrentHashMap<>();
+
+    // 内存中的权威状态，key为插件ID
+    private final Map<String, SysPluginStatus> currentStates = new ConcurrentHashMap<>();
+
+    // 已知的插件当前版本，用于解析未携带版本的事件
+    private final Map<String, String> knownVersions = new ConcurrentHashMap<>();
+
+    // 已确认存在状态记录的"插件ID@版本"，不存在的记录不会被事件凭空创建
+    private final Set<String> persistedKeys = ConcurrentHashMap.newKeySet();
+
+    // 变更序号，用于合并时确定先后
+    private final AtomicLong sequence = new AtomicLong();
+
+    // 是否已有刷新任务在排队
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    private final Object flushLock = new Object();
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "plugin-state-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 关闭时刷新所有待写入状态
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        flushQuietly();
+    }
+
+    /**
+     * 记录插件状态变更
+     *
+     * @param pluginId 插件ID
+     * @param version 插件版本，为空时在刷新时解析为最新版本
+     * @param state 新状态
+     * @param startTime 启动时间
+     * @param stopTime 停止时间
+     * @param errorMessage 错误信息
+     */
+    public void recordState(String pluginId, String version, PluginState state,
+                            LocalDateTime startTime, LocalDateTime stopTime, String errorMessage) {
+        PendingState change = new PendingState(pluginId, version, sequence.incrementAndGet());
+        change.status = state.name();
+        change.lastStartTime = startTime;
+        change.lastStopTime = stopTime;
+        change.errorMessage = errorMessage;
+        enqueue(change);
+
+        // 出错和卸载是生命周期屏障，尽快落库
+        if (state == PluginState.ERROR || state == PluginState.UNLOADED) {
+            requestFlush();
+        }
+    }
+
+    /**
+     * 记录插件启用状态变更
+     *
+     * @param pluginId 插件ID
+     * @param version 插件版本
+     * @param enabled 是否启用
+     */
+    public void recordEnabled(String pluginId, String version, boolean enabled) {
+        PendingState change = new PendingState(pluginId, version, sequence.incrementAndGet());
+        change.enabled = enabled;
+        enqueue(change);
+    }
+
+    /**
+     * 登记已写入数据库的插件状态记录，使后续事件无需再查询数据库确认
+     *
+     * @param pluginId 插件ID
+     * @param version 插件版本
+     */
+    public void markPersisted(String pluginId, String version) {
+        if (pluginId != null && version != null) {
+            knownVersions.put(pluginId, version);
+            persistedKeys.add(pluginId + "@" + version);
+        }
+    }
+
+    /**
+     * 同步写入插件状态，取代缓冲区中该插件尚未落库的旧状态
+     * 与刷新互斥：正在进行的刷新先完成，写入成功后丢弃同一记录的待写入变更，旧状态不会在之后覆盖本次写入
+     *
+     * @param status 插件状态，需包含插件ID和版本
+     */
+    public void writeThrough(SysPluginStatus status) {
+        String pluginId = status.getPluginId();
+        String version = status.getVersion();
+        synchronized (flushLock) {
+            sysPluginStatusMapper.upsertBatch(List.of(status));
+            pending.remove(pluginId + "@" + version);
+            pending.remove(pluginId + "@");
+            markPersisted(pluginId, version);
+
+            PendingState written = new PendingState(pluginId, version, sequence.incrementAndGet());
+            written.status = status.getStatus();
+            written.enabled = status.getEnabled();
+            written.errorMessage = status.getErrorMessage();
+            written.lastStartTime = status.getLastStartTime();
+            written.lastStopTime = status.getLastStopTime();
+            currentStates.compute(pluginId, (id, current) -> written.applyTo(current));
+        }
+    }
+
+    /**
+     * 丢弃插件的所有待写入状态，用于插件记录被删除时
+     *
+     * @param pluginId 插件ID
+     */
+    public void discard(String pluginId) {
+        String prefix = pluginId + "@";
+        pending.keySet().removeIf(key -> key.startsWith(prefix));
+        persistedKeys.removeIf(key -> key.startsWith(prefix));
+        currentStates.remove(pluginId);
+        knownVersions.remove(pluginId);
+    }
+
+    /**
+     * 获取内存中的插件最新状态（包含尚未落库的变更）
+     *
+     * @param pluginId 插件ID
+     * @return 插件状态
+     */
+    public Optional<SysPluginStatus> getCurrentState(String pluginId) {
+        return Optional.ofNullable(currentStates.get(pluginId));
+    }
+
+    /**
+     * 异步请求尽快刷新
+     */
+    public void requestFlush() {
+        if (scheduler != null && !scheduler.isShutdown() && flushScheduled.compareAndSet(false, true)) {
+            scheduler.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * 同步刷新所有待写入状态
+     *
+     * @return 写入的记录数
+     */
+    public int flush() {
+        synchronized (flushLock) {
+            flushScheduled.set(false);
+            if (pending.isEmpty()) {
+                return 0;
+            }
+
+            // 取出当前所有待写入状态，期间到达的新变更留到下一轮
+            List<PendingState> drained = new ArrayList<>();
+            for (String key : new ArrayList<>(pending.keySet())) {
+                PendingState state = pending.remove(key);
+                if (state != null) {
+                    drained.add(state);
+                }
+            }
+
+            List<SysPluginStatus> batch = resolveAndMerge(drained);
+            try {
+                for (int from = 0; from < batch.size(); from += maxBatchSize) {
+                    List<SysPluginStatus> chunk = batch.subList(from, Math.min(from + maxBatchSize, batch.size()));
+                    sysPluginStatusMapper.upsertBatch(chunk);
+                }
+                log.debug("插件状态已批量刷新: 变更数={}, 写入记录数={}", drained.size(), batch.size());
+                return batch.size();
+            } catch (Exception e) {
+                // 写入失败时放回缓冲区，由下一轮重试；更新的变更优先
+                for (PendingState state : drained) {
+                    pending.merge(state.key(), state, PendingState::merge);
+                }
+                throw e;
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("刷新插件状态失败，将在下一周期重试", e);
+        }
+    }
+
+    private void enqueue(PendingState change) {
+        if (change.version == null) {
+            change.version = knownVersions.get(change.pluginId);
+        } else {
+            knownVersions.put(change.pluginId, change.version);
+        }
+        pending.merge(change.key(), change, PendingState::merge);
+        currentStates.compute(change.pluginId, (id, current) -> change.applyTo(current));
+    }
+
+    /**
+     * 解析缺失的版本并合并同一(插件, 版本)的变更，丢弃数据库中不存在对应记录的变更
+     */
+    private List<SysPluginStatus> resolveAndMerge(List<PendingState> drained) {
+        // 尚未确认记录存在的插件一次性批量查询
+        Set<String> unconfirmed = new HashSet<>();
+        for (PendingState state : drained) {
+            if (state.version == null || !persistedKeys.contains(state.key())) {
+                unconfirmed.add(state.pluginId);
+            }
+        }
+        if (!unconfirmed.isEmpty()) {
+            List<SysPluginStatus> rows = sysPluginStatusMapper.selectList(
+                    new LambdaQueryWrapper<SysPluginStatus>()
+                            .select(SysPluginStatus::getPluginId, SysPluginStatus::getVersion)
+                            .in(SysPluginStatus::getPluginId, unconfirmed));
+            for (SysPluginStatus row : rows) {
+                persistedKeys.add(row.getPluginId() + "@" + row.getVersion());
+                knownVersions.merge(row.getPluginId(), row.getVersion(),
+                        (a, b) -> a.compareTo(b) >= 0 ? a : b);
+            }
+        }
+
+        Map<String, PendingState> merged = new LinkedHashMap<>();
+        for (PendingState state : drained) {
+            if (state.version == null) {
+                state.version = knownVersions.get(state.pluginId);
+            }
+            if (state.version == null || !persistedKeys.contains(state.key())) {
+                log.warn("未找到插件状态记录: {} {}", state.pluginId, state.version);
+                continue;
+            }
+            merged.merge(state.key(), state, PendingState::merge);
+        }
+
+        List<SysPluginStatus> batch = new ArrayList<>(merged.size());
+        for (PendingState state : merged.values()) {
+            batch.add(state.toEntity());
+        }
+        return batch;
+    }
+
+    /**
+     * 待写入的状态变更，仅记录发生变化的字段
+     */
+    private static class PendingState {
+        private final String pluginId;
+        private String version;
+        private final long seq;
+        private String status;
+        private Boolean enabled;
+        private String errorMessage;
+        private LocalDateTime lastStartTime;
+        private LocalDateTime lastStopTime;
+
+        PendingState(String pluginId, String version, long seq) {
+            this.pluginId = pluginId;
+            this.version = version;
+            this.seq = seq;
+        }
+
+        String key() {
+            return pluginId + "@" + (version != null ? version : "");
+        }
+
+        /**
+         * 合并两个变更，序号较新的非空字段优先
+         */
+        static PendingState merge(PendingState a, PendingState b) {
+            PendingState older = a.seq <= b.seq ? a : b;
+            PendingState newer = older == a ? b : a;
+            PendingState result = new PendingState(newer.pluginId,
+                    newer.version != null ? newer.version : older.version, newer.seq);
+            result.status = newer.status != null ? newer.status : older.status;
+            result.enabled = newer.enabled != null ? newer.enabled : older.enabled;
+            result.errorMessage = newer.errorMessage != null ? newer.errorMessage : older.errorMessage;
+            result.lastStartTime = newer.lastStartTime != null ? newer.lastStartTime : older.lastStartTime;
+            result.lastStopTime = newer.lastStopTime != null ? newer.lastStopTime : older.lastStopTime;
+            return result;
+        }
+
+        SysPluginStatus applyTo(SysPluginStatus current) {
+            SysPluginStatus updated = new SysPluginStatus()
+                    .setPluginId(pluginId)
+                    .setVersion(version != null ? version : current != null ? current.getVersion() : null)
+                    .setStatus(status != null ? status : current != null ? current.getStatus() : null)
+                    .setEnabled(enabled != null ? enabled : current != null ? current.getEnabled() : null)
+                    .setErrorMessage(errorMessage != null ? errorMessage : current != null ? current.getErrorMessage() : null)
+                    .setLastStartTime(lastStartTime != null ? lastStartTime : current != null ? current.getLastStartTime() : null)
+                    .setLastStopTime(lastStopTime != null ? lastStopTime : current != null ? current.getLastStopTime() : null);
+            return updated;
+        }
+
+        SysPluginStatus toEntity() {
+            return new SysPluginStatus()
+                    .setPluginId(pluginId)
+                    .setVersion(version)
+                    .setStatus(status)
+                    .setEnabled(enabled)
+                    .setErrorMessage(errorMessage)
+                    .setLastStartTime(lastStartTime)
+                    .setLastStopTime(lastStopTime);
+        }
+    }
+}
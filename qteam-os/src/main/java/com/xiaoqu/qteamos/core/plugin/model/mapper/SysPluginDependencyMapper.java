@@ -2,6 +2,7 @@ package com.xiaoqu.qteamos.core.plugin.model.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.xiaoqu.qteamos.core.plugin.model.entity.SysPluginDependency;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
@@ -35,4 +36,26 @@ public interface SysPluginDependencyMapper extends BaseMapper<SysPluginDependenc
      */
     @Select("SELECT * FROM sys_plugin_dependency WHERE plugin_id = #{pluginId} AND plugin_version = #{version} AND deleted = 0")
     List<SysPluginDependency> findDependencies(@Param("pluginId") String pluginId, @Param("version") String version);
-} 
\ No newline at end of file
+    
+    /**
+     * 批量插入依赖关系
+     * 逻辑删除后重新插入同一依赖时恢复原记录，避免唯一键冲突
+     *
+     * @param dependencies 依赖关系列表
+     * @return 影响行数
+     */
+    @Insert({"<script>",
+            "INSERT INTO sys_plugin_dependency (plugin_id, plugin_version, dependency_plugin_id, ",
+            "version_requirement, optional, create_time, update_time, deleted, version_num) VALUES ",
+            "<foreach collection='list' item='d' separator=','>",
+            "(#{d.pluginId}, #{d.pluginVersion}, #{d.dependencyPluginId}, #{d.versionRequirement}, ",
+            "#{d.optional}, NOW(), NOW(), 0, 0)",
+            "</foreach>",
+            " ON DUPLICATE KEY UPDATE ",
+            "version_requirement = VALUES(version_requirement), ",
+            "optional = VALUES(optional), ",
+            "deleted = 0, ",
+            "update_time = NOW()",
+            "</script>"})
+    int insertBatch(@Param("list") List<SysPluginDependency> dependencies);
+}
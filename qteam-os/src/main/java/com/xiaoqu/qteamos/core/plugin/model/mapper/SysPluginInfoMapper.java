@@ -7,6 +7,7 @@ import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -102,4 +103,31 @@ public interface SysPluginInfoMapper extends BaseMapper<SysPluginInfo> {
             "LEFT JOIN sys_plugin_status s ON i.plugin_id = s.plugin_id AND i.version = s.version " +
             "WHERE i.deleted = 0")
     List<Map<String, Object>> selectPluginsWithStatus();
+    
+    /**
+     * 联合查询指定插件的信息和状态
+     *
+     * @param pluginIds 插件ID集合
+     * @return 插件信息和状态的联合结果
+     */
+    @Select({"<script>",
+            "SELECT i.*, s.enabled, s.status, s.error_message, s.installed_time, ",
+            "s.last_start_time, s.last_stop_time, i.jar_file AS jar_file, i.have_dependency AS have_dependency ",
+            "FROM sys_plugin_info i ",
+            "LEFT JOIN sys_plugin_status s ON i.plugin_id = s.plugin_id AND i.version = s.version ",
+            "WHERE i.deleted = 0 AND i.plugin_id IN ",
+            "<foreach collection='pluginIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>",
+            "</script>"})
+    List<Map<String, Object>> selectPluginsWithStatusByIds(@Param("pluginIds") Collection<String> pluginIds);
+    
+    /**
+     * 查询所有插件的版本和状态，不含描述信息，用于与注册表快照核对
+     *
+     * @return 插件ID、版本、启用状态、插件状态和错误信息
+     */
+    @Select("SELECT i.plugin_id, i.version, s.enabled, s.status, s.error_message " +
+            "FROM sys_plugin_info i " +
+            "LEFT JOIN sys_plugin_status s ON i.plugin_id = s.plugin_id AND i.version = s.version " +
+            "WHERE i.deleted = 0")
+    List<Map<String, Object>> selectPluginVersionsWithStatus();
 } 
\ No newline at end of file
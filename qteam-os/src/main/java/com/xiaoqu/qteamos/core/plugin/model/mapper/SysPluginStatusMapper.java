@@ -12,6 +12,7 @@ package com.xiaoqu.qteamos.core.plugin.model.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.xiaoqu.qteamos.core.plugin.model.entity.SysPluginStatus;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
@@ -43,4 +44,30 @@ public interface SysPluginStatusMapper extends BaseMapper<SysPluginStatus> {
      */
     @Select("SELECT * FROM sys_plugin_status WHERE enabled = 1 AND deleted = 0")
     List<SysPluginStatus> findAllEnabled();
-} 
\ No newline at end of file
+    
+    /**
+     * 批量插入或更新插件状态
+     * 以(plugin_id, version)唯一键判断是否存在，更新时仅覆盖非空字段；
+     * 逻辑删除后重新安装同一版本时恢复原记录
+     *
+     * @param statusList 插件状态列表
+     * @return 影响行数
+     */
+    @Insert({"<script>",
+            "INSERT INTO sys_plugin_status (plugin_id, version, enabled, status, error_message, ",
+            "last_start_time, last_stop_time, create_time, update_time, deleted, version_num) VALUES ",
+            "<foreach collection='list' item='s' separator=','>",
+            "(#{s.pluginId}, #{s.version}, #{s.enabled}, #{s.status}, #{s.errorMessage}, ",
+            "#{s.lastStartTime}, #{s.lastStopTime}, NOW(), NOW(), 0, 0)",
+            "</foreach>",
+            " ON DUPLICATE KEY UPDATE ",
+            "enabled = COALESCE(VALUES(enabled), enabled), ",
+            "status = COALESCE(VALUES(status), status), ",
+            "error_message = COALESCE(VALUES(error_message), error_message), ",
+            "last_start_time = COALESCE(VALUES(last_start_time), last_start_time), ",
+            "last_stop_time = COALESCE(VALUES(last_stop_time), last_stop_time), ",
+            "deleted = 0, ",
+            "update_time = NOW()",
+            "</script>"})
+    int upsertBatch(@Param("list") List<SysPluginStatus> statusList);
+}
@@ -11,18 +11,24 @@
 package com.xiaoqu.qteamos.core.plugin.monitoring;
 
 import com.xiaoqu.qteamos.common.result.Result;
+import com.xiaoqu.qteamos.core.databases.core.DataSourceManager;
+import com.xiaoqu.qteamos.core.databases.core.PluginPoolMetrics;
+import com.xiaoqu.qteamos.core.databases.stat.PluginSqlMetrics;
+import com.xiaoqu.qteamos.core.databases.stat.SlowQuery;
+import com.xiaoqu.qteamos.core.databases.stat.SqlStatCollector;
 import com.xiaoqu.qteamos.core.plugin.manager.PluginLifecycleManager;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
 /**
  * 插件监控Controller
- * 提供插件健康状态查询和管理接口
+ * 提供插件健康状态查询和管理接口，以及插件SQL统计、慢查询和连接配额使用情况
  *
  * @author yangqijun
  * @date 2025-05-02
@@ -37,6 +43,12 @@ public class PluginMonitoringController {
     @Autowired
     private PluginLifecycleManager lifecycleManager;
 
+    @Autowired
+    private SqlStatCollector sqlStatCollector;
+
+    @Autowired
+    private DataSourceManager dataSourceManager;
+
     /**
      * 获取所有插件健康状态
      */
@@ -99,4 +111,49 @@ public class PluginMonitoringController {
         
         return Result.success(healthStatus);
     }
-} 
\ No newline at end of file
+
+    /**
+     * 获取各插件SQL统计，按累计耗时降序
+     */
+    @GetMapping("/sql-stats")
+    public Result<List<PluginSqlMetrics>> getSqlStats(@RequestParam(defaultValue = "10") int top) {
+        return Result.success(sqlStatCollector.getPluginMetrics(top));
+    }
+
+    /**
+     * 获取指定插件SQL统计，pluginId为system时返回非插件执行的SQL
+     */
+    @GetMapping("/sql-stats/{pluginId}")
+    public Result<PluginSqlMetrics> getPluginSqlStats(@PathVariable String pluginId,
+                                                      @RequestParam(defaultValue = "50") int top) {
+        return sqlStatCollector.getPluginMetrics(pluginId, top)
+                .map(Result::success)
+                .orElseGet(() -> Result.failed("插件没有SQL统计"));
+    }
+
+    /**
+     * 获取最近的慢查询
+     */
+    @GetMapping("/slow-queries")
+    public Result<List<SlowQuery>> getSlowQueries(@RequestParam(required = false) String pluginId,
+                                                  @RequestParam(defaultValue = "50") int limit) {
+        return Result.success(sqlStatCollector.getSlowQueries(pluginId, limit));
+    }
+
+    /**
+     * 重置SQL统计，不指定插件时清空全部统计和慢查询记录
+     */
+    @PostMapping("/sql-stats/reset")
+    public Result<Boolean> resetSqlStats(@RequestParam(required = false) String pluginId) {
+        sqlStatCollector.reset(pluginId);
+        return Result.success(true);
+    }
+
+    /**
+     * 获取各插件连接配额使用情况
+     */
+    @GetMapping("/connection-pool")
+    public Result<Map<String, PluginPoolMetrics>> getConnectionPoolMetrics() {
+        return Result.success(dataSourceManager.getPluginPoolMetrics());
+    }
+}
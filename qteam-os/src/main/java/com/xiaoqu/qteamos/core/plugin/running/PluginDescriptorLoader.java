@@ -24,6 +24,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
@@ -44,6 +45,22 @@ public class PluginDescriptorLoader {
      */
     private static final String PLUGIN_DESCRIPTOR_FILENAME = "plugin.yml";
     
+    /**
+     * 描述文件解析缓存上限
+     */
+    private static final int MAX_CACHE_SIZE = 256;
+    
+    /**
+     * Yaml实例非线程安全，按线程复用以避免每个JAR重复构建解析器
+     */
+    private static final ThreadLocal<Yaml> YAML = ThreadLocal.withInitial(Yaml::new);
+    
+    /**
+     * JAR描述文件解析结果缓存，key为"绝对路径|大小|修改时间"，JAR变化后自然失效
+     * 扫描器与加载器对同一JAR的重复解析只需读取一次
+     */
+    private final Map<String, Map<String, Object>> jarDescriptorCache = new ConcurrentHashMap<>();
+    
     /**
      * 从插件JAR文件加载插件描述符
      * 
@@ -60,6 +77,12 @@ public class PluginDescriptorLoader {
             );
         }
         
+        String cacheKey = pluginFile.getAbsolutePath() + "|" + pluginFile.length() + "|" + pluginFile.lastModified();
+        Map<String, Object> cached = jarDescriptorCache.get(cacheKey);
+        if (cached != null) {
+            return toDescriptor(cached);
+        }
+        
         try (JarFile jarFile = new JarFile(pluginFile)) {
             // 查找插件描述文件
             JarEntry entry = jarFile.getJarEntry(PLUGIN_DESCRIPTOR_FILENAME);
@@ -72,9 +95,15 @@ public class PluginDescriptorLoader {
             }
             
             // 读取插件描述文件
+            Map<String, Object> map;
             try (InputStream inputStream = jarFile.getInputStream(entry)) {
-                return loadFromStream(inputStream);
+                map = parseYaml(inputStream);
+            }
+            if (jarDescriptorCache.size() >= MAX_CACHE_SIZE) {
+                jarDescriptorCache.clear();
             }
+            jarDescriptorCache.put(cacheKey, map);
+            return toDescriptor(map);
         } catch (IOException e) {
             throw new PluginException(
                     PluginException.PluginExceptionType.DESCRIPTOR_ERROR,
@@ -130,13 +159,33 @@ public class PluginDescriptorLoader {
             );
         }
         
+        return toDescriptor(parseYaml(inputStream));
+    }
+    
+    /**
+     * 使用线程复用的Yaml实例解析描述文件
+     */
+    private Map<String, Object> parseYaml(InputStream inputStream) throws PluginException {
+        try {
+            return YAML.get().load(inputStream);
+        } catch (Exception e) {
+            throw new PluginException(
+                    PluginException.PluginExceptionType.DESCRIPTOR_ERROR,
+                    null,
+                    "解析插件描述文件时发生错误: " + e.getMessage(),
+                    e
+            );
+        }
+    }
+    
+    /**
+     * 将解析结果转换为插件描述符，每次调用返回新的描述符实例
+     */
+    private PluginDescriptor toDescriptor(Map<String, Object> map) throws PluginException {
         try {
-            // 解析YAML
-            Yaml yaml = new Yaml();
-            Map<String, Object> map = yaml.load(inputStream);
-            
-            // 转换为PluginDescriptor对象
             return convertToDescriptor(map);
+        } catch (PluginException e) {
+            throw e;
         } catch (Exception e) {
             throw new PluginException(
                     PluginException.PluginExceptionType.DESCRIPTOR_ERROR,
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2023-2024 XiaoQuTeam. All rights reserved.
+ * QTeamOS is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+
+/**
+ * 插件能力权限
+ * 表示JDK权限类型无法表达的平台能力，如执行DDL语句
+ *
+ * @author yangqijun
+ * @date 2024-07-09
+ * @since 1.0.0
+ */
+package com.xiaoqu.qteamos.core.plugin.security;
+
+import java.security.BasicPermission;
+
+public class PluginPermission extends BasicPermission {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 执行DDL和管理类SQL语句
+     */
+    public static final String DB_DDL = "db.ddl";
+
+    /**
+     * 创建权限，名称支持BasicPermission的层级通配，如db.*
+     *
+     * @param name 能力名称
+     */
+    public PluginPermission(String name) {
+        super(name);
+    }
+}
@@ -23,7 +23,9 @@ package com.xiaoqu.qteamos.core.plugin.security;
 import com.xiaoqu.qteamos.core.plugin.running.PluginInfo;
 import com.xiaoqu.qteamos.core.plugin.running.PluginDescriptor;
 import com.xiaoqu.qteamos.core.plugin.loader.DynamicClassLoader;
+import com.xiaoqu.qteamos.core.plugin.event.Event;
 import com.xiaoqu.qteamos.core.plugin.event.EventBus;
+import com.xiaoqu.qteamos.core.plugin.event.EventListener;
 import com.xiaoqu.qteamos.core.plugin.event.PluginEvent;
 
 import org.slf4j.Logger;
@@ -118,20 +120,28 @@ public class PluginSecurityIntegration {
      * 在插件加载时调用
      */
     public void setupPluginSecurity(PluginInfo pluginInfo) {
+        setupPluginSecurity(pluginInfo.getDescriptor());
+    }
+    
+    /**
+     * 根据插件描述符配置安全环境
+     * 需要在创建插件类加载器之前调用，类加载策略依赖插件声明的权限
+     */
+    public void setupPluginSecurity(PluginDescriptor descriptor) {
         if (!sandboxConfig.isEnabled()) {
             return;
         }
         
-        String pluginId = pluginInfo.getPluginId();
+        String pluginId = descriptor.getPluginId();
         log.info("为插件 {} 设置安全环境", pluginId);
         
         // 1. 设置资源配额
-        ResourceQuota quota = createResourceQuota(pluginInfo);
+        ResourceQuota quota = createResourceQuota(descriptor);
         resourceIsolator.setResourceQuota(pluginId, quota);
         
         // 2. 设置安全权限
         if (sandboxConfig.isPermissionCheckEnabled()) {
-            PermissionCollection permissions = createPermissions(pluginInfo);
+            PermissionCollection permissions = createPermissions(descriptor);
             securityManager.setPermissions(pluginId, permissions);
         }
         
@@ -142,12 +152,12 @@ public class PluginSecurityIntegration {
     /**
      * 创建插件资源配额
      */
-    private ResourceQuota createResourceQuota(PluginInfo pluginInfo) {
+    private ResourceQuota createResourceQuota(PluginDescriptor descriptor) {
         ResourceQuota quota = resourceIsolator.createDefaultQuota();
         
         // 根据插件信息自定义配额
-        String pluginId = pluginInfo.getPluginId();
-        String pluginType = pluginInfo.getDescriptor().getType();
+        String pluginId = descriptor.getPluginId();
+        String pluginType = descriptor.getType();
         
         // 系统插件给予更高的配额
         if ("system".equals(pluginType)) {
@@ -166,9 +176,8 @@ public class PluginSecurityIntegration {
     /**
      * 创建插件权限集合
      */
-    private PermissionCollection createPermissions(PluginInfo pluginInfo) {
-        PluginDescriptor descriptor = pluginInfo.getDescriptor();
-        String pluginId = pluginInfo.getPluginId();
+    private PermissionCollection createPermissions(PluginDescriptor descriptor) {
+        String pluginId = descriptor.getPluginId();
         
         // 获取基础权限
         PermissionCollection permissions = securityManager.createDefaultPermissions(pluginId);
@@ -223,6 +232,9 @@ public class PluginSecurityIntegration {
                 case "runtime.exec":
                     return new RuntimePermission("exec");
                     
+                case PluginPermission.DB_DDL:
+                    return new PluginPermission(PluginPermission.DB_DDL);
+                    
                 default:
                     log.warn("插件 {} 请求了未知权限: {}", pluginId, permissionName);
                     return null;
@@ -248,11 +260,22 @@ public class PluginSecurityIntegration {
         resourceIsolator.removeResourceQuota(pluginId);
         
         // 清理安全设置
-        securityManager.clearCurrentPluginId();
+        securityManager.removePermissions(pluginId);
         
         log.info("插件 {} 安全环境已清理", pluginId);
     }
     
+    /**
+     * 插件卸载事件监听
+     */
+    @EventListener(topics = PluginEvent.TOPIC, types = PluginEvent.TYPE_UNLOADED)
+    public boolean onPluginUnloaded(Event event) {
+        if (event instanceof PluginEvent) {
+            cleanupPluginSecurity(((PluginEvent) event).getPluginId());
+        }
+        return true;
+    }
+    
     /**
      * 设置当前线程的插件上下文
      * 在调用插件方法前设置
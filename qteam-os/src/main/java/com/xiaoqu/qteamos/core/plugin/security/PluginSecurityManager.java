@@ -23,199 +23,375 @@ package com.xiaoqu.qteamos.core.plugin.security;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import jakarta.annotation.PostConstruct;
-import jakarta.annotation.PreDestroy;
 
+import java.io.File;
 import java.io.FilePermission;
 import java.net.SocketPermission;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.security.Permission;
 import java.security.PermissionCollection;
 import java.security.Permissions;
-import java.util.PropertyPermission;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.PropertyPermission;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * 插件安全管理器
+ * 不再安装JVM级SecurityManager（JDK 17起已废弃，每次文件、网络、属性访问都要做权限检查），
+ * 改为在插件可见的门面（存储、数据、网络访问）和插件类加载时按插件权限集合检查，宿主代码不承担任何检查开销。
+ * 权限仍用FilePermission、SocketPermission等JDK权限对象表达，implies判断不依赖SecurityManager
+ */
 @Component
-public class PluginSecurityManager extends SecurityManager {
+public class PluginSecurityManager {
 
     private static final Logger log = LoggerFactory.getLogger(PluginSecurityManager.class);
-    
+
+    /**
+     * 需要额外权限才能加载的JDK类，类名 -> 所需权限
+     */
+    private static final Map<String, Permission> RESTRICTED_CLASSES = new HashMap<>();
+
+    /**
+     * 需要额外权限才能加载的JDK包，包前缀 -> 所需权限
+     */
+    private static final Map<String, Permission> RESTRICTED_PACKAGES = new HashMap<>();
+
+    /**
+     * 需要DDL权限的SQL语句关键字
+     */
+    private static final Set<String> DDL_KEYWORDS = Set.of(
+            "CREATE", "ALTER", "DROP", "TRUNCATE", "RENAME", "GRANT", "REVOKE",
+            "SHUTDOWN", "KILL", "LOAD", "ATTACH", "DETACH", "PRAGMA", "VACUUM");
+
+    /**
+     * SQL语句是否需要DDL权限的缓存上限
+     */
+    private static final int SQL_CACHE_LIMIT = 4096;
+
+    static {
+        Permission exec = new RuntimePermission("exec");
+        for (String name : Arrays.asList("java.lang.ProcessBuilder", "java.lang.ProcessHandle",
+                "java.lang.ProcessHandleImpl")) {
+            RESTRICTED_CLASSES.put(name, exec);
+        }
+
+        Permission anyConnect = new SocketPermission("*", "connect");
+        for (String name : Arrays.asList("java.net.Socket", "java.net.ServerSocket", "java.net.DatagramSocket",
+                "java.net.MulticastSocket", "java.net.HttpURLConnection",
+                "java.nio.channels.SocketChannel", "java.nio.channels.ServerSocketChannel",
+                "java.nio.channels.DatagramChannel", "java.nio.channels.AsynchronousSocketChannel",
+                "java.nio.channels.AsynchronousServerSocketChannel")) {
+            RESTRICTED_CLASSES.put(name, anyConnect);
+        }
+        RESTRICTED_PACKAGES.put("java.net.http.", anyConnect);
+        RESTRICTED_PACKAGES.put("javax.net.", anyConnect);
+    }
+
     @Autowired
     private SandboxConfig sandboxConfig;
-    
+
+    @Value("${plugin.storage-path:./plugins}")
+    private String pluginsRootPath;
+
     private final Map<String, PermissionCollection> pluginPermissions = new ConcurrentHashMap<>();
     private final ThreadLocal<String> currentPluginId = new ThreadLocal<>();
-    private SecurityManager originalSecurityManager;
-    
+
+    // SQL文本 -> 是否需要DDL权限
+    private final Map<String, Boolean> ddlStatements = new ConcurrentHashMap<>(256);
+
     /**
      * 初始化安全管理器
      */
     @PostConstruct
     public void init() {
-        // 保存原始安全管理器，以便在关闭时恢复
-        originalSecurityManager = System.getSecurityManager();
-        
         if (sandboxConfig.isEnabled()) {
-            log.info("插件安全沙箱已启用");
-            if (sandboxConfig.isPermissionCheckEnabled()) {
-                // 设置当前类为系统安全管理器
-                System.setSecurityManager(this);
-                log.info("插件权限检查已启用");
-            } else {
-                log.info("插件权限检查已禁用");
-            }
+            log.info("插件安全沙箱已启用，权限检查: {}，检查点: 插件门面和插件类加载",
+                    sandboxConfig.isPermissionCheckEnabled() ? "已启用" : "已禁用");
         } else {
             log.info("插件安全沙箱已禁用，将不进行权限检查");
         }
     }
-    
-    /**
-     * 关闭安全管理器
-     */
-    @PreDestroy
-    public void destroy() {
-        if (sandboxConfig.isEnabled() && sandboxConfig.isPermissionCheckEnabled()) {
-            // 恢复原始安全管理器
-            System.setSecurityManager(originalSecurityManager);
-            log.info("安全管理器已恢复为原始状态");
-        }
-    }
-    
+
     /**
      * 设置当前线程的插件ID
      */
     public void setCurrentPluginId(String pluginId) {
         currentPluginId.set(pluginId);
     }
-    
+
     /**
      * 清除当前线程的插件ID
      */
     public void clearCurrentPluginId() {
         currentPluginId.remove();
     }
-    
+
+    /**
+     * 获取当前线程的插件ID
+     */
+    public String getCurrentPluginId() {
+        return currentPluginId.get();
+    }
+
     /**
      * 为插件设置权限
      */
     public void setPermissions(String pluginId, PermissionCollection permissions) {
         pluginPermissions.put(pluginId, permissions);
     }
-    
+
+    /**
+     * 移除插件权限，插件卸载时调用
+     */
+    public void removePermissions(String pluginId) {
+        pluginPermissions.remove(pluginId);
+    }
+
     /**
      * 创建默认权限集合
      */
     public PermissionCollection createDefaultPermissions(String pluginId) {
         Permissions permissions = new Permissions();
-        
+
         // 基本运行权限
         permissions.add(new RuntimePermission("getClassLoader"));
         permissions.add(new RuntimePermission("getProtectionDomain"));
         permissions.add(new RuntimePermission("accessDeclaredMembers"));
         permissions.add(new RuntimePermission("createClassLoader"));
-        
+
         // 反射权限（受限）
         permissions.add(new RuntimePermission("accessClassInPackage.java.lang"));
-        
-        // 允许插件读取自己的目录
+
+        // 允许插件读写自己的存储目录
+        permissions.add(new FilePermission(pluginRoot(pluginId) + File.separator + "-", "read,write,delete"));
         permissions.add(new FilePermission("plugins/" + pluginId + "/-", "read"));
         permissions.add(new FilePermission("plugins/" + pluginId + "/-", "write"));
-        
+
         // 属性访问权限
         permissions.add(new PropertyPermission("user.dir", "read"));
         permissions.add(new PropertyPermission("java.io.tmpdir", "read"));
         permissions.add(new PropertyPermission("file.separator", "read"));
         permissions.add(new PropertyPermission("line.separator", "read"));
         permissions.add(new PropertyPermission("path.separator", "read"));
-        
+
         // 本地主机网络权限（如需要）
         permissions.add(new SocketPermission("localhost:1024-", "connect,resolve"));
         permissions.add(new SocketPermission("127.0.0.1:1024-", "connect,resolve"));
-        
+
         return permissions;
     }
-    
+
     /**
      * 为指定插件添加额外权限
      */
     public void addPermission(String pluginId, Permission permission) {
-        PermissionCollection permissions = pluginPermissions.get(pluginId);
-        if (permissions == null) {
-            permissions = createDefaultPermissions(pluginId);
-            pluginPermissions.put(pluginId, permissions);
+        getPermissions(pluginId).add(permission);
+    }
+
+    /**
+     * 检查插件是否拥有权限
+     *
+     * @param pluginId 插件ID，为null表示宿主调用，直接放行
+     * @param perm 所需权限
+     * @throws SecurityException 插件没有该权限
+     */
+    public void checkPermission(String pluginId, Permission perm) {
+        if (pluginId == null || !isPermissionCheckEnabled()) {
+            return;
+        }
+        if (!getPermissions(pluginId).implies(perm)) {
+            log.warn("插件 {} 尝试执行未授权操作: {}", pluginId, perm);
+            throw new SecurityException("插件 " + pluginId + " 没有权限执行操作: " + perm);
         }
-        permissions.add(permission);
     }
-    
+
     /**
-     * 权限检查
+     * 按当前线程的插件上下文检查权限
      */
-    @Override
     public void checkPermission(Permission perm) {
-        // 如果沙箱或权限检查禁用，直接放行
-        if (!sandboxConfig.isEnabled() || !sandboxConfig.isPermissionCheckEnabled()) {
+        checkPermission(currentPluginId.get(), perm);
+    }
+
+    /**
+     * 检查插件对文件的访问
+     *
+     * @param pluginId 插件ID
+     * @param path 文件路径
+     * @param actions FilePermission动作，如read、write、delete
+     */
+    public void checkFileAccess(String pluginId, Path path, String actions) {
+        checkPermission(pluginId, new FilePermission(path.toAbsolutePath().normalize().toString(), actions));
+    }
+
+    /**
+     * 检查插件对外连接，供插件可见的出站网络门面在建立连接前调用
+     *
+     * @param pluginId 插件ID
+     * @param host 目标主机
+     * @param port 目标端口
+     */
+    public void checkConnect(String pluginId, String host, int port) {
+        checkPermission(pluginId, new SocketPermission(host + ":" + port, "connect,resolve"));
+    }
+
+    /**
+     * 检查插件执行的SQL，DDL和管理类语句需要db.ddl权限
+     *
+     * @param pluginId 插件ID
+     * @param sql SQL语句
+     */
+    public void checkSql(String pluginId, String sql) {
+        if (pluginId == null || sql == null || !isPermissionCheckEnabled()) {
             return;
         }
-        
-        // 获取当前线程关联的插件ID
-        String pluginId = currentPluginId.get();
-        
-        // 如果不是插件调用，使用原始安全管理器或放行
-        if (pluginId == null) {
-            if (originalSecurityManager != null) {
-                originalSecurityManager.checkPermission(perm);
+        Boolean ddl = ddlStatements.get(sql);
+        if (ddl == null) {
+            ddl = containsDdl(sql);
+            if (ddlStatements.size() < SQL_CACHE_LIMIT) {
+                ddlStatements.put(sql, ddl);
             }
-            return;
-        }
-        
-        // 插件调用，检查权限
-        PermissionCollection permissions = pluginPermissions.get(pluginId);
-        if (permissions == null) {
-            log.warn("插件 {} 没有设置权限集合，使用默认权限", pluginId);
-            permissions = createDefaultPermissions(pluginId);
-            pluginPermissions.put(pluginId, permissions);
         }
-        
-        if (!permissions.implies(perm)) {
-            log.warn("插件 {} 尝试执行未授权操作: {}", pluginId, perm);
-            throw new SecurityException("插件 " + pluginId + " 没有权限执行操作: " + perm);
+        if (ddl) {
+            checkPermission(pluginId, new PluginPermission(PluginPermission.DB_DDL));
         }
     }
-    
-    @Override
-    public void checkPermission(Permission perm, Object context) {
-        checkPermission(perm);
-    }
-    
+
     /**
-     * 禁止插件退出JVM
+     * 插件类加载器加载类前调用，判断插件能否加载该类
+     *
+     * @param pluginId 插件ID
+     * @param className 类名
+     * @return 是否允许加载
      */
-    @Override
-    public void checkExit(int status) {
-        String pluginId = currentPluginId.get();
-        if (pluginId != null) {
-            log.warn("插件 {} 尝试调用System.exit({})", pluginId, status);
-            throw new SecurityException("插件不允许调用System.exit()");
+    public boolean isClassAllowed(String pluginId, String className) {
+        if (!isSandboxEnabled()) {
+            return true;
+        }
+        List<String> blockedPackages = sandboxConfig.getBlockedPackages();
+        for (int i = 0; i < blockedPackages.size(); i++) {
+            if (className.startsWith(blockedPackages.get(i))) {
+                return false;
+            }
         }
-        
-        if (originalSecurityManager != null) {
-            originalSecurityManager.checkExit(status);
+        if (!sandboxConfig.isPermissionCheckEnabled() || !className.startsWith("java")) {
+            return true;
         }
+        Permission required = RESTRICTED_CLASSES.get(className);
+        if (required == null) {
+            for (Map.Entry<String, Permission> entry : RESTRICTED_PACKAGES.entrySet()) {
+                if (className.startsWith(entry.getKey())) {
+                    required = entry.getValue();
+                    break;
+                }
+            }
+        }
+        return required == null || getPermissions(pluginId).implies(required);
     }
-    
+
     /**
      * 检查是否沙箱已启用
      */
     public boolean isSandboxEnabled() {
         return sandboxConfig.isEnabled();
     }
-    
+
     /**
      * 检查是否启用了权限检查
      */
     public boolean isPermissionCheckEnabled() {
         return sandboxConfig.isEnabled() && sandboxConfig.isPermissionCheckEnabled();
     }
-} 
\ No newline at end of file
+
+    private PermissionCollection getPermissions(String pluginId) {
+        PermissionCollection permissions = pluginPermissions.get(pluginId);
+        if (permissions == null) {
+            log.warn("插件 {} 没有设置权限集合，使用默认权限", pluginId);
+            permissions = pluginPermissions.computeIfAbsent(pluginId, this::createDefaultPermissions);
+        }
+        return permissions;
+    }
+
+    private String pluginRoot(String pluginId) {
+        return Paths.get(pluginsRootPath, pluginId).toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * 逐条检查语句的首个关键字，跳过注释、括号和字符串中的分号
+     */
+    private static boolean containsDdl(String sql) {
+        int length = sql.length();
+        int i = 0;
+        boolean statementStart = true;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '"' || c == '`') {
+                i = skipQuoted(sql, i, c);
+                statementStart = false;
+                continue;
+            }
+            if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+                while (i < length && sql.charAt(i) != '\n') {
+                    i++;
+                }
+                continue;
+            }
+            if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+                continue;
+            }
+            if (c == ';') {
+                statementStart = true;
+                i++;
+                continue;
+            }
+            if (Character.isWhitespace(c) || c == '(') {
+                i++;
+                continue;
+            }
+            if (statementStart) {
+                int start = i;
+                while (i < length && Character.isLetter(sql.charAt(i))) {
+                    i++;
+                }
+                if (i > start && DDL_KEYWORDS.contains(sql.substring(start, i).toUpperCase(Locale.ROOT))) {
+                    return true;
+                }
+                statementStart = false;
+                if (i == start) {
+                    i++;
+                }
+                continue;
+            }
+            i++;
+        }
+        return false;
+    }
+
+    private static int skipQuoted(String sql, int start, char quote) {
+        int i = start + 1;
+        while (i < sql.length()) {
+            char c = sql.charAt(i++);
+            if (c == '\\') {
+                i++;
+            } else if (c == quote) {
+                if (i < sql.length() && sql.charAt(i) == quote) {
+                    i++;
+                } else {
+                    break;
+                }
+            }
+        }
+        return i;
+    }
+}
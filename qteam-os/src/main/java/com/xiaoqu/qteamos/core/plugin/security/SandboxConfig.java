@@ -23,6 +23,9 @@ package com.xiaoqu.qteamos.core.plugin.security;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Component
 @ConfigurationProperties(prefix = "plugin.sandbox")
 public class SandboxConfig {
@@ -72,6 +75,11 @@ public class SandboxConfig {
      */
     private int defaultThreadLimit = 10;
 
+    /**
+     * 插件不允许加载的宿主包
+     */
+    private List<String> blockedPackages = new ArrayList<>();
+
     // Getters and Setters
 
     public boolean isEnabled() {
@@ -145,4 +153,12 @@ public class SandboxConfig {
     public void setDefaultThreadLimit(int defaultThreadLimit) {
         this.defaultThreadLimit = defaultThreadLimit;
     }
+
+    public List<String> getBlockedPackages() {
+        return blockedPackages;
+    }
+
+    public void setBlockedPackages(List<String> blockedPackages) {
+        this.blockedPackages = blockedPackages;
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,275 @@
+package com.xiaoqu.qteamos.core.plugin.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xiaoqu.qteamos.core.plugin.service.PluginConfigStore.ConfigSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 类型化配置绑定
+ * 把配置快照中的一组配置一次性转换为插件声明的record、类或接口实例，读取时只比较快照版本号，
+ * 版本未变化直接返回已绑定的实例，热点路径上读取配置就是字段访问；快照版本变化后的首次读取重新绑定。
+ * 接口绑定为代理，方法按下标返回预先转换好的值，返回类型为接口的方法绑定为嵌套配置
+ *
+ * @author yangqijun
+ * @date 2025-05-01
+ */
+public final class ConfigBinding<T> implements Supplier<T> {
+
+    private static final Logger log = LoggerFactory.getLogger(ConfigBinding.class);
+
+    /**
+     * 配置接口的属性方法表，按方法名排序，代理和预转换值使用相同的下标
+     */
+    private static final ClassValue<Method[]> PROPERTY_METHODS = new ClassValue<>() {
+        @Override
+        protected Method[] computeValue(Class<?> type) {
+            return Arrays.stream(type.getMethods())
+                    .filter(method -> !Modifier.isStatic(method.getModifiers()) && method.getParameterCount() == 0)
+                    .sorted(Comparator.comparing(Method::getName))
+                    .toArray(Method[]::new);
+        }
+    };
+
+    /**
+     * 属性方法到方法表下标的索引
+     */
+    private static final ClassValue<Map<Method, Integer>> PROPERTY_INDEXES = new ClassValue<>() {
+        @Override
+        protected Map<Method, Integer> computeValue(Class<?> type) {
+            Method[] methods = PROPERTY_METHODS.get(type);
+            Map<Method, Integer> indexes = new HashMap<>(methods.length * 2);
+            for (int i = 0; i < methods.length; i++) {
+                indexes.put(methods[i], i);
+            }
+            return indexes;
+        }
+    };
+
+    /**
+     * 尚未求值的默认方法属性，读取时直接执行默认方法
+     */
+    private static final Object UNRESOLVED = new Object();
+
+    private final Supplier<ConfigSnapshot> snapshotSource;
+    private final String prefix;
+    private final Class<T> type;
+    private final ObjectMapper objectMapper;
+    private volatile Bound<T> bound;
+
+    /**
+     * 创建时立即按当前快照绑定，配置无法转换为目标类型时抛出IllegalArgumentException
+     *
+     * @param snapshotSource 插件当前配置快照
+     * @param prefix 配置前缀，按"."逐级进入嵌套配置，为空时绑定全部配置
+     * @param type 绑定类型
+     * @param objectMapper 值转换使用的ObjectMapper
+     */
+    ConfigBinding(Supplier<ConfigSnapshot> snapshotSource, String prefix, Class<T> type, ObjectMapper objectMapper) {
+        this.snapshotSource = snapshotSource;
+        this.prefix = prefix;
+        this.type = type;
+        this.objectMapper = objectMapper;
+        ConfigSnapshot snapshot = snapshotSource.get();
+        this.bound = new Bound<>(snapshot.getVersion(), bind(snapshot));
+    }
+
+    /**
+     * 获取与当前配置快照对应的绑定实例
+     */
+    @Override
+    public T get() {
+        Bound<T> current = bound;
+        ConfigSnapshot snapshot = snapshotSource.get();
+        if (current.version == snapshot.getVersion()) {
+            return current.value;
+        }
+        return rebind(snapshot);
+    }
+
+    /**
+     * 已绑定的快照版本
+     */
+    public long getVersion() {
+        return bound.version;
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * 重新绑定，转换失败时沿用上一版本的实例，直到配置再次变化前不再重试
+     */
+    private synchronized T rebind(ConfigSnapshot snapshot) {
+        Bound<T> current = bound;
+        if (current.version == snapshot.getVersion()) {
+            return current.value;
+        }
+        T value;
+        try {
+            value = bind(snapshot);
+        } catch (IllegalArgumentException e) {
+            log.error("配置[{}]绑定为 {} 失败，继续使用版本{}的配置: {}",
+                    prefix, type.getName(), current.version, e.getMessage());
+            value = current.value;
+        }
+        bound = new Bound<>(snapshot.getVersion(), value);
+        return value;
+    }
+
+    private T bind(ConfigSnapshot snapshot) {
+        Map<String, Object> values = section(snapshot.getValues());
+        if (type.isInterface()) {
+            return type.cast(bindInterface(type, values));
+        }
+        return objectMapper.convertValue(values, type);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> section(Map<String, Object> values) {
+        if (prefix == null || prefix.isEmpty()) {
+            return values;
+        }
+        Map<String, Object> section = values;
+        for (String name : prefix.split("\\.")) {
+            Object value = section.get(name);
+            if (value == null) {
+                return Collections.emptyMap();
+            }
+            if (!(value instanceof Map)) {
+                throw new IllegalArgumentException("配置项不是对象: " + prefix);
+            }
+            section = (Map<String, Object>) value;
+        }
+        return section;
+    }
+
+    /**
+     * 为配置接口创建代理并预先转换全部属性，配置中缺少的属性使用默认方法的返回值或类型零值
+     */
+    @SuppressWarnings("unchecked")
+    private Object bindInterface(Class<?> iface, Map<String, Object> values) {
+        Method[] methods = PROPERTY_METHODS.get(iface);
+        Object[] converted = new Object[methods.length];
+        Object proxy = Proxy.newProxyInstance(iface.getClassLoader(), new Class<?>[]{iface},
+                new PropertyHandler(iface, converted));
+
+        // 先转换配置中存在的属性，再执行默认方法；默认方法读取的其他默认属性尚未求值时直接执行其默认方法，结果与求值顺序无关
+        List<Integer> defaults = new ArrayList<>();
+        for (int i = 0; i < methods.length; i++) {
+            Method method = methods[i];
+            Class<?> returnType = method.getReturnType();
+            Object value = values.get(propertyName(method));
+            if (value == null && method.isDefault()) {
+                converted[i] = UNRESOLVED;
+                defaults.add(i);
+            } else if (isConfigInterface(returnType) && (value == null || value instanceof Map)) {
+                converted[i] = bindInterface(returnType,
+                        value != null ? (Map<String, Object>) value : Collections.emptyMap());
+            } else if (value != null) {
+                converted[i] = objectMapper.convertValue(value,
+                        objectMapper.getTypeFactory().constructType(method.getGenericReturnType()));
+            } else if (returnType.isPrimitive() && returnType != void.class) {
+                converted[i] = Array.get(Array.newInstance(returnType, 1), 0);
+            }
+        }
+        for (int i : defaults) {
+            try {
+                converted[i] = InvocationHandler.invokeDefault(proxy, methods[i]);
+            } catch (Throwable e) {
+                throw new IllegalArgumentException("配置接口默认方法执行失败: " + methods[i], e);
+            }
+        }
+        return proxy;
+    }
+
+    private static boolean isConfigInterface(Class<?> type) {
+        return type.isInterface() && !type.getName().startsWith("java.");
+    }
+
+    /**
+     * 属性名，getXxx和isXxx去掉前缀，其他方法直接使用方法名
+     */
+    private static String propertyName(Method method) {
+        String name = method.getName();
+        if (name.length() > 3 && name.startsWith("get") && Character.isUpperCase(name.charAt(3))) {
+            return Character.toLowerCase(name.charAt(3)) + name.substring(4);
+        }
+        if (name.length() > 2 && name.startsWith("is") && Character.isUpperCase(name.charAt(2))
+                && (method.getReturnType() == boolean.class || method.getReturnType() == Boolean.class)) {
+            return Character.toLowerCase(name.charAt(2)) + name.substring(3);
+        }
+        return name;
+    }
+
+    /**
+     * 绑定结果，创建后不可变
+     */
+    private static final class Bound<T> {
+        private final long version;
+        private final T value;
+
+        Bound(long version, T value) {
+            this.version = version;
+            this.value = value;
+        }
+    }
+
+    /**
+     * 配置接口代理的调用处理器，属性方法直接返回预转换的值
+     */
+    private static final class PropertyHandler implements InvocationHandler {
+        private final Class<?> type;
+        private final Map<Method, Integer> indexes;
+        private final Object[] values;
+
+        PropertyHandler(Class<?> type, Object[] values) {
+            this.type = type;
+            this.indexes = PROPERTY_INDEXES.get(type);
+            this.values = values;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Integer index = indexes.get(method);
+            if (index != null && values[index] != UNRESOLVED) {
+                return values[index];
+            }
+            if (method.isDefault()) {
+                return InvocationHandler.invokeDefault(proxy, method, args);
+            }
+            // Object方法
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    Method[] methods = PROPERTY_METHODS.get(type);
+                    Map<String, Object> properties = new LinkedHashMap<>();
+                    for (int i = 0; i < methods.length; i++) {
+                        properties.put(propertyName(methods[i]), values[i]);
+                    }
+                    return type.getSimpleName() + properties;
+                default:
+                    throw new UnsupportedOperationException("配置接口方法不支持参数: " + method);
+            }
+        }
+    }
+}
@@ -9,14 +9,15 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.io.File;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * 配置服务API实现类
@@ -31,12 +32,6 @@ public class ConfigServiceApiImpl implements ConfigServiceApi {
 
     private final ObjectMapper objectMapper = new ObjectMapper();
     
-    /**
-     * 插件配置缓存
-     * key：插件ID，value：配置Map
-     */
-    private final Map<String, Map<String, Object>> configCache = new ConcurrentHashMap<>();
-
     @Autowired
     private PluginErrorHandler errorHandler;
 
@@ -44,7 +39,7 @@ public class ConfigServiceApiImpl implements ConfigServiceApi {
     private PluginServiceApiImpl pluginServiceApi;
 
     @Autowired
-    private StorageServiceApiImpl storageService;
+    private PluginConfigStore configStore;
 
     @Override
     public Optional<String> getString(String key) {
@@ -168,9 +163,7 @@ public class ConfigServiceApiImpl implements ConfigServiceApi {
     @Override
     public boolean set(String key, Object value) {
         try {
-            String pluginId = getCurrentPluginId();
-            Map<String, Object> config = getPluginConfig(pluginId);
-            config.put(key, value);
+            configStore.set(getCurrentPluginId(), key, value);
             return true;
         } catch (Exception e) {
             handleError(e, "设置配置异常: " + key);
@@ -178,12 +171,21 @@ public class ConfigServiceApiImpl implements ConfigServiceApi {
         }
     }
 
+    @Override
+    public boolean setAll(Map<String, Object> values) {
+        try {
+            configStore.update(getCurrentPluginId(), values);
+            return true;
+        } catch (Exception e) {
+            handleError(e, "批量设置配置异常");
+            return false;
+        }
+    }
+
     @Override
     public boolean remove(String key) {
         try {
-            String pluginId = getCurrentPluginId();
-            Map<String, Object> config = getPluginConfig(pluginId);
-            config.remove(key);
+            configStore.remove(getCurrentPluginId(), key);
             return true;
         } catch (Exception e) {
             handleError(e, "删除配置异常: " + key);
@@ -194,8 +196,7 @@ public class ConfigServiceApiImpl implements ConfigServiceApi {
     @Override
     public Map<String, Object> getAll() {
         try {
-            String pluginId = getCurrentPluginId();
-            return new HashMap<>(getPluginConfig(pluginId));
+            return new HashMap<>(configStore.getSnapshot(getCurrentPluginId()).getValues());
         } catch (Exception e) {
             handleError(e, "获取所有配置异常");
             return new HashMap<>();
@@ -206,14 +207,9 @@ public class ConfigServiceApiImpl implements ConfigServiceApi {
     public boolean save() {
         try {
             String pluginId = getCurrentPluginId();
-            Map<String, Object> config = getPluginConfig(pluginId);
-            
-            // 获取配置文件
-            File configFile = getConfigFile(pluginId);
-            
-            // 保存配置
-            objectMapper.writerWithDefaultPrettyPrinter().writeValue(configFile, config);
-            
+            if (!configStore.flush(pluginId)) {
+                return false;
+            }
             log.debug("插件[{}]配置保存成功", pluginId);
             return true;
         } catch (Exception e) {
@@ -226,9 +222,7 @@ public class ConfigServiceApiImpl implements ConfigServiceApi {
     public boolean reload() {
         try {
             String pluginId = getCurrentPluginId();
-            configCache.remove(pluginId);
-            getPluginConfig(pluginId); // 重新加载配置
-            
+            configStore.reload(pluginId);
             log.debug("插件[{}]配置重新加载成功", pluginId);
             return true;
         } catch (Exception e) {
@@ -237,49 +231,31 @@ public class ConfigServiceApiImpl implements ConfigServiceApi {
         }
     }
 
-    /**
-     * 获取配置值
-     */
-    private Object getConfigValue(String key) {
-        String pluginId = getCurrentPluginId();
-        Map<String, Object> config = getPluginConfig(pluginId);
-        return config.get(key);
+    @Override
+    public void addChangeListener(Consumer<Set<String>> listener) {
+        configStore.addListener(getCurrentPluginId(), change -> listener.accept(change.getChangedKeys()));
     }
 
-    /**
-     * 获取插件配置
-     */
-    private Map<String, Object> getPluginConfig(String pluginId) {
-        Map<String, Object> config = configCache.get(pluginId);
-        if (config == null) {
-            config = loadPluginConfig(pluginId);
-            configCache.put(pluginId, config);
-        }
-        return config;
+    @Override
+    public <T> void addChangeListener(String key, Class<T> type, BiConsumer<T, T> listener) {
+        configStore.addListener(getCurrentPluginId(), key, type, listener);
     }
 
-    /**
-     * 加载插件配置
-     */
-    private Map<String, Object> loadPluginConfig(String pluginId) {
-        File configFile = getConfigFile(pluginId);
-        if (configFile.exists()) {
-            try {
-                return objectMapper.readValue(configFile, 
-                        new TypeReference<Map<String, Object>>() {});
-            } catch (IOException e) {
-                log.error("加载插件配置异常: {}", pluginId, e);
-            }
-        }
-        return new ConcurrentHashMap<>();
+    @Override
+    public <T> Supplier<T> bind(Class<T> type) {
+        return bind(null, type);
+    }
+
+    @Override
+    public <T> Supplier<T> bind(String prefix, Class<T> type) {
+        return configStore.bind(getCurrentPluginId(), prefix, type);
     }
 
     /**
-     * 获取配置文件
+     * 获取配置值
      */
-    private File getConfigFile(String pluginId) {
-        File configDir = storageService.getPluginConfigDirectory(pluginId);
-        return new File(configDir, "plugin-config.json");
+    private Object getConfigValue(String key) {
+        return configStore.getSnapshot(getCurrentPluginId()).get(key);
     }
 
     /**
@@ -1,12 +1,26 @@
 package com.xiaoqu.qteamos.core.plugin.service;
 
+import com.xiaoqu.qteamos.core.databases.core.DataSourceContextHolder;
+import com.xiaoqu.qteamos.core.databases.core.DataSourceManager;
+import com.xiaoqu.qteamos.core.databases.core.JdbcBatchWriter;
+import com.xiaoqu.qteamos.core.databases.core.ResultSetCursor;
 import com.xiaoqu.qteamos.core.plugin.error.PluginErrorHandler;
+import com.xiaoqu.qteamos.core.plugin.event.Event;
+import com.xiaoqu.qteamos.core.plugin.event.EventListener;
+import com.xiaoqu.qteamos.core.plugin.event.PluginEvent;
+import com.xiaoqu.qteamos.core.plugin.security.PluginSecurityManager;
+import com.xiaoqu.qteamos.api.core.plugin.api.BatchWriterOptions;
 import com.xiaoqu.qteamos.api.core.plugin.api.DataServiceApi;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DataSourceUtils;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Component;
@@ -23,6 +37,12 @@ import java.sql.Statement;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 数据服务API实现类
@@ -35,8 +55,34 @@ public class DataServiceApiImpl implements DataServiceApi {
 
     private static final Logger log = LoggerFactory.getLogger(DataServiceApiImpl.class);
 
+    private final DataSource dataSource;
     private final JdbcTemplate jdbcTemplate;
     private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final DataSourceManager dataSourceManager;
+
+    /**
+     * 流式查询默认抓取大小
+     */
+    @Value("${spring.datasource.stream-fetch-size:1000}")
+    private int defaultFetchSize;
+
+    /**
+     * 后写模式批量写入的后台线程数
+     */
+    @Value("${spring.datasource.batch-writer.threads:4}")
+    private int batchWriterThreads;
+
+    /**
+     * 批量写入器的定时提交调度器和后台执行器，所有写入器共用
+     */
+    private ScheduledExecutorService batchFlushScheduler;
+    private ExecutorService batchWriteExecutor;
+
+    /**
+     * 各插件未关闭的批量写入器，插件卸载时关闭
+     */
+    private final Map<String, Set<JdbcBatchWriter>> openBatchWriters = new ConcurrentHashMap<>();
 
     @Autowired
     private PluginErrorHandler errorHandler;
@@ -45,16 +91,52 @@ public class DataServiceApiImpl implements DataServiceApi {
     private PluginServiceApiImpl pluginServiceApi;
 
     @Autowired
-    public DataServiceApiImpl(DataSource dataSource, PlatformTransactionManager transactionManager) {
-        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    private PluginSecurityManager securityManager;
+
+    @Autowired
+    public DataServiceApiImpl(DataSource dataSource, DataSourceManager dataSourceManager) {
+        // 插件通过此API获取的连接受各自的连接配额约束
+        this.dataSource = dataSourceManager.wrapWithPluginQuota(dataSource, () -> pluginServiceApi.peekCurrentPluginId());
+        this.jdbcTemplate = new JdbcTemplate(this.dataSource);
+        // 插件事务通过配额数据源开启，绑定的事务连接同样占用插件配额；
+        // 资源键为底层数据源，外层已有宿主事务时直接加入
+        PlatformTransactionManager transactionManager = new DataSourceTransactionManager(this.dataSource);
         this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.dataSourceManager = dataSourceManager;
+    }
+
+    @PostConstruct
+    public void init() {
+        batchFlushScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "plugin-batch-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        AtomicInteger counter = new AtomicInteger();
+        batchWriteExecutor = Executors.newFixedThreadPool(Math.max(1, batchWriterThreads), r -> {
+            Thread t = new Thread(r, "plugin-batch-writer-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        batchFlushScheduler.shutdownNow();
+        // 已提交的批次继续执行完成
+        batchWriteExecutor.shutdown();
     }
 
     @Override
     public List<Map<String, Object>> query(String sql, Object... params) {
+        checkSql(sql);
         try {
             log.debug("插件[{}]执行查询: {}", getCurrentPluginId(), sql);
-            return jdbcTemplate.queryForList(sql, params);
+            try (DataSourceContextHolder.Scope ignored = DataSourceContextHolder.useReadOnly()) {
+                return jdbcTemplate.queryForList(sql, params);
+            }
         } catch (Exception e) {
             log.error("查询数据异常: {}", e.getMessage(), e);
             errorHandler.handlePluginError(getCurrentPluginId(), e, PluginErrorHandler.OperationType.RUNTIME);
@@ -62,10 +144,67 @@ public class DataServiceApiImpl implements DataServiceApi {
         }
     }
 
+    @Override
+    public long queryForEach(String sql, RowHandler handler, Object... params) {
+        return queryForEach(sql, defaultFetchSize, handler, params);
+    }
+
+    @Override
+    public long queryForEach(String sql, int fetchSize, RowHandler handler, Object... params) {
+        ResultSetCursor cursor = openResultSetCursor(sql, fetchSize, params);
+        try {
+            return cursor.forEach(handler);
+        } catch (Exception e) {
+            log.error("流式查询数据异常: {}", e.getMessage(), e);
+            errorHandler.handlePluginError(getCurrentPluginId(), e, PluginErrorHandler.OperationType.RUNTIME);
+            throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException("流式查询数据异常", e);
+        }
+    }
+
+    @Override
+    public QueryCursor openCursor(String sql, int fetchSize, Object... params) {
+        return openResultSetCursor(sql, fetchSize, params);
+    }
+
+    @Override
+    public long queryInBatches(String sql, int batchSize, BatchHandler handler, Object... params) {
+        ResultSetCursor cursor = openResultSetCursor(sql, batchSize, params);
+        try {
+            return cursor.forEachBatch(batchSize, handler);
+        } catch (Exception e) {
+            log.error("批量查询数据异常: {}", e.getMessage(), e);
+            errorHandler.handlePluginError(getCurrentPluginId(), e, PluginErrorHandler.OperationType.RUNTIME);
+            throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException("批量查询数据异常", e);
+        }
+    }
+
+    /**
+     * 打开流式查询游标
+     * 通过DataSourceUtils获取连接，在事务中调用时复用事务连接，关闭游标时交还而不是直接关闭
+     */
+    private ResultSetCursor openResultSetCursor(String sql, int fetchSize, Object... params) {
+        checkSql(sql);
+        try {
+            log.debug("插件[{}]执行流式查询: {}, fetchSize={}", getCurrentPluginId(), sql, fetchSize);
+            // 延迟连接在prepareStatement时才获取物理连接，只读作用域需覆盖到游标打开之后才能路由到副本
+            try (DataSourceContextHolder.Scope ignored = DataSourceContextHolder.useReadOnly()) {
+                Connection connection = DataSourceUtils.getConnection(dataSource);
+                return ResultSetCursor.open(connection,
+                        con -> DataSourceUtils.releaseConnection(con, dataSource), sql, fetchSize, params);
+            }
+        } catch (Exception e) {
+            log.error("打开查询游标异常: {}", e.getMessage(), e);
+            errorHandler.handlePluginError(getCurrentPluginId(), e, PluginErrorHandler.OperationType.RUNTIME);
+            throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException("打开查询游标异常", e);
+        }
+    }
+
     @Override
     public int update(String sql, Object... params) {
+        checkSql(sql);
         try {
             log.debug("插件[{}]执行更新: {}", getCurrentPluginId(), sql);
+            dataSourceManager.markWrite();
             return jdbcTemplate.update(sql, params);
         } catch (Exception e) {
             log.error("更新数据异常: {}", e.getMessage(), e);
@@ -76,9 +215,11 @@ public class DataServiceApiImpl implements DataServiceApi {
 
     @Override
     public Optional<Object> insertAndGetKey(String sql, Object... params) {
+        checkSql(sql);
         try {
             log.debug("插件[{}]执行插入并返回主键: {}", getCurrentPluginId(), sql);
             
+            dataSourceManager.markWrite();
             KeyHolder keyHolder = new GeneratedKeyHolder();
             jdbcTemplate.update(createPreparedStatementCreator(sql, params), keyHolder);
             
@@ -93,8 +234,10 @@ public class DataServiceApiImpl implements DataServiceApi {
 
     @Override
     public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+        checkSql(sql);
         try {
             log.debug("插件[{}]执行批量更新: {}", getCurrentPluginId(), sql);
+            dataSourceManager.markWrite();
             return jdbcTemplate.batchUpdate(sql, batchArgs);
         } catch (Exception e) {
             log.error("批量更新数据异常: {}", e.getMessage(), e);
@@ -103,6 +246,66 @@ public class DataServiceApiImpl implements DataServiceApi {
         }
     }
 
+    @Override
+    public BatchWriter openBatchWriter(String sql) {
+        return openBatchWriter(sql, BatchWriterOptions.defaults());
+    }
+
+    @Override
+    public BatchWriter openBatchWriter(String sql, BatchWriterOptions options) {
+        String pluginId = getCurrentPluginId();
+        checkSql(sql);
+        log.debug("插件[{}]打开批量写入器: {}", pluginId, sql);
+
+        // 后台提交的批次沿用打开写入器时的插件身份（连接配额）和数据源路由
+        DataSourceContextHolder.Snapshot routing = DataSourceContextHolder.snapshot();
+        Set<JdbcBatchWriter> writers = openBatchWriters.computeIfAbsent(pluginId, id -> ConcurrentHashMap.newKeySet());
+        JdbcBatchWriter writer = new JdbcBatchWriter(dataSource, sql, options != null ? options : BatchWriterOptions.defaults(),
+                batchFlushScheduler, batchWriteExecutor,
+                task -> () -> {
+                    String previous = pluginServiceApi.peekCurrentPluginId();
+                    pluginServiceApi.setCurrentPluginId(pluginId);
+                    try (DataSourceContextHolder.Scope ignored = routing.attach()) {
+                        dataSourceManager.markWrite();
+                        task.run();
+                    } finally {
+                        if (previous != null) {
+                            pluginServiceApi.setCurrentPluginId(previous);
+                        } else {
+                            pluginServiceApi.clearCurrentPluginId();
+                        }
+                    }
+                },
+                e -> {
+                    log.error("批量写入数据异常: {}", e.getMessage(), e);
+                    errorHandler.handlePluginError(pluginId, e, PluginErrorHandler.OperationType.RUNTIME);
+                },
+                writers::remove);
+        writers.add(writer);
+        return writer;
+    }
+
+    /**
+     * 插件卸载时关闭其未关闭的批量写入器，提交剩余批次并取消定时提交任务
+     */
+    @EventListener(topics = PluginEvent.TOPIC, types = PluginEvent.TYPE_UNLOADED)
+    public boolean onPluginUnloaded(Event event) {
+        if (event instanceof PluginEvent) {
+            String pluginId = ((PluginEvent) event).getPluginId();
+            Set<JdbcBatchWriter> writers = openBatchWriters.remove(pluginId);
+            if (writers != null) {
+                for (JdbcBatchWriter writer : writers) {
+                    try {
+                        writer.close();
+                    } catch (RuntimeException e) {
+                        log.warn("插件[{}]卸载时关闭批量写入器失败: {}", pluginId, e.getMessage());
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
     @Override
     public <T> T executeInTransaction(TransactionAction<T> action) {
         try {
@@ -128,6 +331,27 @@ public class DataServiceApiImpl implements DataServiceApi {
         }
     }
 
+    @Override
+    public <T> T executeInReadOnlyTransaction(TransactionAction<T> action) {
+        // 只读事务开启时就获取连接，需要在此之前声明只读意图才能路由到副本
+        try (DataSourceContextHolder.Scope ignored = DataSourceContextHolder.useReadOnly()) {
+            log.debug("插件[{}]开始执行只读事务操作", getCurrentPluginId());
+            return readOnlyTransactionTemplate.execute(status -> {
+                try {
+                    return action.execute(DataServiceApiImpl.this);
+                } catch (Exception e) {
+                    log.error("只读事务操作异常: {}", e.getMessage(), e);
+                    status.setRollbackOnly();
+                    throw new RuntimeException("只读事务操作异常", e);
+                }
+            });
+        } catch (Exception e) {
+            log.error("执行只读事务异常: {}", e.getMessage(), e);
+            errorHandler.handlePluginError(getCurrentPluginId(), e, PluginErrorHandler.OperationType.RUNTIME);
+            throw e;
+        }
+    }
+
     /**
      * 创建PreparedStatementCreator
      */
@@ -146,6 +370,14 @@ public class DataServiceApiImpl implements DataServiceApi {
         };
     }
 
+    /**
+     * 检查当前插件是否有权执行该语句，DDL和管理类语句需要db.ddl权限
+     * 在捕获异常之前执行，拒绝时直接向插件抛出SecurityException
+     */
+    private void checkSql(String sql) {
+        securityManager.checkSql(pluginServiceApi.peekCurrentPluginId(), sql);
+    }
+
     /**
      * 获取当前插件ID
      */
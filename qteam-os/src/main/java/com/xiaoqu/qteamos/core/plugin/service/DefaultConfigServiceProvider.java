@@ -26,6 +26,7 @@ import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -95,9 +96,36 @@ public class DefaultConfigServiceProvider implements ConfigServiceProvider {
         }
         
         try {
+            // 一次查询已存在的配置项，避免逐项查询
+            Map<String, SysPluginConfig> existingConfigs = new HashMap<>();
+            for (SysPluginConfig config : configMapper.selectList(
+                    new LambdaQueryWrapper<SysPluginConfig>()
+                            .eq(SysPluginConfig::getPluginId, pluginId)
+                            .in(SysPluginConfig::getConfigKey, configs.keySet()))) {
+                existingConfigs.put(config.getConfigKey(), config);
+            }
+            
+            LocalDateTime now = LocalDateTime.now();
             for (Map.Entry<String, String> entry : configs.entrySet()) {
-                savePluginConfig(pluginId, entry.getKey(), entry.getValue());
+                SysPluginConfig config = existingConfigs.get(entry.getKey());
+                if (config != null) {
+                    if (Objects.equals(config.getConfigValue(), entry.getValue())) {
+                        continue;
+                    }
+                    config.setConfigValue(entry.getValue());
+                    config.setUpdateTime(now);
+                    configMapper.updateById(config);
+                } else {
+                    config = new SysPluginConfig();
+                    config.setPluginId(pluginId);
+                    config.setConfigKey(entry.getKey());
+                    config.setConfigValue(entry.getValue());
+                    config.setCreateTime(now);
+                    config.setUpdateTime(now);
+                    configMapper.insert(config);
+                }
             }
+            getPluginConfigsFromCache(pluginId).putAll(configs);
             
             log.debug("保存插件配置(批量): {}, 配置项数量: {}", pluginId, configs.size());
             return true;
@@ -0,0 +1,353 @@
+package com.xiaoqu.qteamos.core.plugin.service;
+
+import com.xiaoqu.qteamos.api.core.plugin.api.ExtensionServiceApi;
+import com.xiaoqu.qteamos.core.plugin.event.Event;
+import com.xiaoqu.qteamos.core.plugin.event.EventListener;
+import com.xiaoqu.qteamos.core.plugin.event.PluginEvent;
+import com.xiaoqu.qteamos.core.plugin.loader.DynamicClassLoader;
+import com.xiaoqu.qteamos.core.plugin.manager.PluginRegistry;
+import com.xiaoqu.qteamos.core.plugin.running.ExtensionPoint;
+import com.xiaoqu.qteamos.core.plugin.running.PluginDescriptor;
+import com.xiaoqu.qteamos.core.plugin.running.PluginInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 扩展点服务API实现类
+ * 每个扩展点保存按优先级排序、已求值启用条件的不可变实现列表，查询直接返回该列表；
+ * 注册、注销和插件加载卸载时以写时复制方式重建，查询路径不加锁也不分配对象
+ *
+ * @author yangqijun
+ * @date 2025-05-01
+ */
+@Component
+public class ExtensionServiceApiImpl implements ExtensionServiceApi {
+
+    private static final Logger log = LoggerFactory.getLogger(ExtensionServiceApiImpl.class);
+
+    /**
+     * 优先级从高到低，同优先级按注册先后
+     */
+    private static final Comparator<Registration> ORDER = Comparator
+            .comparingInt((Registration r) -> r.priority).reversed()
+            .thenComparingLong(r -> r.sequence);
+
+    private static final Registration[] NO_REGISTRATIONS = new Registration[0];
+
+    @Autowired
+    private PluginServiceApiImpl pluginServiceApi;
+
+    @Autowired
+    private PluginRegistry pluginRegistry;
+
+    /**
+     * 扩展点ID -> 扩展点，写操作在本对象上同步
+     */
+    private final Map<String, ExtensionPointEntry> extensionPoints = new ConcurrentHashMap<>();
+
+    /**
+     * 注册序号
+     */
+    private long sequence;
+
+    @Override
+    public boolean declareExtensionPoint(String extensionPoint, Class<?> extensionType, boolean multiple) {
+        if (extensionPoint == null || extensionPoint.isEmpty()) {
+            return false;
+        }
+        return declare(extensionPoint, pluginServiceApi.getPluginId(),
+                extensionType != null ? extensionType.getName() : null, multiple, Collections.emptyMap());
+    }
+
+    @Override
+    public boolean registerExtension(String extensionPoint, Object implementation) {
+        return registerExtension(extensionPoint, implementation, 0, null);
+    }
+
+    @Override
+    public boolean registerExtension(String extensionPoint, Object implementation, int priority) {
+        return registerExtension(extensionPoint, implementation, priority, null);
+    }
+
+    @Override
+    public synchronized boolean registerExtension(String extensionPoint, Object implementation, int priority,
+                                                  BooleanSupplier condition) {
+        if (extensionPoint == null || implementation == null) {
+            return false;
+        }
+        String pluginId = ownerOf(implementation);
+        ExtensionPointEntry entry = extensionPoints.computeIfAbsent(extensionPoint, ExtensionPointEntry::new);
+        if (entry.typeName != null && !isInstanceOf(implementation.getClass(), entry.typeName)) {
+            log.warn("扩展实现 {} 未实现扩展点[{}]要求的类型: {}",
+                    implementation.getClass().getName(), extensionPoint, entry.typeName);
+            return false;
+        }
+        for (Registration registration : entry.registrations) {
+            if (registration.implementation == implementation) {
+                return false;
+            }
+        }
+
+        Registration[] registrations = Arrays.copyOf(entry.registrations, entry.registrations.length + 1);
+        registrations[registrations.length - 1] = new Registration(implementation, priority, condition,
+                pluginId, sequence++);
+        entry.registrations = registrations;
+        rebuild(entry);
+        log.debug("注册扩展点[{}]实现: {}, 优先级: {}", extensionPoint, implementation.getClass().getName(), priority);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean unregisterExtension(String extensionPoint, Object implementation) {
+        ExtensionPointEntry entry = extensionPoints.get(extensionPoint);
+        if (entry == null || implementation == null) {
+            return false;
+        }
+        Registration[] registrations = Arrays.stream(entry.registrations)
+                .filter(registration -> registration.implementation != implementation)
+                .toArray(Registration[]::new);
+        if (registrations.length == entry.registrations.length) {
+            return false;
+        }
+        entry.registrations = registrations;
+        removeIfUnused(entry);
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> List<T> getExtensions(String extensionPoint) {
+        ExtensionPointEntry entry = extensionPoints.get(extensionPoint);
+        return entry != null ? (List<T>) entry.extensions : Collections.emptyList();
+    }
+
+    @Override
+    public <T> List<T> getExtensions(Class<T> extensionType) {
+        return getExtensions(extensionType.getName());
+    }
+
+    @Override
+    public <T> Optional<T> getHighestPriorityExtension(String extensionPoint) {
+        List<T> extensions = getExtensions(extensionPoint);
+        return extensions.isEmpty() ? Optional.empty() : Optional.of(extensions.get(0));
+    }
+
+    @Override
+    public boolean hasExtension(String extensionPoint) {
+        return !getExtensions(extensionPoint).isEmpty();
+    }
+
+    @Override
+    public Map<String, Object> getExtensionMetadata(String extensionPoint) {
+        ExtensionPointEntry entry = extensionPoints.get(extensionPoint);
+        return entry != null ? entry.metadata : Collections.emptyMap();
+    }
+
+    @Override
+    public List<String> getAllExtensionPoints() {
+        return new ArrayList<>(extensionPoints.keySet());
+    }
+
+    /**
+     * 插件加载时声明描述文件中的扩展点，卸载时移除其声明和贡献的实现；
+     * 两种情况都重新求值所有扩展的启用条件
+     */
+    @EventListener(topics = PluginEvent.TOPIC, types = {PluginEvent.TYPE_LOADED, PluginEvent.TYPE_UNLOADED})
+    public boolean onPluginEvent(Event event) {
+        if (!(event instanceof PluginEvent)) {
+            return true;
+        }
+        String pluginId = ((PluginEvent) event).getPluginId();
+        if (PluginEvent.TYPE_LOADED.equals(event.getType())) {
+            pluginRegistry.getPlugin(pluginId)
+                    .map(PluginInfo::getDescriptor)
+                    .map(PluginDescriptor::getExtensionPoints)
+                    .ifPresent(points -> points.forEach(point -> declare(point, pluginId)));
+            refreshAll();
+        } else if (PluginEvent.TYPE_UNLOADED.equals(event.getType())) {
+            removePlugin(pluginId);
+        }
+        return true;
+    }
+
+    private boolean declare(ExtensionPoint point, String pluginId) {
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put("name", point.getName());
+        attributes.put("description", point.getDescription());
+        attributes.put("required", point.isRequired());
+        return declare(point.getId(), pluginId, point.getInterfaceClass(), point.isMultiple(), attributes);
+    }
+
+    private synchronized boolean declare(String extensionPoint, String pluginId, String typeName, boolean multiple,
+                                         Map<String, Object> attributes) {
+        ExtensionPointEntry entry = extensionPoints.computeIfAbsent(extensionPoint, ExtensionPointEntry::new);
+        if (entry.declaringPluginId != null && !entry.declaringPluginId.equals(pluginId)) {
+            log.warn("扩展点[{}]已由插件[{}]声明，忽略插件[{}]的重复声明", extensionPoint, entry.declaringPluginId, pluginId);
+            return false;
+        }
+        entry.declared = true;
+        entry.declaringPluginId = pluginId;
+        entry.typeName = typeName;
+        entry.multiple = multiple;
+        entry.attributes = attributes;
+        rebuild(entry);
+        log.debug("声明扩展点[{}], 插件: {}, 类型: {}", extensionPoint, pluginId, typeName);
+        return true;
+    }
+
+    private synchronized void removePlugin(String pluginId) {
+        for (ExtensionPointEntry entry : extensionPoints.values()) {
+            entry.registrations = Arrays.stream(entry.registrations)
+                    .filter(registration -> !pluginId.equals(registration.pluginId))
+                    .toArray(Registration[]::new);
+            if (pluginId.equals(entry.declaringPluginId)) {
+                entry.declared = false;
+                entry.declaringPluginId = null;
+                entry.typeName = null;
+                entry.multiple = true;
+                entry.attributes = Collections.emptyMap();
+            }
+        }
+        extensionPoints.values().removeIf(entry -> !entry.declared && entry.registrations.length == 0);
+        refreshAll();
+    }
+
+    /**
+     * 扩展实现所属的插件：由插件类加载器加载的实现归属该插件，否则取当前插件上下文，
+     * 不在插件上下文中调用时抛出异常，保证插件卸载时能移除其贡献的实现
+     */
+    private String ownerOf(Object implementation) {
+        ClassLoader classLoader = implementation.getClass().getClassLoader();
+        if (classLoader instanceof DynamicClassLoader) {
+            return ((DynamicClassLoader) classLoader).getPluginId();
+        }
+        return pluginServiceApi.getPluginId();
+    }
+
+    private synchronized void refreshAll() {
+        extensionPoints.values().forEach(this::rebuild);
+    }
+
+    private void removeIfUnused(ExtensionPointEntry entry) {
+        if (!entry.declared && entry.registrations.length == 0) {
+            extensionPoints.remove(entry.id);
+        } else {
+            rebuild(entry);
+        }
+    }
+
+    /**
+     * 重建扩展点的实现列表和元数据，调用方持有本对象锁
+     */
+    private void rebuild(ExtensionPointEntry entry) {
+        Registration[] sorted = entry.registrations.clone();
+        Arrays.sort(sorted, ORDER);
+
+        List<Object> extensions = new ArrayList<>(sorted.length);
+        for (Registration registration : sorted) {
+            // 扩展点在实现注册之后才声明类型时，不符合类型的实现不生效
+            if (entry.typeName != null && !isInstanceOf(registration.implementation.getClass(), entry.typeName)) {
+                continue;
+            }
+            if (!registration.isEnabled(entry.id)) {
+                continue;
+            }
+            extensions.add(registration.implementation);
+            if (!entry.multiple) {
+                break;
+            }
+        }
+
+        Map<String, Object> metadata = new LinkedHashMap<>(entry.attributes);
+        metadata.put("id", entry.id);
+        metadata.put("pluginId", entry.declaringPluginId);
+        metadata.put("type", entry.typeName);
+        metadata.put("multiple", entry.multiple);
+        metadata.put("extensionCount", extensions.size());
+
+        entry.metadata = Collections.unmodifiableMap(metadata);
+        entry.extensions = List.copyOf(extensions);
+    }
+
+    /**
+     * 按名称判断类型关系，扩展点类型可能由其他插件的类加载器加载
+     */
+    private static boolean isInstanceOf(Class<?> type, String typeName) {
+        if (type == null) {
+            return false;
+        }
+        if (type.getName().equals(typeName)) {
+            return true;
+        }
+        for (Class<?> anInterface : type.getInterfaces()) {
+            if (isInstanceOf(anInterface, typeName)) {
+                return true;
+            }
+        }
+        return isInstanceOf(type.getSuperclass(), typeName);
+    }
+
+    /**
+     * 扩展点，extensions和metadata在重建时整体替换
+     */
+    private static final class ExtensionPointEntry {
+        private final String id;
+        private boolean declared;
+        private String declaringPluginId;
+        private String typeName;
+        private boolean multiple = true;
+        private Map<String, Object> attributes = Collections.emptyMap();
+        private Registration[] registrations = NO_REGISTRATIONS;
+        private volatile List<Object> extensions = Collections.emptyList();
+        private volatile Map<String, Object> metadata = Collections.emptyMap();
+
+        ExtensionPointEntry(String id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * 扩展实现注册信息
+     */
+    private static final class Registration {
+        private final Object implementation;
+        private final int priority;
+        private final BooleanSupplier condition;
+        private final String pluginId;
+        private final long sequence;
+
+        Registration(Object implementation, int priority, BooleanSupplier condition, String pluginId, long sequence) {
+            this.implementation = implementation;
+            this.priority = priority;
+            this.condition = condition;
+            this.pluginId = pluginId;
+            this.sequence = sequence;
+        }
+
+        boolean isEnabled(String extensionPoint) {
+            if (condition == null) {
+                return true;
+            }
+            try {
+                return condition.getAsBoolean();
+            } catch (Exception e) {
+                log.warn("扩展点[{}]实现 {} 的启用条件求值失败: {}",
+                        extensionPoint, implementation.getClass().getName(), e.getMessage());
+                return false;
+            }
+        }
+    }
+}
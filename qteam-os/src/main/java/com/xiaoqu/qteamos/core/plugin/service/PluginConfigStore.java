@@ -0,0 +1,460 @@
+package com.xiaoqu.qteamos.core.plugin.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xiaoqu.qteamos.common.utils.FileUtils;
+import com.xiaoqu.qteamos.core.plugin.event.Event;
+import com.xiaoqu.qteamos.core.plugin.event.EventListener;
+import com.xiaoqu.qteamos.core.plugin.event.PluginEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * 插件配置存储
+ * 每个插件的配置保存为带版本号的不可变快照，读取直接访问当前快照；
+ * 写入复制快照后整体替换，只把实际变化的配置键通知监听器。
+ * 持久化在合并窗口内只执行一次，先写临时文件并刷盘再原子替换配置文件。
+ * 类型化绑定按快照版本缓存转换结果，版本变化后才重新转换
+ *
+ * @author yangqijun
+ * @date 2025-05-01
+ */
+@Component
+public class PluginConfigStore {
+
+    private static final Logger log = LoggerFactory.getLogger(PluginConfigStore.class);
+
+    private static final String CONFIG_FILE_NAME = "plugin-config.json";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * 类型化绑定使用的ObjectMapper，忽略绑定类型中没有的配置项
+     */
+    private final ObjectMapper bindingMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    @Autowired
+    private StorageServiceApiImpl storageService;
+
+    /**
+     * 持久化合并窗口，窗口内的多次写入只落盘一次
+     */
+    @Value("${plugin.config.persist-delay-ms:500}")
+    private long persistDelayMillis;
+
+    private final Map<String, PluginConfig> configs = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService persistScheduler;
+
+    @PostConstruct
+    public void init() {
+        persistScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "plugin-config-writer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        // 关闭前写出尚未落盘的修改
+        for (PluginConfig config : configs.values()) {
+            persist(config);
+        }
+        persistScheduler.shutdownNow();
+    }
+
+    /**
+     * 获取插件当前的配置快照
+     *
+     * @param pluginId 插件ID
+     * @return 配置快照
+     */
+    public ConfigSnapshot getSnapshot(String pluginId) {
+        return getConfig(pluginId).snapshot;
+    }
+
+    /**
+     * 设置单个配置，值为null表示删除
+     */
+    public ConfigSnapshot set(String pluginId, String key, Object value) {
+        return update(pluginId, Collections.singletonMap(key, value));
+    }
+
+    /**
+     * 删除单个配置
+     */
+    public ConfigSnapshot remove(String pluginId, String key) {
+        return update(pluginId, Collections.singletonMap(key, null));
+    }
+
+    /**
+     * 批量修改配置，生成一个新版本并只持久化一次
+     *
+     * @param pluginId 插件ID
+     * @param updates 配置键值，值为null表示删除
+     * @return 修改后的快照，没有实际变化时返回当前快照
+     */
+    public ConfigSnapshot update(String pluginId, Map<String, ?> updates) {
+        PluginConfig config = getConfig(pluginId);
+        ConfigChange change;
+        synchronized (config) {
+            ConfigSnapshot current = config.snapshot;
+            Map<String, Object> values = new HashMap<>(current.values);
+            Set<String> changedKeys = new LinkedHashSet<>();
+            for (Map.Entry<String, ?> entry : updates.entrySet()) {
+                String key = entry.getKey();
+                Object value = entry.getValue();
+                if (value == null) {
+                    if (values.containsKey(key)) {
+                        values.remove(key);
+                        changedKeys.add(key);
+                    }
+                } else if (!Objects.equals(values.put(key, value), value)) {
+                    changedKeys.add(key);
+                }
+            }
+            if (changedKeys.isEmpty()) {
+                return current;
+            }
+            ConfigSnapshot next = new ConfigSnapshot(current.version + 1, values);
+            config.snapshot = next;
+            schedulePersist(config);
+            change = new ConfigChange(pluginId, current, next, changedKeys);
+        }
+        notifyListeners(config, change);
+        return change.getNewSnapshot();
+    }
+
+    /**
+     * 立即持久化尚未落盘的修改
+     *
+     * @param pluginId 插件ID
+     * @return 是否成功
+     */
+    public boolean flush(String pluginId) {
+        PluginConfig config = configs.get(pluginId);
+        return config == null || persist(config);
+    }
+
+    /**
+     * 从文件重新加载配置，未落盘的修改被丢弃
+     *
+     * @param pluginId 插件ID
+     * @return 重新加载后的快照
+     */
+    public ConfigSnapshot reload(String pluginId) {
+        PluginConfig config = getConfig(pluginId);
+        Map<String, Object> loaded = readFile(config.file);
+        ConfigChange change;
+        synchronized (config) {
+            if (config.pendingPersist != null) {
+                config.pendingPersist.cancel(false);
+                config.pendingPersist = null;
+            }
+            ConfigSnapshot current = config.snapshot;
+            Set<String> changedKeys = new LinkedHashSet<>();
+            for (Map.Entry<String, Object> entry : loaded.entrySet()) {
+                if (!Objects.equals(current.values.get(entry.getKey()), entry.getValue())) {
+                    changedKeys.add(entry.getKey());
+                }
+            }
+            for (String key : current.values.keySet()) {
+                if (!loaded.containsKey(key)) {
+                    changedKeys.add(key);
+                }
+            }
+            ConfigSnapshot next = new ConfigSnapshot(current.version + 1, loaded);
+            config.snapshot = next;
+            config.persistedVersion = next.version;
+            if (changedKeys.isEmpty()) {
+                return next;
+            }
+            change = new ConfigChange(pluginId, current, next, changedKeys);
+        }
+        notifyListeners(config, change);
+        return change.getNewSnapshot();
+    }
+
+    /**
+     * 注册配置变更监听器
+     */
+    public void addListener(String pluginId, ConfigChangeListener listener) {
+        getConfig(pluginId).listeners.add(listener);
+    }
+
+    /**
+     * 注册单个配置项的类型化监听器，新旧值按Jackson规则转换为指定类型
+     *
+     * @return 实际注册的监听器，可用于移除
+     */
+    public <T> ConfigChangeListener addListener(String pluginId, String key, Class<T> type, BiConsumer<T, T> listener) {
+        ConfigChangeListener wrapper = change -> {
+            if (change.getChangedKeys().contains(key)) {
+                listener.accept(convert(change.getOldValue(key), type), convert(change.getNewValue(key), type));
+            }
+        };
+        addListener(pluginId, wrapper);
+        return wrapper;
+    }
+
+    /**
+     * 移除配置变更监听器
+     */
+    public void removeListener(String pluginId, ConfigChangeListener listener) {
+        PluginConfig config = configs.get(pluginId);
+        if (config != null) {
+            config.listeners.remove(listener);
+        }
+    }
+
+    /**
+     * 获取类型化配置绑定，相同前缀和类型的绑定在插件内共享
+     *
+     * @param pluginId 插件ID
+     * @param prefix 配置前缀，为空时绑定全部配置
+     * @param type 绑定类型，可以是record、普通类或只读属性接口
+     * @return 配置绑定
+     */
+    @SuppressWarnings("unchecked")
+    public <T> ConfigBinding<T> bind(String pluginId, String prefix, Class<T> type) {
+        PluginConfig config = getConfig(pluginId);
+        String key = (prefix != null ? prefix : "") + "@" + type.getName();
+        ConfigBinding<?> binding = config.bindings.get(key);
+        if (binding == null || binding.getType() != type) {
+            binding = new ConfigBinding<>(() -> config.snapshot, prefix, type, bindingMapper);
+            config.bindings.put(key, binding);
+        }
+        return (ConfigBinding<T>) binding;
+    }
+
+    /**
+     * 插件卸载时写出未落盘的修改并释放配置和监听器
+     */
+    @EventListener(topics = PluginEvent.TOPIC, types = PluginEvent.TYPE_UNLOADED)
+    public boolean onPluginUnloaded(Event event) {
+        if (event instanceof PluginEvent) {
+            PluginConfig config = configs.remove(((PluginEvent) event).getPluginId());
+            if (config != null) {
+                persist(config);
+                config.listeners.clear();
+                config.bindings.clear();
+            }
+        }
+        return true;
+    }
+
+    private PluginConfig getConfig(String pluginId) {
+        PluginConfig config = configs.get(pluginId);
+        if (config != null) {
+            return config;
+        }
+        return configs.computeIfAbsent(pluginId, id -> {
+            File file = new File(storageService.getPluginConfigDirectory(id), CONFIG_FILE_NAME);
+            return new PluginConfig(file, new ConfigSnapshot(0, readFile(file)));
+        });
+    }
+
+    private Map<String, Object> readFile(File file) {
+        if (file.exists()) {
+            try {
+                return objectMapper.readValue(file, new TypeReference<Map<String, Object>>() {});
+            } catch (IOException e) {
+                log.error("加载插件配置异常: {}", file.getAbsolutePath(), e);
+            }
+        }
+        return new HashMap<>();
+    }
+
+    /**
+     * 安排持久化，合并窗口内已有待执行任务时不再重复安排，调用方持有config锁
+     */
+    private void schedulePersist(PluginConfig config) {
+        if (config.pendingPersist == null) {
+            config.pendingPersist = persistScheduler.schedule(() -> persist(config),
+                    persistDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 把当前快照写入文件，已落盘的版本不重复写
+     */
+    private boolean persist(PluginConfig config) {
+        synchronized (config.writeLock) {
+            ConfigSnapshot snapshot;
+            synchronized (config) {
+                if (config.pendingPersist != null) {
+                    config.pendingPersist.cancel(false);
+                    config.pendingPersist = null;
+                }
+                snapshot = config.snapshot;
+            }
+            if (snapshot.version <= config.persistedVersion) {
+                return true;
+            }
+            try {
+                FileUtils.writeAtomically(config.file.toPath(),
+                        objectMapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(snapshot.values));
+                config.persistedVersion = snapshot.version;
+                log.debug("插件配置已保存: {}, 版本: {}", config.file.getAbsolutePath(), snapshot.version);
+                return true;
+            } catch (IOException e) {
+                log.error("保存插件配置异常: {}", config.file.getAbsolutePath(), e);
+                return false;
+            }
+        }
+    }
+
+    private void notifyListeners(PluginConfig config, ConfigChange change) {
+        for (ConfigChangeListener listener : config.listeners) {
+            try {
+                listener.onChange(change);
+            } catch (Exception e) {
+                log.error("插件[{}]配置变更监听器执行异常: {}", change.getPluginId(), e.getMessage(), e);
+            }
+        }
+    }
+
+    private <T> T convert(Object value, Class<T> type) {
+        if (value == null || type.isInstance(value)) {
+            return type.cast(value);
+        }
+        return objectMapper.convertValue(value, type);
+    }
+
+    /**
+     * 单个插件的配置状态
+     */
+    private static final class PluginConfig {
+        private final File file;
+        private final Object writeLock = new Object();
+        private final List<ConfigChangeListener> listeners = new CopyOnWriteArrayList<>();
+        private final Map<String, ConfigBinding<?>> bindings = new ConcurrentHashMap<>();
+        private volatile ConfigSnapshot snapshot;
+        private volatile long persistedVersion;
+        private ScheduledFuture<?> pendingPersist;
+
+        PluginConfig(File file, ConfigSnapshot snapshot) {
+            this.file = file;
+            this.snapshot = snapshot;
+            this.persistedVersion = snapshot.version;
+        }
+    }
+
+    /**
+     * 配置快照，创建后不可变
+     */
+    public static final class ConfigSnapshot {
+        private final long version;
+        private final Map<String, Object> values;
+
+        ConfigSnapshot(long version, Map<String, Object> values) {
+            this.version = version;
+            this.values = Collections.unmodifiableMap(values);
+        }
+
+        /**
+         * 快照版本，每次修改递增
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        public Object get(String key) {
+            return values.get(key);
+        }
+
+        public boolean contains(String key) {
+            return values.containsKey(key);
+        }
+
+        /**
+         * 全部配置，只读
+         */
+        public Map<String, Object> getValues() {
+            return values;
+        }
+    }
+
+    /**
+     * 配置变更
+     */
+    public static final class ConfigChange {
+        private final String pluginId;
+        private final ConfigSnapshot oldSnapshot;
+        private final ConfigSnapshot newSnapshot;
+        private final Set<String> changedKeys;
+
+        ConfigChange(String pluginId, ConfigSnapshot oldSnapshot, ConfigSnapshot newSnapshot, Set<String> changedKeys) {
+            this.pluginId = pluginId;
+            this.oldSnapshot = oldSnapshot;
+            this.newSnapshot = newSnapshot;
+            this.changedKeys = Collections.unmodifiableSet(changedKeys);
+        }
+
+        public String getPluginId() {
+            return pluginId;
+        }
+
+        public ConfigSnapshot getOldSnapshot() {
+            return oldSnapshot;
+        }
+
+        public ConfigSnapshot getNewSnapshot() {
+            return newSnapshot;
+        }
+
+        /**
+         * 新增、修改或删除的配置键
+         */
+        public Set<String> getChangedKeys() {
+            return changedKeys;
+        }
+
+        public Object getOldValue(String key) {
+            return oldSnapshot.get(key);
+        }
+
+        public Object getNewValue(String key) {
+            return newSnapshot.get(key);
+        }
+    }
+
+    /**
+     * 配置变更监听器
+     */
+    @FunctionalInterface
+    public interface ConfigChangeListener {
+
+        /**
+         * 配置变更后回调，在执行写入的线程中调用
+         *
+         * @param change 变更内容
+         */
+        void onChange(ConfigChange change);
+    }
+}
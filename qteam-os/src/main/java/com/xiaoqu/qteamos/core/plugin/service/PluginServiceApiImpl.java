@@ -11,7 +11,10 @@
 package com.xiaoqu.qteamos.core.plugin.service;
 
 import com.xiaoqu.qteamos.core.plugin.error.PluginErrorHandler;
+import com.xiaoqu.qteamos.core.plugin.event.Event;
 import com.xiaoqu.qteamos.core.plugin.event.EventBus;
+import com.xiaoqu.qteamos.core.plugin.event.EventListener;
+import com.xiaoqu.qteamos.core.plugin.event.PluginEvent;
 import com.xiaoqu.qteamos.core.plugin.manager.PluginLifecycleManager;
 import com.xiaoqu.qteamos.core.plugin.manager.PluginRegistry;
 import com.xiaoqu.qteamos.core.plugin.running.PluginInfo;
@@ -34,6 +37,7 @@ import org.springframework.stereotype.Component;
 
 import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -71,11 +75,19 @@ public class PluginServiceApiImpl implements PluginServiceApi, InitializingBean
     @Autowired
     private StorageServiceApiImpl storageService;
 
+    @Autowired
+    private ExtensionServiceApiImpl extensionService;
+
     /**
      * 当前插件ID
      */
     private final ThreadLocal<String> currentPluginId = new ThreadLocal<>();
 
+    /**
+     * 跨插件服务注册表
+     */
+    private final PluginServiceRegistry serviceRegistry = new PluginServiceRegistry(currentPluginId);
+
     @Override
     public void afterPropertiesSet() throws Exception {
         // 注册API实例
@@ -99,6 +111,15 @@ public class PluginServiceApiImpl implements PluginServiceApi, InitializingBean
         currentPluginId.remove();
     }
 
+    /**
+     * 获取当前线程的插件ID，未设置时返回null
+     *
+     * @return 当前插件ID
+     */
+    public String peekCurrentPluginId() {
+        return currentPluginId.get();
+    }
+
     @Override
     public String getPluginId() {
         return getCurrentPluginId();
@@ -143,7 +164,7 @@ public class PluginServiceApiImpl implements PluginServiceApi, InitializingBean
 
     @Override
     public ExtensionServiceApi getExtensionService() {
-        throw new UnsupportedOperationException("扩展点服务API尚未实现");
+        return extensionService;
     }
 
     @Override
@@ -177,20 +198,60 @@ public class PluginServiceApiImpl implements PluginServiceApi, InitializingBean
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public <T> Optional<T> invokePluginService(String pluginId, String serviceName, Map<String, Object> params) {
         try {
-            // 这里需要实现跨插件服务调用逻辑
-            log.info("插件[{}]调用插件[{}]的服务[{}]", getCurrentPluginId(), pluginId, serviceName);
-            
-            // 目前返回空实现
-            return Optional.empty();
-        } catch (Exception e) {
+            log.debug("插件[{}]调用插件[{}]的服务[{}]", currentPluginId.get(), pluginId, serviceName);
+            String methodName = params != null ? (String) params.get("method") : null;
+            Object result = serviceRegistry.invoke(pluginId, serviceName, methodName, resolveArguments(params));
+            return Optional.ofNullable((T) result);
+        } catch (Throwable e) {
             log.error("调用插件服务异常: {}", e.getMessage(), e);
-            errorHandler.handlePluginError(getCurrentPluginId(), e, PluginErrorHandler.OperationType.RUNTIME);
+            // 异常记在服务提供方名下
+            errorHandler.handlePluginError(pluginId, e, PluginErrorHandler.OperationType.RUNTIME);
             return Optional.empty();
         }
     }
 
+    @Override
+    public <T> void exportService(String serviceName, Class<T> serviceInterface, T service) {
+        serviceRegistry.exportService(getCurrentPluginId(), serviceName, serviceInterface, service);
+    }
+
+    @Override
+    public <T> Optional<T> getPluginService(String pluginId, String serviceName, Class<T> serviceInterface) {
+        return Optional.ofNullable(serviceRegistry.getService(pluginId, serviceName, serviceInterface));
+    }
+
+    /**
+     * 插件卸载时撤销其导出的服务
+     */
+    @EventListener(topics = PluginEvent.TOPIC, types = PluginEvent.TYPE_UNLOADED)
+    public boolean onPluginUnloaded(Event event) {
+        if (event instanceof PluginEvent) {
+            serviceRegistry.unexportServices(((PluginEvent) event).getPluginId());
+        }
+        return true;
+    }
+
+    /**
+     * 解析invokePluginService的调用参数
+     * 指定args时按参数列表调用，否则把params整体作为唯一参数
+     */
+    private static Object[] resolveArguments(Map<String, Object> params) {
+        if (params == null) {
+            return new Object[0];
+        }
+        Object args = params.get("args");
+        if (args instanceof Object[]) {
+            return (Object[]) args;
+        }
+        if (args instanceof Collection) {
+            return ((Collection<?>) args).toArray();
+        }
+        return new Object[]{params};
+    }
+
     /**
      * 获取当前插件ID
      *
@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) 2023-2025 XiaoQuTeam. All rights reserved.
+ * QTeamOS is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+
+package com.xiaoqu.qteamos.core.plugin.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 跨插件服务注册表
+ * 提供方插件按名称导出服务接口，导出时为接口的每个方法预先绑定MethodHandle；
+ * 调用方获得的服务桩指向服务槽位，调用时切换线程上下文类加载器和当前插件ID后直接执行绑定的句柄，
+ * 不再逐次反射查找和Method.invoke。提供方热更新时重新导出只替换槽位中的绑定，所有已发放的服务桩同时切换到新实现
+ *
+ * @author yangqijun
+ * @date 2025-05-01
+ * @since 1.0.0
+ */
+public class PluginServiceRegistry {
+    private static final Logger log = LoggerFactory.getLogger(PluginServiceRegistry.class);
+
+    /**
+     * 接口方法表，按方法签名排序，服务桩和绑定使用相同的下标
+     */
+    private static final ClassValue<Method[]> METHOD_TABLES = new ClassValue<>() {
+        @Override
+        protected Method[] computeValue(Class<?> type) {
+            return Arrays.stream(type.getMethods())
+                    .filter(method -> !Modifier.isStatic(method.getModifiers()))
+                    .sorted(Comparator.comparing(Method::toGenericString))
+                    .toArray(Method[]::new);
+        }
+    };
+
+    /**
+     * 接口方法到方法表下标的索引
+     */
+    private static final ClassValue<Map<Method, Integer>> METHOD_INDEXES = new ClassValue<>() {
+        @Override
+        protected Map<Method, Integer> computeValue(Class<?> type) {
+            Method[] methods = METHOD_TABLES.get(type);
+            Map<Method, Integer> indexes = new HashMap<>(methods.length * 2);
+            for (int i = 0; i < methods.length; i++) {
+                indexes.put(methods[i], i);
+            }
+            return indexes;
+        }
+    };
+
+    private final ThreadLocal<String> currentPluginId;
+
+    // 插件ID:服务名 -> 服务槽位，槽位在提供方卸载后保留，重新导出时已发放的服务桩继续可用
+    private final Map<String, ServiceSlot> slots = new ConcurrentHashMap<>();
+
+    /**
+     * @param currentPluginId 当前插件ID的线程变量，调用服务时切换为提供方插件
+     */
+    public PluginServiceRegistry(ThreadLocal<String> currentPluginId) {
+        this.currentPluginId = currentPluginId;
+    }
+
+    /**
+     * 导出服务，同名服务已存在时原子替换为新实现
+     *
+     * @param pluginId 提供方插件ID
+     * @param serviceName 服务名称
+     * @param serviceInterface 服务接口
+     * @param service 服务实现
+     */
+    public <T> void exportService(String pluginId, String serviceName, Class<T> serviceInterface, T service) {
+        if (serviceInterface == null || !serviceInterface.isInterface()) {
+            throw new IllegalArgumentException("服务类型必须是接口: " + serviceInterface);
+        }
+        if (!Modifier.isPublic(serviceInterface.getModifiers())) {
+            throw new IllegalArgumentException("服务接口必须是public: " + serviceInterface.getName());
+        }
+        if (!serviceInterface.isInstance(service)) {
+            throw new IllegalArgumentException("服务实现未实现接口: " + serviceInterface.getName());
+        }
+
+        ServiceBinding binding = new ServiceBinding(pluginId, serviceInterface,
+                service.getClass().getClassLoader(), bindHandles(serviceInterface, service));
+        ServiceSlot slot = slots.computeIfAbsent(slotKey(pluginId, serviceName), key -> new ServiceSlot(pluginId, serviceName));
+        ServiceBinding previous = slot.binding;
+        slot.binding = binding;
+        // 接口类变更后旧接口的服务桩不再可用，移除缓存以释放对旧类加载器的引用
+        slot.stubs.keySet().removeIf(type -> type != serviceInterface);
+
+        if (previous != null) {
+            log.info("插件[{}]重新导出服务[{}]: {}", pluginId, serviceName, serviceInterface.getName());
+        } else {
+            log.info("插件[{}]导出服务[{}]: {}", pluginId, serviceName, serviceInterface.getName());
+        }
+    }
+
+    /**
+     * 撤销插件导出的全部服务，已发放的服务桩在重新导出前调用会抛出IllegalStateException
+     *
+     * @param pluginId 提供方插件ID
+     * @return 撤销的服务数量
+     */
+    public int unexportServices(String pluginId) {
+        int count = 0;
+        for (ServiceSlot slot : slots.values()) {
+            if (slot.pluginId.equals(pluginId) && slot.binding != null) {
+                slot.binding = null;
+                count++;
+            }
+        }
+        if (count > 0) {
+            log.info("插件[{}]的{}个导出服务已撤销", pluginId, count);
+        }
+        return count;
+    }
+
+    /**
+     * 获取服务桩，服务当前未导出或接口不一致时返回null
+     *
+     * @param pluginId 提供方插件ID
+     * @param serviceName 服务名称
+     * @param serviceInterface 调用方使用的服务接口
+     * @return 服务桩
+     */
+    public <T> T getService(String pluginId, String serviceName, Class<T> serviceInterface) {
+        ServiceSlot slot = slots.get(slotKey(pluginId, serviceName));
+        if (slot == null) {
+            return null;
+        }
+        ServiceBinding binding = slot.binding;
+        if (binding == null || binding.serviceInterface != serviceInterface) {
+            return null;
+        }
+        return serviceInterface.cast(slot.stubs.computeIfAbsent(serviceInterface, type -> createStub(slot, type)));
+    }
+
+    /**
+     * 按方法名调用服务，用于调用方没有服务接口类型的场景
+     *
+     * @param pluginId 提供方插件ID
+     * @param serviceName 服务名称
+     * @param methodName 方法名，服务接口只有一个方法时可以为null
+     * @param args 调用参数
+     * @return 调用结果
+     */
+    public Object invoke(String pluginId, String serviceName, String methodName, Object[] args) throws Throwable {
+        ServiceSlot slot = slots.get(slotKey(pluginId, serviceName));
+        ServiceBinding binding = slot != null ? slot.binding : null;
+        if (binding == null) {
+            throw new IllegalStateException("插件服务不可用: " + pluginId + ":" + serviceName);
+        }
+        int argCount = args != null ? args.length : 0;
+        Method[] methods = METHOD_TABLES.get(binding.serviceInterface);
+        for (int i = 0; i < methods.length; i++) {
+            Method method = methods[i];
+            if ((methodName == null ? methods.length == 1 : method.getName().equals(methodName))
+                    && method.getParameterCount() == argCount) {
+                return call(slot, binding.serviceInterface, i, args);
+            }
+        }
+        throw new IllegalArgumentException("服务 " + serviceName + " 不存在方法: " + methodName + "(" + argCount + "个参数)");
+    }
+
+    /**
+     * 执行绑定的方法句柄，调用期间线程处于提供方插件的上下文中
+     */
+    private Object call(ServiceSlot slot, Class<?> serviceInterface, int index, Object[] args) throws Throwable {
+        ServiceBinding binding = slot.binding;
+        if (binding == null) {
+            throw new IllegalStateException("插件服务不可用: " + slot);
+        }
+        if (binding.serviceInterface != serviceInterface) {
+            throw new IllegalStateException("插件服务接口已变更，请重新获取服务: " + slot);
+        }
+
+        Thread thread = Thread.currentThread();
+        ClassLoader previousLoader = thread.getContextClassLoader();
+        String previousPluginId = currentPluginId.get();
+        thread.setContextClassLoader(binding.classLoader);
+        currentPluginId.set(binding.pluginId);
+        try {
+            return (Object) binding.handles[index].invokeExact(args);
+        } finally {
+            thread.setContextClassLoader(previousLoader);
+            if (previousPluginId != null) {
+                currentPluginId.set(previousPluginId);
+            } else {
+                currentPluginId.remove();
+            }
+        }
+    }
+
+    /**
+     * 为接口的每个方法绑定服务实例，统一适配为(Object[])Object
+     */
+    private static MethodHandle[] bindHandles(Class<?> serviceInterface, Object service) {
+        Method[] methods = METHOD_TABLES.get(serviceInterface);
+        MethodHandle[] handles = new MethodHandle[methods.length];
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        for (int i = 0; i < methods.length; i++) {
+            int parameterCount = methods[i].getParameterCount();
+            try {
+                handles[i] = lookup.unreflect(methods[i])
+                        .bindTo(service)
+                        .asType(MethodType.genericMethodType(parameterCount))
+                        .asSpreader(Object[].class, parameterCount);
+            } catch (IllegalAccessException e) {
+                throw new IllegalArgumentException("无法绑定服务方法: " + methods[i], e);
+            }
+        }
+        return handles;
+    }
+
+    private Object createStub(ServiceSlot slot, Class<?> serviceInterface) {
+        return Proxy.newProxyInstance(serviceInterface.getClassLoader(), new Class<?>[]{serviceInterface},
+                new StubHandler(slot, serviceInterface));
+    }
+
+    private static String slotKey(String pluginId, String serviceName) {
+        return pluginId + ":" + serviceName;
+    }
+
+    /**
+     * 服务槽位，保存提供方当前的绑定
+     */
+    private static final class ServiceSlot {
+        private final String pluginId;
+        private final String serviceName;
+        private volatile ServiceBinding binding;
+        private final Map<Class<?>, Object> stubs = new ConcurrentHashMap<>();
+
+        ServiceSlot(String pluginId, String serviceName) {
+            this.pluginId = pluginId;
+            this.serviceName = serviceName;
+        }
+
+        @Override
+        public String toString() {
+            return pluginId + ":" + serviceName;
+        }
+    }
+
+    /**
+     * 服务实例及其方法句柄，导出后不可变
+     */
+    private static final class ServiceBinding {
+        private final String pluginId;
+        private final Class<?> serviceInterface;
+        private final ClassLoader classLoader;
+        private final MethodHandle[] handles;
+
+        ServiceBinding(String pluginId, Class<?> serviceInterface, ClassLoader classLoader, MethodHandle[] handles) {
+            this.pluginId = pluginId;
+            this.serviceInterface = serviceInterface;
+            this.classLoader = classLoader;
+            this.handles = handles;
+        }
+    }
+
+    /**
+     * 服务桩调用处理器，接口方法按下标分派到槽位当前绑定的句柄
+     */
+    private final class StubHandler implements InvocationHandler {
+        private final ServiceSlot slot;
+        private final Class<?> serviceInterface;
+        private final Map<Method, Integer> indexes;
+
+        StubHandler(ServiceSlot slot, Class<?> serviceInterface) {
+            this.slot = slot;
+            this.serviceInterface = serviceInterface;
+            this.indexes = METHOD_INDEXES.get(serviceInterface);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Integer index = indexes.get(method);
+            if (index != null) {
+                return call(slot, serviceInterface, index, args);
+            }
+            // Object方法
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PluginServiceStub[" + slot + "]";
+                default:
+                    throw new UnsupportedOperationException(method.toString());
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.xiaoqu.qteamos.core.plugin.service;
 
 import com.xiaoqu.qteamos.core.plugin.error.PluginErrorHandler;
+import com.xiaoqu.qteamos.core.plugin.security.PluginSecurityManager;
 import com.xiaoqu.qteamos.api.core.plugin.api.StorageServiceApi;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,6 +43,9 @@ public class StorageServiceApiImpl implements StorageServiceApi, InitializingBea
     @Autowired
     private PluginServiceApiImpl pluginServiceApi;
 
+    @Autowired
+    private PluginSecurityManager securityManager;
+
     /**
      * 初始化方法，输出插件存储路径
      */
@@ -107,7 +111,7 @@ public class StorageServiceApiImpl implements StorageServiceApi, InitializingBea
     public File createFile(String relativePath) {
         try {
             String pluginId = getCurrentPluginId();
-            File file = resolveFile(pluginId, relativePath);
+            File file = resolveFile(pluginId, relativePath, "write");
             
             // 确保父目录存在
             File parentDir = file.getParentFile();
@@ -133,7 +137,7 @@ public class StorageServiceApiImpl implements StorageServiceApi, InitializingBea
     public Optional<String> readFileContent(String relativePath) {
         try {
             String pluginId = getCurrentPluginId();
-            File file = resolveFile(pluginId, relativePath);
+            File file = resolveFile(pluginId, relativePath, "read");
             
             if (!file.exists() || !file.isFile()) {
                 return Optional.empty();
@@ -151,7 +155,7 @@ public class StorageServiceApiImpl implements StorageServiceApi, InitializingBea
     public boolean writeFileContent(String relativePath, String content) {
         try {
             String pluginId = getCurrentPluginId();
-            File file = resolveFile(pluginId, relativePath);
+            File file = resolveFile(pluginId, relativePath, "write");
             
             // 确保父目录存在
             File parentDir = file.getParentFile();
@@ -174,7 +178,7 @@ public class StorageServiceApiImpl implements StorageServiceApi, InitializingBea
     public Optional<InputStream> getInputStream(String relativePath) {
         try {
             String pluginId = getCurrentPluginId();
-            File file = resolveFile(pluginId, relativePath);
+            File file = resolveFile(pluginId, relativePath, "read");
             
             if (!file.exists() || !file.isFile()) {
                 return Optional.empty();
@@ -191,7 +195,7 @@ public class StorageServiceApiImpl implements StorageServiceApi, InitializingBea
     public Optional<OutputStream> getOutputStream(String relativePath) {
         try {
             String pluginId = getCurrentPluginId();
-            File file = resolveFile(pluginId, relativePath);
+            File file = resolveFile(pluginId, relativePath, "write");
             
             // 确保父目录存在
             File parentDir = file.getParentFile();
@@ -212,7 +216,7 @@ public class StorageServiceApiImpl implements StorageServiceApi, InitializingBea
     public boolean exists(String relativePath) {
         try {
             String pluginId = getCurrentPluginId();
-            File file = resolveFile(pluginId, relativePath);
+            File file = resolveFile(pluginId, relativePath, "read");
             return file.exists();
         } catch (Exception e) {
             handleError(e, "检查文件存在异常: " + relativePath);
@@ -224,7 +228,7 @@ public class StorageServiceApiImpl implements StorageServiceApi, InitializingBea
     public boolean delete(String relativePath) {
         try {
             String pluginId = getCurrentPluginId();
-            File file = resolveFile(pluginId, relativePath);
+            File file = resolveFile(pluginId, relativePath, "delete");
             
             if (!file.exists()) {
                 return true;
@@ -241,7 +245,7 @@ public class StorageServiceApiImpl implements StorageServiceApi, InitializingBea
     public boolean createDirectory(String relativePath) {
         try {
             String pluginId = getCurrentPluginId();
-            File dir = resolveFile(pluginId, relativePath);
+            File dir = resolveFile(pluginId, relativePath, "write");
             
             if (dir.exists()) {
                 return dir.isDirectory();
@@ -258,7 +262,7 @@ public class StorageServiceApiImpl implements StorageServiceApi, InitializingBea
     public List<Path> listDirectory(String relativePath) {
         try {
             String pluginId = getCurrentPluginId();
-            File dir = resolveFile(pluginId, relativePath);
+            File dir = resolveFile(pluginId, relativePath, "read");
             
             if (!dir.exists() || !dir.isDirectory()) {
                 return List.of();
@@ -277,7 +281,7 @@ public class StorageServiceApiImpl implements StorageServiceApi, InitializingBea
     public long getFileSize(String relativePath) {
         try {
             String pluginId = getCurrentPluginId();
-            File file = resolveFile(pluginId, relativePath);
+            File file = resolveFile(pluginId, relativePath, "read");
             
             if (!file.exists() || !file.isFile()) {
                 return -1;
@@ -294,8 +298,8 @@ public class StorageServiceApiImpl implements StorageServiceApi, InitializingBea
     public boolean copyFile(String sourcePath, String targetPath) {
         try {
             String pluginId = getCurrentPluginId();
-            File sourceFile = resolveFile(pluginId, sourcePath);
-            File targetFile = resolveFile(pluginId, targetPath);
+            File sourceFile = resolveFile(pluginId, sourcePath, "read");
+            File targetFile = resolveFile(pluginId, targetPath, "write");
             
             if (!sourceFile.exists() || !sourceFile.isFile()) {
                 return false;
@@ -321,8 +325,8 @@ public class StorageServiceApiImpl implements StorageServiceApi, InitializingBea
     public boolean moveFile(String sourcePath, String targetPath) {
         try {
             String pluginId = getCurrentPluginId();
-            File sourceFile = resolveFile(pluginId, sourcePath);
-            File targetFile = resolveFile(pluginId, targetPath);
+            File sourceFile = resolveFile(pluginId, sourcePath, "delete");
+            File targetFile = resolveFile(pluginId, targetPath, "write");
             
             if (!sourceFile.exists() || !sourceFile.isFile()) {
                 return false;
@@ -360,11 +364,21 @@ public class StorageServiceApiImpl implements StorageServiceApi, InitializingBea
     }
 
     /**
-     * 解析文件路径
+     * 解析文件路径并检查沙箱权限
+     * 规范化后的路径必须位于插件数据目录内，防止通过../访问其他插件或系统文件
+     *
+     * @param pluginId 插件ID
+     * @param relativePath 相对数据目录的路径
+     * @param action 文件操作：read、write或delete
      */
-    private File resolveFile(String pluginId, String relativePath) {
-        Path pluginRoot = Paths.get(pluginsRootPath, pluginId, "data");
-        return pluginRoot.resolve(relativePath).toFile();
+    private File resolveFile(String pluginId, String relativePath, String action) {
+        Path pluginRoot = Paths.get(pluginsRootPath, pluginId, "data").toAbsolutePath().normalize();
+        Path path = pluginRoot.resolve(relativePath).normalize();
+        if (!path.startsWith(pluginRoot)) {
+            throw new SecurityException("插件 " + pluginId + " 无权访问数据目录之外的路径: " + relativePath);
+        }
+        securityManager.checkFileAccess(pluginId, path, action);
+        return path.toFile();
     }
 
     /**
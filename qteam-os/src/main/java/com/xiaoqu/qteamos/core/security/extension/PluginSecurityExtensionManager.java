@@ -24,6 +24,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.Optional;
 
 import org.slf4j.Logger;
@@ -49,6 +50,26 @@ public class PluginSecurityExtensionManager {
     // 存储已注册的插件安全扩展
     private final Map<String, PluginSecurityExtension> registeredExtensions = new ConcurrentHashMap<>();
     
+    // 安全扩展变更监听器，用于失效依赖角色和权限定义的缓存
+    private final List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
+    
+    /**
+     * 添加安全扩展变更监听器，扩展注册或注销后调用
+     */
+    public void addChangeListener(Runnable listener) {
+        changeListeners.add(listener);
+    }
+    
+    private void fireChanged() {
+        for (Runnable listener : changeListeners) {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                log.error("通知安全扩展变更失败", e);
+            }
+        }
+    }
+    
     /**
      * 向安全管理器应用所有已注册的插件安全扩展
      */
@@ -80,6 +101,7 @@ public class PluginSecurityExtensionManager {
         
         registeredExtensions.put(extension.getPluginId(), extension);
         log.info("注册插件安全扩展: {}", extension.getPluginId());
+        fireChanged();
     }
     
     /**
@@ -90,8 +112,10 @@ public class PluginSecurityExtensionManager {
             return;
         }
         
-        registeredExtensions.remove(pluginId);
-        log.info("注销插件安全扩展: {}", pluginId);
+        if (registeredExtensions.remove(pluginId) != null) {
+            log.info("注销插件安全扩展: {}", pluginId);
+            fireChanged();
+        }
     }
     
     /**
@@ -30,9 +30,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.annotation.Order;
 import org.springframework.expression.EvaluationContext;
-import org.springframework.expression.Expression;
-import org.springframework.expression.ExpressionParser;
-import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.security.access.expression.ExpressionUtils;
 import org.springframework.security.access.expression.SecurityExpressionHandler;
 import org.springframework.security.core.Authentication;
@@ -41,7 +38,6 @@ import org.springframework.security.web.FilterInvocation;
 import org.springframework.security.web.access.expression.DefaultWebSecurityExpressionHandler;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
-import org.springframework.web.util.UrlPathHelper;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.servlet.FilterChain;
@@ -60,21 +56,28 @@ import java.io.IOException;
 public class GatewaySecurityFilter extends OncePerRequestFilter {
     private static final Logger log = LoggerFactory.getLogger(GatewaySecurityFilter.class);
     
+    // 表达式求值不会继续执行过滤链
+    private static final FilterChain NOOP_CHAIN = (req, res) -> { };
+    
     @Autowired
     private GatewaySecurityIntegration securityIntegration;
     
     @Autowired
     private PermissionService permissionService;
     
+    @Autowired
+    private SecurityExpressionCache expressionCache;
+    
+    @Autowired
+    private RequestPathClassifier pathClassifier;
+    
     @Value("${qteamos.gateway.api-prefix:/api}")
     private String apiPrefix;
     
     @Value("${qteamos.security.enabled:true}")
     private boolean securityEnabled;
     
-    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
     private final SecurityExpressionHandler<FilterInvocation> expressionHandler = new DefaultWebSecurityExpressionHandler();
-    private final ExpressionParser expressionParser = new SpelExpressionParser();
     
     @PostConstruct
     public void init() {
@@ -94,13 +97,11 @@ public class GatewaySecurityFilter extends OncePerRequestFilter {
             return;
         }
         
-        // 获取请求路径
-        String path = urlPathHelper.getPathWithinApplication(request);
-        
-        // 使用工具类检查路径是否以API前缀开头
-        if (ApiPathUtils.pathStartsWithPrefix(path, apiPrefix)) {
+        // 复用请求分类结果，只检查API路径
+        RequestPathClassifier.Route route = pathClassifier.classify(request);
+        if (route.isApiPath()) {
             // 获取API安全元数据
-            ApiSecurityMetadata metadata = findMatchingSecurityMetadata(path);
+            ApiSecurityMetadata metadata = findMatchingSecurityMetadata(route.getPath());
             
             if (metadata != null && metadata.hasSecurityConstraints()) {
                 // 有安全约束，进行权限检查
@@ -118,37 +119,10 @@ public class GatewaySecurityFilter extends OncePerRequestFilter {
     
     /**
      * 查找匹配的安全元数据
-     * 支持精确匹配和模式匹配
+     * 支持精确匹配和模式匹配，模式按路径段预编译索引，查找耗时与路由数量无关
      */
     private ApiSecurityMetadata findMatchingSecurityMetadata(String path) {
-        // 首先尝试精确匹配
-        ApiSecurityMetadata metadata = securityIntegration.getApiSecurityMetadata(path);
-        if (metadata != null) {
-            return metadata;
-        }
-        
-        // 遍历所有路径模式进行匹配
-        // 注意：在实际实现中，应该使用更高效的匹配算法
-        for (String pattern : securityIntegration.getAllApiSecurityMetadata().keySet()) {
-            if (matchesPattern(path, pattern)) {
-                return securityIntegration.getApiSecurityMetadata(pattern);
-            }
-        }
-        
-        return null;
-    }
-    
-    /**
-     * 简单的路径模式匹配
-     * 支持*通配符
-     */
-    private boolean matchesPattern(String path, String pattern) {
-        // 将路径模式转换为正则表达式
-        String regex = pattern
-                .replace(".", "\\.")
-                .replace("*", ".*");
-        
-        return path.matches(regex);
+        return securityIntegration.findSecurityMetadata(path);
     }
     
     /**
@@ -165,16 +139,13 @@ public class GatewaySecurityFilter extends OncePerRequestFilter {
         // 1. 检查PreAuthorize表达式
         if (metadata.getPreAuthorizeExpression() != null) {
             try {
-                FilterInvocation fi = new FilterInvocation(request, response, new FilterChain() {
-                    @Override
-                    public void doFilter(jakarta.servlet.ServletRequest request, jakarta.servlet.ServletResponse response) {
-                        // 不需要实现
-                    }
+                SecurityExpressionCache.CachedExpression expr =
+                        expressionCache.getExpression(metadata.getPreAuthorizeExpression());
+                return expressionCache.decide(expr, authentication, () -> {
+                    FilterInvocation fi = new FilterInvocation(request, response, NOOP_CHAIN);
+                    EvaluationContext ctx = expressionHandler.createEvaluationContext(authentication, fi);
+                    return ExpressionUtils.evaluateAsBoolean(expr.getExpression(), ctx);
                 });
-                
-                EvaluationContext ctx = expressionHandler.createEvaluationContext(authentication, fi);
-                Expression expr = expressionParser.parseExpression(metadata.getPreAuthorizeExpression());
-                return ExpressionUtils.evaluateAsBoolean(expr, ctx);
             } catch (Exception e) {
                 log.error("评估权限表达式失败: " + metadata.getPreAuthorizeExpression(), e);
                 return false;
@@ -183,24 +154,12 @@ public class GatewaySecurityFilter extends OncePerRequestFilter {
         
         // 2. 检查Secured角色
         if (metadata.getSecuredRoles() != null && metadata.getSecuredRoles().length > 0) {
-            for (String role : metadata.getSecuredRoles()) {
-                if (permissionService.hasRole(role)) {
-                    return true;
-                }
-            }
-            // 没有任何匹配的角色
-            return false;
+            return permissionService.hasAnyRole(metadata.getSecuredRoles());
         }
         
         // 3. 检查JSR-250角色
         if (metadata.getJsr250Roles() != null && metadata.getJsr250Roles().length > 0) {
-            for (String role : metadata.getJsr250Roles()) {
-                if (permissionService.hasRole(role)) {
-                    return true;
-                }
-            }
-            // 没有任何匹配的角色
-            return false;
+            return permissionService.hasAnyRole(metadata.getJsr250Roles());
         }
         
         // 如果没有约束，默认允许访问
@@ -23,6 +23,7 @@ package com.xiaoqu.qteamos.core.security.integration;
 import com.xiaoqu.qteamos.core.plugin.web.PluginRequestMappingHandlerMapping;
 import com.xiaoqu.qteamos.core.security.extension.PluginSecurityExtensionManager;
 import com.xiaoqu.qteamos.core.security.util.ApiPathUtils;
+import com.xiaoqu.qteamos.core.security.util.PathPatternTrie;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -56,6 +57,9 @@ public class GatewaySecurityIntegration {
     // 存储API路径与权限的映射关系
     private final Map<String, ApiSecurityMetadata> apiSecurityMap = new ConcurrentHashMap<>();
     
+    // 按路径段索引的安全元数据，随API注册/注销增量更新
+    private final PathPatternTrie<ApiSecurityMetadata> securityMatcher = new PathPatternTrie<>();
+    
     /**
      * 初始化组件
      */
@@ -85,6 +89,7 @@ public class GatewaySecurityIntegration {
             // 对每个路径模式都记录安全元数据
             for (String pattern : mappingInfo.getPatternValues()) {
                 apiSecurityMap.put(pattern, metadata);
+                securityMatcher.put(pattern, metadata);
                 log.debug("关联API安全元数据: {} -> {}", pattern, metadata);
             }
             
@@ -104,6 +109,7 @@ public class GatewaySecurityIntegration {
         // 移除所有相关路径的安全元数据
         for (String pattern : mappingInfo.getPatternValues()) {
             apiSecurityMap.remove(pattern);
+            securityMatcher.remove(pattern);
             log.debug("移除API安全元数据: {}", pattern);
         }
     }
@@ -182,6 +188,18 @@ public class GatewaySecurityIntegration {
         return apiSecurityMap.get(path);
     }
     
+    /**
+     * 查找与请求路径最匹配的安全元数据
+     * 精确登记的路径优先，其次按路径段匹配最具体的模式
+     *
+     * @param path 请求路径
+     * @return 安全元数据，没有匹配时为null
+     */
+    public ApiSecurityMetadata findSecurityMetadata(String path) {
+        ApiSecurityMetadata metadata = apiSecurityMap.get(path);
+        return metadata != null ? metadata : securityMatcher.match(path);
+    }
+    
     /**
      * 获取所有API的安全元数据
      */
@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2023-2025 XiaoQuTeam. All rights reserved.
+ * QTeamOS is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+
+/**
+ * 请求路径分类器
+ * 一次遍历确定请求的路由类型，供JWT、网关安全和限流过滤器共用
+ *
+ * @author yangqijun
+ * @date 2025-07-22
+ * @since 1.0.0
+ */
+package com.xiaoqu.qteamos.core.security.integration;
+
+import com.xiaoqu.qteamos.core.plugin.web.PluginRequestMappingHandlerMapping;
+import com.xiaoqu.qteamos.core.security.properties.SecurityProperties;
+import com.xiaoqu.qteamos.core.security.util.ApiPathUtils;
+import com.xiaoqu.qteamos.core.security.util.PathPatternTrie;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UrlPathHelper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 请求路径分类器
+ * 启动时把白名单和安全配置中的匿名路径编译为路径前缀树，插件API注册/注销时增量维护路由到插件ID的索引。
+ * 分类结果保存在请求属性中，同一请求经过多个过滤器只分类一次
+ */
+@Component
+public class RequestPathClassifier {
+    private static final Logger log = LoggerFactory.getLogger(RequestPathClassifier.class);
+
+    /**
+     * 保存分类结果的请求属性
+     */
+    public static final String ROUTE_ATTRIBUTE = RequestPathClassifier.class.getName() + ".ROUTE";
+
+    // 插件路径前缀
+    private static final String PLUGIN_PATH_PREFIX = "/p-";
+
+    // 内置白名单路径模式
+    private static final List<String> WHITELIST_PATTERNS = Arrays.asList(
+        "/actuator/**",
+        "/error",
+        "/favicon.ico",
+        "/login",
+        "/logout"
+    );
+
+    @Autowired
+    private SecurityProperties securityProperties;
+
+    @Value("${qteamos.gateway.api-prefix:/api}")
+    private String apiPrefix;
+
+    @Value("${qteamos.gateway.html-path-prefix:/html}")
+    private String htmlPrefix;
+
+    private String pluginApiPrefix;
+
+    private String pluginHtmlPrefix;
+
+    // 匿名访问路径
+    private final PathPatternTrie<Boolean> publicPaths = new PathPatternTrie<>();
+
+    // 插件API路由 -> 插件ID，插件ID加密时路径中的ID与真实ID不同
+    private final PathPatternTrie<String> pluginRoutes = new PathPatternTrie<>();
+
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+    @PostConstruct
+    public void init() {
+        apiPrefix = ApiPathUtils.normalizeApiPrefix(apiPrefix);
+        htmlPrefix = ApiPathUtils.normalizeApiPrefix(htmlPrefix);
+        pluginApiPrefix = apiPrefix + PLUGIN_PATH_PREFIX;
+        pluginHtmlPrefix = htmlPrefix + PLUGIN_PATH_PREFIX;
+
+        for (String pattern : WHITELIST_PATTERNS) {
+            publicPaths.put(pattern, Boolean.TRUE);
+        }
+        // 插件公共API
+        publicPaths.put(pluginApiPrefix + "*/pub/**", Boolean.TRUE);
+        for (String pattern : securityProperties.getPaths().getPermitAll()) {
+            publicPaths.put(ApiPathUtils.normalizePath(pattern), Boolean.TRUE);
+        }
+
+        log.info("请求路径分类器初始化完成，匿名访问路径: {}个", publicPaths.size());
+    }
+
+    /**
+     * 插件API注册时登记路由所属的插件
+     */
+    @EventListener
+    public void handleApiRegistration(PluginRequestMappingHandlerMapping.PluginApiRegistrationEvent event) {
+        for (String pattern : event.getMappingInfo().getPatternValues()) {
+            pluginRoutes.put(pattern, event.getPluginId());
+        }
+    }
+
+    /**
+     * 插件API注销时移除路由
+     */
+    @EventListener
+    public void handleApiUnregistration(PluginRequestMappingHandlerMapping.PluginApiUnregistrationEvent event) {
+        for (String pattern : event.getMappingInfo().getPatternValues()) {
+            pluginRoutes.remove(pattern);
+        }
+    }
+
+    /**
+     * 获取请求的分类结果，首次调用时分类并保存到请求属性
+     *
+     * @param request HTTP请求
+     * @return 分类结果
+     */
+    public Route classify(HttpServletRequest request) {
+        Object cached = request.getAttribute(ROUTE_ATTRIBUTE);
+        if (cached instanceof Route) {
+            return (Route) cached;
+        }
+        Route route = classify(urlPathHelper.getPathWithinApplication(request));
+        request.setAttribute(ROUTE_ATTRIBUTE, route);
+        return route;
+    }
+
+    /**
+     * 对应用内路径分类
+     *
+     * @param path 不含上下文路径的请求路径
+     * @return 分类结果
+     */
+    public Route classify(String path) {
+        boolean apiPath = startsWithSegment(path, apiPrefix);
+        RouteType type = RouteType.SECURED_CORE;
+        String pluginId = null;
+
+        if (apiPath && path.startsWith(pluginApiPrefix)) {
+            type = RouteType.PLUGIN_API;
+            pluginId = pluginSegment(path, pluginApiPrefix.length());
+            if (pluginId != null) {
+                String registered = pluginRoutes.match(path);
+                if (registered != null) {
+                    pluginId = registered;
+                }
+            }
+        } else if (path.startsWith(pluginHtmlPrefix)) {
+            type = RouteType.PLUGIN_HTML;
+            pluginId = pluginSegment(path, pluginHtmlPrefix.length());
+        }
+
+        if (publicPaths.match(path) != null) {
+            type = RouteType.PUBLIC;
+        }
+        return new Route(type, path, pluginId, apiPath);
+    }
+
+    private static boolean startsWithSegment(String path, String prefix) {
+        return path.startsWith(prefix) && (path.length() == prefix.length() || path.charAt(prefix.length()) == '/');
+    }
+
+    /**
+     * 提取/p-之后到下一个/之前的插件ID
+     */
+    private static String pluginSegment(String path, int start) {
+        int end = path.indexOf('/', start);
+        if (end < 0) {
+            end = path.length();
+        }
+        return end > start ? path.substring(start, end) : null;
+    }
+
+    /**
+     * 路由类型
+     */
+    public enum RouteType {
+        /**
+         * 允许匿名访问
+         */
+        PUBLIC,
+        /**
+         * 插件API
+         */
+        PLUGIN_API,
+        /**
+         * 插件页面
+         */
+        PLUGIN_HTML,
+        /**
+         * 受保护的系统路径
+         */
+        SECURED_CORE
+    }
+
+    /**
+     * 请求分类结果
+     */
+    public static final class Route {
+        private final RouteType type;
+        private final String path;
+        private final String pluginId;
+        private final boolean apiPath;
+
+        Route(RouteType type, String path, String pluginId, boolean apiPath) {
+            this.type = type;
+            this.path = path;
+            this.pluginId = pluginId;
+            this.apiPath = apiPath;
+        }
+
+        public RouteType getType() {
+            return type;
+        }
+
+        /**
+         * 不含上下文路径的请求路径
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * 插件ID，非插件路径为null；匿名访问的插件路径也会带上插件ID
+         */
+        public String getPluginId() {
+            return pluginId;
+        }
+
+        /**
+         * 是否以API前缀开头
+         */
+        public boolean isApiPath() {
+            return apiPath;
+        }
+
+        /**
+         * 是否为插件API，包括匿名访问的插件公共API
+         */
+        public boolean isPluginApi() {
+            return apiPath && pluginId != null;
+        }
+
+        @Override
+        public String toString() {
+            return type + (pluginId != null ? "[" + pluginId + "] " : " ") + path;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2023-2025 XiaoQuTeam. All rights reserved.
+ * QTeamOS is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+
+/**
+ * 安全表达式缓存
+ * 缓存预解析的@PreAuthorize表达式和基于权限集合的判定结果
+ *
+ * @author yangqijun
+ * @date 2025-07-22
+ * @since 1.0.0
+ */
+package com.xiaoqu.qteamos.core.security.integration;
+
+import com.xiaoqu.qteamos.core.security.extension.PluginSecurityExtensionManager;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelNode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.ast.BooleanLiteral;
+import org.springframework.expression.spel.ast.MethodReference;
+import org.springframework.expression.spel.ast.OpAnd;
+import org.springframework.expression.spel.ast.OpOr;
+import org.springframework.expression.spel.ast.OperatorNot;
+import org.springframework.expression.spel.ast.PropertyOrFieldReference;
+import org.springframework.expression.spel.ast.StringLiteral;
+import org.springframework.expression.spel.standard.SpelExpression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 安全表达式缓存
+ * 表达式按文本解析一次，启用SpEL混合编译模式，多次执行后编译为字节码，编译失败时自动回退解释执行。
+ * 只依赖当前用户权限集合的表达式（hasRole、hasAuthority、isAuthenticated等）的判定结果
+ * 按(认证类型+权限集合指纹, 表达式)短时缓存；插件安全扩展变更时清空判定缓存
+ */
+@Component
+public class SecurityExpressionCache {
+    private static final Logger log = LoggerFactory.getLogger(SecurityExpressionCache.class);
+
+    /**
+     * 结果只取决于权限集合和认证类型的方法
+     */
+    private static final Set<String> AUTHORITY_METHODS = Set.of(
+            "hasRole", "hasAnyRole", "hasAuthority", "hasAnyAuthority",
+            "isAuthenticated", "isFullyAuthenticated", "isAnonymous", "isRememberMe",
+            "permitAll", "denyAll");
+
+    /**
+     * 结果只取决于权限集合和认证类型的属性
+     */
+    private static final Set<String> AUTHORITY_PROPERTIES = Set.of(
+            "permitAll", "denyAll", "authenticated", "fullyAuthenticated", "anonymous", "rememberMe");
+
+    @Autowired
+    private PluginSecurityExtensionManager extensionManager;
+
+    @Value("${qteamos.security.expression-cache.decision-ttl-ms:5000}")
+    private long decisionTtlMillis;
+
+    @Value("${qteamos.security.expression-cache.max-decisions:10000}")
+    private int maxDecisions;
+
+    private final SpelExpressionParser parser = new SpelExpressionParser(
+            new SpelParserConfiguration(SpelCompilerMode.MIXED, SecurityExpressionCache.class.getClassLoader()));
+
+    // 表达式文本 -> 预解析表达式
+    private final Map<String, CachedExpression> expressions = new ConcurrentHashMap<>();
+
+    // (权限指纹, 表达式) -> 判定结果
+    private final Map<DecisionKey, Decision> decisions = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        // 插件安全扩展变更可能改变角色和权限的定义
+        extensionManager.addChangeListener(this::invalidate);
+    }
+
+    /**
+     * 获取预解析的表达式
+     *
+     * @param expressionText 表达式文本
+     * @return 缓存的表达式
+     */
+    public CachedExpression getExpression(String expressionText) {
+        CachedExpression cached = expressions.get(expressionText);
+        if (cached != null) {
+            return cached;
+        }
+        return expressions.computeIfAbsent(expressionText, text -> {
+            Expression expression = parser.parseExpression(text);
+            boolean authorityOnly = expression instanceof SpelExpression
+                    && isAuthorityOnly(((SpelExpression) expression).getAST());
+            return new CachedExpression(text, expression, authorityOnly);
+        });
+    }
+
+    /**
+     * 按权限集合缓存判定结果
+     * 表达式不只依赖权限集合时直接执行判定
+     *
+     * @param expression 预解析表达式
+     * @param authentication 当前认证
+     * @param evaluator 执行判定
+     * @return 判定结果
+     */
+    public boolean decide(CachedExpression expression, Authentication authentication, BooleanSupplier evaluator) {
+        if (!expression.isAuthorityOnly() || decisionTtlMillis <= 0) {
+            return evaluator.getAsBoolean();
+        }
+        DecisionKey key = new DecisionKey(fingerprint(authentication), expression.getText());
+        long now = System.nanoTime();
+        Decision decision = decisions.get(key);
+        if (decision != null && now - decision.expiresAt < 0) {
+            return decision.allowed;
+        }
+        boolean allowed = evaluator.getAsBoolean();
+        if (decisions.size() >= maxDecisions) {
+            // 超过上限整体清空，短时缓存重新预热的代价很小
+            decisions.clear();
+        }
+        decisions.put(key, new Decision(allowed, now + decisionTtlMillis * 1_000_000L));
+        return allowed;
+    }
+
+    /**
+     * 清空判定缓存，角色或权限定义变更时调用
+     */
+    public void invalidate() {
+        decisions.clear();
+        log.debug("安全判定缓存已清空");
+    }
+
+    /**
+     * 认证类型和排序后的权限集合
+     */
+    private static String fingerprint(Authentication authentication) {
+        Collection<? extends GrantedAuthority> authorities = authentication.getAuthorities();
+        String[] values = new String[authorities.size()];
+        int i = 0;
+        for (GrantedAuthority authority : authorities) {
+            values[i++] = authority.getAuthority();
+        }
+        Arrays.sort(values);
+        StringBuilder sb = new StringBuilder(authentication.getClass().getName()).append('|');
+        for (String value : values) {
+            sb.append(value).append(',');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 表达式是否只由权限判断方法、字面量和逻辑运算组成
+     */
+    private static boolean isAuthorityOnly(SpelNode node) {
+        if (node instanceof MethodReference) {
+            if (!AUTHORITY_METHODS.contains(((MethodReference) node).getName())) {
+                return false;
+            }
+        } else if (node instanceof PropertyOrFieldReference) {
+            return AUTHORITY_PROPERTIES.contains(((PropertyOrFieldReference) node).getName());
+        } else if (!(node instanceof OpAnd || node instanceof OpOr || node instanceof OperatorNot
+                || node instanceof StringLiteral || node instanceof BooleanLiteral)) {
+            return false;
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            if (!isAuthorityOnly(node.getChild(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 预解析的表达式
+     */
+    public static final class CachedExpression {
+        private final String text;
+        private final Expression expression;
+        private final boolean authorityOnly;
+
+        CachedExpression(String text, Expression expression, boolean authorityOnly) {
+            this.text = text;
+            this.expression = expression;
+            this.authorityOnly = authorityOnly;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public Expression getExpression() {
+            return expression;
+        }
+
+        /**
+         * 判定结果是否只取决于权限集合
+         */
+        public boolean isAuthorityOnly() {
+            return authorityOnly;
+        }
+    }
+
+    private static final class DecisionKey {
+        private final String fingerprint;
+        private final String expression;
+        private final int hash;
+
+        DecisionKey(String fingerprint, String expression) {
+            this.fingerprint = fingerprint;
+            this.expression = expression;
+            this.hash = 31 * fingerprint.hashCode() + expression.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof DecisionKey)) {
+                return false;
+            }
+            DecisionKey other = (DecisionKey) o;
+            return hash == other.hash && Objects.equals(fingerprint, other.fingerprint)
+                    && Objects.equals(expression, other.expression);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Decision {
+        private final boolean allowed;
+        private final long expiresAt;
+
+        Decision(boolean allowed, long expiresAt) {
+            this.allowed = allowed;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2023-2025 XiaoQuTeam. All rights reserved.
+ * QTeamOS is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+
+/**
+ * 权限登记表
+ * 把系统和插件定义的角色、权限名称映射为连续的整数ID
+ *
+ * @author yangqijun
+ * @date 2025-07-22
+ * @since 1.0.0
+ */
+package com.xiaoqu.qteamos.core.security.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 权限登记表
+ * 角色和权限名称按首次出现的顺序分配ID，ID只增不删：
+ * 已附加到认证信息上的权限位图在插件卸载后仍然有效，卸载插件的权限名称不再出现在新签发的授权中
+ */
+@Component
+public class AuthorityRegistry {
+    private static final Logger log = LoggerFactory.getLogger(AuthorityRegistry.class);
+    
+    /**
+     * 角色前缀
+     */
+    public static final String ROLE_PREFIX = "ROLE_";
+    
+    // 名称 -> ID
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>(256);
+    
+    // 未带前缀的角色名 -> ID，避免每次判断角色时拼接前缀
+    private final Map<String, Integer> roleIds = new ConcurrentHashMap<>(64);
+    
+    // 下一个待分配的ID，在ids上同步
+    private int nextId;
+    
+    /**
+     * 登记名称，已登记时返回原ID
+     *
+     * @param name 角色或权限名称
+     * @return ID
+     */
+    public int intern(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        synchronized (ids) {
+            id = ids.get(name);
+            if (id == null) {
+                id = nextId++;
+                ids.put(name, id);
+            }
+            return id;
+        }
+    }
+    
+    /**
+     * 批量登记名称
+     *
+     * @param names 角色或权限名称
+     */
+    public void internAll(Collection<String> names) {
+        int before = ids.size();
+        for (String name : names) {
+            if (name != null && !name.isEmpty()) {
+                intern(name);
+            }
+        }
+        if (ids.size() != before) {
+            log.debug("权限登记表新增{}项，共{}项", ids.size() - before, ids.size());
+        }
+    }
+    
+    /**
+     * 查询名称的ID，不登记
+     *
+     * @param name 角色或权限名称
+     * @return ID，未登记时返回-1
+     */
+    public int lookup(String name) {
+        Integer id = name != null ? ids.get(name) : null;
+        return id != null ? id : -1;
+    }
+    
+    /**
+     * 查询角色的ID，角色名可以不带ROLE_前缀
+     *
+     * @param role 角色名称
+     * @return ID，未登记时返回-1
+     */
+    public int lookupRole(String role) {
+        if (role == null) {
+            return -1;
+        }
+        Integer id = roleIds.get(role);
+        if (id != null) {
+            return id;
+        }
+        id = ids.get(role.startsWith(ROLE_PREFIX) ? role : ROLE_PREFIX + role);
+        if (id == null) {
+            // 未登记的角色不缓存，之后登记时仍能查到
+            return -1;
+        }
+        roleIds.put(role, id);
+        return id;
+    }
+    
+    /**
+     * 由名称构造位图，用于任意/全部权限判断
+     *
+     * @param names 权限名称
+     * @param roles 名称是否为角色
+     * @return 位图，未登记的名称不计入
+     */
+    public AuthoritySet toSet(String[] names, boolean roles) {
+        int[] values = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            values[i] = roles ? lookupRole(names[i]) : lookup(names[i]);
+        }
+        return AuthoritySet.of(values);
+    }
+    
+    /**
+     * 由授予的权限构造位图，未登记的权限会被登记
+     *
+     * @param authorities 授予的权限
+     * @return 位图
+     */
+    public AuthoritySet toSet(Collection<? extends GrantedAuthority> authorities) {
+        if (authorities == null || authorities.isEmpty()) {
+            return AuthoritySet.EMPTY;
+        }
+        int[] values = new int[authorities.size()];
+        int i = 0;
+        for (GrantedAuthority authority : authorities) {
+            String name = authority.getAuthority();
+            values[i++] = name != null ? intern(name) : -1;
+        }
+        return AuthoritySet.of(values);
+    }
+    
+    /**
+     * 获取认证信息的权限位图
+     * 登录或解码令牌时已附加位图的直接返回，否则现算
+     *
+     * @param authentication 认证信息
+     * @return 位图
+     */
+    public AuthoritySet of(Authentication authentication) {
+        if (authentication instanceof AuthoritySetHolder) {
+            AuthoritySet set = ((AuthoritySetHolder) authentication).getAuthoritySet();
+            // 反序列化后的令牌不带位图
+            if (set != null) {
+                return set;
+            }
+        }
+        return toSet(authentication.getAuthorities());
+    }
+    
+    /**
+     * 已登记的名称数
+     */
+    public int size() {
+        return ids.size();
+    }
+    
+    /**
+     * 附加了权限位图的认证信息
+     */
+    public interface AuthoritySetHolder {
+        
+        /**
+         * 获取权限位图
+         */
+        AuthoritySet getAuthoritySet();
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2023-2025 XiaoQuTeam. All rights reserved.
+ * QTeamOS is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+
+/**
+ * 权限位图
+ * 用户被授予的角色和权限在权限登记表中的ID集合
+ *
+ * @author yangqijun
+ * @date 2025-07-22
+ * @since 1.0.0
+ */
+package com.xiaoqu.qteamos.core.security.service;
+
+import java.util.Arrays;
+
+/**
+ * 权限位图
+ * 不可变，按64位字存储，单个权限判断为一次位运算，任意/全部权限判断为按字与运算
+ */
+public final class AuthoritySet {
+    
+    /**
+     * 空集合
+     */
+    public static final AuthoritySet EMPTY = new AuthoritySet(new long[0]);
+    
+    private final long[] words;
+    
+    AuthoritySet(long[] words) {
+        this.words = words;
+    }
+    
+    /**
+     * 由权限ID创建位图
+     *
+     * @param ids 权限ID，负数忽略
+     * @return 位图
+     */
+    static AuthoritySet of(int... ids) {
+        int max = -1;
+        for (int id : ids) {
+            max = Math.max(max, id);
+        }
+        if (max < 0) {
+            return EMPTY;
+        }
+        long[] words = new long[(max >>> 6) + 1];
+        for (int id : ids) {
+            if (id >= 0) {
+                words[id >>> 6] |= 1L << id;
+            }
+        }
+        return new AuthoritySet(words);
+    }
+    
+    /**
+     * 是否包含指定权限
+     *
+     * @param id 权限ID，负数表示未登记的权限
+     * @return 是否包含
+     */
+    public boolean contains(int id) {
+        if (id < 0) {
+            return false;
+        }
+        int index = id >>> 6;
+        return index < words.length && (words[index] & (1L << id)) != 0;
+    }
+    
+    /**
+     * 是否包含另一集合中的任意权限
+     *
+     * @param other 权限集合
+     * @return 是否有交集
+     */
+    public boolean containsAny(AuthoritySet other) {
+        int length = Math.min(words.length, other.words.length);
+        for (int i = 0; i < length; i++) {
+            if ((words[i] & other.words[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * 是否包含另一集合中的全部权限
+     *
+     * @param other 权限集合
+     * @return 是否全部包含
+     */
+    public boolean containsAll(AuthoritySet other) {
+        for (int i = 0; i < other.words.length; i++) {
+            long mine = i < words.length ? words[i] : 0L;
+            if ((other.words[i] & ~mine) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * 是否为空
+     */
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AuthoritySet)) {
+            return false;
+        }
+        // 末尾的零字不影响相等性
+        long[] a = words;
+        long[] b = ((AuthoritySet) o).words;
+        int length = Math.max(a.length, b.length);
+        for (int i = 0; i < length; i++) {
+            if ((i < a.length ? a[i] : 0L) != (i < b.length ? b[i] : 0L)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    @Override
+    public int hashCode() {
+        int end = words.length;
+        while (end > 0 && words[end - 1] == 0) {
+            end--;
+        }
+        return Arrays.hashCode(Arrays.copyOf(words, end));
+    }
+}
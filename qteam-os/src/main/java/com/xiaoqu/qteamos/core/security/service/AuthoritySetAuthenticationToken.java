@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2023-2025 XiaoQuTeam. All rights reserved.
+ * QTeamOS is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+
+/**
+ * 附加权限位图的认证令牌
+ *
+ * @author yangqijun
+ * @date 2025-07-22
+ * @since 1.0.0
+ */
+package com.xiaoqu.qteamos.core.security.service;
+
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+
+/**
+ * 附加权限位图的认证令牌
+ * 在登录或解码JWT时创建，之后的权限判断直接使用位图
+ */
+public class AuthoritySetAuthenticationToken extends UsernamePasswordAuthenticationToken
+        implements AuthorityRegistry.AuthoritySetHolder {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private final transient AuthoritySet authoritySet;
+    
+    public AuthoritySetAuthenticationToken(Object principal, Object credentials,
+                                           Collection<? extends GrantedAuthority> authorities,
+                                           AuthorityRegistry registry) {
+        super(principal, credentials, authorities);
+        this.authoritySet = registry.toSet(getAuthorities());
+    }
+    
+    @Override
+    public AuthoritySet getAuthoritySet() {
+        return authoritySet;
+    }
+}
@@ -24,15 +24,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
+import com.xiaoqu.qteamos.core.plugin.event.Event;
+import com.xiaoqu.qteamos.core.plugin.event.EventListener;
+import com.xiaoqu.qteamos.core.plugin.event.PluginEvent;
 import com.xiaoqu.qteamos.core.plugin.running.PluginInfo;
 import com.xiaoqu.qteamos.core.plugin.manager.PluginRegistry;
 import com.xiaoqu.qteamos.core.security.extension.PluginSecurityExtensionManager;
 import com.xiaoqu.qteamos.core.security.plugin.PluginSecurityExtension;
 
+import jakarta.annotation.PostConstruct;
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -47,6 +50,56 @@ public class PermissionService {
     @Autowired
     private PluginSecurityExtensionManager extensionManager;
     
+    @Autowired
+    private AuthorityRegistry authorityRegistry;
+    
+    /**
+     * 超级管理员角色ID
+     */
+    private int adminRoleId;
+    
+    @PostConstruct
+    public void init() {
+        adminRoleId = authorityRegistry.intern("ROLE_ADMIN");
+        refreshAuthorityTable();
+        // 插件安全扩展变更时登记新增的角色和权限
+        extensionManager.addChangeListener(this::refreshAuthorityTable);
+    }
+    
+    /**
+     * 插件安装或卸载后更新权限登记表
+     */
+    @EventListener(topics = PluginEvent.TOPIC,
+            types = {PluginEvent.TYPE_LOADED, PluginEvent.TYPE_STARTED, PluginEvent.TYPE_UNLOADED})
+    public boolean onPluginEvent(Event event) {
+        refreshAuthorityTable();
+        return true;
+    }
+    
+    /**
+     * 把系统和插件定义的角色、权限登记到权限登记表
+     * ID只增不删，卸载插件的权限保留原ID，不影响已签发认证信息上的位图
+     */
+    public void refreshAuthorityTable() {
+        try {
+            authorityRegistry.internAll(getAllRoles());
+            authorityRegistry.internAll(getAllPermissions());
+        } catch (Exception e) {
+            log.error("更新权限登记表失败", e);
+        }
+    }
+    
+    /**
+     * 获取当前用户的权限位图，未认证时返回null
+     */
+    private AuthoritySet currentAuthorities() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return null;
+        }
+        return authorityRegistry.of(authentication);
+    }
+    
     /**
      * 检查当前用户是否有指定权限
      * 
@@ -54,20 +107,13 @@ public class PermissionService {
      * @return 是否有权限
      */
     public boolean hasPermission(String permission) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication == null || !authentication.isAuthenticated()) {
+        AuthoritySet granted = currentAuthorities();
+        if (granted == null) {
             return false;
         }
         
         // 超级管理员拥有所有权限
-        if (hasRole("ROLE_ADMIN")) {
-            return true;
-        }
-        
-        // 检查用户权限集合中是否包含指定权限
-        return authentication.getAuthorities().stream()
-                .map(GrantedAuthority::getAuthority)
-                .anyMatch(a -> a.equals(permission));
+        return granted.contains(adminRoleId) || granted.contains(authorityRegistry.lookup(permission));
     }
     
     /**
@@ -77,12 +123,34 @@ public class PermissionService {
      * @return 是否有任意一个权限
      */
     public boolean hasAnyPermission(String... permissions) {
+        AuthoritySet granted = currentAuthorities();
+        if (granted == null) {
+            return false;
+        }
+        return granted.contains(adminRoleId) || granted.containsAny(authorityRegistry.toSet(permissions, false));
+    }
+    
+    /**
+     * 检查当前用户是否有全部指定权限
+     * 
+     * @param permissions 权限列表
+     * @return 是否有全部权限
+     */
+    public boolean hasAllPermissions(String... permissions) {
+        AuthoritySet granted = currentAuthorities();
+        if (granted == null) {
+            return false;
+        }
+        if (granted.contains(adminRoleId)) {
+            return true;
+        }
         for (String permission : permissions) {
-            if (hasPermission(permission)) {
-                return true;
+            // 未登记的权限不可能被授予
+            if (authorityRegistry.lookup(permission) < 0) {
+                return false;
             }
         }
-        return false;
+        return granted.containsAll(authorityRegistry.toSet(permissions, false));
     }
     
     /**
@@ -92,17 +160,19 @@ public class PermissionService {
      * @return 是否有角色
      */
     public boolean hasRole(String role) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication == null || !authentication.isAuthenticated()) {
-            return false;
-        }
-        
-        // 如果角色名称没有ROLE_前缀，添加前缀
-        String roleWithPrefix = role.startsWith("ROLE_") ? role : "ROLE_" + role;
-        
-        return authentication.getAuthorities().stream()
-                .map(GrantedAuthority::getAuthority)
-                .anyMatch(a -> a.equals(roleWithPrefix));
+        AuthoritySet granted = currentAuthorities();
+        return granted != null && granted.contains(authorityRegistry.lookupRole(role));
+    }
+    
+    /**
+     * 检查当前用户是否有任意一个指定角色
+     * 
+     * @param roles 角色名称，可以不带ROLE_前缀
+     * @return 是否有任意一个角色
+     */
+    public boolean hasAnyRole(String... roles) {
+        AuthoritySet granted = currentAuthorities();
+        return granted != null && granted.containsAny(authorityRegistry.toSet(roles, true));
     }
     
     /**
@@ -0,0 +1,385 @@
+/*
+ * Copyright (c) 2023-2025 XiaoQuTeam. All rights reserved.
+ * QTeamOS is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+
+/**
+ * JWT令牌验证服务
+ * 持有签名密钥和预构建的解析器，缓存已验证令牌的声明和认证信息
+ *
+ * @author yangqijun
+ * @date 2025-07-24
+ * @since 1.0.0
+ */
+package com.xiaoqu.qteamos.core.security.service;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.Jws;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.security.Keys;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JWT令牌验证服务
+ * 签名密钥组成不可变的密钥环，每个版本的密钥环只构建一次解析器，按令牌头的kid选择验证密钥，
+ * 不带kid的旧令牌使用初始密钥验证。验证通过的令牌在过期前缓存声明和认证信息，
+ * 同一令牌的重复请求只需一次哈希查找。支持密钥轮换和本地吊销列表
+ */
+@Component
+public class TokenVerificationService {
+    private static final Logger log = LoggerFactory.getLogger(TokenVerificationService.class);
+
+    public static final String AUTHORITIES_KEY = "auth";
+
+    @Value("${spring.security.jwt.secret-key}")
+    private String secretKeyString;
+
+    @Value("${spring.security.jwt.key-id:default}")
+    private String initialKeyId;
+
+    @Value("${spring.security.jwt.refresh-token.expiration:604800000}")
+    private long maxTokenLifetime;
+
+    @Value("${spring.security.jwt.verified-cache.max-size:10000}")
+    private int maxCachedTokens;
+
+    @Autowired
+    private AuthorityRegistry authorityRegistry;
+
+    private volatile KeyRing keyRing;
+
+    // 令牌 -> 已验证令牌
+    private final Map<String, VerifiedToken> verifiedTokens = new ConcurrentHashMap<>();
+
+    // 吊销的令牌 -> 令牌过期时间(毫秒)
+    private final Map<String, Long> revokedTokens = new ConcurrentHashMap<>();
+
+    // 用户名 -> 吊销时间(毫秒)，此前签发的令牌全部失效
+    private final Map<String, Long> revokedSubjects = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        Map<String, SigningKey> keys = new LinkedHashMap<>();
+        SigningKey initial = new SigningKey(initialKeyId, toSecretKey(secretKeyString));
+        keys.put(initial.getId(), initial);
+        keyRing = new KeyRing(keys, initial, initial);
+        log.info("JWT令牌验证服务初始化完成，当前签名密钥: {}", initialKeyId);
+    }
+
+    /**
+     * 获取当前签名密钥
+     */
+    public SigningKey getSigningKey() {
+        return keyRing.primary;
+    }
+
+    /**
+     * 轮换签名密钥
+     * 新密钥用于签发令牌，旧密钥保留用于验证已签发的令牌，直到调用{@link #retireKey(String)}
+     *
+     * @param keyId 密钥ID，写入令牌头的kid
+     * @param secret 密钥字符串
+     */
+    public synchronized void rotateKey(String keyId, String secret) {
+        KeyRing current = keyRing;
+        Map<String, SigningKey> keys = new LinkedHashMap<>(current.keys);
+        SigningKey key = new SigningKey(keyId, toSecretKey(secret));
+        keys.put(keyId, key);
+        SigningKey legacy = current.legacy != null && keyId.equals(current.legacy.getId()) ? key : current.legacy;
+        keyRing = new KeyRing(keys, key, legacy);
+        log.info("JWT签名密钥已轮换: {}", keyId);
+    }
+
+    /**
+     * 停用旧密钥，由该密钥签发的令牌不再通过验证
+     *
+     * @param keyId 密钥ID
+     * @return 是否停用成功，当前签名密钥不能停用
+     */
+    public synchronized boolean retireKey(String keyId) {
+        KeyRing current = keyRing;
+        if (keyId.equals(current.primary.getId()) || !current.keys.containsKey(keyId)) {
+            return false;
+        }
+        Map<String, SigningKey> keys = new LinkedHashMap<>(current.keys);
+        keys.remove(keyId);
+        // 初始密钥停用后，不带kid的令牌一并失效
+        SigningKey legacy = current.legacy != null && keyId.equals(current.legacy.getId()) ? null : current.legacy;
+        keyRing = new KeyRing(keys, current.primary, legacy);
+        verifiedTokens.values().removeIf(token -> keyId.equals(token.getKeyId()));
+        log.info("JWT签名密钥已停用: {}", keyId);
+        return true;
+    }
+
+    /**
+     * 验证令牌
+     *
+     * @param token JWT令牌
+     * @return 已验证的令牌
+     * @throws JwtException 令牌无效、过期或已吊销
+     */
+    public VerifiedToken verify(String token) {
+        VerifiedToken cached = verifiedTokens.get(token);
+        if (cached != null) {
+            if (System.currentTimeMillis() < cached.getExpiresAt() && !isRevoked(token, cached)) {
+                return cached;
+            }
+            verifiedTokens.remove(token);
+        }
+
+        Jws<Claims> jws = keyRing.parser.parseClaimsJws(token);
+        VerifiedToken verified = createVerifiedToken(token, jws.getHeader().getKeyId(), jws.getBody());
+        if (isRevoked(token, verified)) {
+            throw new JwtException("JWT令牌已被吊销");
+        }
+        if (verifiedTokens.size() >= maxCachedTokens) {
+            purgeExpired();
+        }
+        verifiedTokens.put(token, verified);
+        return verified;
+    }
+
+    /**
+     * 验证令牌，失败时返回null
+     *
+     * @param token JWT令牌
+     * @param allowExpired 签名有效但已过期的令牌是否视为有效
+     * @return 已验证的令牌，无效时为null
+     */
+    public VerifiedToken verifyQuietly(String token, boolean allowExpired) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        try {
+            return verify(token);
+        } catch (ExpiredJwtException e) {
+            if (!allowExpired) {
+                log.info("JWT令牌已过期：{}", e.getMessage());
+                return null;
+            }
+            // 过期令牌的签名已经验证过，不进入缓存
+            String keyId = e.getHeader() instanceof JwsHeader ? ((JwsHeader<?>) e.getHeader()).getKeyId() : null;
+            VerifiedToken verified = createVerifiedToken(token, keyId, e.getClaims());
+            return isRevoked(token, verified) ? null : verified;
+        } catch (JwtException | IllegalArgumentException e) {
+            log.debug("JWT令牌验证失败：{}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 吊销单个令牌
+     *
+     * @param token JWT令牌
+     */
+    public void revokeToken(String token) {
+        VerifiedToken verified = verifyQuietly(token, true);
+        if (verified == null) {
+            return;
+        }
+        revokedTokens.put(token, verified.getExpiresAt());
+        verifiedTokens.remove(token);
+        purgeExpired();
+    }
+
+    /**
+     * 吊销用户此前签发的所有令牌
+     * 令牌签发时间精确到秒，同一秒内新签发的令牌也会失效
+     *
+     * @param username 用户名
+     */
+    public void revokeSubject(String username) {
+        revokedSubjects.put(username, System.currentTimeMillis());
+        verifiedTokens.values().removeIf(token -> username.equals(token.getSubject()));
+        purgeExpired();
+    }
+
+    /**
+     * 清空已验证令牌缓存
+     */
+    public void invalidateAll() {
+        verifiedTokens.clear();
+    }
+
+    private boolean isRevoked(String token, VerifiedToken verified) {
+        if (!revokedTokens.isEmpty() && revokedTokens.containsKey(token)) {
+            return true;
+        }
+        if (revokedSubjects.isEmpty() || verified.getSubject() == null) {
+            return false;
+        }
+        Long revokedAt = revokedSubjects.get(verified.getSubject());
+        return revokedAt != null && (verified.getIssuedAt() == 0 || verified.getIssuedAt() <= revokedAt);
+    }
+
+    /**
+     * 清理过期的缓存和吊销记录，仍超过上限时清空缓存
+     */
+    private void purgeExpired() {
+        long now = System.currentTimeMillis();
+        verifiedTokens.values().removeIf(token -> token.getExpiresAt() <= now);
+        revokedTokens.values().removeIf(expiresAt -> expiresAt <= now);
+        revokedSubjects.values().removeIf(revokedAt -> revokedAt + maxTokenLifetime <= now);
+        if (verifiedTokens.size() >= maxCachedTokens) {
+            verifiedTokens.clear();
+        }
+    }
+
+    private VerifiedToken createVerifiedToken(String token, String keyId, Claims claims) {
+        Object value = claims.get(AUTHORITIES_KEY);
+        List<GrantedAuthority> authorities = new ArrayList<>();
+        if (value != null) {
+            for (String authority : value.toString().split(",")) {
+                if (!authority.trim().isEmpty()) {
+                    authorities.add(new SimpleGrantedAuthority(authority));
+                }
+            }
+        }
+        UserDetails principal = new User(claims.getSubject(), "", authorities);
+        Authentication authentication =
+                new AuthoritySetAuthenticationToken(principal, token, authorities, authorityRegistry);
+
+        return new VerifiedToken(claims, authentication, keyId != null ? keyId : keyRing.legacyKeyId());
+    }
+
+    private static SecretKey toSecretKey(String secret) {
+        return Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 签名密钥
+     */
+    public static final class SigningKey {
+        private final String id;
+        private final SecretKey key;
+
+        SigningKey(String id, SecretKey key) {
+            this.id = id;
+            this.key = key;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public SecretKey getKey() {
+            return key;
+        }
+    }
+
+    /**
+     * 已验证的令牌
+     * 声明和认证信息在多个请求间共享，调用方不应修改
+     */
+    public static final class VerifiedToken {
+        private final Claims claims;
+        private final Authentication authentication;
+        private final String keyId;
+        private final long expiresAt;
+        private final long issuedAt;
+
+        VerifiedToken(Claims claims, Authentication authentication, String keyId) {
+            this.claims = claims;
+            this.authentication = authentication;
+            this.keyId = keyId;
+            Date expiration = claims.getExpiration();
+            this.expiresAt = expiration != null ? expiration.getTime() : Long.MAX_VALUE;
+            Date issued = claims.getIssuedAt();
+            this.issuedAt = issued != null ? issued.getTime() : 0;
+        }
+
+        public Claims getClaims() {
+            return claims;
+        }
+
+        public Authentication getAuthentication() {
+            return authentication;
+        }
+
+        public String getSubject() {
+            return claims.getSubject();
+        }
+
+        public String getKeyId() {
+            return keyId;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+
+        public long getIssuedAt() {
+            return issuedAt;
+        }
+    }
+
+    /**
+     * 不可变的密钥环及其解析器
+     */
+    private static final class KeyRing {
+        private final Map<String, SigningKey> keys;
+        private final SigningKey primary;
+        private final SigningKey legacy;
+        private final JwtParser parser;
+
+        KeyRing(Map<String, SigningKey> keys, SigningKey primary, SigningKey legacy) {
+            this.keys = Collections.unmodifiableMap(keys);
+            this.primary = primary;
+            this.legacy = legacy;
+            this.parser = Jwts.parserBuilder()
+                    .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                        @Override
+                        @SuppressWarnings("rawtypes")
+                        public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                            return resolve(header.getKeyId());
+                        }
+                    })
+                    .build();
+        }
+
+        private Key resolve(String keyId) {
+            SigningKey key = keyId != null ? keys.get(keyId) : legacy;
+            if (key == null) {
+                throw new JwtException("未知的JWT签名密钥: " + keyId);
+            }
+            return key.getKey();
+        }
+
+        String legacyKeyId() {
+            return legacy != null ? legacy.getId() : null;
+        }
+    }
+}
@@ -22,27 +22,20 @@ package com.xiaoqu.qteamos.core.security.util;
 
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwsHeader;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
-import io.jsonwebtoken.security.Keys;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.xiaoqu.qteamos.core.security.service.TokenVerificationService;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
-import org.springframework.security.core.userdetails.User;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
-import javax.crypto.SecretKey;
-import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
-import java.util.Collection;
 import java.util.Date;
 import java.util.stream.Collectors;
-import jakarta.annotation.PostConstruct;
 
 /**
  * JWT工具类
@@ -52,25 +45,16 @@ import jakarta.annotation.PostConstruct;
 public class JwtUtils {
     private static final Logger log = LoggerFactory.getLogger(JwtUtils.class);
     
-    @Value("${spring.security.jwt.secret-key}")
-    private String secretKeyString;
-    
     @Value("${spring.security.jwt.expiration:86400000}")
     private long expiration; // 默认24小时
     
     @Value("${spring.security.jwt.refresh-token.expiration:604800000}")
     private long refreshExpiration; // 默认7天
     
-    private SecretKey secretKey;
-    
-    private static final String AUTHORITIES_KEY = "auth";
+    @Autowired
+    private TokenVerificationService tokenVerificationService;
     
-    @PostConstruct
-    public void init() {
-        // 使用提供的密钥字符串生成安全的密钥
-        secretKey = Keys.hmacShaKeyFor(secretKeyString.getBytes(StandardCharsets.UTF_8));
-        log.info("JWT工具类初始化完成");
-    }
+    private static final String AUTHORITIES_KEY = TokenVerificationService.AUTHORITIES_KEY;
     
     /**
      * 生成JWT访问令牌
@@ -86,12 +70,14 @@ public class JwtUtils {
         Date now = new Date();
         Date validity = new Date(now.getTime() + expiration);
         
+        TokenVerificationService.SigningKey signingKey = tokenVerificationService.getSigningKey();
         return Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, signingKey.getId())
                 .setSubject(authentication.getName())
                 .claim(AUTHORITIES_KEY, authorities)
                 .setIssuedAt(now)
                 .setExpiration(validity)
-                .signWith(secretKey, SignatureAlgorithm.HS512)
+                .signWith(signingKey.getKey(), SignatureAlgorithm.HS512)
                 .compact();
     }
     
@@ -105,11 +91,13 @@ public class JwtUtils {
         Date now = new Date();
         Date validity = new Date(now.getTime() + refreshExpiration);
         
+        TokenVerificationService.SigningKey signingKey = tokenVerificationService.getSigningKey();
         return Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, signingKey.getId())
                 .setSubject(username)
                 .setIssuedAt(now)
                 .setExpiration(validity)
-                .signWith(secretKey, SignatureAlgorithm.HS512)
+                .signWith(signingKey.getKey(), SignatureAlgorithm.HS512)
                 .compact();
     }
     
@@ -120,16 +108,8 @@ public class JwtUtils {
      * @return 认证信息
      */
     public Authentication getAuthentication(String token) {
-        Claims claims = parseToken(token);
-        
-        Collection<? extends GrantedAuthority> authorities =
-                Arrays.stream(claims.get(AUTHORITIES_KEY).toString().split(","))
-                        .filter(auth -> !auth.trim().isEmpty())
-                        .map(SimpleGrantedAuthority::new)
-                        .collect(Collectors.toList());
-        
-        UserDetails principal = new User(claims.getSubject(), "", authorities);
-        return new UsernamePasswordAuthenticationToken(principal, token, authorities);
+        // 已验证令牌缓存了预构建的认证信息
+        return tokenVerificationService.verify(token).getAuthentication();
     }
     
     /**
@@ -139,15 +119,7 @@ public class JwtUtils {
      * @return 是否有效
      */
     public boolean validateToken(String token) {
-        try {
-            Jwts.parserBuilder().setSigningKey(secretKey).build().parseClaimsJws(token);
-            return true;
-        } catch (ExpiredJwtException e) {
-            log.info("JWT令牌已过期：{}", e.getMessage());
-        } catch (Exception e) {
-            log.error("JWT令牌验证失败：{}", e.getMessage());
-        }
-        return false;
+        return tokenVerificationService.verifyQuietly(token, false) != null;
     }
     
     /**
@@ -157,11 +129,7 @@ public class JwtUtils {
      * @return 解析后的数据
      */
     public Claims parseToken(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(secretKey)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return tokenVerificationService.verify(token).getClaims();
     }
     
     /**
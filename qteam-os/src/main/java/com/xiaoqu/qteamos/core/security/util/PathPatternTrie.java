@@ -0,0 +1,431 @@
+/*
+ * Copyright (c) 2023-2025 XiaoQuTeam. All rights reserved.
+ * QTeamOS is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+
+/**
+ * 路径模式前缀树
+ * 按路径段索引预编译的路径模式，查找耗时与请求路径长度成正比
+ *
+ * @author yangqijun
+ * @date 2025-07-22
+ * @since 1.0.0
+ */
+package com.xiaoqu.qteamos.core.security.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * 路径模式前缀树
+ * 支持Spring风格的路径模式：字面量段、*和{var}匹配单个段，**和{*var}匹配任意多个段，
+ * 段内通配如*.json、user-{id}在登记时编译为正则。
+ * 匹配时同一层按字面量、段内通配（字面量越长越优先）、单段通配、多段通配的顺序尝试，
+ * 结果与登记顺序无关，最具体的模式优先。
+ * 增删为增量操作并串行执行，查找无锁
+ *
+ * @param <T> 模式关联的值类型
+ */
+public class PathPatternTrie<T> {
+
+    private final Node<T> root = new Node<>();
+
+    /**
+     * 已登记的模式
+     */
+    private final Map<String, T> entries = new ConcurrentHashMap<>();
+
+    /**
+     * 登记模式，替换同一模式的旧值
+     *
+     * @param pattern 路径模式
+     * @param value 关联的值
+     * @return 旧值，没有则为null
+     */
+    public synchronized T put(String pattern, T value) {
+        T previous = entries.put(pattern, value);
+        Node<T> node = root;
+        for (String segment : split(pattern)) {
+            node = node.getOrCreateChild(segment);
+        }
+        node.values.put(pattern, value);
+        return previous;
+    }
+
+    /**
+     * 移除模式，并裁剪不再使用的节点
+     *
+     * @param pattern 路径模式
+     * @return 被移除的值，没有则为null
+     */
+    public synchronized T remove(String pattern) {
+        T previous = entries.remove(pattern);
+        if (previous == null) {
+            return null;
+        }
+        String[] segments = split(pattern);
+        List<Node<T>> path = new ArrayList<>(segments.length + 1);
+        Node<T> node = root;
+        path.add(node);
+        for (String segment : segments) {
+            node = node.getChild(segment);
+            if (node == null) {
+                return previous;
+            }
+            path.add(node);
+        }
+        node.values.remove(pattern);
+        for (int i = segments.length; i > 0; i--) {
+            Node<T> current = path.get(i);
+            if (!current.isEmpty()) {
+                break;
+            }
+            path.get(i - 1).removeChild(segments[i - 1]);
+        }
+        return previous;
+    }
+
+    /**
+     * 查找与路径最匹配的模式的值
+     *
+     * @param path 请求路径
+     * @return 匹配的值，没有匹配时为null
+     */
+    public T match(String path) {
+        if (entries.isEmpty()) {
+            return null;
+        }
+        return match(root, split(path), 0);
+    }
+
+    /**
+     * 获取精确登记的模式的值
+     *
+     * @param pattern 路径模式
+     * @return 值，没有则为null
+     */
+    public T get(String pattern) {
+        return entries.get(pattern);
+    }
+
+    /**
+     * 已登记的模式数
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * 清空所有模式
+     */
+    public synchronized void clear() {
+        entries.clear();
+        root.clear();
+    }
+
+    private T match(Node<T> node, String[] segments, int index) {
+        if (index == segments.length) {
+            T value = node.value();
+            if (value == null && node.multiChild != null) {
+                // **匹配零个段
+                value = node.multiChild.value();
+            }
+            return value;
+        }
+        String segment = segments[index];
+
+        Node<T> literal = node.literals.get(segment);
+        if (literal != null) {
+            T value = match(literal, segments, index + 1);
+            if (value != null) {
+                return value;
+            }
+        }
+
+        for (PatternChild<T> child : node.patterns) {
+            if (child.regex.matcher(segment).matches()) {
+                T value = match(child.node, segments, index + 1);
+                if (value != null) {
+                    return value;
+                }
+            }
+        }
+
+        Node<T> single = node.singleChild;
+        if (single != null) {
+            T value = match(single, segments, index + 1);
+            if (value != null) {
+                return value;
+            }
+        }
+
+        Node<T> multi = node.multiChild;
+        if (multi != null) {
+            if (multi.isLeaf()) {
+                // 末尾的**直接匹配剩余所有段
+                return multi.value();
+            }
+            for (int next = index; next <= segments.length; next++) {
+                T value = match(multi, segments, next);
+                if (value != null) {
+                    return value;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 按/切分路径，忽略空段
+     */
+    private static String[] split(String path) {
+        if (path == null || path.isEmpty()) {
+            return new String[0];
+        }
+        int count = 0;
+        boolean inSegment = false;
+        for (int i = 0; i < path.length(); i++) {
+            boolean slash = path.charAt(i) == '/';
+            if (!slash && !inSegment) {
+                count++;
+            }
+            inSegment = !slash;
+        }
+        String[] segments = new String[count];
+        int n = 0;
+        int start = -1;
+        for (int i = 0; i <= path.length(); i++) {
+            boolean slash = i == path.length() || path.charAt(i) == '/';
+            if (slash) {
+                if (start >= 0) {
+                    segments[n++] = path.substring(start, i);
+                    start = -1;
+                }
+            } else if (start < 0) {
+                start = i;
+            }
+        }
+        return segments;
+    }
+
+    private static boolean isMultiSegment(String segment) {
+        return "**".equals(segment) || segment.startsWith("{*") && segment.endsWith("}");
+    }
+
+    private static boolean isSingleSegment(String segment) {
+        if ("*".equals(segment)) {
+            return true;
+        }
+        // 不带正则约束的整段变量
+        return segment.startsWith("{") && segment.endsWith("}") && segment.indexOf('{', 1) < 0
+                && segment.indexOf(':') < 0;
+    }
+
+    private static boolean isLiteral(String segment) {
+        return segment.indexOf('*') < 0 && segment.indexOf('?') < 0 && segment.indexOf('{') < 0;
+    }
+
+    /**
+     * 把段内通配编译为正则
+     */
+    private static Pattern compileSegment(String segment) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < segment.length()) {
+            char c = segment.charAt(i);
+            if (c == '*' || c == '?' || c == '{') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                if (c == '*') {
+                    regex.append(".*");
+                    i++;
+                } else if (c == '?') {
+                    regex.append('.');
+                    i++;
+                } else {
+                    int depth = 0;
+                    int end = i;
+                    while (end < segment.length()) {
+                        char e = segment.charAt(end);
+                        if (e == '{') {
+                            depth++;
+                        } else if (e == '}' && --depth == 0) {
+                            break;
+                        }
+                        end++;
+                    }
+                    String variable = segment.substring(i + 1, Math.min(end, segment.length()));
+                    int colon = variable.indexOf(':');
+                    regex.append('(').append(colon >= 0 ? variable.substring(colon + 1) : ".+?").append(')');
+                    i = end + 1;
+                }
+            } else {
+                literal.append(c);
+                i++;
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    /**
+     * 段内通配模式的字面量长度，用于排序
+     */
+    private static int literalLength(String segment) {
+        int length = 0;
+        int depth = 0;
+        for (int i = 0; i < segment.length(); i++) {
+            char c = segment.charAt(i);
+            if (c == '{') {
+                depth++;
+            } else if (c == '}') {
+                depth--;
+            } else if (depth == 0 && c != '*' && c != '?') {
+                length++;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * 前缀树节点
+     */
+    private static final class Node<T> {
+
+        private final Map<String, Node<T>> literals = new ConcurrentHashMap<>(4);
+
+        @SuppressWarnings("unchecked")
+        private volatile PatternChild<T>[] patterns = new PatternChild[0];
+
+        private volatile Node<T> singleChild;
+
+        private volatile Node<T> multiChild;
+
+        /**
+         * 在此节点结束的模式，结构相同的模式（如/a/{id}与/a/{name}）按模式字符串排序取第一个
+         */
+        private final ConcurrentSkipListMap<String, T> values = new ConcurrentSkipListMap<>();
+
+        T value() {
+            Map.Entry<String, T> first = values.firstEntry();
+            return first != null ? first.getValue() : null;
+        }
+
+        boolean isLeaf() {
+            return literals.isEmpty() && patterns.length == 0 && singleChild == null && multiChild == null;
+        }
+
+        boolean isEmpty() {
+            return values.isEmpty() && isLeaf();
+        }
+
+        void clear() {
+            literals.clear();
+            @SuppressWarnings("unchecked")
+            PatternChild<T>[] empty = new PatternChild[0];
+            patterns = empty;
+            singleChild = null;
+            multiChild = null;
+            values.clear();
+        }
+
+        Node<T> getChild(String segment) {
+            if (isMultiSegment(segment)) {
+                return multiChild;
+            }
+            if (isSingleSegment(segment)) {
+                return singleChild;
+            }
+            if (isLiteral(segment)) {
+                return literals.get(segment);
+            }
+            for (PatternChild<T> child : patterns) {
+                if (child.segment.equals(segment)) {
+                    return child.node;
+                }
+            }
+            return null;
+        }
+
+        Node<T> getOrCreateChild(String segment) {
+            Node<T> child = getChild(segment);
+            if (child != null) {
+                return child;
+            }
+            child = new Node<>();
+            if (isMultiSegment(segment)) {
+                multiChild = child;
+            } else if (isSingleSegment(segment)) {
+                singleChild = child;
+            } else if (isLiteral(segment)) {
+                literals.put(segment, child);
+            } else {
+                PatternChild<T>[] updated = Arrays.copyOf(patterns, patterns.length + 1);
+                updated[patterns.length] = new PatternChild<>(segment, compileSegment(segment), child);
+                Arrays.sort(updated, PatternChild.ORDER);
+                patterns = updated;
+            }
+            return child;
+        }
+
+        void removeChild(String segment) {
+            if (isMultiSegment(segment)) {
+                multiChild = null;
+            } else if (isSingleSegment(segment)) {
+                singleChild = null;
+            } else if (isLiteral(segment)) {
+                literals.remove(segment);
+            } else {
+                patterns = Arrays.stream(patterns)
+                        .filter(child -> !child.segment.equals(segment))
+                        .toArray(PatternChild[]::new);
+            }
+        }
+    }
+
+    /**
+     * 段内通配子节点
+     */
+    private static final class PatternChild<T> {
+
+        /**
+         * 字面量越长越具体，相同时按模式字符串排序保证确定性
+         */
+        static final Comparator<PatternChild<?>> ORDER = Comparator
+                .comparingInt((PatternChild<?> child) -> -child.literalLength)
+                .thenComparing(child -> child.segment);
+
+        private final String segment;
+
+        private final Pattern regex;
+
+        private final int literalLength;
+
+        private final Node<T> node;
+
+        PatternChild(String segment, Pattern regex, Node<T> node) {
+            this.segment = segment;
+            this.regex = regex;
+            this.literalLength = literalLength(segment);
+            this.node = node;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.xiaoqu.qteamos.core.databases.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 编译型行映射器基准测试
+ * 对比CompiledRowMappers与"逐列getObject组装Map再ObjectMapper.convertValue"两种映射方式的吞吐量。
+ * 结果集为内存中的代理实现，两种方式承担相同的结果集调用开销，差异来自映射本身
+ *
+ * 运行：mvn -pl qteam-os test-compile exec:java -Dexec.classpathScope=test
+ *       -Dexec.mainClass=com.xiaoqu.qteamos.core.databases.core.CompiledRowMappersBenchmark
+ *
+ * @author yangqijun
+ * @date 2025-05-02
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompiledRowMappersBenchmark {
+
+    private static final String[] LABELS = {"id", "user_name", "email", "age", "balance", "active"};
+
+    @Param({"1000"})
+    private int rows;
+
+    private Object[][] data;
+
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setUp() {
+        data = new Object[rows][];
+        for (int i = 0; i < rows; i++) {
+            data[i] = new Object[]{(long) i, "user-" + i, "user" + i + "@example.com", 20 + i % 50,
+                    BigDecimal.valueOf(i * 100L, 2), i % 2 == 0};
+        }
+        objectMapper = new ObjectMapper().setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
+    }
+
+    @Benchmark
+    public List<UserBean> compiledBean() throws SQLException {
+        ResultSet rs = resultSet();
+        CompiledRowMappers.RowMapper<UserBean> mapper = CompiledRowMappers.forType(UserBean.class, rs.getMetaData());
+        List<UserBean> result = new ArrayList<>(rows);
+        while (rs.next()) {
+            result.add(mapper.map(rs));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<UserRecord> compiledRecord() throws SQLException {
+        ResultSet rs = resultSet();
+        CompiledRowMappers.RowMapper<UserRecord> mapper =
+                CompiledRowMappers.forType(UserRecord.class, rs.getMetaData());
+        List<UserRecord> result = new ArrayList<>(rows);
+        while (rs.next()) {
+            result.add(mapper.map(rs));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<UserBean> mapThenConvertValue() throws SQLException {
+        ResultSet rs = resultSet();
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        List<UserBean> result = new ArrayList<>(rows);
+        while (rs.next()) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (int i = 1; i <= columnCount; i++) {
+                row.put(metaData.getColumnLabel(i), rs.getObject(i));
+            }
+            result.add(objectMapper.convertValue(row, UserBean.class));
+        }
+        return result;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CompiledRowMappersBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    /**
+     * 基于内存数据的只进结果集
+     */
+    private ResultSet resultSet() {
+        ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{ResultSetMetaData.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getColumnCount":
+                            return LABELS.length;
+                        case "getColumnLabel":
+                        case "getColumnName":
+                            return LABELS[(Integer) args[0] - 1];
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        int[] cursor = {-1};
+        Object[] last = new Object[1];
+        return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "next":
+                            return ++cursor[0] < data.length;
+                        case "getMetaData":
+                            return metaData;
+                        case "wasNull":
+                            return last[0] == null;
+                        case "close":
+                            return null;
+                        case "getObject":
+                        case "getLong":
+                        case "getInt":
+                        case "getString":
+                        case "getBigDecimal":
+                        case "getBoolean":
+                            last[0] = data[cursor[0]][(Integer) args[0] - 1];
+                            return last[0];
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    public static class UserBean {
+        private long id;
+        private String userName;
+        private String email;
+        private int age;
+        private BigDecimal balance;
+        private boolean active;
+
+        public long getId() {
+            return id;
+        }
+
+        public void setId(long id) {
+            this.id = id;
+        }
+
+        public String getUserName() {
+            return userName;
+        }
+
+        public void setUserName(String userName) {
+            this.userName = userName;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        public void setEmail(String email) {
+            this.email = email;
+        }
+
+        public int getAge() {
+            return age;
+        }
+
+        public void setAge(int age) {
+            this.age = age;
+        }
+
+        public BigDecimal getBalance() {
+            return balance;
+        }
+
+        public void setBalance(BigDecimal balance) {
+            this.balance = balance;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        public void setActive(boolean active) {
+            this.active = active;
+        }
+    }
+
+    public record UserRecord(long id, String userName, String email, int age, BigDecimal balance, boolean active) {
+    }
+}
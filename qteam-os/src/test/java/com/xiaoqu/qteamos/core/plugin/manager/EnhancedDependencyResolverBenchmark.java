@@ -0,0 +1,182 @@
+package com.xiaoqu.qteamos.core.plugin.manager;
+
+import ch.qos.logback.classic.Level;
+import com.xiaoqu.qteamos.core.plugin.manager.exception.PluginDependencyException;
+import com.xiaoqu.qteamos.core.plugin.running.PluginDependency;
+import com.xiaoqu.qteamos.core.plugin.running.PluginDescriptor;
+import com.xiaoqu.qteamos.core.plugin.running.PluginInfo;
+import com.xiaoqu.qteamos.core.plugin.running.PluginState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 增强版依赖解析器基准测试
+ * 注册500个插件，每个插件按不同写法的版本范围依赖若干个更早的插件，形成多层传递依赖；
+ * 模拟启动时逐个插件检查依赖，并测量依赖图已同步后单次冲突检测的耗时
+ *
+ * 运行：mvn -pl qteam-os test-compile exec:java -Dexec.classpathScope=test
+ *       -Dexec.mainClass=com.xiaoqu.qteamos.core.plugin.manager.EnhancedDependencyResolverBenchmark
+ *
+ * @author yangqijun
+ * @date 2024-07-18
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EnhancedDependencyResolverBenchmark {
+
+    @Param({"500"})
+    private int plugins;
+
+    private PluginRegistry pluginRegistry;
+
+    private EnhancedPluginVersionManager versionManager;
+
+    private List<PluginDescriptor> descriptors;
+
+    private EnhancedDependencyResolver warmResolver;
+
+    private String lastPluginId;
+
+    @Setup
+    public void setUp() {
+        // 解析器按插件输出INFO日志，基准测试中只保留告警
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.xiaoqu.qteamos")).setLevel(Level.WARN);
+
+        pluginRegistry = new PluginRegistry();
+        descriptors = new ArrayList<>(plugins);
+        Set<String> versions = new LinkedHashSet<>();
+        for (int i = 0; i < plugins; i++) {
+            String version = version(i);
+            versions.add(version);
+            PluginDescriptor descriptor = PluginDescriptor.builder()
+                    .pluginId(pluginId(i))
+                    .version(version)
+                    .dependencies(dependencies(i))
+                    .build();
+            descriptors.add(descriptor);
+            pluginRegistry.registerPlugin(PluginInfo.builder()
+                    .descriptor(descriptor)
+                    .state(PluginState.RUNNING)
+                    .build());
+        }
+        lastPluginId = pluginId(plugins - 1);
+
+        versionManager = mock(EnhancedPluginVersionManager.class);
+        when(versionManager.getAllAvailableVersions()).thenReturn(new ArrayList<>(versions));
+
+        warmResolver = newResolver();
+        warmResolver.currentGraph();
+    }
+
+    /**
+     * 启动时按加载顺序逐个检查500个插件的依赖，依赖图从空开始同步
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int resolveAtStartup() {
+        EnhancedDependencyResolver resolver = newResolver();
+        int satisfied = 0;
+        for (PluginDescriptor descriptor : descriptors) {
+            if (resolver.checkDependencies(descriptor)) {
+                satisfied++;
+            }
+        }
+        return satisfied;
+    }
+
+    /**
+     * 依赖图已与注册表同步时的单次冲突检测
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int detectConflictsOnSyncedGraph() throws PluginDependencyException {
+        return warmResolver.detectDependencyConflicts(lastPluginId).size();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(EnhancedDependencyResolverBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    private EnhancedDependencyResolver newResolver() {
+        EnhancedDependencyResolver resolver = new EnhancedDependencyResolver();
+        // 父类和子类各自持有注册表字段
+        ReflectionTestUtils.setField(resolver, DependencyResolver.class, "pluginRegistry", pluginRegistry, PluginRegistry.class);
+        ReflectionTestUtils.setField(resolver, EnhancedDependencyResolver.class, "pluginRegistry", pluginRegistry, PluginRegistry.class);
+        ReflectionTestUtils.setField(resolver, "versionManager", versionManager);
+        return resolver;
+    }
+
+    private static String pluginId(int index) {
+        return String.format("plugin-%03d", index);
+    }
+
+    private static String version(int index) {
+        return "1." + (index % 10) + "." + (index % 7);
+    }
+
+    /**
+     * 依赖index/2、index/3以及每5个插件依赖前一个插件，
+     * 同一个被依赖插件由不同依赖方以不同写法的范围声明，全部可由其当前版本满足
+     */
+    private static List<PluginDependency> dependencies(int index) {
+        Set<Integer> targets = new LinkedHashSet<>();
+        if (index > 0) {
+            targets.add(index / 2);
+            targets.add(index / 3);
+            if (index % 5 == 0) {
+                targets.add(index - 1);
+            }
+        }
+        targets.remove(index);
+
+        List<PluginDependency> dependencies = new ArrayList<>(targets.size());
+        for (int target : targets) {
+            dependencies.add(PluginDependency.builder()
+                    .pluginId(pluginId(target))
+                    .versionRequirement(requirement(index, target))
+                    .build());
+        }
+        return dependencies;
+    }
+
+    private static String requirement(int dependent, int target) {
+        switch (dependent % 5) {
+            case 0:
+                return ">=1.0.0";
+            case 1:
+                return "^1.0.0";
+            case 2:
+                return "1.x";
+            case 3:
+                return ">=1.0.0 <2.0.0";
+            default:
+                return "~1." + (target % 10) + ".0";
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2023-2024 XiaoQuTeam. All rights reserved.
+ * QTeamOS is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND,
+ * EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT,
+ * MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+
+/**
+ * 插件安全管理器测试
+ * 验证示例插件在没有相应权限时，进程、网络类加载和DDL语句被拒绝
+ *
+ * @author yangqijun
+ * @date 2024-07-09
+ * @since 1.0.0
+ */
+package com.xiaoqu.qteamos.core.plugin.security;
+
+import com.xiaoqu.qteamos.core.plugin.loader.DynamicClassLoader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.SocketPermission;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PluginSecurityManagerTest {
+
+    private static final String PLUGIN_ID = "sample-plugin";
+
+    @TempDir
+    Path pluginsRoot;
+
+    private SandboxConfig sandboxConfig;
+    private PluginSecurityManager securityManager;
+    private DynamicClassLoader pluginClassLoader;
+
+    @BeforeEach
+    void setUp() {
+        sandboxConfig = new SandboxConfig();
+        sandboxConfig.setEnabled(true);
+        sandboxConfig.setPermissionCheckEnabled(true);
+
+        securityManager = new PluginSecurityManager();
+        ReflectionTestUtils.setField(securityManager, "sandboxConfig", sandboxConfig);
+        ReflectionTestUtils.setField(securityManager, "pluginsRootPath", pluginsRoot.toString());
+        securityManager.setPermissions(PLUGIN_ID, securityManager.createDefaultPermissions(PLUGIN_ID));
+
+        // 与DynamicClassLoaderFactory相同的方式把类加载检查接到插件类加载器上
+        pluginClassLoader = new DynamicClassLoader(PLUGIN_ID, new URL[0], getClass().getClassLoader(), null);
+        pluginClassLoader.setClassAccessPolicy(className -> securityManager.isClassAllowed(PLUGIN_ID, className));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        pluginClassLoader.close();
+    }
+
+    @Test
+    void deniesProcessClassesWithoutExecPermission() {
+        assertFalse(securityManager.isClassAllowed(PLUGIN_ID, "java.lang.ProcessBuilder"));
+        assertThrows(ClassNotFoundException.class, () -> pluginClassLoader.loadClass("java.lang.ProcessBuilder"));
+    }
+
+    @Test
+    void allowsProcessClassesWithExecPermission() throws ClassNotFoundException {
+        securityManager.addPermission(PLUGIN_ID, new RuntimePermission("exec"));
+
+        assertTrue(securityManager.isClassAllowed(PLUGIN_ID, "java.lang.ProcessBuilder"));
+        assertSame(ProcessBuilder.class, pluginClassLoader.loadClass("java.lang.ProcessBuilder"));
+    }
+
+    @Test
+    void deniesNetworkClassesWithoutConnectPermission() {
+        assertFalse(securityManager.isClassAllowed(PLUGIN_ID, "java.net.Socket"));
+        assertFalse(securityManager.isClassAllowed(PLUGIN_ID, "java.nio.channels.SocketChannel"));
+        assertFalse(securityManager.isClassAllowed(PLUGIN_ID, "java.net.http.HttpClient"));
+        assertThrows(ClassNotFoundException.class, () -> pluginClassLoader.loadClass("java.net.Socket"));
+    }
+
+    @Test
+    void allowsNetworkClassesWithConnectPermission() throws ClassNotFoundException {
+        securityManager.addPermission(PLUGIN_ID, new SocketPermission("*", "connect"));
+
+        assertTrue(securityManager.isClassAllowed(PLUGIN_ID, "java.net.Socket"));
+        assertSame(java.net.Socket.class, pluginClassLoader.loadClass("java.net.Socket"));
+    }
+
+    @Test
+    void allowsUnrestrictedClasses() throws ClassNotFoundException {
+        assertTrue(securityManager.isClassAllowed(PLUGIN_ID, "java.util.ArrayList"));
+        assertSame(java.util.ArrayList.class, pluginClassLoader.loadClass("java.util.ArrayList"));
+    }
+
+    @Test
+    void deniesBlockedPackages() {
+        sandboxConfig.setBlockedPackages(List.of("com.xiaoqu.qteamos.core."));
+
+        assertFalse(securityManager.isClassAllowed(PLUGIN_ID, "com.xiaoqu.qteamos.core.plugin.manager.PluginRegistry"));
+        assertTrue(securityManager.isClassAllowed(PLUGIN_ID, "com.xiaoqu.qteamos.api.core.plugin.api.PluginApi"));
+    }
+
+    @Test
+    void allowsEverythingWhenSandboxDisabled() {
+        sandboxConfig.setEnabled(false);
+
+        assertTrue(securityManager.isClassAllowed(PLUGIN_ID, "java.lang.ProcessBuilder"));
+        assertDoesNotThrow(() -> securityManager.checkSql(PLUGIN_ID, "DROP TABLE users"));
+    }
+
+    @Test
+    void rejectsDdlWithoutDdlPermission() {
+        assertThrows(SecurityException.class, () -> securityManager.checkSql(PLUGIN_ID, "DROP TABLE users"));
+        assertThrows(SecurityException.class, () -> securityManager.checkSql(PLUGIN_ID, "  create table t (id int)"));
+        assertThrows(SecurityException.class,
+                () -> securityManager.checkSql(PLUGIN_ID, "SELECT 1; /* 注释 */ TRUNCATE TABLE users"));
+        assertThrows(SecurityException.class,
+                () -> securityManager.checkSql(PLUGIN_ID, "-- 注释\nALTER TABLE users ADD COLUMN x INT"));
+    }
+
+    @Test
+    void allowsDmlWithoutDdlPermission() {
+        assertDoesNotThrow(() -> securityManager.checkSql(PLUGIN_ID, "SELECT * FROM users WHERE name = 'drop'"));
+        assertDoesNotThrow(() -> securityManager.checkSql(PLUGIN_ID, "UPDATE users SET note = 'a; DROP TABLE x'"));
+        assertDoesNotThrow(() -> securityManager.checkSql(PLUGIN_ID, "INSERT INTO users (name) VALUES (?)"));
+    }
+
+    @Test
+    void allowsDdlWithDdlPermission() {
+        securityManager.addPermission(PLUGIN_ID, new PluginPermission(PluginPermission.DB_DDL));
+
+        assertDoesNotThrow(() -> securityManager.checkSql(PLUGIN_ID, "CREATE TABLE t (id INT)"));
+    }
+
+    @Test
+    void hostCallsAreNotChecked() {
+        assertDoesNotThrow(() -> securityManager.checkSql(null, "DROP TABLE users"));
+    }
+
+    @Test
+    void rejectsFileAccessOutsidePluginRoot() {
+        Path ownFile = pluginsRoot.resolve(PLUGIN_ID).resolve("data").resolve("a.txt");
+        Path otherFile = pluginsRoot.resolve("other-plugin").resolve("data").resolve("a.txt");
+
+        assertDoesNotThrow(() -> securityManager.checkFileAccess(PLUGIN_ID, ownFile, "write"));
+        assertThrows(SecurityException.class, () -> securityManager.checkFileAccess(PLUGIN_ID, otherFile, "read"));
+    }
+}
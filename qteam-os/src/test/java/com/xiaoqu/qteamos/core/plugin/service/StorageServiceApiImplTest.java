@@ -0,0 +1,110 @@
+package com.xiaoqu.qteamos.core.plugin.service;
+
+import com.xiaoqu.qteamos.core.plugin.error.PluginErrorHandler;
+import com.xiaoqu.qteamos.core.plugin.security.PluginSecurityManager;
+import com.xiaoqu.qteamos.core.plugin.security.SandboxConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 存储服务API测试
+ * 验证示例插件只能访问自己的数据目录，"../"等越界路径被拒绝
+ *
+ * @author yangqijun
+ * @date 2025-05-01
+ */
+class StorageServiceApiImplTest {
+
+    private static final String PLUGIN_ID = "sample-plugin";
+
+    @TempDir
+    Path storageRoot;
+
+    private PluginErrorHandler errorHandler;
+    private StorageServiceApiImpl storageService;
+
+    @BeforeEach
+    void setUp() {
+        SandboxConfig sandboxConfig = new SandboxConfig();
+        sandboxConfig.setEnabled(true);
+        sandboxConfig.setPermissionCheckEnabled(true);
+
+        PluginSecurityManager securityManager = new PluginSecurityManager();
+        ReflectionTestUtils.setField(securityManager, "sandboxConfig", sandboxConfig);
+        ReflectionTestUtils.setField(securityManager, "pluginsRootPath", storageRoot.toString());
+        securityManager.setPermissions(PLUGIN_ID, securityManager.createDefaultPermissions(PLUGIN_ID));
+
+        PluginServiceApiImpl pluginServiceApi = mock(PluginServiceApiImpl.class);
+        when(pluginServiceApi.getPluginId()).thenReturn(PLUGIN_ID);
+        errorHandler = mock(PluginErrorHandler.class);
+
+        storageService = new StorageServiceApiImpl();
+        ReflectionTestUtils.setField(storageService, "pluginsRootPath", storageRoot.toString());
+        ReflectionTestUtils.setField(storageService, "errorHandler", errorHandler);
+        ReflectionTestUtils.setField(storageService, "pluginServiceApi", pluginServiceApi);
+        ReflectionTestUtils.setField(storageService, "securityManager", securityManager);
+    }
+
+    @Test
+    void readsAndWritesInsideDataDirectory() {
+        assertTrue(storageService.writeFileContent("notes/a.txt", "hello"));
+
+        assertEquals(Optional.of("hello"), storageService.readFileContent("notes/a.txt"));
+        assertTrue(Files.exists(storageRoot.resolve(PLUGIN_ID).resolve("data").resolve("notes").resolve("a.txt")));
+        verify(errorHandler, never()).handlePluginError(any(), any(), any());
+    }
+
+    @Test
+    void rejectsParentTraversalIntoOtherPlugin() throws Exception {
+        Path secret = storageRoot.resolve("other-plugin").resolve("data").resolve("secret.txt");
+        Files.createDirectories(secret.getParent());
+        Files.writeString(secret, "secret");
+
+        assertEquals(Optional.empty(), storageService.readFileContent("../../other-plugin/data/secret.txt"));
+        assertFalse(storageService.writeFileContent("../../other-plugin/data/secret.txt", "overwritten"));
+        assertFalse(storageService.delete("../../other-plugin/data/secret.txt"));
+
+        assertEquals("secret", Files.readString(secret));
+        verify(errorHandler, times(3))
+                .handlePluginError(eq(PLUGIN_ID), isA(SecurityException.class), eq(PluginErrorHandler.OperationType.RUNTIME));
+    }
+
+    @Test
+    void rejectsTraversalOutOfDataDirectory() {
+        assertFalse(storageService.writeFileContent("../config/plugin-config.json", "{}"));
+        assertFalse(storageService.exists("sub/../../../outside.txt"));
+
+        assertFalse(Files.exists(storageRoot.resolve(PLUGIN_ID).resolve("config").resolve("plugin-config.json")));
+        verify(errorHandler, times(2))
+                .handlePluginError(eq(PLUGIN_ID), isA(SecurityException.class), eq(PluginErrorHandler.OperationType.RUNTIME));
+    }
+
+    @Test
+    void rejectsAbsolutePathOutsideDataDirectory() {
+        Path outside = storageRoot.resolve("outside.txt").toAbsolutePath();
+
+        assertFalse(storageService.writeFileContent(outside.toString(), "x"));
+
+        assertFalse(Files.exists(outside));
+        verify(errorHandler).handlePluginError(eq(PLUGIN_ID), isA(SecurityException.class),
+                eq(PluginErrorHandler.OperationType.RUNTIME));
+    }
+}
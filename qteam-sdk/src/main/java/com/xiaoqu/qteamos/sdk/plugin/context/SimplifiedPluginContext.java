@@ -22,31 +22,66 @@ package com.xiaoqu.qteamos.sdk.plugin.context;
 
 import com.xiaoqu.qteamos.api.core.plugin.PluginContext;
 import com.xiaoqu.qteamos.api.core.plugin.PluginEventListener;
+import com.xiaoqu.qteamos.api.core.plugin.api.PluginApi;
+import com.xiaoqu.qteamos.common.utils.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Properties;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * 简化的插件上下文
- * 为插件开发者提供更友好的接口，简化常见操作
+ * 为插件开发者提供更友好的接口，简化常见操作。
+ * 本地配置的修改合并后异步写入文件，插件应在stop或destroy中调用close()写出未保存的修改
  */
-public class SimplifiedPluginContext {
+public class SimplifiedPluginContext implements AutoCloseable {
     
     private static final Logger log = LoggerFactory.getLogger(SimplifiedPluginContext.class);
     
+    /**
+     * 配置保存合并窗口（毫秒），窗口内的多次修改只写一次文件
+     */
+    private static final long SAVE_DELAY_MILLIS = 500;
+    
+    /**
+     * 未关闭的插件上下文，以下静态字段都在类锁内访问
+     */
+    private static final Set<SimplifiedPluginContext> OPEN_CONTEXTS = new HashSet<>();
+    
+    /**
+     * 所有插件上下文共用的配置写入线程，最后一个上下文关闭后停止
+     */
+    private static ScheduledExecutorService configWriter;
+    
+    /**
+     * 进程退出时写出未保存配置的钩子，与写入线程同时存在
+     */
+    private static Thread shutdownFlusher;
+    
     private final PluginContext originalContext;
     private final Properties configProperties = new Properties();
     private final File configFile;
+    private final AtomicBoolean savePending = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
     
     /**
      * 构造函数
@@ -62,6 +97,8 @@ public class SimplifiedPluginContext {
         
         // 加载配置
         loadConfig();
+        
+        register(this);
     }
     
     /**
@@ -131,11 +168,46 @@ public class SimplifiedPluginContext {
         // 设置到插件上下文
         originalContext.setConfig(key, value);
         
-        // 同时保存到本地配置
+        // 同时保存到本地配置，合并后异步写入文件
         configProperties.setProperty(key, value);
+        scheduleSave();
+    }
+    
+    /**
+     * 批量设置配置值，只写一次本地配置文件
+     *
+     * @param configs 配置集合
+     */
+    public void setConfigs(Map<String, String> configs) {
+        for (Map.Entry<String, String> entry : configs.entrySet()) {
+            originalContext.setConfig(entry.getKey(), entry.getValue());
+        }
+        configProperties.putAll(configs);
+        scheduleSave();
+    }
+    
+    /**
+     * 立即把本地配置写入文件，不等待合并窗口
+     */
+    public void flushConfig() {
+        savePending.set(false);
         saveConfig();
     }
     
+    /**
+     * 关闭上下文，写出尚未保存的本地配置
+     * 所有上下文都关闭后停止共用的写入线程，避免插件卸载后线程继续持有插件类加载器
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            if (savePending.getAndSet(false)) {
+                saveConfig();
+            }
+            unregister(this);
+        }
+    }
+    
     /**
      * 获取整数配置值
      *
@@ -210,6 +282,33 @@ public class SimplifiedPluginContext {
         return originalContext.getService(serviceClass);
     }
     
+    /**
+     * 导出服务供其他插件调用
+     * 插件热更新后重新导出同名服务，其他插件持有的服务引用自动切换到新实现
+     *
+     * @param serviceName 服务名称
+     * @param serviceInterface 服务接口
+     * @param service 服务实现
+     * @param <T> 服务泛型
+     */
+    public <T> void exportService(String serviceName, Class<T> serviceInterface, T service) {
+        PluginApi.get().exportService(serviceName, serviceInterface, service);
+    }
+    
+    /**
+     * 获取其他插件导出的服务
+     * 返回的服务直接分派到提供方实现，调用期间自动切换到提供方插件的上下文
+     *
+     * @param pluginId 提供方插件ID
+     * @param serviceName 服务名称
+     * @param serviceInterface 服务接口
+     * @param <T> 服务泛型
+     * @return 服务，未导出时为空
+     */
+    public <T> Optional<T> getPluginService(String pluginId, String serviceName, Class<T> serviceInterface) {
+        return PluginApi.get().getPluginService(pluginId, serviceName, serviceInterface);
+    }
+    
     /**
      * 获取数据库连接（已废弃）
      * 插件应该使用标准Spring Boot方式：@Autowired注入Mapper
@@ -271,21 +370,92 @@ public class SimplifiedPluginContext {
     }
     
     /**
-     * 保存配置
+     * 安排保存配置，合并窗口内已有待执行的保存时不再重复安排
      */
-    private void saveConfig() {
-        try {
-            // 确保配置目录存在
-            File parentDir = configFile.getParentFile();
-            if (!parentDir.exists() && !parentDir.mkdirs()) {
-                log.error("创建配置目录失败: {}", parentDir.getAbsolutePath());
+    private void scheduleSave() {
+        if (!savePending.compareAndSet(false, true)) {
+            return;
+        }
+        ScheduledExecutorService writer = closed.get() ? null : currentWriter();
+        if (writer != null) {
+            try {
+                writer.schedule(() -> {
+                    if (savePending.compareAndSet(true, false)) {
+                        saveConfig();
+                    }
+                }, SAVE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
                 return;
+            } catch (RejectedExecutionException e) {
+                // 写入线程已停止，直接保存
             }
-            
-            try (FileOutputStream fos = new FileOutputStream(configFile)) {
-                configProperties.store(fos, "Plugin Configuration");
-                log.debug("保存插件配置: {}", configFile.getAbsolutePath());
+        }
+        // 上下文已关闭时不再合并，直接保存
+        savePending.set(false);
+        saveConfig();
+    }
+    
+    private static synchronized ScheduledExecutorService currentWriter() {
+        return configWriter;
+    }
+    
+    /**
+     * 登记上下文，第一个上下文创建时启动写入线程并注册退出钩子
+     */
+    private static synchronized void register(SimplifiedPluginContext context) {
+        if (OPEN_CONTEXTS.isEmpty()) {
+            configWriter = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "plugin-properties-writer");
+                t.setDaemon(true);
+                return t;
+            });
+            shutdownFlusher = new Thread(SimplifiedPluginContext::flushAll, "plugin-properties-flusher");
+            Runtime.getRuntime().addShutdownHook(shutdownFlusher);
+        }
+        OPEN_CONTEXTS.add(context);
+    }
+    
+    /**
+     * 注销上下文，最后一个上下文关闭时停止写入线程并移除退出钩子
+     */
+    private static synchronized void unregister(SimplifiedPluginContext context) {
+        if (!OPEN_CONTEXTS.remove(context) || !OPEN_CONTEXTS.isEmpty()) {
+            return;
+        }
+        configWriter.shutdownNow();
+        configWriter = null;
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownFlusher);
+        } catch (IllegalStateException e) {
+            // 进程正在退出，钩子已在执行
+        }
+        shutdownFlusher = null;
+    }
+    
+    /**
+     * 进程退出时写出所有上下文未保存的配置
+     */
+    private static void flushAll() {
+        List<SimplifiedPluginContext> contexts;
+        synchronized (SimplifiedPluginContext.class) {
+            contexts = new ArrayList<>(OPEN_CONTEXTS);
+        }
+        for (SimplifiedPluginContext context : contexts) {
+            if (context.savePending.getAndSet(false)) {
+                context.saveConfig();
             }
+        }
+    }
+    
+    /**
+     * 保存配置
+     * 写临时文件并刷盘后原子替换，避免写入中途崩溃损坏配置文件
+     */
+    private synchronized void saveConfig() {
+        try {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            configProperties.store(content, "Plugin Configuration");
+            FileUtils.writeAtomically(configFile.toPath(), content.toByteArray());
+            log.debug("保存插件配置: {}", configFile.getAbsolutePath());
         } catch (IOException e) {
             log.error("保存插件配置失败", e);
         }